@@ -0,0 +1,96 @@
+// src/top/mcocet/bench/BenchSite.java
+package top.mcocet.bench;
+
+import top.mcocet.config.ConfigLoader;
+import top.mcocet.service.AccessLogger;
+import top.mcocet.service.LoggerService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试用的临时站点：文档根目录、配置文件、日志文件都放在同一个临时目录下，
+ * 结束时整体删除，不影响工作目录中的 config.yml。
+ */
+final class BenchSite implements AutoCloseable {
+    static final String SMALL = "/small.html";
+    static final String MEDIUM = "/medium.css";
+    static final String LARGE = "/large.bin";
+
+    final Path dir;
+    final Path documentRoot;
+    final ConfigLoader config;
+    final LoggerService logger;
+    final AccessLogger accessLog;
+
+    /**
+     * @param overrides 追加到配置文件末尾的 "键: 值" 行，同名键以后出现的为准
+     */
+    BenchSite(String... overrides) throws IOException {
+        dir = Files.createTempDirectory("motweb-bench");
+        documentRoot = Files.createDirectory(dir.resolve("http"));
+        Files.writeString(documentRoot.resolve("index.html"), html(512));
+        Files.writeString(documentRoot.resolve("50x.html"), "<html><body><h1>Error</h1></body></html>");
+        Files.writeString(documentRoot.resolve("small.html"), html(1024));
+        Files.write(documentRoot.resolve("medium.css"), css(64 * 1024));
+        Files.write(documentRoot.resolve("large.bin"), random(4 * 1024 * 1024));
+        Files.createDirectories(documentRoot.resolve("assets/img"));
+        Files.write(documentRoot.resolve("assets/img/logo.png"), random(8 * 1024));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("port: 0");
+        lines.add("logFile: " + dir.resolve("run.log"));
+        lines.add("documentRoot: " + documentRoot);
+        lines.add("accessLogFile: " + dir.resolve("access.log"));
+        lines.add("consoleAccessLog: false");
+        lines.add("enableSecurity: false");
+        lines.addAll(List.of(overrides));
+        Path configFile = dir.resolve("config.yml");
+        Files.write(configFile, lines, StandardCharsets.UTF_8);
+
+        config = new ConfigLoader(configFile.toString());
+        logger = new LoggerService(config.snapshot().getLogFilePath(), config.snapshot().getAccessStatsCapacity());
+        accessLog = new AccessLogger(config.snapshot().getAccessLogFile(), config.snapshot().getAccessLogQueueSize(),
+                AccessLogger.OverflowPolicy.DROP, 0, 0, false, logger);
+        accessLog.start();
+    }
+
+    static String html(int size) {
+        StringBuilder sb = new StringBuilder(size + 64).append("<html><body>");
+        while (sb.length() < size - 14) {
+            sb.append("<p>MOTWebPublisher</p>");
+        }
+        return sb.append("</body></html>").toString();
+    }
+
+    static byte[] css(int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append(".c").append(i).append("{margin:0;padding:").append(i % 16).append("px}\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        accessLog.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
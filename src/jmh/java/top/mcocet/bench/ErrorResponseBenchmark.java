@@ -0,0 +1,60 @@
+// src/top/mcocet/bench/ErrorResponseBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.http.ErrorResponse;
+import top.mcocet.service.FileService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单独发送错误响应的成本：404 使用预先读入的错误页面，405 使用首次生成后复用的文本，都不访问磁盘。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ErrorResponseBenchmark {
+    private BenchSite site;
+    private ErrorResponse errorResponse;
+    private StubExchange exchange;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite();
+        FileService fileService = new FileService(site.documentRoot.toString(), "index.html", "50x.html", site.logger);
+        errorResponse = new ErrorResponse(fileService, site.logger);
+        exchange = new StubExchange("192.0.2.10");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    @Benchmark
+    public long notFound() throws IOException {
+        errorResponse.send(exchange.reset("GET", "/missing.html"), 404, "Not Found");
+        return exchange.bytesWritten();
+    }
+
+    @Benchmark
+    public long methodNotAllowed() throws IOException {
+        errorResponse.send(exchange.reset("POST", "/index.html"), 405, "Method Not Allowed");
+        return exchange.bytesWritten();
+    }
+}
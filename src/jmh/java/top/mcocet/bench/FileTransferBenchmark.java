@@ -0,0 +1,85 @@
+// src/top/mcocet/bench/FileTransferBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.http.FileTransfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件内容写到输出流的几种方式：原先的 InputStream 拷贝、FileTransfer 的流式路径，
+ * 以及复用池化缓冲区的 FileChannel 定位读取路径。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileTransferBenchmark {
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private Path dir;
+    private Path file;
+    private FileTransfer streamTransfer;
+    private FileTransfer channelTransfer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("motweb-transfer");
+        file = dir.resolve("data.bin");
+        Files.write(file, BenchSite.random(size));
+        streamTransfer = new FileTransfer(Long.MAX_VALUE, 256 * 1024);
+        channelTransfer = new FileTransfer(1, 256 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long inputStreamCopy() throws IOException {
+        StubExchange.CountingOutputStream out = new StubExchange.CountingOutputStream();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long fileTransferStream() throws IOException {
+        StubExchange.CountingOutputStream out = new StubExchange.CountingOutputStream();
+        streamTransfer.send(file, size, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long fileTransferChannel() throws IOException {
+        StubExchange.CountingOutputStream out = new StubExchange.CountingOutputStream();
+        channelTransfer.send(file, size, out);
+        return out.count;
+    }
+}
@@ -0,0 +1,95 @@
+// src/top/mcocet/bench/HandlerBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.handler.InstrumentedHandler;
+import top.mcocet.handler.StaticFileHandler;
+import top.mcocet.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的 StaticFileHandler.handle：安全检查、限流、文件查找、协商和发送，
+ * 通过 StubExchange 调用，不经过网络。小/中文件命中内存缓存，大文件走 FileChannel。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandlerBenchmark {
+    @Param({BenchSite.SMALL, BenchSite.MEDIUM, BenchSite.LARGE})
+    public String path;
+
+    private BenchSite site;
+    private StaticFileHandler handler;
+    private InstrumentedHandler instrumented;
+
+    @State(Scope.Thread)
+    public static class Client {
+        final StubExchange exchange = new StubExchange("192.0.2.10");
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite(
+                "enableSecurity: true",
+                "blacklist: 10.0.0.0/8,172.16.0.0/12,203.0.113.5",
+                "allowedHosts: localhost,127.0.0.1,192.0.2.0/24");
+        handler = new StaticFileHandler(site.config, site.logger, site.accessLog);
+        ServerMetrics metrics = new ServerMetrics();
+        handler.registerMetrics(metrics);
+        instrumented = new InstrumentedHandler(handler, metrics);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    private long handle(Client client) throws IOException {
+        handler.handle(client.exchange.reset("GET", path));
+        return client.exchange.bytesWritten();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long handle1Thread(Client client) throws IOException {
+        return handle(client);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long handle4Threads(Client client) throws IOException {
+        return handle(client);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long handle16Threads(Client client) throws IOException {
+        return handle(client);
+    }
+
+    // 与 handle4Threads 对比，得到指标记录的开销
+    @Benchmark
+    @Threads(4)
+    public long handleInstrumented4Threads(Client client) throws IOException {
+        instrumented.handle(client.exchange.reset("GET", path));
+        return client.exchange.bytesWritten();
+    }
+}
@@ -0,0 +1,81 @@
+// src/top/mcocet/bench/HostResolverBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.service.HostResolver;
+import top.mcocet.service.LoggerService;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 反向解析对请求线程的影响。用固定耗时 5 毫秒的桩函数代替真实 DNS，
+ * 对比原先在请求线程上直接解析与 HostResolver 只读缓存的做法。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class HostResolverBenchmark {
+    private static final long LOOKUP_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Function<InetAddress, String> slowLookup = address -> {
+        LockSupport.parkNanos(LOOKUP_NANOS);
+        return "host-" + address.getHostAddress() + ".example.com";
+    };
+
+    private BenchSite site;
+    private HostResolver resolver;
+    private InetAddress[] clients;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite();
+        LoggerService logger = site.logger;
+        resolver = new HostResolver(HostResolver.Mode.ASYNC, 10000, 300_000, slowLookup, logger);
+        clients = new InetAddress[256];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = address(i);
+        }
+    }
+
+    private static InetAddress address(int i) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[] {(byte) 198, 51, 100, (byte) i});
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    // 原先的做法：每个请求都在工作线程上同步解析
+    @Benchmark
+    public String blockingLookup() {
+        return slowLookup.apply(clients[ThreadLocalRandom.current().nextInt(clients.length)]);
+    }
+
+    @Benchmark
+    public String asyncCachedLookup() {
+        return resolver.cachedHostName(clients[ThreadLocalRandom.current().nextInt(clients.length)]);
+    }
+}
@@ -0,0 +1,81 @@
+// src/top/mcocet/bench/LoggingBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.service.AccessStatistics;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求线程上的日志开销：异步访问日志的投递、按 IP 计数，以及同步写文件的 LoggerService 作为对照。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private BenchSite site;
+    private AccessStatistics statistics;
+    // 预先生成地址字符串，测量中不包含拼接的开销
+    private String[] fewIPs;
+    private String[] manyIPs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite("accessLogQueueSize: 65536");
+        statistics = new AccessStatistics(10000);
+        fewIPs = new String[16];
+        for (int i = 0; i < fewIPs.length; i++) {
+            fewIPs[i] = "192.0.2." + i;
+        }
+        manyIPs = new String[1 << 16];
+        for (int i = 0; i < manyIPs.length; i++) {
+            manyIPs[i] = "10.1." + (i >>> 8) + "." + (i & 0xFF);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    // 只把事件放入环形队列，格式化和写文件在后台线程完成；队列满时丢弃
+    @Benchmark
+    public void accessLogEnqueue() {
+        site.accessLog.log("192.0.2.10", "GET", "/index.html", 200, 1024, "text/html", 150_000, false, null);
+    }
+
+    @Benchmark
+    public void recordAccessFewIPs() {
+        statistics.record(fewIPs[ThreadLocalRandom.current().nextInt(fewIPs.length)]);
+    }
+
+    // 大量不同 IP，会触发统计表的批量淘汰
+    @Benchmark
+    public void recordAccessManyIPs() {
+        statistics.record(manyIPs[ThreadLocalRandom.current().nextInt(manyIPs.length)]);
+    }
+
+    // JUL 同步写文件，对照访问日志改为异步之前的成本
+    @Benchmark
+    public void loggerServiceInfo() {
+        site.logger.info("[bench] 192.0.2.10 - 访问: /index.html");
+    }
+}
@@ -0,0 +1,120 @@
+// src/top/mcocet/bench/LoopbackBenchmark.java
+package top.mcocet.bench;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.ServerExecutors;
+import top.mcocet.handler.StaticFileHandler;
+import top.mcocet.nio.NioHttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在本进程内启动真实的 HttpServer，经回环地址请求，包含 HTTP 解析和套接字读写。
+ * 客户端与服务器共用 CPU，结果用于版本之间的相对比较。
+ * engine 参数对比 JDK HttpServer 与 NIO 引擎，NIO 引擎不使用 executor 参数。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoopbackBenchmark {
+    @Param({BenchSite.SMALL, BenchSite.MEDIUM, BenchSite.LARGE})
+    public String path;
+
+    @Param({"fixed"})
+    public String executor;
+
+    @Param({"jdk", "nio"})
+    public String engine;
+
+    private BenchSite site;
+    private HttpServer server;
+    private NioHttpServer nioServer;
+    private ExecutorService executorService;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // 与 WebServer.main 保证一致，必须在创建第一个 HttpServer 之前设置
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        site = new BenchSite("executor: " + executor, "threads: 16", "engine: " + engine);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        StaticFileHandler handler = new StaticFileHandler(site.config, site.logger, site.accessLog);
+        int port;
+        if ("nio".equals(engine)) {
+            nioServer = new NioHttpServer(address, 1024, site.config.snapshot(), site.logger);
+            nioServer.createContext("/", handler);
+            nioServer.start();
+            port = nioServer.getAddress().getPort();
+        } else {
+            server = HttpServer.create(address, 1024);
+            executorService = ServerExecutors.create(site.config.snapshot(), site.logger);
+            server.setExecutor(executorService);
+            server.createContext("/", handler);
+            server.start();
+            port = server.getAddress().getPort();
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + port + path)).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            server.stop(0);
+            executorService.shutdownNow();
+        }
+        site.close();
+    }
+
+    private int get() throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        return response.statusCode();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int get1Thread() throws IOException, InterruptedException {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int get4Threads() throws IOException, InterruptedException {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int get16Threads() throws IOException, InterruptedException {
+        return get();
+    }
+}
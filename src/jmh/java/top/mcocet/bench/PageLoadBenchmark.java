@@ -0,0 +1,94 @@
+// src/top/mcocet/bench/PageLoadBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.handler.StaticFileHandler;
+import top.mcocet.nio.NioHttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟浏览器加载一个页面：同时请求页面引用的 32 个小资源，全部完成算一次操作。
+ * HTTP/1.1 下客户端为并发请求建立多条连接，HTTP/2 下所有请求在一条连接上多路复用。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageLoadBenchmark {
+    private static final int ASSETS = 32;
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    public String protocol;
+
+    private BenchSite site;
+    private NioHttpServer server;
+    private HttpClient client;
+    private HttpRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        site = new BenchSite("engine: nio", "http2: true");
+        for (int i = 0; i < ASSETS; i++) {
+            Files.write(site.documentRoot.resolve("asset" + i + ".css"), BenchSite.css(2048 + i * 64));
+        }
+        server = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024,
+                site.config.snapshot(), site.logger);
+        server.createContext("/", new StaticFileHandler(site.config, site.logger, site.accessLog));
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.valueOf(protocol)).build();
+        requests = new HttpRequest[ASSETS];
+        for (int i = 0; i < ASSETS; i++) {
+            requests[i] = HttpRequest.newBuilder(URI.create(base + "/asset" + i + ".css")).GET().build();
+        }
+        // HTTP/2 通过升级建立连接，先完成一次请求，测量只包含复用后的连接
+        client.send(requests[0], HttpResponse.BodyHandlers.discarding());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        site.close();
+    }
+
+    @Benchmark
+    public int loadPage() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(ASSETS);
+        for (int i = 0; i < ASSETS; i++) {
+            responses.add(client.sendAsync(requests[i], HttpResponse.BodyHandlers.discarding()));
+        }
+        int ok = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() == 200) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,96 @@
+// src/top/mcocet/bench/PathResolutionBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.service.FileCache;
+import top.mcocet.service.FileEntry;
+import top.mcocet.service.FileService;
+import top.mcocet.service.MimeTypes;
+import top.mcocet.service.SiteBundleWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求路径到文件的解析（文档索引查询）和 MIME 类型确定，分别测量有无内存缓存以及使用打包文件三种情况。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathResolutionBenchmark {
+    @Param({"/", "/small.html", "/assets/img/logo.png", "/missing.html"})
+    public String uri;
+
+    private BenchSite site;
+    private FileService uncached;
+    private FileService cached;
+    private FileService bundled;
+    private Path existing;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite();
+        String root = site.documentRoot.toString();
+        uncached = new FileService(root, "index.html", "50x.html", site.logger);
+        cached = new FileService(root, "index.html", "50x.html", site.logger, new FileCache(64L << 20, 1 << 20));
+        Path bundle = new SiteBundleWriter(site.config.snapshot(), site.logger).write(site.dir.resolve("site.bundle")).file();
+        bundled = new FileService(root, "index.html", "50x.html", site.logger, null, new MimeTypes(""), bundle.toString());
+        existing = site.documentRoot.resolve("assets/img/logo.png");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    @Benchmark
+    public Optional<Path> resolveFilePath() {
+        return uncached.resolveFilePath(uri);
+    }
+
+    @Benchmark
+    public Optional<String> mimeTypeTable() {
+        return uncached.getMimeType(existing);
+    }
+
+    // 改用内置扩展名表之前的做法
+    @Benchmark
+    public String probeContentType() throws IOException {
+        return Files.probeContentType(existing);
+    }
+
+    // 未启用缓存时只查索引，不读文件内容
+    @Benchmark
+    public Optional<FileEntry> lookupUncached() throws IOException {
+        return uncached.lookup(uri);
+    }
+
+    @Benchmark
+    public Optional<FileEntry> lookupCached() throws IOException {
+        return cached.lookup(uri);
+    }
+
+    // 命中时返回映射区的切片，不读文件也不占用堆内缓存
+    @Benchmark
+    public Optional<FileEntry> lookupBundled() throws IOException {
+        return bundled.lookup(uri);
+    }
+}
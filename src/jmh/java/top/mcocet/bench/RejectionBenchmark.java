@@ -0,0 +1,79 @@
+// src/top/mcocet/bench/RejectionBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.handler.StaticFileHandler;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无效流量经过完整处理器的成本：黑名单客户端、不存在的路径、不允许的方法。
+ * rejectionLogInterval=0 时每次拒绝都写应用日志，作为抽样汇总的对照。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RejectionBenchmark {
+    @Param({"0", "60"})
+    public String rejectionLogInterval;
+
+    private BenchSite site;
+    private StaticFileHandler handler;
+
+    @State(Scope.Thread)
+    public static class Clients {
+        final StubExchange blocked = new StubExchange("203.0.113.5");
+        final StubExchange allowed = new StubExchange("192.0.2.10");
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite(
+                "enableSecurity: true",
+                "blacklist: 10.0.0.0/8,172.16.0.0/12,203.0.113.5",
+                "allowedHosts: localhost,127.0.0.1,192.0.2.0/24",
+                "rejectionLogInterval: " + rejectionLogInterval);
+        handler = new StaticFileHandler(site.config, site.logger, site.accessLog);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    @Benchmark
+    public long blacklisted(Clients clients) throws IOException {
+        handler.handle(clients.blocked.reset("GET", "/wp-login.php"));
+        return clients.blocked.bytesWritten();
+    }
+
+    @Benchmark
+    public long notFound(Clients clients) throws IOException {
+        handler.handle(clients.allowed.reset("GET", "/.env"));
+        return clients.allowed.bytesWritten();
+    }
+
+    @Benchmark
+    public long methodNotAllowed(Clients clients) throws IOException {
+        handler.handle(clients.allowed.reset("POST", "/small.html"));
+        return clients.allowed.bytesWritten();
+    }
+}
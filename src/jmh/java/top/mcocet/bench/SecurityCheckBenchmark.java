@@ -0,0 +1,128 @@
+// src/top/mcocet/bench/SecurityCheckBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.config.ConfigSnapshot;
+import top.mcocet.security.AddressTrie;
+import top.mcocet.security.IpRange;
+import top.mcocet.security.RateLimiter;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求路径上的安全检查：黑名单查询（前缀树与原先按字符串查 HashSet 的做法对比）、
+ * Host 头部校验和限流器的获取/释放。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityCheckBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int entries;
+
+    private AddressTrie trie;
+    private Set<String> stringSet;
+    private InetAddress listed;
+    private InetAddress unlisted;
+    private InetAddress unlistedV6;
+    private ConfigSnapshot settings;
+    private ConfigSnapshot limited;
+    private RateLimiter limiter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws UnknownHostException {
+        Random random = new Random(7);
+        List<IpRange> ranges = new ArrayList<>(entries);
+        stringSet = new HashSet<>();
+        for (int i = 0; i < entries; i++) {
+            int address = random.nextInt() | 0x01000000;
+            // 四分之一是 /24 网段，其余为单个地址
+            int prefix = i % 4 == 0 ? 24 : 32;
+            String text = (address >>> 24 & 0xFF) + "." + (address >>> 16 & 0xFF) + "." + (address >>> 8 & 0xFF)
+                    + "." + (prefix == 24 ? 0 : address & 0xFF);
+            ranges.add(IpRange.parse(text + "/" + prefix));
+            stringSet.add(text);
+        }
+        trie = AddressTrie.of(ranges);
+        listed = InetAddress.getByName(ranges.get(ranges.size() - 1).toString().split("/")[0]);
+        unlisted = InetAddress.getByName("203.0.113.77");
+        unlistedV6 = InetAddress.getByName("2001:db8::1234");
+
+        settings = ConfigSnapshot.defaults()
+                .with("enableSecurity", "true")
+                .with("allowedHosts", "example.com,www.example.com,192.168.1.100");
+        limited = ConfigSnapshot.defaults()
+                .with("rateLimit", "true")
+                .with("rateLimitRequests", "1000000000")
+                .with("rateLimitBurst", "1000000000");
+        limiter = new RateLimiter(limited, ip -> { });
+    }
+
+    @Benchmark
+    public boolean trieHit() {
+        return trie.contains(listed);
+    }
+
+    @Benchmark
+    public boolean trieMiss() {
+        return trie.contains(unlisted);
+    }
+
+    @Benchmark
+    public boolean trieMissV6() {
+        return trie.contains(unlistedV6);
+    }
+
+    // 原先的做法：每次把地址格式化成字符串再查 HashSet，且不支持网段
+    @Benchmark
+    public boolean stringSetMiss() {
+        return stringSet.contains(unlisted.getHostAddress());
+    }
+
+    @Benchmark
+    public boolean hostHeaderCheck() {
+        return settings.isAllowedHost("www.example.com:8080");
+    }
+
+    @Benchmark
+    public boolean clientAllowedCheck() {
+        return settings.isClientAllowed(unlisted, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long rateLimiterAcquireRelease() {
+        long result = limiter.tryAcquire("198.51.100.7", limited);
+        limiter.release("198.51.100.7", 1024);
+        return result;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        trie = null;
+        stringSet = null;
+    }
+}
@@ -0,0 +1,96 @@
+// src/top/mcocet/bench/SiteBundleBenchmark.java
+package top.mcocet.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.service.FileCache;
+import top.mcocet.service.FileEntry;
+import top.mcocet.service.FileService;
+import top.mcocet.service.MimeTypes;
+import top.mcocet.service.SiteBundleWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由大量小文件组成的站点：启动（建立索引或打开打包文件）以及启动后把每个文件各请求一次的耗时，
+ * 直接读目录（带内存缓存）与内存映射的打包文件对比。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SiteBundleBenchmark {
+    private static final int DIRECTORIES = 100;
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    @Param({"directory", "bundle"})
+    public String source;
+
+    private BenchSite site;
+    private String bundle;
+    private String[] paths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        site = new BenchSite();
+        paths = new String[DIRECTORIES * FILES_PER_DIRECTORY];
+        for (int d = 0; d < DIRECTORIES; d++) {
+            Path dir = Files.createDirectory(site.documentRoot.resolve("d" + d));
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                Files.writeString(dir.resolve("f" + f + ".html"), BenchSite.html(512 + f * 16));
+                paths[d * FILES_PER_DIRECTORY + f] = "/d" + d + "/f" + f + ".html";
+            }
+        }
+        bundle = "bundle".equals(source)
+                ? new SiteBundleWriter(site.config.snapshot(), site.logger).write(site.dir.resolve("site.bundle")).file().toString()
+                : "";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        site.close();
+    }
+
+    @Benchmark
+    public int startup() {
+        FileService service = open();
+        service.close();
+        return service.getIndex().size();
+    }
+
+    // 新启动的实例上每个文件请求一次：目录方式需要逐个读入缓存，打包文件只是切片
+    @Benchmark
+    public long startupAndServeAll() throws IOException {
+        FileService service = open();
+        long bytes = 0;
+        for (String path : paths) {
+            FileEntry entry = service.lookup(path).orElseThrow();
+            ByteBuffer content = entry.getContent();
+            bytes += content.get(content.limit() - 1);
+        }
+        service.close();
+        return bytes;
+    }
+
+    private FileService open() {
+        return new FileService(site.documentRoot.toString(), "index.html", "50x.html", site.logger,
+                new FileCache(64L << 20, 1 << 20), new MimeTypes(""), bundle);
+    }
+}
@@ -0,0 +1,155 @@
+// src/top/mcocet/bench/StubExchange.java
+package top.mcocet.bench;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 不经过网络的 HttpExchange，响应体写入计数后丢弃。每个线程复用一个实例，
+ * 每次调用前 reset，处理器的开销不会被套接字读写掩盖。
+ */
+final class StubExchange extends HttpExchange {
+    private static final InetSocketAddress LOCAL = new InetSocketAddress("127.0.0.1", 80);
+
+    private final Headers requestHeaders = new Headers();
+    private Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final CountingOutputStream body = new CountingOutputStream();
+    private final InetSocketAddress remote;
+    private String method = "GET";
+    private URI uri;
+    private int responseCode = -1;
+
+    StubExchange(String remoteIP) {
+        this.remote = new InetSocketAddress(remoteIP, 40000);
+        requestHeaders.set("Host", "localhost");
+    }
+
+    StubExchange reset(String method, String path) {
+        this.method = method;
+        this.uri = URI.create(path);
+        this.responseHeaders = new Headers();
+        this.responseCode = -1;
+        body.count = 0;
+        return this;
+    }
+
+    long bytesWritten() {
+        return body.count;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return body;
+    }
+
+    // 与 JDK 实现一致：长度大于 0 时写入 Content-Length
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        responseCode = rCode;
+        if (responseLength > 0) {
+            responseHeaders.set("Content-Length", Long.toString(responseLength));
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return remote;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return LOCAL;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+// src/top/mcocet/bench/TlsHandshakeBenchmark.java
+package top.mcocet.bench;
+
+import com.sun.net.httpserver.HttpsServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.mcocet.ServerExecutors;
+import top.mcocet.handler.StaticFileHandler;
+import top.mcocet.nio.NioHttpServer;
+import top.mcocet.security.TlsContext;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本进程内的 HTTPS 服务器，每次操作新建一条 TLS 连接并请求一个小文件，对比完整握手与会话恢复的速率。
+ * 完整握手在每次请求后使客户端的会话失效；会话恢复复用客户端缓存的会话（TLS 1.3 为会话票据）。
+ * 证书由 keytool 临时生成，keyAlgorithm 对比 RSA 2048 与 ECDSA P-256 的签名开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TlsHandshakeBenchmark {
+    private static final byte[] REQUEST = ("GET " + BenchSite.SMALL + " HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final String PASSWORD = "changeit";
+
+    @Param({"jdk", "nio"})
+    public String engine;
+
+    @Param({"TLSv1.3", "TLSv1.2"})
+    public String protocol;
+
+    @Param({"RSA", "EC"})
+    public String keyAlgorithm;
+
+    private Path keyDir;
+    private BenchSite site;
+    private TlsContext tls;
+    private HttpsServer server;
+    private NioHttpServer nioServer;
+    private ExecutorService executorService;
+    private SSLSocketFactory factory;
+    private String[] protocols;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, GeneralSecurityException, InterruptedException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        keyDir = Files.createTempDirectory("motweb-tls");
+        Path keystore = keyDir.resolve("server.p12");
+        generateKeystore(keystore);
+        site = new BenchSite("engine: " + engine, "threads: 16", "tls: true", "tlsKeystore: " + keystore,
+                "tlsKeystorePassword: " + PASSWORD, "tlsProtocols: " + protocol);
+        // 与 WebServer.main 一致，必须在创建第一个 SSLContext 之前设置
+        TlsContext.configureSessionTickets(site.config.snapshot());
+        tls = new TlsContext(site.config.snapshot(), site.logger);
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        StaticFileHandler handler = new StaticFileHandler(site.config, site.logger, site.accessLog);
+        if ("nio".equals(engine)) {
+            nioServer = new NioHttpServer(address, 1024, site.config.snapshot(), site.logger, tls);
+            nioServer.createContext("/", handler);
+            nioServer.start();
+            port = nioServer.getAddress().getPort();
+        } else {
+            server = HttpsServer.create(address, 1024);
+            server.setHttpsConfigurator(tls.configurator());
+            executorService = ServerExecutors.create(site.config.snapshot(), site.logger);
+            server.setExecutor(executorService);
+            server.createContext("/", handler::handle);
+            server.start();
+            port = server.getAddress().getPort();
+        }
+
+        // 客户端只信任生成的证书
+        KeyStore serverStore = KeyStore.getInstance(keystore.toFile(), PASSWORD.toCharArray());
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("bench", serverStore.getCertificate("bench"));
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(trustStore);
+        SSLContext client = SSLContext.getInstance("TLS");
+        client.init(null, trust.getTrustManagers(), null);
+        factory = client.getSocketFactory();
+        protocols = new String[]{protocol};
+    }
+
+    private void generateKeystore(Path keystore) throws IOException, InterruptedException {
+        Path keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "bench",
+                "-keyalg", keyAlgorithm, "-keysize", "RSA".equals(keyAlgorithm) ? "2048" : "256",
+                "-dname", "CN=127.0.0.1", "-ext", "SAN=ip:127.0.0.1", "-validity", "2",
+                "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool 生成证书失败");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            server.stop(0);
+            executorService.shutdownNow();
+        }
+        tls.close();
+        site.close();
+        Files.deleteIfExists(keyDir.resolve("server.p12"));
+        Files.deleteIfExists(keyDir);
+    }
+
+    private long request(boolean resume) throws IOException {
+        try (SSLSocket socket = (SSLSocket) factory.createSocket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            socket.setEnabledProtocols(protocols);
+            socket.getOutputStream().write(REQUEST);
+            long bytes = 0;
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes += n;
+            }
+            if (!resume) {
+                socket.getSession().invalidate();
+            }
+            return bytes;
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long fullHandshake() throws IOException {
+        return request(false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long resumedHandshake() throws IOException {
+        return request(true);
+    }
+}
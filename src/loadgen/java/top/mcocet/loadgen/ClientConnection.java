@@ -0,0 +1,202 @@
+// src/top/mcocet/loadgen/ClientConnection.java
+package top.mcocet.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接在 Socket 上收发 HTTP/1.1 的最小客户端：只发 GET，响应体读完即丢弃。
+ * 不经过 HttpClient 的连接池，保持连接还是每个请求新建连接、从哪个本地地址发出、读取多快都由调用方决定。
+ */
+final class ClientConnection implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] skip = new byte[BUFFER_SIZE];
+    private final StringBuilder line = new StringBuilder(128);
+
+    record Response(int status, long bytes, boolean keepAlive) {
+    }
+
+    /**
+     * @param source 非空时绑定到该本地地址，用于模拟来自黑名单地址的客户端
+     * @param receiveBuffer 大于 0 时设置接收缓冲区大小，慢速读取时让服务器尽早感受到背压
+     */
+    ClientConnection(String host, int port, InetAddress source, int timeoutMillis, int receiveBuffer) throws IOException {
+        socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeoutMillis);
+            if (receiveBuffer > 0) {
+                socket.setReceiveBufferSize(receiveBuffer);
+            }
+            if (source != null) {
+                socket.bind(new InetSocketAddress(source, 0));
+            }
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            in = new BufferedInputStream(socket.getInputStream(), receiveBuffer > 0 ? 4096 : BUFFER_SIZE);
+            out = socket.getOutputStream();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 发送一个 GET 并读完响应。bytesPerSecond 大于 0 时按该速率读取响应体。
+     * 服务器要求关闭或 close 为 true 时，响应的 keepAlive 为 false，调用方应关闭连接。
+     */
+    Response get(String hostHeader, String path, boolean close, int bytesPerSecond) throws IOException {
+        String request = "GET " + path + " HTTP/1.1\r\nHost: " + hostHeader
+                + "\r\nUser-Agent: motweb-loadgen\r\nAccept: */*\r\n"
+                + (close ? "Connection: close\r\n" : "") + "\r\n";
+        out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException("连接在响应前关闭");
+        }
+        if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+            throw new IOException("无效的状态行: " + statusLine);
+        }
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        boolean keepAlive = !close && statusLine.startsWith("HTTP/1.1");
+        long contentLength = -1;
+        boolean chunked = false;
+        String header;
+        while ((header = readLine()) != null && !header.isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = header.substring(0, colon).trim();
+            String value = header.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Long.parseLong(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.equalsIgnoreCase("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                keepAlive &= !value.equalsIgnoreCase("close");
+            }
+        }
+        if (header == null) {
+            throw new EOFException("响应头不完整");
+        }
+
+        Throttle throttle = bytesPerSecond > 0 ? new Throttle(bytesPerSecond) : null;
+        long bytes;
+        if (status == 204 || status == 304 || (status >= 100 && status < 200)) {
+            bytes = 0;
+        } else if (chunked) {
+            bytes = 0;
+            long size;
+            while ((size = chunkSize()) > 0) {
+                bytes += discard(size, throttle);
+                readLine();
+            }
+            // 跳过尾部字段
+            String trailer;
+            while ((trailer = readLine()) != null && !trailer.isEmpty()) {
+            }
+        } else if (contentLength >= 0) {
+            bytes = discard(contentLength, throttle);
+        } else {
+            // 没有长度信息，读到连接关闭为止
+            bytes = discard(Long.MAX_VALUE, throttle);
+            keepAlive = false;
+        }
+        return new Response(status, bytes, keepAlive);
+    }
+
+    private long chunkSize() throws IOException {
+        String sizeLine = readLine();
+        if (sizeLine == null) {
+            throw new EOFException("分块响应不完整");
+        }
+        int semicolon = sizeLine.indexOf(';');
+        return Long.parseLong((semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine).trim(), 16);
+    }
+
+    private long discard(long count, Throttle throttle) throws IOException {
+        long total = 0;
+        while (total < count) {
+            int want = (int) Math.min(count - total, throttle != null ? throttle.chunk() : skip.length);
+            int n = in.read(skip, 0, want);
+            if (n < 0) {
+                if (count == Long.MAX_VALUE) {
+                    return total;
+                }
+                throw new EOFException("响应体不完整");
+            }
+            total += n;
+            if (throttle != null) {
+                throttle.consumed(n);
+            }
+        }
+        return total;
+    }
+
+    private String readLine() throws IOException {
+        line.setLength(0);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                int len = line.length();
+                if (len > 0 && line.charAt(len - 1) == '\r') {
+                    line.setLength(len - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // 每次最多读 1/10 秒的配额，读完后睡到配额对应的时间点
+    private static final class Throttle {
+        private final int bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long consumed;
+
+        Throttle(int bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        int chunk() {
+            return Math.max(1, Math.min(BUFFER_SIZE, bytesPerSecond / 10));
+        }
+
+        void consumed(int n) throws IOException {
+            consumed += n;
+            long due = start + consumed * 1_000_000_000L / bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("读取被中断");
+                }
+            }
+        }
+    }
+}
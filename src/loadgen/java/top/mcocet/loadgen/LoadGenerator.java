@@ -0,0 +1,375 @@
+// src/top/mcocet/loadgen/LoadGenerator.java
+package top.mcocet.loadgen;
+
+import top.mcocet.metrics.LatencyHistogram;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端压测工具：对一个单独启动的 WebServer 施加负载，统计吞吐、延迟分位数和错误，
+ * 并从服务器的 /metrics 端点抓取 GC、内存分配和 CPU 时间的增量。
+ *
+ * 每个并发客户端一个线程，顺序发送请求。指定 --rate 时按固定间隔发送，延迟从计划发送的时刻算起，
+ * 服务器变慢导致请求积压的时间也计入延迟，不会因为客户端跟着变慢而被掩盖。
+ */
+public final class LoadGenerator {
+    private final LoadOptions options;
+    private final String[] paths;
+    private final int[] cumulativeWeights;
+    private final Set<ClientConnection> open = ConcurrentHashMap.newKeySet();
+    private volatile LoadStats stats = new LoadStats();
+    private volatile boolean running = true;
+
+    private record Request(LoadStats.Kind kind, String path) {
+    }
+
+    LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.paths = options.mix.keySet().toArray(new String[0]);
+        this.cumulativeWeights = new int[paths.length];
+        int total = 0;
+        for (int i = 0; i < paths.length; i++) {
+            total += options.mix.get(paths[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || "--help".equals(args[0]) || "-h".equals(args[0])) {
+            System.out.println(LoadOptions.USAGE);
+            return;
+        }
+        if (args.length > 0 && "site".equals(args[0])) {
+            generateSite(Paths.get(args.length > 1 ? args[1] : "http"));
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("目标 %s，并发 %d，慢速读取 %d，连接方式 %s，目标速率 %s，预热 %.0f 秒，测量 %.0f 秒%n",
+                options.url, options.concurrency, options.slowReaders, options.keepAlive ? "keepalive" : "close",
+                options.rate > 0 ? options.rate + " 次/秒" : "不限", options.warmupMillis / 1000.0,
+                options.durationMillis / 1000.0);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < options.concurrency; i++) {
+            int id = i;
+            threads.add(start("loadgen-client-" + i, () -> client(id)));
+        }
+        for (int i = 0; i < options.slowReaders; i++) {
+            threads.add(start("loadgen-slow-" + i, this::slowReader));
+        }
+
+        Thread.sleep(options.warmupMillis);
+        HttpClient metricsClient = options.metrics != null ? HttpClient.newHttpClient() : null;
+        ServerStats before = scrape(metricsClient);
+        LoadStats measured = new LoadStats();
+        stats = measured;
+
+        long end = measured.getStartNanos() + options.durationMillis * 1_000_000L;
+        long lastCompleted = 0;
+        long lastErrors = 0;
+        long lastReport = measured.getStartNanos();
+        while (true) {
+            long now = System.nanoTime();
+            long remaining = end - now;
+            if (remaining <= 0) {
+                break;
+            }
+            if (options.intervalMillis <= 0) {
+                Thread.sleep(remaining / 1_000_000 + 1);
+                continue;
+            }
+            Thread.sleep(Math.min(remaining / 1_000_000 + 1, options.intervalMillis));
+            now = System.nanoTime();
+            long completed = measured.getCompleted();
+            long errors = measured.getErrors();
+            System.out.printf("[%5.1f 秒] %8.0f 次/秒，本区间错误 %d%n", (now - measured.getStartNanos()) / 1e9,
+                    (completed - lastCompleted) / ((now - lastReport) / 1e9), errors - lastErrors);
+            lastCompleted = completed;
+            lastErrors = errors;
+            lastReport = now;
+        }
+        long elapsedNanos = System.nanoTime() - measured.getStartNanos();
+        ServerStats after = before != null ? scrape(metricsClient) : null;
+
+        // 结束后的请求不再计入：先换掉统计对象再关闭连接，被打断的请求不算错误
+        stats = new LoadStats();
+        running = false;
+        for (ClientConnection connection : open) {
+            connection.close();
+        }
+        for (Thread thread : threads) {
+            thread.join(options.timeoutMillis + 1000L);
+        }
+
+        report(measured, elapsedNanos / 1e9);
+        if (before != null && after != null) {
+            reportServer(before, after);
+        }
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void client(int id) {
+        SplittableRandom random = new SplittableRandom(System.nanoTime() + id * 0x9E3779B97F4A7C15L);
+        long interval = options.rate > 0 ? (long) (1e9 * options.concurrency / options.rate) : 0;
+        long next = System.nanoTime() + (interval > 0 ? random.nextLong(interval) : 0);
+        ClientConnection connection = null;
+        while (running) {
+            long start;
+            if (interval > 0) {
+                while (running && System.nanoTime() < next) {
+                    LockSupport.parkNanos(next - System.nanoTime());
+                }
+                start = next;
+                next += interval;
+            } else {
+                start = System.nanoTime();
+            }
+            Request request = next(random);
+            LoadStats current = stats;
+            try {
+                if (request.kind() == LoadStats.Kind.BLACKLISTED) {
+                    // 黑名单请求总是单独建立连接，服务器可能在 403 之后直接关闭
+                    ClientConnection blocked = connect(options.blacklistedSource, 0);
+                    try {
+                        ClientConnection.Response response = blocked.get(options.hostHeader, request.path(), true, 0);
+                        current.record(request.kind(), response.status(), response.bytes(), System.nanoTime() - start);
+                    } finally {
+                        release(blocked);
+                    }
+                    continue;
+                }
+                if (connection == null) {
+                    connection = connect(null, 0);
+                }
+                ClientConnection.Response response = connection.get(options.hostHeader, request.path(),
+                        !options.keepAlive, 0);
+                current.record(request.kind(), response.status(), response.bytes(), System.nanoTime() - start);
+                if (!response.keepAlive()) {
+                    release(connection);
+                    connection = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    current.failure(request.kind(), reason(e));
+                }
+                backoff(e);
+                if (connection != null) {
+                    release(connection);
+                    connection = null;
+                }
+            }
+        }
+        if (connection != null) {
+            release(connection);
+        }
+    }
+
+    // 每次新建连接，按 --slow-rate 读取响应体，持续占用服务器的连接和写缓冲
+    private void slowReader() {
+        while (running) {
+            long start = System.nanoTime();
+            LoadStats current = stats;
+            ClientConnection connection = null;
+            try {
+                connection = connect(null, 4096);
+                ClientConnection.Response response = connection.get(options.hostHeader, options.slowPath, true,
+                        options.slowRate);
+                current.record(LoadStats.Kind.SLOW, response.status(), response.bytes(), System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    current.failure(LoadStats.Kind.SLOW, reason(e));
+                }
+                backoff(e);
+            } finally {
+                if (connection != null) {
+                    release(connection);
+                }
+            }
+        }
+    }
+
+    private ClientConnection connect(java.net.InetAddress source, int receiveBuffer) throws IOException {
+        ClientConnection connection = new ClientConnection(options.host, options.port, source,
+                options.timeoutMillis, receiveBuffer);
+        open.add(connection);
+        if (!running) {
+            release(connection);
+            throw new IOException("压测已结束");
+        }
+        return connection;
+    }
+
+    private void release(ClientConnection connection) {
+        open.remove(connection);
+        connection.close();
+    }
+
+    private Request next(SplittableRandom random) {
+        double roll = random.nextDouble() * 100;
+        if (roll < options.notFoundPercent) {
+            return new Request(LoadStats.Kind.NOT_FOUND, "/loadgen-missing/" + random.nextInt(1_000_000) + ".html");
+        }
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= pick) {
+            i++;
+        }
+        LoadStats.Kind kind = roll < options.notFoundPercent + options.blacklistedPercent
+                ? LoadStats.Kind.BLACKLISTED : LoadStats.Kind.OK;
+        return new Request(kind, paths[i]);
+    }
+
+    // 服务器拒绝连接时稍作等待，避免空转刷出大量相同的错误
+    private static void backoff(Exception e) {
+        if (e instanceof ConnectException) {
+            LockSupport.parkNanos(10_000_000L);
+        }
+    }
+
+    private static String reason(Exception e) {
+        if (e instanceof SocketTimeoutException) {
+            return "超时";
+        }
+        if (e instanceof ConnectException) {
+            return "无法连接";
+        }
+        if (e instanceof EOFException) {
+            return e.getMessage();
+        }
+        return e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+    }
+
+    private ServerStats scrape(HttpClient client) {
+        if (client == null) {
+            return null;
+        }
+        try {
+            return ServerStats.scrape(client, options.metrics);
+        } catch (IOException e) {
+            System.out.println("无法读取服务器监控指标（" + options.metrics + "）: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void report(LoadStats measured, double seconds) {
+        System.out.printf("%n测量 %.1f 秒%n", seconds);
+        System.out.printf("%-8s %10s %10s %9s %9s %9s %9s %9s %9s %8s%n",
+                "类型", "完成数", "次/秒", "MB/秒", "p50毫秒", "p90毫秒", "p99毫秒", "p99.9毫秒", "最大毫秒", "错误");
+        long totalCount = 0;
+        long totalBytes = 0;
+        long totalErrors = 0;
+        for (LoadStats.Kind kind : LoadStats.Kind.values()) {
+            LoadStats.KindStats kindStats = measured.get(kind);
+            LatencyHistogram.Snapshot latency = kindStats.latency.snapshot();
+            long bytes = kindStats.bytes.sum();
+            long errors = kindStats.errors.sum();
+            if (latency.getCount() == 0 && errors == 0) {
+                continue;
+            }
+            System.out.printf("%-8s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f %8d%n", kind.getLabel(),
+                    latency.getCount(), latency.getCount() / seconds, bytes / seconds / 1e6,
+                    latency.quantile(0.5) / 1000.0, latency.quantile(0.9) / 1000.0, latency.quantile(0.99) / 1000.0,
+                    latency.quantile(0.999) / 1000.0, latency.max() / 1000.0, errors);
+            totalCount += latency.getCount();
+            totalBytes += bytes;
+            totalErrors += errors;
+        }
+        System.out.printf("%-8s %10d %10.1f %9.2f %49s %8d%n", "合计", totalCount, totalCount / seconds,
+                totalBytes / seconds / 1e6, "", totalErrors);
+
+        Map<String, Long> reasons = measured.errorReasons();
+        if (!reasons.isEmpty()) {
+            System.out.println("错误原因：");
+            reasons.forEach((reason, count) -> System.out.println("  " + reason + " × " + count));
+        }
+    }
+
+    private static void reportServer(ServerStats before, ServerStats after) {
+        double seconds = after.seconds(before);
+        double requests = after.delta(before, "motweb_requests_total");
+        double allocated = after.delta(before, "motweb_jvm_allocated_bytes");
+        double cpu = after.delta(before, "motweb_process_cpu_seconds_total");
+        System.out.println("服务器端（/metrics，测量期间的增量）：");
+        System.out.printf("  请求 %.0f 次，GC %.0f 次共 %.0f 毫秒，CPU 时间 %.2f 秒（平均 %.2f 核）%n", requests,
+                after.delta(before, "motweb_jvm_gc_collections_total"),
+                after.delta(before, "motweb_jvm_gc_time_seconds_total") * 1000, cpu, cpu / seconds);
+        System.out.printf("  分配 %.1f MB（%.1f MB/秒，每请求 %.1f KB），堆使用 %.1f MB，线程 %.0f%n", allocated / 1e6,
+                allocated / seconds / 1e6, requests > 0 ? allocated / requests / 1024 : Double.NaN,
+                after.get("motweb_jvm_heap_used_bytes") / 1e6, after.get("motweb_jvm_threads"));
+        System.out.printf("  连接数 %.0f，线程池队列 %.0f，访问日志丢弃 %.0f，限流拒绝 %.0f%n",
+                after.get("motweb_open_connections"), after.get("motweb_executor_queue_depth"),
+                after.delta(before, "motweb_access_log_dropped_total"),
+                after.delta(before, "motweb_rate_limited_total"));
+    }
+
+    // 与基准测试相同规模的测试站点，默认的 --mix 引用其中的文件
+    static void generateSite(Path root) throws IOException {
+        Files.createDirectories(root.resolve("assets/img"));
+        Files.writeString(root.resolve("index.html"), html(512));
+        Files.writeString(root.resolve("50x.html"), "<html><body><h1>Error</h1></body></html>");
+        Files.writeString(root.resolve("small.html"), html(1024));
+        Files.write(root.resolve("medium.css"), css(64 * 1024));
+        Files.write(root.resolve("large.bin"), random(4 * 1024 * 1024));
+        Files.write(root.resolve("assets/img/logo.png"), random(8 * 1024));
+        System.out.println("已生成测试站点: " + root.toAbsolutePath());
+    }
+
+    private static String html(int size) {
+        StringBuilder sb = new StringBuilder(size + 64).append("<html><body>");
+        while (sb.length() < size - 14) {
+            sb.append("<p>MOTWebPublisher</p>");
+        }
+        return sb.append("</body></html>").toString();
+    }
+
+    private static byte[] css(int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append(".c").append(i).append("{margin:0;padding:").append(i % 16).append("px}\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,176 @@
+// src/top/mcocet/loadgen/LoadOptions.java
+package top.mcocet.loadgen;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行形式为 --名称=值。未给出的参数使用默认值，默认值对应 BenchSite 风格的测试站点
+ * （由 site 子命令生成）和默认配置下的服务器。
+ */
+final class LoadOptions {
+    static final String USAGE = String.join("\n",
+            "用法: java -jar target/loadgen.jar --名称=值 ...（不带参数时显示本说明）",
+            "      java -jar target/loadgen.jar site <目录>    生成测试站点（small.html、medium.css、large.bin 等）",
+            "",
+            "  --url=http://127.0.0.1:80        目标服务器，只支持 http",
+            "  --duration=30                    测量时长（秒）",
+            "  --warmup=5                       预热时长（秒），不计入结果",
+            "  --concurrency=10                 并发客户端数，每个客户端顺序发送请求",
+            "  --rate=0                         目标总请求速率（次/秒），0 表示每个客户端收到响应后立即发下一个",
+            "  --connection=keepalive           keepalive 复用连接，close 每个请求新建连接",
+            "  --mix=/small.html=70,/medium.css=25,/large.bin=5   请求路径及权重",
+            "  --not-found=5                    请求不存在路径的百分比（期望 404）",
+            "  --blacklisted=0                  从黑名单地址发出请求的百分比（期望 403）",
+            "  --blacklisted-source=127.0.0.2   黑名单请求绑定的本地地址，需在服务器的 blacklist 中",
+            "  --slow-readers=0                 额外的慢速读取客户端数",
+            "  --slow-path=/medium.css          慢速客户端请求的路径",
+            "  --slow-rate=16384                每个慢速客户端的读取速率（字节/秒）",
+            "  --timeout=10                     连接和读取超时（秒）",
+            "  --metrics=http://127.0.0.1:9464/metrics   服务器监控地址，留空则不采集服务器端指标",
+            "  --interval=5                     进度输出间隔（秒），0 不输出");
+
+    URI url;
+    String host;
+    int port;
+    String hostHeader;
+    long durationMillis = 30_000;
+    long warmupMillis = 5_000;
+    int concurrency = 10;
+    double rate;
+    boolean keepAlive = true;
+    Map<String, Integer> mix = parseMix("/small.html=70,/medium.css=25,/large.bin=5");
+    double notFoundPercent = 5;
+    double blacklistedPercent;
+    InetAddress blacklistedSource;
+    int slowReaders;
+    String slowPath = "/medium.css";
+    int slowRate = 16384;
+    int timeoutMillis = 10_000;
+    URI metrics = URI.create("http://127.0.0.1:9464/metrics");
+    long intervalMillis = 5_000;
+
+    static LoadOptions parse(String[] args) throws UnknownHostException {
+        LoadOptions options = new LoadOptions();
+        String url = "http://127.0.0.1:80";
+        String source = "127.0.0.2";
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1).trim();
+            switch (name) {
+                case "url":
+                    url = value;
+                    break;
+                case "duration":
+                    options.durationMillis = seconds(value);
+                    break;
+                case "warmup":
+                    options.warmupMillis = seconds(value);
+                    break;
+                case "concurrency":
+                    options.concurrency = Integer.parseInt(value);
+                    break;
+                case "rate":
+                    options.rate = Double.parseDouble(value);
+                    break;
+                case "connection":
+                    options.keepAlive = parseConnection(value);
+                    break;
+                case "mix":
+                    options.mix = parseMix(value);
+                    break;
+                case "not-found":
+                    options.notFoundPercent = Double.parseDouble(value);
+                    break;
+                case "blacklisted":
+                    options.blacklistedPercent = Double.parseDouble(value);
+                    break;
+                case "blacklisted-source":
+                    source = value;
+                    break;
+                case "slow-readers":
+                    options.slowReaders = Integer.parseInt(value);
+                    break;
+                case "slow-path":
+                    options.slowPath = value;
+                    break;
+                case "slow-rate":
+                    options.slowRate = Integer.parseInt(value);
+                    break;
+                case "timeout":
+                    options.timeoutMillis = (int) seconds(value);
+                    break;
+                case "metrics":
+                    options.metrics = value.isEmpty() ? null : URI.create(value);
+                    break;
+                case "interval":
+                    options.intervalMillis = seconds(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: --" + name);
+            }
+        }
+        options.url = URI.create(url);
+        if (!"http".equalsIgnoreCase(options.url.getScheme()) || options.url.getHost() == null) {
+            throw new IllegalArgumentException("只支持 http://主机:端口 形式的地址: " + url);
+        }
+        options.host = options.url.getHost();
+        options.port = options.url.getPort() > 0 ? options.url.getPort() : 80;
+        options.hostHeader = options.port == 80 ? options.host : options.host + ":" + options.port;
+        if (options.blacklistedPercent > 0) {
+            options.blacklistedSource = InetAddress.getByName(source);
+        }
+        if (options.concurrency < 1 || options.slowReaders < 0 || options.slowRate < 1) {
+            throw new IllegalArgumentException("concurrency 至少为 1，slow-readers 不能为负，slow-rate 至少为 1");
+        }
+        if (options.notFoundPercent + options.blacklistedPercent > 100) {
+            throw new IllegalArgumentException("not-found 与 blacklisted 之和不能超过 100");
+        }
+        return options;
+    }
+
+    private static long seconds(String value) {
+        return Math.round(Double.parseDouble(value) * 1000);
+    }
+
+    private static boolean parseConnection(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "keepalive":
+                return true;
+            case "close":
+                return false;
+            default:
+                throw new IllegalArgumentException("connection 只能是 keepalive 或 close: " + value);
+        }
+    }
+
+    // "路径=权重" 以逗号分隔，省略权重时为 1
+    static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int eq = part.lastIndexOf('=');
+            String path = eq > 0 ? part.substring(0, eq) : part;
+            int weight = eq > 0 ? Integer.parseInt(part.substring(eq + 1)) : 1;
+            if (!path.startsWith("/") || weight < 0) {
+                throw new IllegalArgumentException("无效的 mix 项: " + part);
+            }
+            mix.merge(path, weight, Integer::sum);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("mix 中至少要有一个权重大于 0 的路径");
+        }
+        return mix;
+    }
+}
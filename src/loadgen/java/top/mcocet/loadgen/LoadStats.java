@@ -0,0 +1,99 @@
+// src/top/mcocet/loadgen/LoadStats.java
+package top.mcocet.loadgen;
+
+import top.mcocet.metrics.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个测量区间内按请求类型分开的统计：完成数、响应体字节数、延迟直方图和按原因分类的错误数。
+ * 预热结束时整体换成新实例，预热期间的请求不计入结果。
+ */
+final class LoadStats {
+    enum Kind {
+        OK("正常", 200),
+        NOT_FOUND("404", 404),
+        BLACKLISTED("黑名单", 403),
+        SLOW("慢速读取", 200);
+
+        private final String label;
+        private final int expectedStatus;
+
+        Kind(String label, int expectedStatus) {
+            this.label = label;
+            this.expectedStatus = expectedStatus;
+        }
+
+        String getLabel() {
+            return label;
+        }
+
+        int getExpectedStatus() {
+            return expectedStatus;
+        }
+    }
+
+    static final class KindStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final Map<Kind, KindStats> kinds = new EnumMap<>(Kind.class);
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    LoadStats() {
+        for (Kind kind : Kind.values()) {
+            kinds.put(kind, new KindStats());
+        }
+    }
+
+    // 状态码与期望不符时记为错误，不计入延迟
+    void record(Kind kind, int status, long bytes, long nanos) {
+        if (status != kind.getExpectedStatus()) {
+            failure(kind, "状态码 " + status + "（期望 " + kind.getExpectedStatus() + "）");
+            return;
+        }
+        KindStats stats = kinds.get(kind);
+        stats.latency.record(nanos / 1000);
+        stats.bytes.add(bytes);
+        completed.increment();
+    }
+
+    void failure(Kind kind, String reason) {
+        kinds.get(kind).errors.increment();
+        errors.computeIfAbsent(kind.getLabel() + ": " + reason, k -> new LongAdder()).increment();
+    }
+
+    KindStats get(Kind kind) {
+        return kinds.get(kind);
+    }
+
+    long getCompleted() {
+        return completed.sum();
+    }
+
+    long getErrors() {
+        long total = 0;
+        for (KindStats stats : kinds.values()) {
+            total += stats.errors.sum();
+        }
+        return total;
+    }
+
+    Map<String, Long> errorReasons() {
+        Map<String, Long> sorted = new TreeMap<>();
+        errors.forEach((reason, count) -> sorted.put(reason, count.sum()));
+        return sorted;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+}
@@ -0,0 +1,70 @@
+// src/top/mcocet/loadgen/ServerStats.java
+package top.mcocet.loadgen;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 服务器 /metrics 端点的一次抓取结果。带标签的样本按指标名累加，例如 motweb_requests_total
+ * 为所有状态码之和；测量开始和结束各抓取一次，两者相减得到这段负载在服务器端的开销。
+ */
+final class ServerStats {
+    private final Map<String, Double> values;
+    private final long nanos;
+
+    private ServerStats(Map<String, Double> values, long nanos) {
+        this.values = values;
+        this.nanos = nanos;
+    }
+
+    static ServerStats scrape(HttpClient client, URI metrics) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(metrics).timeout(Duration.ofSeconds(5)).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("监控端点返回 " + response.statusCode());
+        }
+        Map<String, Double> values = new HashMap<>();
+        for (String line : response.body().split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            String name = line.substring(0, space);
+            int brace = name.indexOf('{');
+            if (brace >= 0) {
+                // 分位数不能相加，只保留计数类的带标签样本
+                if (name.contains("quantile=")) {
+                    continue;
+                }
+                name = name.substring(0, brace);
+            }
+            try {
+                values.merge(name, Double.parseDouble(line.substring(space + 1)), Double::sum);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return new ServerStats(values, System.nanoTime());
+    }
+
+    // 指标不存在时返回 NaN，例如服务器未启用对应功能
+    double get(String name) {
+        return values.getOrDefault(name, Double.NaN);
+    }
+
+    double delta(ServerStats before, String name) {
+        return get(name) - before.get(name);
+    }
+
+    double seconds(ServerStats before) {
+        return (nanos - before.nanos) / 1e9;
+    }
+}
@@ -2,19 +2,38 @@
 package top.mcocet;
 
 import top.mcocet.config.ConfigLoader;
+import top.mcocet.metrics.LatencyHistogram;
+import top.mcocet.metrics.ServerMetrics;
+import top.mcocet.security.TlsContext;
+import top.mcocet.service.AccessLogger;
+import top.mcocet.service.AccessStatistics;
 import top.mcocet.service.LoggerService;
+import top.mcocet.service.SiteBundleWriter;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Map;
+import java.nio.file.Paths;
+import java.security.cert.X509Certificate;
 
 public class CommandHandler implements Runnable {
+    static final String DEFAULT_BUNDLE = "site.bundle";
+
     private final ConfigLoader config;
     private final LoggerService logger;
+    private final AccessLogger accessLog;
+    // 未启用监控指标时为 null
+    private final ServerMetrics metrics;
+    // 未启用 TLS 时为 null
+    private final TlsContext tls;
 
-    public CommandHandler(ConfigLoader config, LoggerService logger) {
+    public CommandHandler(ConfigLoader config, LoggerService logger, AccessLogger accessLog, ServerMetrics metrics,
+                          TlsContext tls) {
         this.config = config;
         this.logger = logger;
+        this.accessLog = accessLog;
+        this.metrics = metrics;
+        this.tls = tls;
     }
 
     @Override
@@ -25,10 +44,20 @@ public class CommandHandler implements Runnable {
                 String[] parts = command.split(" ");
                 if ("list".equalsIgnoreCase(parts[0])) {
                     listAccessRecords();
+                } else if ("top".equalsIgnoreCase(parts[0]) && parts.length <= 2) {
+                    listTopAccess(parts.length == 2 ? parts[1] : null);
                 } else if ("add".equalsIgnoreCase(parts[0]) && parts.length == 2) {
                     addBlacklistedIP(parts[1]);
                 } else if ("remove".equalsIgnoreCase(parts[0]) && parts.length == 2) {
                     removeBlacklistedIP(parts[1]);
+                } else if ("stats".equalsIgnoreCase(parts[0])) {
+                    showStats();
+                } else if ("logstat".equalsIgnoreCase(parts[0])) {
+                    showLogStatus();
+                } else if ("pack".equalsIgnoreCase(parts[0]) && parts.length <= 2) {
+                    packSite(parts.length == 2 ? parts[1] : null);
+                } else if ("tls".equalsIgnoreCase(parts[0]) && parts.length <= 2) {
+                    tlsCommand(parts.length == 2 ? parts[1] : null);
                 } else if ("help".equalsIgnoreCase(parts[0])) {
                     showHelp();
                 } else {
@@ -41,28 +70,155 @@ public class CommandHandler implements Runnable {
     }
 
     private void listAccessRecords() {
-        Map<String, Integer> ipAccessCount = logger.getIpAccessCount();
+        AccessStatistics stats = logger.getAccessStatistics();
         System.out.println("访问记录：");
-        for (Map.Entry<String, Integer> entry : ipAccessCount.entrySet()) {
-            System.out.println("IP: " + entry.getKey() + ", 访问次数: " + entry.getValue());
+        for (AccessStatistics.IpCount record : stats.snapshot()) {
+            printRecord(record);
+        }
+        printRates(stats);
+    }
+
+    // 参数错误只提示用法，不能让异常结束控制台线程
+    private void listTopAccess(String arg) {
+        int n = 10;
+        if (arg != null) {
+            try {
+                n = Integer.parseInt(arg);
+            } catch (NumberFormatException e) {
+                n = 0;
+            }
+            if (n < 1) {
+                System.out.println("用法: top [N]，N 为正整数");
+                return;
+            }
         }
+        AccessStatistics stats = logger.getAccessStatistics();
+        System.out.println("访问次数最多的 " + n + " 个IP：");
+        for (AccessStatistics.IpCount record : stats.top(n)) {
+            printRecord(record);
+        }
+        printRates(stats);
+    }
+
+    private void printRecord(AccessStatistics.IpCount record) {
+        // 统计表满后新IP的计数可能被高估，误差上界一并显示
+        String error = record.error() > 0 ? " (误差 ≤ " + record.error() + ")" : "";
+        System.out.println("IP: " + record.ip() + ", 访问次数: " + record.count() + error);
+    }
+
+    private void printRates(AccessStatistics stats) {
+        System.out.println("总计: " + stats.getTotal() + ", 上一分钟: " + stats.lastMinute()
+                + ", 最近一小时: " + stats.lastHour()
+                + ", 跟踪IP数: " + stats.size() + "/" + stats.getCapacity());
     }
 
     private void addBlacklistedIP(String ip) {
-        config.addBlacklistedIP(ip);
-        System.out.println("IP " + ip + " 已加入黑名单");
+        try {
+            if (config.addBlacklistedIP(ip)) {
+                System.out.println("IP " + ip + " 已加入黑名单");
+            } else {
+                System.out.println("IP " + ip + " 已在黑名单中");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("无效的IP或CIDR网段: " + ip);
+        }
     }
 
     private void removeBlacklistedIP(String ip) {
-        config.removeBlacklistedIP(ip);
-        System.out.println("IP " + ip + " 已从黑名单中移除");
+        try {
+            if (config.removeBlacklistedIP(ip)) {
+                System.out.println("IP " + ip + " 已从黑名单中移除");
+            } else {
+                System.out.println("IP " + ip + " 不在黑名单中");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("无效的IP或CIDR网段: " + ip);
+        }
+    }
+
+    private void showLogStatus() {
+        System.out.println("访问日志队列: " + accessLog.getQueueDepth() + "/" + accessLog.getQueueCapacity()
+                + ", 已丢弃: " + accessLog.getDropped());
+    }
+
+    // 打包到当前配置的 bundle 文件时，正在运行的服务器收到重命名事件后自动切换到新版本
+    private void packSite(String file) {
+        String target = file != null ? file : config.snapshot().getBundle();
+        if (target.isEmpty()) {
+            target = DEFAULT_BUNDLE;
+        }
+        long start = System.nanoTime();
+        try {
+            SiteBundleWriter.Result result = new SiteBundleWriter(config.snapshot(), logger).write(Paths.get(target));
+            System.out.printf("已打包到 %s: %d 个文件, %d 个路径, %d 个压缩变体, %d 字节, 用时 %d 毫秒%n",
+                    result.file(), result.files(), result.paths(), result.variants(), result.bytes(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("打包失败: " + e.getMessage());
+        }
+    }
+
+    // tls reload 按当前配置重新读取证书，可以同时修改证书文件的路径
+    private void tlsCommand(String action) {
+        if (tls == null) {
+            System.out.println("TLS 未启用（tls: false）");
+            return;
+        }
+        if ("reload".equalsIgnoreCase(action)) {
+            System.out.println(tls.reload(config.snapshot()) ? "TLS 证书已重新加载" : "重新加载失败，继续使用当前证书，详见日志");
+        } else if (action != null) {
+            System.out.println("未知命令: tls " + action);
+            return;
+        }
+        X509Certificate certificate = tls.getCertificate();
+        System.out.println("证书: " + certificate.getSubjectX500Principal().getName()
+                + ", 有效期至 " + certificate.getNotAfter().toInstant());
+        System.out.println("协议: " + tls.getProtocols() + ", 会话缓存: " + tls.getSessionCacheSize()
+                + ", 会话超时: " + tls.getSessionTimeout() + " 秒, 会话票据: "
+                + ("true".equals(System.getProperty("jdk.tls.server.enableSessionTicketExtension")) ? "启用" : "禁用"));
+        // JDK HttpsServer 不提供握手完成的通知，只能统计完整握手
+        String handshakes = "nio".equalsIgnoreCase(config.snapshot().getEngine())
+                ? ", 握手总数: " + tls.getHandshakes() + ", 握手失败: " + tls.getFailedHandshakes() : "";
+        System.out.println("完整握手: " + tls.getFullHandshakes() + handshakes
+                + ", 证书重新加载: " + tls.getReloads() + " 次");
+    }
+
+    private void showStats() {
+        if (metrics == null) {
+            System.out.println("监控指标未启用（enableMetrics: false）");
+            return;
+        }
+        System.out.println("请求总数: " + metrics.getRequests() + ", 正在处理: " + metrics.getInFlight());
+        System.out.println("按状态码：");
+        for (ServerMetrics.StatusCount s : metrics.statusCounts()) {
+            System.out.println("  " + ServerMetrics.statusLabel(s.status()) + ": " + s.count() + " 次, " + s.bytes() + " 字节");
+        }
+        System.out.println("按内容类型：");
+        for (ServerMetrics.TypeCount t : metrics.typeCounts()) {
+            System.out.println("  " + t.type().getLabel() + ": " + t.count() + " 次, " + t.bytes() + " 字节");
+        }
+        System.out.println("处理时间（毫秒）：");
+        for (ServerMetrics.LatencySummary l : metrics.latencySummaries()) {
+            LatencyHistogram.Snapshot h = l.snapshot();
+            System.out.printf("  %s: p50=%.2f p99=%.2f p999=%.2f max=%.2f (%d 次)%n", l.statusClass(),
+                    h.quantile(0.5) / 1000.0, h.quantile(0.99) / 1000.0, h.quantile(0.999) / 1000.0,
+                    h.max() / 1000.0, h.getCount());
+        }
+        for (ServerMetrics.Sample sample : metrics.getSamples()) {
+            System.out.println(sample.help() + ": " + ServerMetrics.format(sample.value().getAsDouble()));
+        }
     }
 
     private void showHelp() {
         System.out.println("可用命令：");
         System.out.println("  list - 显示所有HTML页面的访问记录");
-        System.out.println("  add <IP> - 将指定IP地址加入黑名单");
-        System.out.println("  remove <IP> - 从黑名单中移除指定IP地址");
+        System.out.println("  top [N] - 显示访问次数最多的N个IP（默认10）");
+        System.out.println("  add <IP|CIDR> - 将指定IP地址或网段（如 10.0.0.0/8）加入黑名单");
+        System.out.println("  remove <IP|CIDR> - 从黑名单中移除指定IP地址或网段");
+        System.out.println("  stats - 显示请求数、延迟分位数、队列深度和缓存命中率");
+        System.out.println("  logstat - 显示访问日志队列深度和丢弃数量");
+        System.out.println("  pack [文件] - 把文档根目录打包成单个文件（默认为配置的 bundle 或 " + DEFAULT_BUNDLE + "）");
+        System.out.println("  tls [reload] - 显示 TLS 证书和握手统计，reload 按当前配置重新加载证书");
         System.out.println("  help - 显示帮助信息");
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+// src/top/mcocet/ServerExecutors.java
+package top.mcocet;
+
+import top.mcocet.config.ConfigSnapshot;
+import top.mcocet.service.LoggerService;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ServerExecutors {
+    private ServerExecutors() {
+    }
+
+    /**
+     * 按配置创建请求执行器：
+     * virtual - 每个请求一个虚拟线程（需要 Java 21+，否则回退到 fixed）
+     * fixed   - 固定大小的平台线程池，队列无界
+     * bounded - 固定大小的平台线程池，队列有界，满时按 rejectPolicy 处理
+     */
+    public static ExecutorService create(ConfigSnapshot config, LoggerService logger) {
+        return create(config, logger, "http-worker-", false);
+    }
+
+    /**
+     * NIO 引擎执行准备任务的工作线程池，配置项与 JDK 引擎相同。事件循环不会因为工作线程忙而停止读取请求，
+     * 无界队列可以被一条连接无限堆积，因此 fixed 也按 bounded 使用 queueSize 限制队列；
+     * 队列满时 abort 抛出 RejectedExecutionException，callerRuns 在事件循环上执行。
+     */
+    public static ExecutorService createWorkers(ConfigSnapshot config, LoggerService logger) {
+        return create(config, logger, "nio-worker-", true);
+    }
+
+    private static ExecutorService create(ConfigSnapshot config, LoggerService logger, String prefix, boolean bounded) {
+        String type = config.getExecutor();
+        int threads = Math.max(1, config.getThreads());
+        if ("virtual".equalsIgnoreCase(type)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            logger.warning("当前 Java 版本不支持虚拟线程，改用固定大小线程池");
+        }
+        if (bounded || "bounded".equalsIgnoreCase(type)) {
+            return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, config.getQueueSize())),
+                    namedThreads(prefix), rejectPolicy(config.getRejectPolicy()));
+        }
+        return Executors.newFixedThreadPool(threads, namedThreads(prefix));
+    }
+
+    // abort 抛出的异常由 HttpServer 捕获并关闭该连接；callerRuns 在分发线程中执行，借此减慢接收新连接
+    private static RejectedExecutionHandler rejectPolicy(String policy) {
+        if ("callerRuns".equalsIgnoreCase(policy)) {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
+
+    // 通过反射调用，源码在 Java 17 下也能编译
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, prefix + counter.incrementAndGet());
+    }
+}
@@ -2,42 +2,161 @@
 package top.mcocet;
 
 import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsServer;
 import top.mcocet.config.ConfigLoader;
+import top.mcocet.config.ConfigSnapshot;
+import top.mcocet.handler.InstrumentedHandler;
+import top.mcocet.handler.MetricsHandler;
+import top.mcocet.handler.RequestHandler;
 import top.mcocet.handler.StaticFileHandler;
+import top.mcocet.metrics.JvmMetrics;
+import top.mcocet.metrics.ServerMetrics;
+import top.mcocet.nio.NioHttpServer;
+import top.mcocet.security.TlsContext;
+import top.mcocet.service.AccessLogger;
 import top.mcocet.service.LoggerService;
+import top.mcocet.service.SiteBundleWriter;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BiConsumer;
 
 public class WebServer {
     public static void main(String[] args) {
-        ConfigLoader config = new ConfigLoader("config.yml");
-        LoggerService logger = new LoggerService(config.getLogFilePath());
+        // JDK HttpServer 默认不设置 TCP_NODELAY，长连接上响应头和响应体分两次写出时
+        // 会与客户端的延迟确认叠加，每个请求多等约 40 毫秒；命令行显式指定时以命令行为准
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        ConfigLoader configLoader = new ConfigLoader("config.yml");
+        ConfigSnapshot config = configLoader.snapshot();
+        TlsContext.configureSessionTickets(config);
+        LoggerService logger = new LoggerService(config.getLogFilePath(), config.getAccessStatsCapacity());
+        if (args.length > 0 && "pack".equalsIgnoreCase(args[0])) {
+            // 构建步骤：java -jar MOTWebPublisher.jar pack [文件]，打包后退出，不启动服务器
+            System.exit(pack(config, logger, args.length > 1 ? args[1] : null) ? 0 : 1);
+        }
+        AccessLogger accessLog = new AccessLogger(config.getAccessLogFile(), config.getAccessLogQueueSize(),
+                AccessLogger.parsePolicy(config.getAccessLogOverflow()), config.getAccessLogMaxSize(),
+                config.getAccessLogRotateInterval(), config.isConsoleAccessLog(), logger);
+        accessLog.start();
 
         try {
-            HttpServer server = HttpServer.create(new InetSocketAddress(config.getPort()), 0);
-            ExecutorService executor = Executors.newFixedThreadPool(10);
-            server.setExecutor(executor);
-
             // 注册处理器
-            server.createContext("/", new StaticFileHandler(config.getDocumentRoot(), logger));
+            StaticFileHandler staticHandler = new StaticFileHandler(configLoader, logger, accessLog);
+            ServerMetrics metrics = null;
+            RequestHandler rootHandler = staticHandler;
+            if (config.isEnableMetrics()) {
+                metrics = new ServerMetrics();
+                staticHandler.registerMetrics(metrics);
+                rootHandler = new InstrumentedHandler(staticHandler, metrics);
+            }
+
+            // 证书或私钥无法读取时不启动，避免以明文提供本应加密的站点
+            TlsContext tls = config.isTls() ? new TlsContext(config, logger) : null;
+            boolean nio = "nio".equalsIgnoreCase(config.getEngine());
+            if (tls != null) {
+                if (metrics != null) {
+                    tls.registerMetrics(metrics, nio);
+                }
+                tls.startWatching();
+                logger.info("已启用 HTTPS，证书: " + tls.getCertificate().getSubjectX500Principal().getName()
+                        + ", 协议: " + tls.getProtocols());
+            }
 
-            server.start();
-            logger.info("服务器启动，监听端口: " + config.getPort() +
+            InetSocketAddress address = new InetSocketAddress(config.getPort());
+            if (nio) {
+                NioHttpServer server = new NioHttpServer(address, config.getBacklog(), config, logger, tls);
+                server.createContext("/", rootHandler);
+                if (metrics != null) {
+                    registerServerMetrics(metrics, server.getWorkers(), accessLog);
+                    metrics.gauge("motweb_open_connections", "当前打开的连接数", server::getConnectionCount);
+                    startMetricsEndpoint(config, server::createContext, metrics);
+                }
+                server.start();
+                logger.info("使用 NIO 引擎，事件循环数: " + server.getEventLoopCount()
+                        + ", HTTP/2 (" + (tls != null ? "h2" : "h2c") + "): " + (config.isHttp2() ? "启用" : "禁用"));
+            } else {
+                HttpServer server;
+                if (tls != null) {
+                    HttpsServer https = HttpsServer.create(address, config.getBacklog());
+                    https.setHttpsConfigurator(tls.configurator());
+                    server = https;
+                } else {
+                    server = HttpServer.create(address, config.getBacklog());
+                }
+                ExecutorService executor = ServerExecutors.create(config, logger);
+                server.setExecutor(executor);
+                server.createContext("/", rootHandler::handle);
+                if (metrics != null) {
+                    registerServerMetrics(metrics, executor, accessLog);
+                    startMetricsEndpoint(config, (path, handler) -> server.createContext(path, handler::handle), metrics);
+                }
+                server.start();
+            }
+
+            configLoader.startWatching();
+            logger.info("服务器启动，监听端口: " + config.getPort() + (tls != null ? " (HTTPS)" : "") +
                     ", 文档根目录: " + config.getDocumentRoot() +
                     ", 安全功能: " + (config.isEnableSecurity() ? "启用" : "禁用"));
-            System.out.println("服务器已启动，端口: " + config.getPort() +
+            System.out.println("服务器已启动，端口: " + config.getPort() + (tls != null ? " (HTTPS)" : "") +
                     ", 文档根目录: " + config.getDocumentRoot() +
                     ", 安全功能: " + (config.isEnableSecurity() ? "启用" : "禁用"));
             System.out.println("您可以使用help命令获取指令帮助\n");
 
             // 启动控制台指令线程
-            Thread consoleThread = new Thread(new CommandHandler(config, logger));
+            Thread consoleThread = new Thread(new CommandHandler(configLoader, logger, accessLog, metrics, tls));
             consoleThread.start();
         } catch (Exception e) {
             System.err.println("启动失败: " + e.getMessage());
             logger.severe("启动失败: " + e.getMessage());
         }
     }
+
+    private static boolean pack(ConfigSnapshot config, LoggerService logger, String file) {
+        String target = file != null ? file : config.getBundle().isEmpty() ? CommandHandler.DEFAULT_BUNDLE : config.getBundle();
+        try {
+            SiteBundleWriter.Result result = new SiteBundleWriter(config, logger).write(Paths.get(target));
+            System.out.println("已打包到 " + result.file() + ": " + result.files() + " 个文件, "
+                    + result.paths() + " 个路径, " + result.variants() + " 个压缩变体, " + result.bytes() + " 字节");
+            return true;
+        } catch (IOException e) {
+            System.err.println("打包失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // executor 为 null 时（NIO 引擎在事件循环上直接处理请求）不注册线程池指标
+    private static void registerServerMetrics(ServerMetrics metrics, ExecutorService executor, AccessLogger accessLog) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.gauge("motweb_executor_queue_depth", "等待工作线程处理的请求数", () -> pool.getQueue().size());
+            metrics.gauge("motweb_executor_active_threads", "正在处理请求的工作线程数", pool::getActiveCount);
+        }
+        metrics.gauge("motweb_access_log_queue_depth", "访问日志队列中未写出的事件数", accessLog::getQueueDepth);
+        metrics.counter("motweb_access_log_dropped_total", "队列满时丢弃的访问日志条数", accessLog::getDropped);
+        JvmMetrics.register(metrics);
+    }
+
+    /**
+     * metricsPort 为 0 或与服务端口相同时挂在主服务器的 metricsPath 下（不经过黑名单等检查）；
+     * 否则单独监听 metricsAddress:metricsPort，默认只对本机开放。
+     */
+    private static void startMetricsEndpoint(ConfigSnapshot config, BiConsumer<String, RequestHandler> mainServer,
+                                             ServerMetrics metrics) throws IOException {
+        MetricsHandler handler = new MetricsHandler(metrics);
+        if (config.getMetricsPort() == 0 || config.getMetricsPort() == config.getPort()) {
+            mainServer.accept(config.getMetricsPath(), handler);
+            return;
+        }
+        HttpServer metricsServer = HttpServer.create(
+                new InetSocketAddress(config.getMetricsAddress(), config.getMetricsPort()), 0);
+        metricsServer.createContext(config.getMetricsPath(), handler);
+        metricsServer.start();
+        System.out.println("监控指标地址: http://" + config.getMetricsAddress() + ":" + config.getMetricsPort()
+                + config.getMetricsPath());
+    }
 }
\ No newline at end of file
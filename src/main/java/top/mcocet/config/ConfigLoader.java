@@ -2,67 +2,58 @@
 package top.mcocet.config;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import top.mcocet.security.AddressTrie;
+import top.mcocet.security.IpRange;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardWatchEventKinds.*;
 
 public class ConfigLoader {
-    private final String configPath;
-    private int port = 80;
-    private String logFilePath = "run.log";
-    private String documentRoot = "http";
-    private String indexFile = "index.html";
-    private String errorFile = "50x.html";
-    private Set<String> blacklistedIPs = new HashSet<>();
-    private Set<String> allowedHosts = new HashSet<>();
-    private boolean enableSecurity = false;
+    private static final long SAVE_DELAY_MILLIS = 1000;
+
+    private final Path configPath;
+    // 所有组件共享同一份配置，整体替换，读取无锁
+    private volatile ConfigSnapshot snapshot;
+    // 最近一次与文件同步（读取或写出）时文件的内容及其解析结果，用来区分文件的外部修改和控制台的修改
+    private List<String> syncedLines;
+    private ConfigSnapshot synced;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "config-saver");
+        t.setDaemon(true);
+        return t;
+    });
 
     public ConfigLoader(String configPath) {
-        this.configPath = configPath;
+        this.configPath = Paths.get(configPath).toAbsolutePath();
         load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "config-flush"));
+    }
+
+    public ConfigSnapshot snapshot() {
+        return snapshot;
     }
 
     private void load() {
-        Path path = Paths.get(configPath);
-        if (!Files.exists(path)) {
-            createDefaultConfig(path);
+        if (!Files.exists(configPath)) {
+            createDefaultConfig(configPath);
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.startsWith("port:")) {
-                    port = Integer.parseInt(line.split(":")[1].trim());
-                } else if (line.startsWith("logFile:")) {
-                    logFilePath = line.split(":")[1].trim();
-                } else if (line.startsWith("documentRoot:")) {
-                    documentRoot = line.split(":")[1].trim();
-                } else if (line.startsWith("indexFile:")) {
-                    indexFile = line.split(":")[1].trim();
-                } else if (line.startsWith("errorFile:")) {
-                    errorFile = line.split(":")[1].trim();
-                } else if (line.startsWith("blacklist:")) {
-                    String[] ips = line.split(":")[1].trim().split(",");
-                    blacklistedIPs = new HashSet<>();
-                    for (String ip : ips) {
-                        blacklistedIPs.add(ip.trim());
-                    }
-                } else if (line.startsWith("allowedHosts:")) {
-                    String[] hosts = line.split(":")[1].trim().split(",");
-                    allowedHosts = new HashSet<>();
-                    for (String host : hosts) {
-                        allowedHosts.add(host.trim());
-                    }
-                } else if (line.startsWith("enableSecurity:")) {
-                    enableSecurity = Boolean.parseBoolean(line.split(":")[1].trim());
-                }
-            }
+        try {
+            List<String> lines = Files.readAllLines(configPath, StandardCharsets.UTF_8);
+            snapshot = ConfigSnapshot.parse(lines);
+            syncedLines = lines;
         } catch (Exception e) {
             System.err.println("配置文件读取失败，使用默认值: " + e.getMessage());
+            snapshot = ConfigSnapshot.defaults();
         }
+        synced = snapshot;
     }
 
     private void createDefaultConfig(Path path) {
@@ -75,54 +66,220 @@ public class ConfigLoader {
             writer.println("blacklist: 192.168.1.1,192.168.1.2");
             writer.println("allowedHosts: example.com,192.168.1.100");
             writer.println("enableSecurity: true");
+            writer.println("enableCache: true");
+            writer.println("cacheMaxSize: 67108864");
+            writer.println("cacheMaxFileSize: 1048576");
+            writer.println("hostnameLookup: off");
+            writer.println("hostnameCacheSize: 10000");
+            writer.println("hostnameCacheTtl: 300");
+            writer.println("transferThreshold: 1048576");
+            writer.println("transferBufferSize: 262144");
+            writer.println("cacheControl: " + ConfigSnapshot.DEFAULT_CACHE_CONTROL);
+            writer.println("mimeTypes: " + ConfigSnapshot.DEFAULT_MIME_TYPES);
+            writer.println("enableCompression: true");
+            writer.println("compressionCacheSize: 33554432");
+            writer.println("compressMaxSize: 4194304");
+            writer.println("bundle: ");
+            writer.println("accessLogFile: access.log");
+            writer.println("accessLogQueueSize: 65536");
+            writer.println("accessLogOverflow: drop");
+            writer.println("accessLogMaxSize: 104857600");
+            writer.println("accessLogRotateInterval: 86400");
+            writer.println("consoleAccessLog: true");
+            writer.println("accessStatsCapacity: 10000");
+            writer.println("executor: fixed");
+            writer.println("threads: 10");
+            writer.println("queueSize: 1000");
+            writer.println("rejectPolicy: abort");
+            writer.println("backlog: 0");
+            writer.println("engine: jdk");
+            writer.println("eventLoops: 0");
+            writer.println("idleTimeout: 30");
+            writer.println("maxHeaderSize: 16384");
+            writer.println("maxRequestBody: 1048576");
+            writer.println("http2: true");
+            writer.println("tls: false");
+            writer.println("tlsKeystore: ");
+            writer.println("tlsKeystorePassword: ");
+            writer.println("tlsCertificate: ");
+            writer.println("tlsPrivateKey: ");
+            writer.println("tlsProtocols: TLSv1.3,TLSv1.2");
+            writer.println("tlsSessionCacheSize: 20480");
+            writer.println("tlsSessionTimeout: 86400");
+            writer.println("tlsSessionTickets: true");
+            writer.println("rateLimit: false");
+            writer.println("rateLimitRequests: 20");
+            writer.println("rateLimitBurst: 40");
+            writer.println("rateLimitBytes: 0");
+            writer.println("rateLimitBytesBurst: 0");
+            writer.println("maxConcurrentPerIp: 4");
+            writer.println("rateLimitTableSize: 100000");
+            writer.println("rateLimitIdleTimeout: 60");
+            writer.println("autoBlacklistThreshold: 0");
+            writer.println("autoBlacklistWindow: 60");
+            writer.println("closeBlockedConnections: true");
+            writer.println("rejectionLogInterval: 60");
+            writer.println("rejectionLogSamples: 5");
+            writer.println("enableMetrics: true");
+            writer.println("metricsAddress: 127.0.0.1");
+            writer.println("metricsPort: 9464");
+            writer.println("metricsPath: /metrics");
         } catch (IOException e) {
             System.err.println("创建默认配置失败: " + e.getMessage());
         }
     }
 
-    public synchronized void addBlacklistedIP(String ip) {
-        blacklistedIPs.add(ip);
-        saveConfig();
-        reloadBlacklist();
+    /**
+     * 接受单个 IP 或 CIDR 网段，格式错误时抛出 IllegalArgumentException。
+     * 只增量更新前缀树并立即生效，配置文件稍后合并写出。
+     */
+    public synchronized boolean addBlacklistedIP(String ip) {
+        AddressTrie current = snapshot.getBlacklist();
+        AddressTrie updated = current.with(IpRange.parse(ip));
+        if (updated == current) {
+            return false;
+        }
+        publish(snapshot.withBlacklist(updated));
+        return true;
+    }
+
+    public synchronized boolean removeBlacklistedIP(String ip) {
+        AddressTrie current = snapshot.getBlacklist();
+        AddressTrie updated = current.without(IpRange.parse(ip));
+        if (updated == current) {
+            return false;
+        }
+        publish(snapshot.withBlacklist(updated));
+        return true;
     }
 
-    public synchronized void removeBlacklistedIP(String ip) {
-        blacklistedIPs.remove(ip);
-        saveConfig();
-        reloadBlacklist();
+    // 先发布新快照，请求线程立即可见；连续的修改合并为一次写文件
+    private void publish(ConfigSnapshot updated) {
+        snapshot = updated;
+        if (savePending.compareAndSet(false, true)) {
+            saver.schedule(this::flush, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    private void saveConfig() {
-        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(configPath)))) {
-            writer.println("port: " + port);
-            writer.println("logFile: " + logFilePath);
-            writer.println("documentRoot: " + documentRoot);
-            writer.println("indexFile: " + indexFile);
-            writer.println("errorFile: " + errorFile);
-            writer.print("blacklist: ");
-            writer.println(String.join(",", blacklistedIPs));
-            writer.print("allowedHosts: ");
-            writer.println(String.join(",", allowedHosts));
-            writer.println("enableSecurity: " + enableSecurity);
+    /**
+     * 把当前快照写回配置文件。写之前重新读取文件：文件在等待写出期间被手工修改过时，
+     * 以修改后的文件为准，再把控制台对黑名单的增删合并进去，不用内存中的旧快照覆盖手工修改。
+     * 修改后的文件无法解析时不写出，等文件修正、重新加载时再合并。
+     */
+    public synchronized void flush() {
+        if (!savePending.get()) {
+            return;
+        }
+        // reload() 合并出差异时 savePending 仍为 true，不会重复安排写出
+        boolean current = reload();
+        if (savePending.compareAndSet(true, false) && current) {
+            saveConfig(snapshot);
+        }
+    }
+
+    private void saveConfig(ConfigSnapshot config) {
+        List<String> lines = config.toLines();
+        try {
+            Files.write(configPath, lines, StandardCharsets.UTF_8);
+            syncedLines = lines;
+            synced = config;
         } catch (IOException e) {
             System.err.println("保存配置文件失败: " + e.getMessage());
         }
     }
 
-    public synchronized void reloadBlacklist() {
-        load();
+    /**
+     * 重新读取配置文件，控制台尚未写出的黑名单增删合并到新配置上，合并后仍有差异时安排写出。
+     * 文件内容与上次同步时相同（包括本进程自己的写入）时不做任何事。
+     * 解析失败时保留当前配置并返回 false。
+     */
+    public synchronized boolean reload() {
+        List<String> lines;
+        ConfigSnapshot edited;
+        try {
+            lines = Files.readAllLines(configPath, StandardCharsets.UTF_8);
+            if (lines.equals(syncedLines)) {
+                return true;
+            }
+            edited = ConfigSnapshot.parse(lines);
+        } catch (NoSuchFileException e) {
+            // 编辑器保存时可能先删除再创建，等待下一次事件
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("配置文件重新加载失败，继续使用当前配置: " + e.getMessage());
+            return false;
+        }
+        AddressTrie merged = merge(edited.getBlacklist(), synced.getBlacklist(), snapshot.getBlacklist());
+        syncedLines = lines;
+        synced = edited;
+        if (merged == edited.getBlacklist()) {
+            snapshot = edited;
+        } else {
+            publish(edited.withBlacklist(merged));
+        }
+        System.out.println("配置文件已重新加载");
+        return true;
     }
 
-    public Set<String> getBlacklistedIPs() {
-        return blacklistedIPs;
+    // 把 base 到 current 之间的增删应用到 edited 上；没有增删时返回 edited 本身
+    private static AddressTrie merge(AddressTrie edited, AddressTrie base, AddressTrie current) {
+        if (current == base) {
+            return edited;
+        }
+        AddressTrie merged = edited;
+        for (IpRange range : current.toList()) {
+            if (!base.containsExactly(range)) {
+                merged = merged.with(range);
+            }
+        }
+        for (IpRange range : base.toList()) {
+            if (!current.containsExactly(range)) {
+                merged = merged.without(range);
+            }
+        }
+        return merged;
     }
 
-    // Getters
-    public int getPort() { return port; }
-    public String getLogFilePath() { return logFilePath; }
-    public String getDocumentRoot() { return documentRoot; }
-    public String getIndexFile() { return indexFile; }
-    public String getErrorFile() { return errorFile; }
-    public Set<String> getAllowedHosts() { return allowedHosts; }
-    public boolean isEnableSecurity() { return enableSecurity; }
+    // 监听配置文件所在目录，文件被修改时自动重新加载
+    public void startWatching() {
+        Path dir = configPath.getParent();
+        WatchService watchService;
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("无法监听配置文件: " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                try {
+                    // 等编辑器写完，避免读到写了一半的文件
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW || configPath.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        }, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
 }
\ No newline at end of file
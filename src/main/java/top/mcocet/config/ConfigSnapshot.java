@@ -0,0 +1,453 @@
+// src/top/mcocet/config/ConfigSnapshot.java
+package top.mcocet.config;
+
+import top.mcocet.http.CacheControlPolicy;
+import top.mcocet.security.AddressTrie;
+import top.mcocet.security.IpRange;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 某一时刻的完整配置。创建后不再修改，由 ConfigLoader 通过 volatile 引用整体替换，
+ * 请求线程读取时无需加锁。
+ */
+public final class ConfigSnapshot {
+    // 所有已知配置项及其默认值，保存配置时也按此顺序输出
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    // ConfigLoader 生成默认配置文件时也写出这些值，配置项缺失时的行为与默认文件一致
+    public static final String DEFAULT_CACHE_CONTROL = "html=0,css=86400,js=86400,*=3600";
+    public static final String DEFAULT_MIME_TYPES = "md=text/markdown";
+
+    static {
+        DEFAULTS.put("port", "80");
+        DEFAULTS.put("logFile", "run.log");
+        DEFAULTS.put("documentRoot", "http");
+        DEFAULTS.put("indexFile", "index.html");
+        DEFAULTS.put("errorFile", "50x.html");
+        DEFAULTS.put("blacklist", "");
+        DEFAULTS.put("allowedHosts", "");
+        DEFAULTS.put("enableSecurity", "false");
+        DEFAULTS.put("enableCache", "true");
+        DEFAULTS.put("cacheMaxSize", "67108864");
+        DEFAULTS.put("cacheMaxFileSize", "1048576");
+        DEFAULTS.put("hostnameLookup", "off");
+        DEFAULTS.put("hostnameCacheSize", "10000");
+        DEFAULTS.put("hostnameCacheTtl", "300");
+        DEFAULTS.put("transferThreshold", "1048576");
+        DEFAULTS.put("transferBufferSize", "262144");
+        DEFAULTS.put("cacheControl", DEFAULT_CACHE_CONTROL);
+        DEFAULTS.put("mimeTypes", DEFAULT_MIME_TYPES);
+        DEFAULTS.put("enableCompression", "true");
+        DEFAULTS.put("compressionCacheSize", "33554432");
+        DEFAULTS.put("compressMaxSize", "4194304");
+        DEFAULTS.put("bundle", "");
+        DEFAULTS.put("accessLogFile", "access.log");
+        DEFAULTS.put("accessLogQueueSize", "65536");
+        DEFAULTS.put("accessLogOverflow", "drop");
+        DEFAULTS.put("accessLogMaxSize", "104857600");
+        DEFAULTS.put("accessLogRotateInterval", "86400");
+        DEFAULTS.put("consoleAccessLog", "true");
+        DEFAULTS.put("accessStatsCapacity", "10000");
+        DEFAULTS.put("executor", "fixed");
+        DEFAULTS.put("threads", "10");
+        DEFAULTS.put("queueSize", "1000");
+        DEFAULTS.put("rejectPolicy", "abort");
+        DEFAULTS.put("backlog", "0");
+        DEFAULTS.put("engine", "jdk");
+        DEFAULTS.put("eventLoops", "0");
+        DEFAULTS.put("idleTimeout", "30");
+        DEFAULTS.put("maxHeaderSize", "16384");
+        DEFAULTS.put("maxRequestBody", "1048576");
+        DEFAULTS.put("http2", "true");
+        DEFAULTS.put("tls", "false");
+        DEFAULTS.put("tlsKeystore", "");
+        DEFAULTS.put("tlsKeystorePassword", "");
+        DEFAULTS.put("tlsCertificate", "");
+        DEFAULTS.put("tlsPrivateKey", "");
+        DEFAULTS.put("tlsProtocols", "TLSv1.3,TLSv1.2");
+        DEFAULTS.put("tlsSessionCacheSize", "20480");
+        DEFAULTS.put("tlsSessionTimeout", "86400");
+        DEFAULTS.put("tlsSessionTickets", "true");
+        DEFAULTS.put("rateLimit", "false");
+        DEFAULTS.put("rateLimitRequests", "20");
+        DEFAULTS.put("rateLimitBurst", "40");
+        DEFAULTS.put("rateLimitBytes", "0");
+        DEFAULTS.put("rateLimitBytesBurst", "0");
+        DEFAULTS.put("maxConcurrentPerIp", "4");
+        DEFAULTS.put("rateLimitTableSize", "100000");
+        DEFAULTS.put("rateLimitIdleTimeout", "60");
+        DEFAULTS.put("autoBlacklistThreshold", "0");
+        DEFAULTS.put("autoBlacklistWindow", "60");
+        DEFAULTS.put("closeBlockedConnections", "true");
+        DEFAULTS.put("rejectionLogInterval", "60");
+        DEFAULTS.put("rejectionLogSamples", "5");
+        DEFAULTS.put("enableMetrics", "true");
+        DEFAULTS.put("metricsAddress", "127.0.0.1");
+        DEFAULTS.put("metricsPort", "9464");
+        DEFAULTS.put("metricsPath", "/metrics");
+    }
+
+    private final Map<String, String> values;
+
+    private final int port;
+    private final String logFilePath;
+    private final String documentRoot;
+    private final String indexFile;
+    private final String errorFile;
+    // 控制台增删的黑名单条目只在前缀树中，values 里的 blacklist 可能是旧值，以前缀树为准
+    private final AddressTrie blacklist;
+    private final AddressTrie allowedAddresses;
+    private final Set<String> allowedHostNames;
+    private final boolean hostRestricted;
+    private final boolean enableSecurity;
+    private final boolean enableCache;
+    private final long cacheMaxSize;
+    private final long cacheMaxFileSize;
+    private final String hostnameLookup;
+    private final int hostnameCacheSize;
+    private final long hostnameCacheTtl;
+    private final long transferThreshold;
+    private final int transferBufferSize;
+    private final String cacheControl;
+    private final CacheControlPolicy cacheControlPolicy;
+    private final String mimeTypes;
+    private final boolean enableCompression;
+    private final long compressionCacheSize;
+    private final long compressMaxSize;
+    private final String bundle;
+    private final String accessLogFile;
+    private final int accessLogQueueSize;
+    private final String accessLogOverflow;
+    private final long accessLogMaxSize;
+    private final long accessLogRotateInterval;
+    private final boolean consoleAccessLog;
+    private final int accessStatsCapacity;
+    private final String executor;
+    private final int threads;
+    private final int queueSize;
+    private final String rejectPolicy;
+    private final int backlog;
+    private final String engine;
+    private final int eventLoops;
+    private final long idleTimeout;
+    private final int maxHeaderSize;
+    private final int maxRequestBody;
+    private final boolean http2;
+    private final boolean tls;
+    private final String tlsKeystore;
+    private final String tlsKeystorePassword;
+    private final String tlsCertificate;
+    private final String tlsPrivateKey;
+    private final String tlsProtocols;
+    private final int tlsSessionCacheSize;
+    private final int tlsSessionTimeout;
+    private final boolean tlsSessionTickets;
+    private final boolean rateLimit;
+    private final double rateLimitRequests;
+    private final double rateLimitBurst;
+    private final double rateLimitBytes;
+    private final double rateLimitBytesBurst;
+    private final int maxConcurrentPerIp;
+    private final int rateLimitTableSize;
+    private final long rateLimitIdleTimeout;
+    private final int autoBlacklistThreshold;
+    private final long autoBlacklistWindow;
+    private final boolean closeBlockedConnections;
+    private final long rejectionLogInterval;
+    private final int rejectionLogSamples;
+    private final boolean enableMetrics;
+    private final String metricsAddress;
+    private final int metricsPort;
+    private final String metricsPath;
+
+    // 数值格式错误时抛出 NumberFormatException，由调用方决定是否沿用旧配置
+    private ConfigSnapshot(Map<String, String> values) {
+        this(values, null);
+    }
+
+    // blacklist 为 null 时从 values 解析，否则直接使用传入的前缀树
+    private ConfigSnapshot(Map<String, String> values, AddressTrie blacklist) {
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+        port = Integer.parseInt(get("port"));
+        logFilePath = get("logFile");
+        documentRoot = get("documentRoot");
+        indexFile = get("indexFile");
+        errorFile = get("errorFile");
+        this.blacklist = blacklist != null ? blacklist : AddressTrie.of(parseRanges(parseList(get("blacklist")), true));
+        // allowedHosts 中的 IP/CIDR 放入前缀树，其余视为主机名，大小写不敏感，预先统一为小写
+        Set<String> hosts = parseList(get("allowedHosts"));
+        hostRestricted = !hosts.isEmpty();
+        allowedAddresses = AddressTrie.of(parseRanges(hosts, false));
+        Set<String> names = new HashSet<>();
+        for (String host : hosts) {
+            if (IpRange.tryParse(host) == null) {
+                names.add(host.toLowerCase(Locale.ROOT));
+            }
+        }
+        allowedHostNames = Set.copyOf(names);
+        enableSecurity = Boolean.parseBoolean(get("enableSecurity"));
+        enableCache = Boolean.parseBoolean(get("enableCache"));
+        cacheMaxSize = Long.parseLong(get("cacheMaxSize"));
+        cacheMaxFileSize = Long.parseLong(get("cacheMaxFileSize"));
+        hostnameLookup = get("hostnameLookup");
+        hostnameCacheSize = Integer.parseInt(get("hostnameCacheSize"));
+        hostnameCacheTtl = Long.parseLong(get("hostnameCacheTtl"));
+        transferThreshold = Long.parseLong(get("transferThreshold"));
+        transferBufferSize = positiveInt("transferBufferSize");
+        cacheControl = get("cacheControl");
+        // 规则格式错误时与数值错误一样拒绝整份配置，热加载时沿用旧配置
+        cacheControlPolicy = new CacheControlPolicy(cacheControl);
+        mimeTypes = get("mimeTypes");
+        enableCompression = Boolean.parseBoolean(get("enableCompression"));
+        compressionCacheSize = Long.parseLong(get("compressionCacheSize"));
+        compressMaxSize = Long.parseLong(get("compressMaxSize"));
+        bundle = get("bundle");
+        accessLogFile = get("accessLogFile");
+        accessLogQueueSize = Integer.parseInt(get("accessLogQueueSize"));
+        accessLogOverflow = get("accessLogOverflow");
+        accessLogMaxSize = Long.parseLong(get("accessLogMaxSize"));
+        accessLogRotateInterval = Long.parseLong(get("accessLogRotateInterval"));
+        consoleAccessLog = Boolean.parseBoolean(get("consoleAccessLog"));
+        accessStatsCapacity = Integer.parseInt(get("accessStatsCapacity"));
+        executor = get("executor");
+        threads = Integer.parseInt(get("threads"));
+        queueSize = Integer.parseInt(get("queueSize"));
+        rejectPolicy = get("rejectPolicy");
+        backlog = Integer.parseInt(get("backlog"));
+        engine = get("engine");
+        eventLoops = Integer.parseInt(get("eventLoops"));
+        idleTimeout = Long.parseLong(get("idleTimeout"));
+        maxHeaderSize = Integer.parseInt(get("maxHeaderSize"));
+        maxRequestBody = Integer.parseInt(get("maxRequestBody"));
+        http2 = Boolean.parseBoolean(get("http2"));
+        tls = Boolean.parseBoolean(get("tls"));
+        tlsKeystore = get("tlsKeystore");
+        tlsKeystorePassword = get("tlsKeystorePassword");
+        tlsCertificate = get("tlsCertificate");
+        tlsPrivateKey = get("tlsPrivateKey");
+        tlsProtocols = get("tlsProtocols");
+        tlsSessionCacheSize = Integer.parseInt(get("tlsSessionCacheSize"));
+        tlsSessionTimeout = Integer.parseInt(get("tlsSessionTimeout"));
+        tlsSessionTickets = Boolean.parseBoolean(get("tlsSessionTickets"));
+        rateLimit = Boolean.parseBoolean(get("rateLimit"));
+        rateLimitRequests = Double.parseDouble(get("rateLimitRequests"));
+        rateLimitBurst = Double.parseDouble(get("rateLimitBurst"));
+        rateLimitBytes = Double.parseDouble(get("rateLimitBytes"));
+        rateLimitBytesBurst = Double.parseDouble(get("rateLimitBytesBurst"));
+        maxConcurrentPerIp = Integer.parseInt(get("maxConcurrentPerIp"));
+        rateLimitTableSize = Integer.parseInt(get("rateLimitTableSize"));
+        rateLimitIdleTimeout = Long.parseLong(get("rateLimitIdleTimeout"));
+        autoBlacklistThreshold = Integer.parseInt(get("autoBlacklistThreshold"));
+        autoBlacklistWindow = Long.parseLong(get("autoBlacklistWindow"));
+        closeBlockedConnections = Boolean.parseBoolean(get("closeBlockedConnections"));
+        rejectionLogInterval = Long.parseLong(get("rejectionLogInterval"));
+        rejectionLogSamples = Integer.parseInt(get("rejectionLogSamples"));
+        enableMetrics = Boolean.parseBoolean(get("enableMetrics"));
+        metricsAddress = get("metricsAddress");
+        metricsPort = Integer.parseInt(get("metricsPort"));
+        metricsPath = get("metricsPath");
+    }
+
+    public static ConfigSnapshot defaults() {
+        return new ConfigSnapshot(DEFAULTS);
+    }
+
+    // 每行一个 "键: 值"，只按第一个冒号切分，值中可以包含冒号（例如 IPv6 地址）
+    public static ConfigSnapshot parse(List<String> lines) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            values.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+        return new ConfigSnapshot(values);
+    }
+
+    // 修改 blacklist 以外的配置项时沿用当前的前缀树，控制台增删的条目不会丢失
+    public ConfigSnapshot with(String key, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(values);
+        copy.put(key, value);
+        return new ConfigSnapshot(copy, "blacklist".equals(key) ? null : blacklist);
+    }
+
+    // 替换黑名单前缀树，其他配置项的值不变，不需要重新解析黑名单字符串
+    public ConfigSnapshot withBlacklist(AddressTrie updated) {
+        return new ConfigSnapshot(values, updated);
+    }
+
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>(values.size());
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            if ("blacklist".equals(e.getKey())) {
+                lines.add("blacklist: " + joinRanges(blacklist.toList()));
+            } else {
+                lines.add(e.getKey() + ": " + e.getValue());
+            }
+        }
+        return lines;
+    }
+
+    private static String joinRanges(List<IpRange> ranges) {
+        StringBuilder sb = new StringBuilder(ranges.size() * 16);
+        for (IpRange range : ranges) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(range);
+        }
+        return sb.toString();
+    }
+
+    private String get(String key) {
+        return values.getOrDefault(key, DEFAULTS.get(key));
+    }
+
+    // 为 0 或负数时无法工作的设置（如缓冲区大小），与格式错误一样整体拒绝
+    private int positiveInt(String key) {
+        int value = Integer.parseInt(get(key));
+        if (value <= 0) {
+            throw new NumberFormatException(key + " 必须大于 0: " + value);
+        }
+        return value;
+    }
+
+    private static Set<String> parseList(String value) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String item : value.split(",")) {
+            item = item.trim();
+            if (!item.isEmpty()) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static List<IpRange> parseRanges(Set<String> items, boolean warnInvalid) {
+        List<IpRange> ranges = new ArrayList<>(items.size());
+        for (String item : items) {
+            IpRange range = IpRange.tryParse(item);
+            if (range != null) {
+                ranges.add(range);
+            } else if (warnInvalid) {
+                System.err.println("忽略无效的黑名单条目: " + item);
+            }
+        }
+        return ranges;
+    }
+
+    // 未配置 allowedHosts 时不限制客户端地址
+    public boolean isClientAllowed(InetAddress address, String hostName) {
+        return !hostRestricted || allowedAddresses.contains(address)
+                || (hostName != null && allowedHostNames.contains(hostName.toLowerCase(Locale.ROOT)));
+    }
+
+    // allowedHosts 中是否有主机名；没有时判断客户端是否允许不需要查主机名
+    public boolean hasAllowedHostNames() {
+        return !allowedHostNames.isEmpty();
+    }
+
+    // Host 头部可能带端口或是 IP 字面量，去掉端口后分别按主机名和地址匹配
+    public boolean isAllowedHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String normalized = host.toLowerCase(Locale.ROOT);
+        if (allowedHostNames.contains(normalized)) {
+            return true;
+        }
+        int colon = normalized.lastIndexOf(':');
+        if (colon > 0 && normalized.indexOf(']') < colon) {
+            normalized = normalized.substring(0, colon);
+            if (allowedHostNames.contains(normalized)) {
+                return true;
+            }
+        }
+        if (allowedAddresses.isEmpty()) {
+            return false;
+        }
+        IpRange literal = IpRange.tryParse(normalized);
+        return literal != null && allowedAddresses.contains(literal);
+    }
+
+    public int getPort() { return port; }
+    public String getLogFilePath() { return logFilePath; }
+    public String getDocumentRoot() { return documentRoot; }
+    public String getIndexFile() { return indexFile; }
+    public String getErrorFile() { return errorFile; }
+    public AddressTrie getBlacklist() { return blacklist; }
+    public boolean isEnableSecurity() { return enableSecurity; }
+    public boolean isEnableCache() { return enableCache; }
+    public long getCacheMaxSize() { return cacheMaxSize; }
+    public long getCacheMaxFileSize() { return cacheMaxFileSize; }
+    public String getHostnameLookup() { return hostnameLookup; }
+    public int getHostnameCacheSize() { return hostnameCacheSize; }
+    public long getHostnameCacheTtl() { return hostnameCacheTtl; }
+    public long getTransferThreshold() { return transferThreshold; }
+    public int getTransferBufferSize() { return transferBufferSize; }
+    public String getCacheControl() { return cacheControl; }
+    public CacheControlPolicy getCacheControlPolicy() { return cacheControlPolicy; }
+    public String getMimeTypes() { return mimeTypes; }
+    public boolean isEnableCompression() { return enableCompression; }
+    public long getCompressionCacheSize() { return compressionCacheSize; }
+    public long getCompressMaxSize() { return compressMaxSize; }
+    public String getBundle() { return bundle; }
+    public String getAccessLogFile() { return accessLogFile; }
+    public int getAccessLogQueueSize() { return accessLogQueueSize; }
+    public String getAccessLogOverflow() { return accessLogOverflow; }
+    public long getAccessLogMaxSize() { return accessLogMaxSize; }
+    public long getAccessLogRotateInterval() { return accessLogRotateInterval; }
+    public boolean isConsoleAccessLog() { return consoleAccessLog; }
+    public int getAccessStatsCapacity() { return accessStatsCapacity; }
+    public String getExecutor() { return executor; }
+    public int getThreads() { return threads; }
+    public int getQueueSize() { return queueSize; }
+    public String getRejectPolicy() { return rejectPolicy; }
+    public int getBacklog() { return backlog; }
+    public String getEngine() { return engine; }
+    public int getEventLoops() { return eventLoops; }
+    public long getIdleTimeout() { return idleTimeout; }
+    public int getMaxHeaderSize() { return maxHeaderSize; }
+    public int getMaxRequestBody() { return maxRequestBody; }
+    public boolean isHttp2() { return http2; }
+    public boolean isTls() { return tls; }
+    public String getTlsKeystore() { return tlsKeystore; }
+    public String getTlsKeystorePassword() { return tlsKeystorePassword; }
+    public String getTlsCertificate() { return tlsCertificate; }
+    public String getTlsPrivateKey() { return tlsPrivateKey; }
+    public String getTlsProtocols() { return tlsProtocols; }
+    public int getTlsSessionCacheSize() { return tlsSessionCacheSize; }
+    public int getTlsSessionTimeout() { return tlsSessionTimeout; }
+    public boolean isTlsSessionTickets() { return tlsSessionTickets; }
+    public boolean isRateLimit() { return rateLimit; }
+    public double getRateLimitRequests() { return rateLimitRequests; }
+    public double getRateLimitBurst() { return rateLimitBurst; }
+    public double getRateLimitBytes() { return rateLimitBytes; }
+    public double getRateLimitBytesBurst() { return rateLimitBytesBurst; }
+    public int getMaxConcurrentPerIp() { return maxConcurrentPerIp; }
+    public int getRateLimitTableSize() { return rateLimitTableSize; }
+    public long getRateLimitIdleTimeout() { return rateLimitIdleTimeout; }
+    public int getAutoBlacklistThreshold() { return autoBlacklistThreshold; }
+    public long getAutoBlacklistWindow() { return autoBlacklistWindow; }
+    public boolean isCloseBlockedConnections() { return closeBlockedConnections; }
+    public long getRejectionLogInterval() { return rejectionLogInterval; }
+    public int getRejectionLogSamples() { return rejectionLogSamples; }
+    public boolean isEnableMetrics() { return enableMetrics; }
+    public String getMetricsAddress() { return metricsAddress; }
+    public int getMetricsPort() { return metricsPort; }
+    public String getMetricsPath() { return metricsPath; }
+}
@@ -0,0 +1,41 @@
+// src/top/mcocet/handler/InstrumentedHandler.java
+package top.mcocet.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import top.mcocet.metrics.ServerMetrics;
+
+import java.io.IOException;
+
+/**
+ * 包在实际处理器外层，记录每个请求的状态码、内容类型、响应字节数和处理时间。
+ */
+public class InstrumentedHandler implements HttpHandler, PreparableHandler {
+    private final HttpHandler delegate;
+    private final ServerMetrics metrics;
+
+    public InstrumentedHandler(HttpHandler delegate, ServerMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Runnable prepare(HttpExchange exchange) {
+        return delegate instanceof PreparableHandler ? ((PreparableHandler) delegate).prepare(exchange) : null;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        // 处理时间包含 prepare 之后在工作线程上读盘和压缩的时间
+        Object prepared = exchange.getAttribute(StaticFileHandler.PREPARE_START);
+        long start = prepared != null ? (Long) prepared : System.nanoTime();
+        metrics.requestStarted();
+        try {
+            delegate.handle(exchange);
+        } finally {
+            // 处理器抛出异常时响应码为 -1，记在 "none" 下
+            metrics.requestFinished(exchange.getResponseCode(), exchange.getResponseHeaders().getFirst("Content-Type"),
+                    StaticFileHandler.responseBytes(exchange), System.nanoTime() - start);
+        }
+    }
+}
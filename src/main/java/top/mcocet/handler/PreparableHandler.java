@@ -0,0 +1,14 @@
+// src/top/mcocet/handler/PreparableHandler.java
+package top.mcocet.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 可以把请求中会阻塞的部分（读文件、压缩）单独提前完成的处理器。
+ * NIO 引擎在事件循环上先调用 prepare：返回 null 表示 handle 只需要内存中的数据，直接处理；
+ * 否则把返回的任务交给工作线程执行，完成后回到事件循环再调用 handle。
+ * prepare 必须很快且不阻塞；返回的任务不能再访问 exchange，需要的请求信息在 prepare 中取出。
+ */
+public interface PreparableHandler extends RequestHandler {
+    Runnable prepare(HttpExchange exchange);
+}
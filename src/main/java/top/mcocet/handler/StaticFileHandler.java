@@ -3,91 +3,240 @@ package top.mcocet.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import top.mcocet.http.ByteRange;
+import top.mcocet.http.ChannelOutput;
+import top.mcocet.http.ConditionalRequest;
 import top.mcocet.http.ErrorResponse;
+import top.mcocet.http.FileTransfer;
+import top.mcocet.metrics.ServerMetrics;
+import top.mcocet.security.RateLimiter;
+import top.mcocet.service.AccessLogger;
+import top.mcocet.service.CompressionService;
+import top.mcocet.service.FileCache;
+import top.mcocet.service.FileEntry;
 import top.mcocet.service.FileService;
+import top.mcocet.service.HostResolver;
 import top.mcocet.service.LoggerService;
+import top.mcocet.service.MimeTypes;
+import top.mcocet.service.RejectionLog;
+import top.mcocet.service.SiteBundle;
 import top.mcocet.config.ConfigLoader;
+import top.mcocet.config.ConfigSnapshot;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.InetSocketAddress;
-import java.nio.file.Files;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.Set;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+public class StaticFileHandler implements HttpHandler, PreparableHandler {
+    private static final byte[] TOO_MANY_REQUESTS = "429 Too Many Requests".getBytes(StandardCharsets.US_ASCII);
+    static final String PREPARE_START = "top.mcocet.prepareStart";
 
-public class StaticFileHandler implements HttpHandler, RequestHandler {
     private final FileService fileService;
     private final LoggerService logger;
     private final ErrorResponse errorResponse;
     private final ConfigLoader config;
+    private final HostResolver hostResolver;
+    private final FileTransfer fileTransfer;
+    private final CompressionService compression;
+    private final AccessLogger accessLog;
+    private final RateLimiter rateLimiter;
+    private final RejectionLog rejectionLog;
 
-    public StaticFileHandler(String documentRoot, LoggerService logger) {
+    public StaticFileHandler(ConfigLoader config, LoggerService logger, AccessLogger accessLog) {
         this.logger = logger;
-        this.fileService = new FileService(documentRoot, "index.html", "50x.html", logger);
+        this.accessLog = accessLog;
+        this.config = config;
+        ConfigSnapshot settings = config.snapshot();
+        FileCache cache = settings.isEnableCache()
+                ? new FileCache(settings.getCacheMaxSize(), settings.getCacheMaxFileSize())
+                : null;
+        this.fileService = new FileService(settings.getDocumentRoot(), settings.getIndexFile(), settings.getErrorFile(),
+                logger, cache, new MimeTypes(settings.getMimeTypes()), settings.getBundle());
+        this.compression = settings.isEnableCompression()
+                ? new CompressionService(fileService, settings.getCompressionCacheSize(), settings.getCompressMaxSize())
+                : null;
+        this.fileService.startWatching();
         this.errorResponse = new ErrorResponse(fileService, logger);
-        this.config = new ConfigLoader("config.yml");
+        this.hostResolver = new HostResolver(HostResolver.parseMode(settings.getHostnameLookup()),
+                settings.getHostnameCacheSize(), settings.getHostnameCacheTtl() * 1000, logger);
+        this.fileTransfer = new FileTransfer(settings.getTransferThreshold(), settings.getTransferBufferSize());
+        this.rateLimiter = new RateLimiter(settings, this::blacklistAbusiveClient);
+        this.rejectionLog = new RejectionLog(logger, settings.getRejectionLogInterval(), settings.getRejectionLogSamples());
     }
 
+    /**
+     * 文件内容和压缩结果都已在内存中（或者请求会被直接拒绝）时返回 null；
+     * 否则返回把它们读入缓存的任务，NIO 引擎在工作线程上执行后再调用 handle，事件循环不等待磁盘和压缩。
+     * 限流在 handle 中进行，超限的客户端仍可能让某个文件被提前读入缓存，但每个文件只读一次。
+     */
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
+    public Runnable prepare(HttpExchange exchange) {
         String method = exchange.getRequestMethod();
-        String uri = exchange.getRequestURI().toString();
-        String clientIP = exchange.getRemoteAddress().getAddress().getHostAddress();
-        String clientHost = ((InetSocketAddress) exchange.getRemoteAddress()).getHostName();
-        logger.info("收到请求: " + clientIP + " (" + clientHost + ") - 方法: " + method + " - URI: " + uri);
-
-        // 检查是否启用安全功能
-        if (config.isEnableSecurity()) {
-            // 检查黑名单
-            if (config.getBlacklistedIPs().contains(clientIP)) {
-                errorResponse.send(exchange, 403, "Forbidden");
-                logger.warning("[" + LocalDateTime.now() + "] " + clientIP + " - 禁止访问: " + uri);
-                return;
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+        ConfigSnapshot settings = config.snapshot();
+        if (settings.isEnableSecurity() && settings.getBlacklist().contains(exchange.getRemoteAddress().getAddress())) {
+            return null;
+        }
+        String path = exchange.getRequestURI().getPath();
+        String acceptEncoding = compression != null ? exchange.getRequestHeaders().getFirst("Accept-Encoding") : null;
+        if (fileService.isCurrent(settings.getMimeTypes(), settings.getBundle()) && !fileService.needsLoad(path)) {
+            FileEntry entry = fileService.peek(path);
+            if (entry == null || compression == null || !compression.needsWork(entry, acceptEncoding)) {
+                return null;
             }
+        }
+        exchange.setAttribute(PREPARE_START, System.nanoTime());
+        return () -> load(settings, path, acceptEncoding);
+    }
+
+    // 在工作线程上执行；出错时不做处理，handle 重新查找时会发送相应的错误响应
+    private void load(ConfigSnapshot settings, String path, String acceptEncoding) {
+        fileService.updateMimeTypes(settings.getMimeTypes());
+        fileService.updateBundle(settings.getBundle());
+        try {
+            var entry = fileService.lookup(path);
+            if (entry.isPresent() && compression != null) {
+                compression.select(entry.get(), acceptEncoding);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        // 经过 prepare 的请求从准备开始计时，访问日志中的耗时包含等待读盘和压缩的时间
+        Object prepared = exchange.getAttribute(PREPARE_START);
+        long start = prepared != null ? (Long) prepared : System.nanoTime();
+        InetAddress clientAddress = exchange.getRemoteAddress().getAddress();
+        String clientIP = clientAddress.getHostAddress();
+        try {
+            serve(exchange, clientAddress, clientIP);
+        } finally {
+            logAccess(exchange, clientIP, start);
+        }
+    }
+
+    private void serve(HttpExchange exchange, InetAddress clientAddress, String clientIP) throws IOException {
+        String method = exchange.getRequestMethod();
+
+        // 每个请求只读取一次配置快照，整个处理过程看到的是同一份配置
+        ConfigSnapshot settings = config.snapshot();
+        rejectionLog.update(settings.getRejectionLogInterval(), settings.getRejectionLogSamples());
+
+        // 拒绝条件按成本从低到高检查，全部只查内存中的表：被拒绝的请求不访问磁盘、
+        // 不触发反向解析，日志只抽样记录，错误响应体也是预先生成的
+        if (settings.isEnableSecurity() && settings.getBlacklist().contains(clientAddress)) {
+            reject(exchange, 403, "Forbidden", settings.isCloseBlockedConnections(),
+                    RejectionLog.Reason.BLACKLISTED, clientIP, () -> exchange.getRequestURI().toString());
+            return;
+        }
+
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            reject(exchange, 405, "Method Not Allowed", false,
+                    RejectionLog.Reason.METHOD_NOT_ALLOWED, clientIP, () -> method);
+            return;
+        }
 
-            // 检查允许的主机列表
-            if (!config.getAllowedHosts().isEmpty() && !config.getAllowedHosts().contains(clientHost) && !config.getAllowedHosts().contains(clientIP)) {
-                errorResponse.send(exchange, 403, "Forbidden");
-                logger.warning("[" + LocalDateTime.now() + "] " + clientIP + " (" + clientHost + ") - 不允许的主机: " + uri);
+        if (settings.isEnableSecurity()) {
+            // 检查允许的主机列表（IP、网段或已解析的主机名）
+            if (!isClientAllowed(settings, clientAddress)) {
+                reject(exchange, 403, "Forbidden", settings.isCloseBlockedConnections(),
+                        RejectionLog.Reason.HOST_NOT_ALLOWED, clientIP, () -> exchange.getRequestURI().toString());
                 return;
             }
 
             // 额外检查Host头部，防止IP地址访问
             String hostHeader = exchange.getRequestHeaders().getFirst("Host");
-            if (hostHeader != null && !config.getAllowedHosts().contains(hostHeader)) {
-                errorResponse.send(exchange, 403, "Forbidden");
-                logger.warning("[" + LocalDateTime.now() + "] " + clientIP + " - Host头部不匹配: " + hostHeader);
+            if (hostHeader != null && !settings.isAllowedHost(hostHeader)) {
+                reject(exchange, 403, "Forbidden", false,
+                        RejectionLog.Reason.HOST_HEADER, clientIP, () -> hostHeader);
                 return;
             }
         }
 
-        if (!"GET".equals(method) && !"HEAD".equals(method)) {
-            errorResponse.send(exchange, 405, "Method Not Allowed");
-            logger.info("[" + java.time.LocalDateTime.now() + "] " + clientIP + " - 方法不被允许: " + method);
+        // 按客户端限流，超限请求在解析文件之前就被拒绝
+        long retryAfter = rateLimiter.tryAcquire(clientIP, settings);
+        if (retryAfter > 0) {
+            sendTooManyRequests(exchange, retryAfter);
+            rejectionLog.record(RejectionLog.Reason.RATE_LIMITED, clientIP, () -> exchange.getRequestURI().toString());
             return;
         }
-
-        var filePathOpt = fileService.resolveFilePath(uri);
-        if (filePathOpt.isEmpty()) {
-            errorResponse.send(exchange, 404, "Not Found");
-            return;
+        try {
+            respond(exchange, settings, method, clientIP);
+        } finally {
+            if (retryAfter == RateLimiter.ADMITTED) {
+                rateLimiter.release(clientIP, responseBytes(exchange));
+            }
         }
+    }
 
-        Path filePath = filePathOpt.get();
-        var mimeTypeOpt = fileService.getMimeType(filePath);
-        String mimeType = mimeTypeOpt.orElse("application/octet-stream");
-
-        long fileSize;
+    private void respond(HttpExchange exchange, ConfigSnapshot settings, String method, String clientIP) throws IOException {
+        fileService.updateMimeTypes(settings.getMimeTypes());
+        fileService.updateBundle(settings.getBundle());
+        FileEntry entry;
         try {
-            fileSize = Files.size(filePath);
+            // 按解码后的路径查找，查询字符串和百分号编码不影响命中
+            var entryOpt = fileService.lookup(exchange.getRequestURI().getPath());
+            if (entryOpt.isEmpty()) {
+                reject(exchange, 404, "Not Found", false,
+                        RejectionLog.Reason.NOT_FOUND, clientIP, () -> exchange.getRequestURI().toString());
+                return;
+            }
+            entry = entryOpt.get();
         } catch (IOException e) {
             errorResponse.send(exchange, 500, "Internal Server Error");
             return;
         }
 
-        exchange.getResponseHeaders().set("Content-Type", mimeType);
+        var headers = exchange.getResponseHeaders();
+        headers.set("Cache-Control", settings.getCacheControlPolicy().headerFor(entry.getPath()));
+
+        // 可压缩类型按 Accept-Encoding 协商，选中的变体拥有各自的 ETag
+        if (compression != null && CompressionService.isCompressible(entry.getMimeType())) {
+            headers.set("Vary", "Accept-Encoding");
+            try {
+                entry = compression.select(entry, exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            } catch (IOException e) {
+                logger.warning("压缩失败: " + entry.getPath() + ", 错误: " + e.getMessage());
+            }
+            if (entry.getContentEncoding() != null) {
+                headers.set("Content-Encoding", entry.getContentEncoding());
+            }
+        }
+
+        Path filePath = entry.getPath();
+        String mimeType = entry.getMimeType();
+        long fileSize = entry.getSize();
+
+        headers.set("Content-Type", mimeType);
+        headers.set("ETag", entry.getEtag());
+        headers.set("Last-Modified", entry.getLastModifiedHeader());
+
+        // 校验器匹配时直接返回 304，不打开文件
+        if (ConditionalRequest.isNotModified(exchange.getRequestHeaders(), entry)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        headers.set("Accept-Ranges", "bytes");
+        List<ByteRange> ranges = requestedRanges(exchange, entry);
+        if (ranges != null && ranges.isEmpty()) {
+            headers.set("Content-Range", "bytes */" + fileSize);
+            errorResponse.send(exchange, 416, "Range Not Satisfiable");
+            return;
+        }
 
         /*
         if (!"GET".equals(method)) {
@@ -100,37 +249,209 @@ public class StaticFileHandler implements HttpHandler, RequestHandler {
         // HEAD一般不会返回长度数据
          */
 
-        // 根据请求方法决定是否发送内容体
-        if ("GET".equals(method)) {
-            exchange.sendResponseHeaders(200, fileSize);
-        } else { // HEAD 请求
-            exchange.sendResponseHeaders(200, -1); // -1 表示无内容体
+        boolean head = !"GET".equals(method);
+        if (ranges == null) {
+            // 根据请求方法决定是否发送内容体
+            exchange.sendResponseHeaders(200, head ? -1 : fileSize); // -1 表示无内容体
+            if (!head) {
+                try (OutputStream os = exchange.getResponseBody()) {
+                    if (entry.hasContent()) {
+                        writeBuffer(entry.getContent(), os);
+                    } else {
+                        fileTransfer.send(filePath, fileSize, os);
+                    }
+                }
+            }
+        } else {
+            sendRanges(exchange, entry, ranges, head);
         }
+    }
 
-        // 只在 GET 请求时传输内容
-        if ("GET".equals(method)) {
-            try (InputStream is = Files.newInputStream(filePath);
-                 OutputStream os = exchange.getResponseBody()) {
-                is.transferTo(os);
-            }
+    private void reject(HttpExchange exchange, int status, String statusText, boolean closeConnection,
+                        RejectionLog.Reason reason, String clientIP, Supplier<String> detail) throws IOException {
+        errorResponse.send(exchange, status, statusText, closeConnection);
+        rejectionLog.record(reason, clientIP, detail);
+    }
+
+    // 地址已在允许列表中，或者没有配置主机名时，不需要查主机名缓存
+    private boolean isClientAllowed(ConfigSnapshot settings, InetAddress clientAddress) {
+        if (settings.isClientAllowed(clientAddress, null)) {
+            return true;
         }
+        // 只使用已解析的主机名，默认不做反向DNS查询
+        return settings.hasAllowedHostNames()
+                && settings.isClientAllowed(clientAddress, hostResolver.cachedHostName(clientAddress));
+    }
 
-        String fileName = filePath.getFileName().toString();
-        String log = "[" + java.time.LocalDateTime.now() + "] " + clientIP + " - 访问: " + uri;
-        if (mimeType.startsWith("text/html")) {
-            System.out.println(log);
-            logger.info(log);
+    // 把缓存和限流器的计数注册到指标中，读取指标时才取值
+    public void registerMetrics(ServerMetrics metrics) {
+        metrics.gauge("motweb_document_index_entries", "文档索引中的路径数", fileService.getIndex()::size);
+        metrics.gauge("motweb_site_bundle_entries", "打包文件中的路径数，未使用打包文件时为 0", () -> {
+            SiteBundle bundle = fileService.getBundle();
+            return bundle != null ? bundle.size() : 0;
+        });
+        FileCache cache = fileService.getCache();
+        if (cache != null) {
+            metrics.counter("motweb_file_cache_hits_total", "文件缓存命中次数", cache::getHits);
+            metrics.counter("motweb_file_cache_misses_total", "文件缓存未命中次数", cache::getMisses);
+            metrics.gauge("motweb_file_cache_hit_ratio", "文件缓存命中率", () -> hitRatio(cache));
+            metrics.gauge("motweb_file_cache_bytes", "文件缓存占用字节数", cache::getTotalBytes);
+            metrics.gauge("motweb_file_cache_entries", "文件缓存条目数", cache::size);
+        }
+        if (compression != null) {
+            FileCache compressed = compression.getCache();
+            metrics.counter("motweb_compression_cache_hits_total", "压缩缓存命中次数", compressed::getHits);
+            metrics.counter("motweb_compression_cache_misses_total", "压缩缓存未命中次数", compressed::getMisses);
+            metrics.gauge("motweb_compression_cache_hit_ratio", "压缩缓存命中率", () -> hitRatio(compressed));
+        }
+        metrics.counter("motweb_rate_limited_total", "因超出访问频率限制被拒绝的请求数", rateLimiter::getRejected);
+        metrics.gauge("motweb_rate_limit_clients", "限流表中跟踪的客户端数", rateLimiter::size);
+        for (RejectionLog.Reason reason : RejectionLog.Reason.values()) {
+            metrics.counter("motweb_rejected_" + reason.name().toLowerCase(Locale.ROOT) + "_total",
+                    "被拒绝的请求数：" + reason.getLabel(), () -> rejectionLog.getTotal(reason));
+        }
+    }
 
-            // 检查 Host 头部
-            String hostHeader = exchange.getRequestHeaders().getFirst("Host");
-            if (hostHeader != null && hostHeader.equals(clientIP)) {
-                System.out.println("警告: 客户端 " + clientIP + " 通过IP地址访问服务器，而不是域名。");
+    private static double hitRatio(FileCache cache) {
+        long hits = cache.getHits();
+        long total = hits + cache.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    // 限流响应不使用错误页面，只发送固定文本，被刷请求时开销尽量小
+    private static void sendTooManyRequests(HttpExchange exchange, long retryAfter) throws IOException {
+        var headers = exchange.getResponseHeaders();
+        headers.set("Retry-After", Long.toString(retryAfter));
+        headers.set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(429, TOO_MANY_REQUESTS.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(TOO_MANY_REQUESTS);
+        }
+    }
+
+    private void blacklistAbusiveClient(String clientIP) {
+        try {
+            if (config.addBlacklistedIP(clientIP)) {
+                logger.warning("[" + LocalDateTime.now() + "] " + clientIP + " - 多次超出访问频率限制，已自动加入黑名单");
             }
+        } catch (IllegalArgumentException e) {
+            logger.warning("无法将 " + clientIP + " 加入黑名单: " + e.getMessage());
+        }
+    }
 
-            // 记录HTML页面的访问次数
+    // 访问日志交给后台线程批量写出，请求线程只投递事件
+    private void logAccess(HttpExchange exchange, String clientIP, long start) {
+        int status = exchange.getResponseCode();
+        var responseHeaders = exchange.getResponseHeaders();
+        String mimeType = responseHeaders.getFirst("Content-Type");
+        long bytes = responseBytes(exchange);
+        boolean html = status >= 200 && status < 400 && mimeType != null && mimeType.startsWith("text/html");
+        accessLog.log(clientIP, exchange.getRequestMethod(), exchange.getRequestURI().toString(), status, bytes,
+                mimeType, System.nanoTime() - start, html, html ? exchange.getRequestHeaders().getFirst("Host") : null);
+
+        // 记录HTML页面的访问次数
+        if (html) {
             logger.recordAccess(clientIP);
+        }
+    }
+
+    static long responseBytes(HttpExchange exchange) {
+        String length = exchange.getResponseHeaders().getFirst("Content-Length");
+        return length != null && !"HEAD".equals(exchange.getRequestMethod()) ? Long.parseLong(length) : 0;
+    }
+
+    private List<ByteRange> requestedRanges(HttpExchange exchange, FileEntry entry) {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null) {
+            return null;
+        }
+        // If-Range 不匹配时说明客户端持有的是旧版本，返回完整内容
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange != null && !ifRangeMatches(ifRange.trim(), entry)) {
+            return null;
+        }
+        return ByteRange.parse(range, entry.getSize());
+    }
+
+    // If-Range 只接受强校验器，日期必须与 Last-Modified 完全一致
+    private static boolean ifRangeMatches(String ifRange, FileEntry entry) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ConditionalRequest.matchesAny(ifRange, entry.getEtag(), false);
+        }
+        long date = ConditionalRequest.parseDate(ifRange);
+        return date >= 0 && date / 1000 == entry.getLastModified() / 1000;
+    }
+
+    private void sendRanges(HttpExchange exchange, FileEntry entry, List<ByteRange> ranges, boolean head) throws IOException {
+        var headers = exchange.getResponseHeaders();
+        long size = entry.getSize();
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            headers.set("Content-Range", range.contentRange(size));
+            exchange.sendResponseHeaders(206, head ? -1 : range.length());
+            if (!head) {
+                try (OutputStream os = exchange.getResponseBody()) {
+                    writeSlice(entry, range.getStart(), range.length(), os);
+                }
+            }
+            return;
+        }
+
+        // 多区间：multipart/byteranges，先算出总长度以便发送 Content-Length
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        byte[][] partHeaders = new byte[ranges.size()][];
+        long total = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\nContent-Type: " + entry.getMimeType()
+                    + "\r\nContent-Range: " + range.contentRange(size) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            total += partHeaders[i].length + range.length();
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        total += trailer.length;
+
+        headers.set("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        exchange.sendResponseHeaders(206, head ? -1 : total);
+        if (head) {
+            return;
+        }
+        try (OutputStream os = exchange.getResponseBody()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                os.write(partHeaders[i]);
+                writeSlice(entry, ranges.get(i).getStart(), ranges.get(i).length(), os);
+            }
+            os.write(trailer);
+        }
+    }
+
+    // 缓存内容直接切片；否则按区间发送文件，不经过 InputStream.skip
+    private void writeSlice(FileEntry entry, long position, long count, OutputStream os) throws IOException {
+        if (entry.hasContent()) {
+            ByteBuffer slice = entry.getContent();
+            int base = slice.position();
+            slice.limit(base + (int) (position + count));
+            slice.position(base + (int) position);
+            writeBuffer(slice, os);
         } else {
-            logger.info(log + " (资源, MIME: " + mimeType + ")");
+            fileTransfer.send(entry.getPath(), position, count, os);
+        }
+    }
+
+    private static void writeBuffer(ByteBuffer buffer, OutputStream os) throws IOException {
+        // 缓存内容不会被修改，NIO 引擎直接引用发送，不复制
+        if (os instanceof ChannelOutput) {
+            ((ChannelOutput) os).writeShared(buffer);
+            return;
+        }
+        if (buffer.hasArray()) {
+            os.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(buffer.remaining(), 64 * 1024)];
+        while (buffer.hasRemaining()) {
+            int n = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, n);
+            os.write(chunk, 0, n);
         }
     }
 
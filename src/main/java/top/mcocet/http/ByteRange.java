@@ -0,0 +1,105 @@
+// src/top/mcocet/http/ByteRange.java
+package top.mcocet.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ByteRange {
+    // 单个请求允许的最大区间数，防止大量碎片区间放大响应
+    private static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() { return start; }
+    public long getEnd() { return end; }
+    public long length() { return end - start + 1; }
+
+    public String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * 解析 Range 头部。语法无效或区间过多时返回 null（按普通 200 处理），
+     * 所有区间都无法满足时返回空列表（应答 416）。
+     */
+    public static List<ByteRange> parse(String header, long size) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    // 后缀区间：最后 N 个字节
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = size - 1;
+                    if (!last.isEmpty()) {
+                        long requestedEnd = Long.parseLong(last);
+                        if (requestedEnd < start) {
+                            return null;
+                        }
+                        end = Math.min(requestedEnd, end);
+                    }
+                }
+                if (start < 0) {
+                    return null;
+                }
+                if (start < size && start <= end) {
+                    ranges.add(new ByteRange(start, end));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges.isEmpty() ? Collections.emptyList() : coalesce(ranges);
+    }
+
+    // 合并重叠或相邻的区间，保持升序
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() == 1) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort((a, b) -> Long.compare(a.start, b.start));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
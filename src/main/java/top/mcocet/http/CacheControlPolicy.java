@@ -0,0 +1,63 @@
+// src/top/mcocet/http/CacheControlPolicy.java
+package top.mcocet.http;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class CacheControlPolicy {
+    private final Map<String, String> byExtension = new HashMap<>();
+    private final String rules;
+    private String defaultValue = "no-cache";
+
+    /**
+     * 规则格式: html=0,css=86400,js=86400,*=3600，数值为 max-age 秒数。
+     * 规则格式错误时抛出 NumberFormatException，由 ConfigSnapshot 在解析配置时拒绝整份配置。
+     */
+    public CacheControlPolicy(String rules) {
+        this.rules = rules != null ? rules : "";
+        if (rules == null || rules.isBlank()) {
+            return;
+        }
+        for (String rule : rules.split(",")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            String[] kv = rule.trim().split("=");
+            String ext = kv.length == 2 ? kv[0].trim().toLowerCase(Locale.ROOT) : "";
+            if (ext.isEmpty() || (!"*".equals(ext) && ext.indexOf('*') >= 0)) {
+                throw new NumberFormatException("cacheControl 规则无效: " + rule.trim());
+            }
+            String value;
+            try {
+                value = toHeader(Long.parseLong(kv[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new NumberFormatException("cacheControl 规则无效: " + rule.trim());
+            }
+            if ("*".equals(ext)) {
+                defaultValue = value;
+            } else {
+                byExtension.put(ext.startsWith(".") ? ext.substring(1) : ext, value);
+            }
+        }
+    }
+
+    public String headerFor(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return defaultValue;
+        }
+        return byExtension.getOrDefault(name.substring(dot + 1).toLowerCase(Locale.ROOT), defaultValue);
+    }
+
+    public String getRules() {
+        return rules;
+    }
+
+    // max-age 为 0 时要求每次都重新验证，配合 ETag 基本只产生 304
+    private static String toHeader(long maxAge) {
+        return maxAge <= 0 ? "no-cache" : "public, max-age=" + maxAge;
+    }
+}
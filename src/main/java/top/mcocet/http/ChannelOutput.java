@@ -0,0 +1,25 @@
+// src/top/mcocet/http/ChannelOutput.java
+package top.mcocet.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 由能直接操作套接字的引擎提供的响应体输出流实现，例如 NIO 引擎。
+ * 响应体不经过 OutputStream.write 的复制，而是把文件区间或只读缓冲区交给连接，
+ * 由连接在套接字可写时发送；JDK HttpServer 的输出流不实现此接口，调用方回退到普通写入。
+ */
+public interface ChannelOutput {
+    /**
+     * 发送文件的一段，连接用 FileChannel.transferTo 直接从页缓存写入套接字。
+     * 文件在方法返回前打开，之后被删除或替换不影响已交出的区间。
+     */
+    void transferFile(Path path, long position, long count) throws IOException;
+
+    /**
+     * 发送一个之后不会再被修改的缓冲区（例如缓存中的文件内容），只保留引用不复制。
+     * 发送的是 position 到 limit 之间的内容，调用方的 position 和 limit 不受影响。
+     */
+    void writeShared(ByteBuffer buffer) throws IOException;
+}
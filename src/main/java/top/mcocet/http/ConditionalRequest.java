@@ -0,0 +1,57 @@
+// src/top/mcocet/http/ConditionalRequest.java
+package top.mcocet.http;
+
+import com.sun.net.httpserver.Headers;
+import top.mcocet.service.FileEntry;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+public final class ConditionalRequest {
+    private ConditionalRequest() {
+    }
+
+    // RFC 9110 13.2.2：存在 If-None-Match 时忽略 If-Modified-Since
+    public static boolean isNotModified(Headers requestHeaders, FileEntry entry) {
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, entry.getEtag(), true);
+        }
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            long since = parseDate(ifModifiedSince);
+            return since >= 0 && entry.getLastModified() / 1000 <= since / 1000;
+        }
+        return false;
+    }
+
+    // weak 为 true 时忽略 W/ 前缀做弱比较，否则只接受强校验器完全相等
+    public static boolean matchesAny(String header, String etag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 无法解析时返回 -1
+    public static long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -7,39 +7,85 @@ import top.mcocet.service.LoggerService;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * 发送错误响应。响应体都是预先生成的：403/404/500 使用错误页面，启动时读取一次，
+ * 文件变化时由文档根目录监听器刷新；其他状态码使用 "状态码 描述" 文本，首次使用时生成。
+ * 发送错误不访问磁盘，也不写日志，拒绝原因由调用方记录；只有 5xx 会立即写日志。
+ */
 public class ErrorResponse {
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+
     private final FileService fileService;
     private final LoggerService logger;
+    private final Path errorPagePath;
+    private volatile byte[] errorPage;
+    // 下标为状态码；并发首次生成时内容相同，重复生成无妨，但数组元素必须安全发布，
+    // 否则其他线程可能先看到引用、后看到内容
+    private final AtomicReferenceArray<byte[]> statusBodies = new AtomicReferenceArray<>(600);
 
     public ErrorResponse(FileService fileService, LoggerService logger) {
         this.fileService = fileService;
         this.logger = logger;
+        this.errorPagePath = fileService.getErrorPagePath();
+        this.errorPage = fileService.readErrorPage();
+        // 错误页面本身、所在目录或整个根目录（事件溢出时）变化都重新读取
+        fileService.addChangeListener(changed -> {
+            if (errorPagePath.startsWith(changed)) {
+                errorPage = fileService.readErrorPage();
+            }
+        });
     }
 
     public void send(HttpExchange exchange, int statusCode, String statusText) throws IOException {
-        byte[] body;
-        String contentType = "text/html; charset=UTF-8";
+        send(exchange, statusCode, statusText, false);
+    }
 
-        if (statusCode == 404 || statusCode == 403 || statusCode == 500) {
-            body = fileService.readErrorPage();
-        } else {
-            body = (statusCode + " " + statusText).getBytes();
+    /**
+     * @param closeConnection 为 true 时附带 Connection: close，响应发送后服务器关闭连接，
+     *                        被封禁的客户端不能在同一连接上继续发送请求
+     */
+    public void send(HttpExchange exchange, int statusCode, String statusText, boolean closeConnection) throws IOException {
+        byte[] body = bodyFor(statusCode, statusText);
+        var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", CONTENT_TYPE);
+        if (closeConnection) {
+            headers.set("Connection", "close");
         }
 
-        exchange.getResponseHeaders().set("Content-Type", contentType);
-        exchange.sendResponseHeaders(statusCode, body.length);
-
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(body);
+        // HEAD 请求只发送响应头，避免 HttpServer 的 Content-Length 警告
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(statusCode, -1);
+            exchange.close();
+        } else {
+            exchange.sendResponseHeaders(statusCode, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
         }
 
-        String clientIP = exchange.getRemoteAddress().getAddress().getHostAddress();
-        String log = String.format("[%s] %s - 错误 %d: %s",
-                java.time.LocalDateTime.now(), clientIP, statusCode, exchange.getRequestURI());
+        if (statusCode >= 500) {
+            String clientIP = exchange.getRemoteAddress().getAddress().getHostAddress();
+            logger.severe(String.format("[%s] %s - 错误 %d: %s",
+                    java.time.LocalDateTime.now(), clientIP, statusCode, exchange.getRequestURI()));
+        }
+    }
 
-        if (statusCode == 404) logger.info(log);
-        else if (statusCode >= 500) logger.severe(log);
-        else logger.warning(log);
+    private byte[] bodyFor(int statusCode, String statusText) {
+        if (statusCode == 404 || statusCode == 403 || statusCode == 500) {
+            return errorPage;
+        }
+        if (statusCode < 0 || statusCode >= statusBodies.length()) {
+            return (statusCode + " " + statusText).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] body = statusBodies.get(statusCode);
+        if (body == null) {
+            body = (statusCode + " " + statusText).getBytes(StandardCharsets.UTF_8);
+            statusBodies.set(statusCode, body);
+        }
+        return body;
     }
 }
\ No newline at end of file
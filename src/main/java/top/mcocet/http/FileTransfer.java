@@ -0,0 +1,73 @@
+// src/top/mcocet/http/FileTransfer.java
+package top.mcocet.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class FileTransfer {
+    private final long channelThreshold;
+    private final BufferPool buffers;
+
+    // 不小于 channelThreshold 的文件走 FileChannel 定位读取，复用池化的大缓冲区
+    public FileTransfer(long channelThreshold, int bufferSize) {
+        if (bufferSize <= 0) {
+            // 缓冲区为空时 channel.read 总是返回 0，send 会一直空转
+            throw new IllegalArgumentException("传输缓冲区大小必须大于 0: " + bufferSize);
+        }
+        this.channelThreshold = channelThreshold;
+        this.buffers = new BufferPool(bufferSize, 64, false);
+    }
+
+    public void send(Path path, long size, OutputStream os) throws IOException {
+        if (os instanceof ChannelOutput) {
+            ((ChannelOutput) os).transferFile(path, 0, size);
+            return;
+        }
+        if (channelThreshold <= 0 || size < channelThreshold) {
+            try (InputStream is = Files.newInputStream(path)) {
+                is.transferTo(os);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            send(channel, 0, size, os);
+        }
+    }
+
+    // 发送文件的一段；支持零拷贝的输出流直接交出文件区间，否则打开文件定位读取
+    public void send(Path path, long position, long count, OutputStream os) throws IOException {
+        if (os instanceof ChannelOutput) {
+            ((ChannelOutput) os).transferFile(path, position, count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            send(channel, position, count, os);
+        }
+    }
+
+    public void send(FileChannel channel, long position, long count, OutputStream os) throws IOException {
+        ByteBuffer buffer = buffers.acquire();
+        try {
+            byte[] array = buffer.array();
+            long end = position + count;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("文件在传输过程中被截断");
+                }
+                os.write(array, buffer.arrayOffset(), n);
+                position += n;
+            }
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+}
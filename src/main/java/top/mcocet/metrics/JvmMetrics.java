@@ -0,0 +1,63 @@
+// src/top/mcocet/metrics/JvmMetrics.java
+package top.mcocet.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * 进程级的 JVM 指标：GC 次数与暂停时间、线程分配的字节数、堆占用和 CPU 时间。
+ * 压测工具在测量开始和结束时各抓取一次，差值就是这段负载在服务器端造成的开销。
+ */
+public final class JvmMetrics {
+    private JvmMetrics() {
+    }
+
+    public static void register(ServerMetrics metrics) {
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        metrics.counter("motweb_jvm_gc_collections_total", "GC 次数（所有收集器合计）", () -> {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : collectors) {
+                total += Math.max(0, gc.getCollectionCount());
+            }
+            return total;
+        });
+        metrics.counter("motweb_jvm_gc_time_seconds_total", "GC 累计耗时（所有收集器合计）", () -> {
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : collectors) {
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            return millis / 1000.0;
+        });
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        metrics.gauge("motweb_jvm_heap_used_bytes", "已使用的堆内存", () -> memory.getHeapMemoryUsage().getUsed());
+        metrics.gauge("motweb_jvm_heap_committed_bytes", "已提交的堆内存", () -> memory.getHeapMemoryUsage().getCommitted());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        metrics.gauge("motweb_jvm_threads", "存活线程数", threads::getThreadCount);
+        // 只统计存活线程，线程退出后它分配的字节不再计入；工作线程和事件循环线程都是长期存在的
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+            if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled()) {
+                metrics.gauge("motweb_jvm_allocated_bytes", "存活线程累计分配的堆内存字节数", () -> {
+                    long total = 0;
+                    for (long bytes : allocation.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                        total += Math.max(0, bytes);
+                    }
+                    return total;
+                });
+            }
+        }
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean process = (com.sun.management.OperatingSystemMXBean) os;
+            metrics.counter("motweb_process_cpu_seconds_total", "进程占用的 CPU 时间",
+                    () -> Math.max(0, process.getProcessCpuTime()) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+// src/top/mcocet/metrics/LatencyHistogram.java
+package top.mcocet.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的延迟直方图（与 HdrHistogram 的分桶方式相同），单位为微秒。
+ * 每个 2 的幂区间再等分为 32 个子桶，相对误差约 3%；记录只做一次无锁自增，
+ * 计数按线程分散到多组桶上，避免多个工作线程争用同一个缓存行。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 超过约 76 小时的值计入最后一个桶
+    private static final int MAX_EXPONENT = 37;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final int stripeMask;
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        // 分组数取不小于 CPU 数的 2 的幂，最多 16 组
+        int cpus = Math.min(16, Runtime.getRuntime().availableProcessors());
+        int stripes = Integer.highestOneBit(Math.max(1, cpus - 1)) << 1;
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+    }
+
+    @SuppressWarnings("deprecation")
+    public void record(long micros) {
+        long value = Math.min(Math.max(0, micros), MAX_VALUE);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet(stripe * BUCKETS + index(value));
+        sum.add(value);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // 桶的下界
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    // 桶的代表值取区间中点
+    static long midpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return lowerBound(index) + ((1L << shift) >> 1);
+    }
+
+    /**
+     * 合并各组桶得到某一时刻的快照。与并发记录之间没有同步，
+     * 快照中的总数和分位数可能相差正在进行中的几次记录。
+     */
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        int stripes = stripeMask + 1;
+        for (int s = 0; s < stripes; s++) {
+            int base = s * BUCKETS;
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = counts.get(base + i);
+                merged[i] += c;
+                total += c;
+            }
+        }
+        return new Snapshot(merged, total, sum.sum());
+    }
+
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] buckets, long count, long sum) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        // 所有记录值之和（微秒）
+        public long getSum() {
+            return sum;
+        }
+
+        // 分位数对应的延迟（微秒），q 取 0 到 1；没有数据时返回 0
+        public long quantile(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return midpoint(i);
+                }
+            }
+            return midpoint(buckets.length - 1);
+        }
+
+        public long max() {
+            for (int i = buckets.length - 1; i >= 0; i--) {
+                if (buckets[i] > 0) {
+                    return midpoint(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+// src/top/mcocet/metrics/ServerMetrics.java
+package top.mcocet.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 服务器运行指标。请求路径上只有 LongAdder 自增和直方图的无锁记录，
+ * 汇总、分位数计算和文本格式化都在读取时进行。
+ * 其他组件的计数（缓存命中、队列深度等）通过 gauge/counter 注册，读取时才取值。
+ */
+public class ServerMetrics {
+    public enum MimeClass {
+        HTML("html"), CSS("css"), SCRIPT("script"), JSON("json"), TEXT("text"), IMAGE("image"),
+        FONT("font"), MEDIA("media"), OTHER("other"), NONE("none");
+
+        private final String label;
+
+        MimeClass(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // 只比较前缀，不创建新字符串
+        public static MimeClass of(String contentType) {
+            if (contentType == null || contentType.isEmpty()) {
+                return NONE;
+            }
+            if (startsWith(contentType, "text/html")) return HTML;
+            if (startsWith(contentType, "text/css")) return CSS;
+            if (contains(contentType, "javascript")) return SCRIPT;
+            if (contains(contentType, "json")) return JSON;
+            if (startsWith(contentType, "text/")) return TEXT;
+            if (startsWith(contentType, "image/")) return IMAGE;
+            if (startsWith(contentType, "font/") || contains(contentType, "woff")) return FONT;
+            if (startsWith(contentType, "audio/") || startsWith(contentType, "video/")) return MEDIA;
+            return OTHER;
+        }
+
+        private static boolean startsWith(String value, String prefix) {
+            return value.regionMatches(true, 0, prefix, 0, prefix.length());
+        }
+
+        private static boolean contains(String value, String part) {
+            int end = value.indexOf(';');
+            int limit = (end < 0 ? value.length() : end) - part.length();
+            for (int i = 0; i <= limit; i++) {
+                if (value.regionMatches(true, i, part, 0, part.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final int MAX_STATUS = 600;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // 下标为状态码，超出 100-599 的（例如处理器异常、未发送响应）记在 0 号槽位
+    private final LongAdder[] requestsByStatus = new LongAdder[MAX_STATUS];
+    private final LongAdder[] bytesByStatus = new LongAdder[MAX_STATUS];
+    private final LongAdder[] requestsByType = new LongAdder[MimeClass.values().length];
+    private final LongAdder[] bytesByType = new LongAdder[MimeClass.values().length];
+    // 下标为状态码的百位数，0 号同上
+    private final LatencyHistogram[] latency = new LatencyHistogram[6];
+    private final LongAdder inFlight = new LongAdder();
+    private final List<Sample> samples = new CopyOnWriteArrayList<>();
+
+    public ServerMetrics() {
+        for (int i = 0; i < MAX_STATUS; i++) {
+            requestsByStatus[i] = new LongAdder();
+            bytesByStatus[i] = new LongAdder();
+        }
+        for (int i = 0; i < requestsByType.length; i++) {
+            requestsByType[i] = new LongAdder();
+            bytesByType[i] = new LongAdder();
+        }
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    public void requestFinished(int status, String contentType, long bytes, long durationNanos) {
+        inFlight.decrement();
+        int slot = status >= 100 && status < MAX_STATUS ? status : 0;
+        requestsByStatus[slot].increment();
+        bytesByStatus[slot].add(bytes);
+        int type = MimeClass.of(contentType).ordinal();
+        requestsByType[type].increment();
+        bytesByType[type].add(bytes);
+        latency[slot / 100].record(durationNanos / 1000);
+    }
+
+    // 注册一个读取时取值的指标，例如队列深度或命中率
+    public void gauge(String name, String help, DoubleSupplier value) {
+        samples.add(new Sample(name, help, "gauge", value));
+    }
+
+    // 注册一个只增不减的计数，名称应以 _total 结尾
+    public void counter(String name, String help, DoubleSupplier value) {
+        samples.add(new Sample(name, help, "counter", value));
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getRequests() {
+        long total = 0;
+        for (LongAdder adder : requestsByStatus) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    // 有过请求的状态码及其请求数、字节数
+    public List<StatusCount> statusCounts() {
+        List<StatusCount> result = new ArrayList<>();
+        for (int i = 0; i < MAX_STATUS; i++) {
+            long count = requestsByStatus[i].sum();
+            if (count > 0) {
+                result.add(new StatusCount(i, count, bytesByStatus[i].sum()));
+            }
+        }
+        return result;
+    }
+
+    public List<TypeCount> typeCounts() {
+        List<TypeCount> result = new ArrayList<>();
+        for (MimeClass type : MimeClass.values()) {
+            long count = requestsByType[type.ordinal()].sum();
+            if (count > 0) {
+                result.add(new TypeCount(type, count, bytesByType[type.ordinal()].sum()));
+            }
+        }
+        return result;
+    }
+
+    // 按状态码类别（"2xx" 等）给出延迟快照，没有请求的类别省略
+    public List<LatencySummary> latencySummaries() {
+        List<LatencySummary> result = new ArrayList<>();
+        for (int i = 0; i < latency.length; i++) {
+            LatencyHistogram.Snapshot snapshot = latency[i].snapshot();
+            if (snapshot.getCount() > 0) {
+                result.add(new LatencySummary(i == 0 ? "none" : i + "xx", snapshot));
+            }
+        }
+        return result;
+    }
+
+    public List<Sample> getSamples() {
+        return samples;
+    }
+
+    // Prometheus 文本格式（0.0.4）
+    public void writePrometheus(StringBuilder out) {
+        header(out, "motweb_requests_in_flight", "正在处理的请求数", "gauge");
+        out.append("motweb_requests_in_flight ").append(getInFlight()).append('\n');
+
+        List<StatusCount> statuses = statusCounts();
+        header(out, "motweb_requests_total", "按状态码统计的请求数", "counter");
+        for (StatusCount s : statuses) {
+            out.append("motweb_requests_total{code=\"").append(statusLabel(s.status())).append("\"} ")
+                    .append(s.count()).append('\n');
+        }
+        header(out, "motweb_response_bytes_total", "按状态码统计的响应体字节数", "counter");
+        for (StatusCount s : statuses) {
+            out.append("motweb_response_bytes_total{code=\"").append(statusLabel(s.status())).append("\"} ")
+                    .append(s.bytes()).append('\n');
+        }
+
+        List<TypeCount> types = typeCounts();
+        header(out, "motweb_requests_by_type_total", "按内容类型统计的请求数", "counter");
+        for (TypeCount t : types) {
+            out.append("motweb_requests_by_type_total{type=\"").append(t.type().getLabel()).append("\"} ")
+                    .append(t.count()).append('\n');
+        }
+        header(out, "motweb_response_bytes_by_type_total", "按内容类型统计的响应体字节数", "counter");
+        for (TypeCount t : types) {
+            out.append("motweb_response_bytes_by_type_total{type=\"").append(t.type().getLabel()).append("\"} ")
+                    .append(t.bytes()).append('\n');
+        }
+
+        header(out, "motweb_request_duration_seconds", "按状态码类别统计的请求处理时间", "summary");
+        for (LatencySummary l : latencySummaries()) {
+            for (double q : QUANTILES) {
+                out.append("motweb_request_duration_seconds{class=\"").append(l.statusClass())
+                        .append("\",quantile=\"").append(q).append("\"} ")
+                        .append(l.snapshot().quantile(q) / 1e6).append('\n');
+            }
+            out.append("motweb_request_duration_seconds_sum{class=\"").append(l.statusClass()).append("\"} ")
+                    .append(l.snapshot().getSum() / 1e6).append('\n');
+            out.append("motweb_request_duration_seconds_count{class=\"").append(l.statusClass()).append("\"} ")
+                    .append(l.snapshot().getCount()).append('\n');
+        }
+
+        for (Sample sample : samples) {
+            header(out, sample.name(), sample.help(), sample.type());
+            out.append(sample.name()).append(' ').append(format(sample.value().getAsDouble())).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    public static String statusLabel(int status) {
+        return status == 0 ? "none" : Integer.toString(status);
+    }
+
+    // 整数值不带小数点输出
+    public static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    public record Sample(String name, String help, String type, DoubleSupplier value) {}
+
+    public record StatusCount(int status, long count, long bytes) {}
+
+    public record TypeCount(MimeClass type, long count, long bytes) {}
+
+    public record LatencySummary(String statusClass, LatencyHistogram.Snapshot snapshot) {}
+}
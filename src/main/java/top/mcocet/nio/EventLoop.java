@@ -0,0 +1,154 @@
+// src/top/mcocet/nio/EventLoop.java
+package top.mcocet.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 一个选择器线程，负责分配给它的全部连接的读写和请求处理。
+ * 处理器直接在本线程上执行，文件内容由发送队列异步写出，不会因客户端读得慢而阻塞；
+ * 需要读盘或压缩的请求先由工作线程完成准备（见 PreparableHandler），再通过 execute 回到本线程发送响应。
+ */
+final class EventLoop implements Runnable {
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private final NioHttpServer server;
+    private final Selector selector;
+    private final Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long now = System.nanoTime();
+    private long lastSweep = now;
+    private long dateSecond = -1;
+    private String date;
+
+    EventLoop(NioHttpServer server, int index) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, "nio-loop-" + index);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    // 由接收线程调用，连接在事件循环线程上注册
+    void assign(SocketChannel channel) {
+        incoming.add(channel);
+        selector.wakeup();
+    }
+
+    // 由其他线程调用，任务在下一次选择返回后在本线程上执行
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    long now() {
+        return now;
+    }
+
+    // 响应头中的 Date，每秒只格式化一次
+    String httpDate() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != dateSecond) {
+            date = HTTP_DATE.format(Instant.ofEpochSecond(second));
+            dateSecond = second;
+        }
+        return date;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(this::process, 1000);
+            } catch (IOException e) {
+                server.logger.severe("事件循环异常退出: " + e.getMessage());
+                break;
+            }
+            now = System.nanoTime();
+            registerIncoming();
+            runTasks();
+            if (now - lastSweep >= SWEEP_INTERVAL_NANOS) {
+                lastSweep = now;
+                closeIdle();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof HttpConnection) {
+                ((HttpConnection) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void process(SelectionKey key) {
+        now = System.nanoTime();
+        HttpConnection connection = (HttpConnection) key.attachment();
+        try {
+            if (key.isWritable()) {
+                connection.onWritable();
+            } else if (key.isReadable()) {
+                connection.onReadable();
+            }
+        } catch (CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void registerIncoming() {
+        SocketChannel channel;
+        while ((channel = incoming.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new HttpConnection(server, this, channel, key));
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                server.connectionClosed();
+            }
+        }
+    }
+
+    // 超过 idleTimeout 没有任何读写进展的连接直接关闭，包括请求头没发完或不读取响应的客户端
+    private void closeIdle() {
+        long deadline = now - server.idleTimeoutNanos;
+        for (SelectionKey key : selector.keys()) {
+            HttpConnection connection = (HttpConnection) key.attachment();
+            if (connection != null && connection.lastActive - deadline < 0) {
+                connection.close();
+            }
+        }
+    }
+}
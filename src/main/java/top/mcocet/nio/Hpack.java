@@ -0,0 +1,250 @@
+// src/top/mcocet/nio/Hpack.java
+package top.mcocet.nio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPACK（RFC 7541）编解码共用的部分：静态表、动态表和 Huffman 编码。
+ * 头部名称和值按 ISO-8859-1 处理，与 HTTP/1.1 解析器一致。
+ */
+final class Hpack {
+    static final int DEFAULT_TABLE_SIZE = 4096;
+    private static final int ENTRY_OVERHEAD = 32;
+
+    static final String[][] STATIC_TABLE = {
+            {":authority", ""}, {":method", "GET"}, {":method", "POST"}, {":path", "/"},
+            {":path", "/index.html"}, {":scheme", "http"}, {":scheme", "https"}, {":status", "200"},
+            {":status", "204"}, {":status", "206"}, {":status", "304"}, {":status", "400"},
+            {":status", "404"}, {":status", "500"}, {"accept-charset", ""}, {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""}, {"accept-ranges", ""}, {"accept", ""}, {"access-control-allow-origin", ""},
+            {"age", ""}, {"allow", ""}, {"authorization", ""}, {"cache-control", ""},
+            {"content-disposition", ""}, {"content-encoding", ""}, {"content-language", ""}, {"content-length", ""},
+            {"content-location", ""}, {"content-range", ""}, {"content-type", ""}, {"cookie", ""},
+            {"date", ""}, {"etag", ""}, {"expect", ""}, {"expires", ""},
+            {"from", ""}, {"host", ""}, {"if-match", ""}, {"if-modified-since", ""},
+            {"if-none-match", ""}, {"if-range", ""}, {"if-unmodified-since", ""}, {"last-modified", ""},
+            {"link", ""}, {"location", ""}, {"max-forwards", ""}, {"proxy-authenticate", ""},
+            {"proxy-authorization", ""}, {"range", ""}, {"referer", ""}, {"refresh", ""},
+            {"retry-after", ""}, {"server", ""}, {"set-cookie", ""}, {"strict-transport-security", ""},
+            {"transfer-encoding", ""}, {"user-agent", ""}, {"vary", ""}, {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    // 名称到静态表中第一个同名条目的下标（从 1 开始）
+    static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+
+    // RFC 7541 附录 B 的 Huffman 码是规范 Huffman 码，由各符号的码长即可还原出码字
+    private static final int[] CODE_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23, 24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25, 19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23, 26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+            30 // EOS
+    };
+    private static final int EOS = 256;
+    private static final int MAX_CODE_LENGTH = 30;
+    private static final int[] CODES = new int[257];
+    // 解码表：每种码长的第一个码字、符号数量和在 SYMBOLS 中的起始位置
+    private static final int[] FIRST_CODE = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] COUNT = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] OFFSET = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] SYMBOLS = new int[257];
+
+    static {
+        for (int i = STATIC_TABLE.length; i > 0; i--) {
+            STATIC_NAMES.put(STATIC_TABLE[i - 1][0], i);
+        }
+
+        for (int length : CODE_LENGTHS) {
+            COUNT[length]++;
+        }
+        int code = 0;
+        int offset = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            FIRST_CODE[length] = code;
+            OFFSET[length] = offset;
+            code = (code + COUNT[length]) << 1;
+            offset += COUNT[length];
+        }
+        int[] next = FIRST_CODE.clone();
+        int[] slot = OFFSET.clone();
+        for (int symbol = 0; symbol < CODE_LENGTHS.length; symbol++) {
+            int length = CODE_LENGTHS[symbol];
+            CODES[symbol] = next[length]++;
+            SYMBOLS[slot[length]++] = symbol;
+        }
+    }
+
+    private Hpack() {
+    }
+
+    static int entrySize(String name, String value) {
+        return name.length() + value.length() + ENTRY_OVERHEAD;
+    }
+
+    static int huffmanLength(String s) {
+        long bits = 0;
+        for (int i = 0; i < s.length(); i++) {
+            bits += CODE_LENGTHS[s.charAt(i) & 0xff];
+        }
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    // 编码结果写入 dst[offset...]，调用方保证空间足够（huffmanLength）
+    static int huffmanEncode(String s, byte[] dst, int offset) {
+        long bits = 0;
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            int symbol = s.charAt(i) & 0xff;
+            int length = CODE_LENGTHS[symbol];
+            bits = (bits << length) | CODES[symbol];
+            count += length;
+            while (count >= 8) {
+                count -= 8;
+                dst[offset++] = (byte) (bits >>> count);
+            }
+        }
+        if (count > 0) {
+            // 不足一字节的部分用 EOS 的高位（全 1）填充
+            dst[offset++] = (byte) ((bits << (8 - count)) | (0xff >>> count));
+        }
+        return offset;
+    }
+
+    static String huffmanDecode(byte[] src, int offset, int length) throws Http2Exception {
+        StringBuilder sb = new StringBuilder(length + (length >> 1));
+        int code = 0;
+        int bits = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int b = src[i] & 0xff;
+            for (int shift = 7; shift >= 0; shift--) {
+                code = (code << 1) | ((b >>> shift) & 1);
+                bits++;
+                int index = code - FIRST_CODE[bits];
+                if (index < COUNT[bits]) {
+                    int symbol = SYMBOLS[OFFSET[bits] + index];
+                    if (symbol == EOS) {
+                        throw Http2Exception.compression("Huffman 编码中出现 EOS");
+                    }
+                    sb.append((char) symbol);
+                    code = 0;
+                    bits = 0;
+                } else if (bits == MAX_CODE_LENGTH) {
+                    throw Http2Exception.compression("无效的 Huffman 编码");
+                }
+            }
+        }
+        // 结尾只能是不超过 7 位的 EOS 前缀
+        if (bits > 7 || code != (1 << bits) - 1) {
+            throw Http2Exception.compression("无效的 Huffman 填充");
+        }
+        return sb.toString();
+    }
+
+    static String latin1(byte[] src, int offset, int length) {
+        return new String(src, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 动态表，按 FIFO 淘汰。下标 0 是最新插入的条目，对应 HPACK 中的索引 62。
+     */
+    static final class DynamicTable {
+        private String[] names = new String[16];
+        private String[] values = new String[16];
+        private int head;
+        private int count;
+        private int size;
+        private int maxSize = DEFAULT_TABLE_SIZE;
+
+        int length() {
+            return count;
+        }
+
+        String name(int index) {
+            return names[slot(index)];
+        }
+
+        String value(int index) {
+            return values[slot(index)];
+        }
+
+        int getMaxSize() {
+            return maxSize;
+        }
+
+        void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            evict(0);
+        }
+
+        void add(String name, String value) {
+            int entry = entrySize(name, value);
+            if (entry > maxSize) {
+                // 条目比整个表还大时表被清空，条目本身也不插入
+                evict(maxSize);
+                return;
+            }
+            evict(entry);
+            if (count == names.length) {
+                grow();
+            }
+            head = (head - 1) & (names.length - 1);
+            names[head] = name;
+            values[head] = value;
+            count++;
+            size += entry;
+        }
+
+        // 查找完全相同的条目，返回下标，找不到时返回 -1
+        int find(String name, String value) {
+            for (int i = 0; i < count; i++) {
+                int s = slot(i);
+                if (names[s].equals(name) && values[s].equals(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int findName(String name) {
+            for (int i = 0; i < count; i++) {
+                if (names[slot(i)].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int slot(int index) {
+            return (head + index) & (names.length - 1);
+        }
+
+        private void evict(int needed) {
+            while (count > 0 && size + needed > maxSize) {
+                int last = slot(count - 1);
+                size -= entrySize(names[last], values[last]);
+                names[last] = null;
+                values[last] = null;
+                count--;
+            }
+        }
+
+        private void grow() {
+            String[] newNames = new String[names.length * 2];
+            String[] newValues = new String[values.length * 2];
+            for (int i = 0; i < count; i++) {
+                newNames[i] = names[slot(i)];
+                newValues[i] = values[slot(i)];
+            }
+            names = newNames;
+            values = newValues;
+            head = 0;
+        }
+    }
+}
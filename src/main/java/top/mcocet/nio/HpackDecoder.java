@@ -0,0 +1,142 @@
+// src/top/mcocet/nio/HpackDecoder.java
+package top.mcocet.nio;
+
+import java.util.List;
+
+/**
+ * 解码一个完整的头部块。每个连接一个实例，动态表在同一连接的所有头部块之间共享，
+ * 因此被拒绝的请求的头部块也必须完整解码。
+ */
+final class HpackDecoder {
+    private final Hpack.DynamicTable table = new Hpack.DynamicTable();
+    private final int maxTableSize;
+    private final int maxHeaderListSize;
+    private byte[] block;
+    private int pos;
+    private int limit;
+
+    HpackDecoder(int maxTableSize, int maxHeaderListSize) {
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+        table.setMaxSize(maxTableSize);
+    }
+
+    /**
+     * 名称和值交替追加到 out。头部总大小超过 maxHeaderListSize 时继续解码以维持动态表，
+     * 但不再追加，并返回 false。
+     */
+    boolean decode(byte[] src, int length, List<String> out) throws Http2Exception {
+        this.block = src;
+        this.pos = 0;
+        this.limit = length;
+        int listSize = 0;
+        boolean fieldSeen = false;
+        boolean complete = true;
+        try {
+            while (pos < limit) {
+                int b = block[pos] & 0xff;
+                String name;
+                String value;
+                if ((b & 0x80) != 0) {
+                    int index = readInt(7);
+                    name = name(index);
+                    value = value(index);
+                } else if ((b & 0xc0) == 0x40) {
+                    int index = readInt(6);
+                    name = index == 0 ? readString() : name(index);
+                    value = readString();
+                    table.add(name, value);
+                } else if ((b & 0xe0) == 0x20) {
+                    // 动态表大小更新只能出现在头部块开头
+                    if (fieldSeen) {
+                        throw Http2Exception.compression("动态表大小更新不在头部块开头");
+                    }
+                    int size = readInt(5);
+                    if (size > maxTableSize) {
+                        throw Http2Exception.compression("动态表大小超出 SETTINGS_HEADER_TABLE_SIZE");
+                    }
+                    table.setMaxSize(size);
+                    continue;
+                } else {
+                    // 不索引（0000）和永不索引（0001）的字面量
+                    int index = readInt(4);
+                    name = index == 0 ? readString() : name(index);
+                    value = readString();
+                }
+                fieldSeen = true;
+                listSize += Hpack.entrySize(name, value);
+                if (listSize > maxHeaderListSize) {
+                    complete = false;
+                } else {
+                    out.add(name);
+                    out.add(value);
+                }
+            }
+        } finally {
+            block = null;
+        }
+        return complete;
+    }
+
+    private String name(int index) throws Http2Exception {
+        if (index <= 0) {
+            throw Http2Exception.compression("无效的头部索引 " + index);
+        }
+        if (index <= Hpack.STATIC_TABLE.length) {
+            return Hpack.STATIC_TABLE[index - 1][0];
+        }
+        int dynamic = index - Hpack.STATIC_TABLE.length - 1;
+        if (dynamic >= table.length()) {
+            throw Http2Exception.compression("无效的头部索引 " + index);
+        }
+        return table.name(dynamic);
+    }
+
+    private String value(int index) {
+        if (index <= Hpack.STATIC_TABLE.length) {
+            return Hpack.STATIC_TABLE[index - 1][1];
+        }
+        return table.value(index - Hpack.STATIC_TABLE.length - 1);
+    }
+
+    private int readInt(int prefixBits) throws Http2Exception {
+        int mask = (1 << prefixBits) - 1;
+        int value = block[pos++] & mask;
+        if (value < mask) {
+            return value;
+        }
+        int shift = 0;
+        while (true) {
+            if (pos >= limit) {
+                throw Http2Exception.compression("整数编码不完整");
+            }
+            int b = block[pos++] & 0xff;
+            value += (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+            if (shift > 21) {
+                throw Http2Exception.compression("整数超出范围");
+            }
+        }
+        if (value < 0) {
+            throw Http2Exception.compression("整数超出范围");
+        }
+        return value;
+    }
+
+    private String readString() throws Http2Exception {
+        if (pos >= limit) {
+            throw Http2Exception.compression("字符串编码不完整");
+        }
+        boolean huffman = (block[pos] & 0x80) != 0;
+        int length = readInt(7);
+        if (length > limit - pos) {
+            throw Http2Exception.compression("字符串长度超出头部块");
+        }
+        String s = huffman ? Hpack.huffmanDecode(block, pos, length) : Hpack.latin1(block, pos, length);
+        pos += length;
+        return s;
+    }
+}
@@ -0,0 +1,172 @@
+// src/top/mcocet/nio/HpackEncoder.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把响应头编码为头部块。Content-Type、Cache-Control、Server 这类在响应之间重复的字段插入动态表，
+ * 之后的响应只需一个字节的索引；每个响应都不同的字段不插入，避免把有用的条目挤出去。
+ * 字符串在 Huffman 编码更短时使用 Huffman 编码。
+ */
+final class HpackEncoder {
+    // HTTP/2 禁止的逐跳字段，处理器按 HTTP/1.1 习惯设置的这些字段直接丢弃
+    static final Set<String> CONNECTION_HEADERS =
+            Set.of("connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+    private static final Set<String> NOT_INDEXED =
+            Set.of("content-length", "content-range", "etag", "last-modified", "date", "age", "expires",
+                    "location", "set-cookie");
+
+    private final Hpack.DynamicTable table = new Hpack.DynamicTable();
+    private byte[] buf = new byte[1024];
+    private int len;
+    private int pendingTableSize = -1;
+
+    // 对端 SETTINGS_HEADER_TABLE_SIZE 变化时调用，新大小在下一个头部块开头通知对端
+    void setMaxTableSize(int size) {
+        int effective = Math.min(size, Hpack.DEFAULT_TABLE_SIZE);
+        if (effective != table.getMaxSize()) {
+            table.setMaxSize(effective);
+            pendingTableSize = effective;
+        }
+    }
+
+    byte[] buffer() {
+        return buf;
+    }
+
+    int encode(int status, Headers headers) {
+        len = 0;
+        if (pendingTableSize >= 0) {
+            writeInt(0x20, 5, pendingTableSize);
+            pendingTableSize = -1;
+        }
+        String code = Integer.toString(status);
+        int statusIndex = staticIndex(":status", code);
+        if (statusIndex > 0) {
+            writeInt(0x80, 7, statusIndex);
+        } else {
+            writeInt(0x00, 4, Hpack.STATIC_NAMES.get(":status"));
+            writeString(code);
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (CONNECTION_HEADERS.contains(name)) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                field(name, sanitize(value));
+            }
+        }
+        return len;
+    }
+
+    private void field(String name, String value) {
+        int dynamic = table.find(name, value);
+        if (dynamic >= 0) {
+            writeInt(0x80, 7, dynamicIndex(dynamic));
+            return;
+        }
+        int exact = staticIndex(name, value);
+        if (exact > 0) {
+            writeInt(0x80, 7, exact);
+            return;
+        }
+        Integer staticName = Hpack.STATIC_NAMES.get(name);
+        int nameIndex = staticName != null ? staticName : 0;
+        if (nameIndex == 0) {
+            int dynamicName = table.findName(name);
+            if (dynamicName >= 0) {
+                nameIndex = dynamicIndex(dynamicName);
+            }
+        }
+        if (NOT_INDEXED.contains(name)) {
+            writeInt(0x00, 4, nameIndex);
+        } else {
+            writeInt(0x40, 6, nameIndex);
+            table.add(name, value);
+        }
+        if (nameIndex == 0) {
+            writeString(name);
+        }
+        writeString(value);
+    }
+
+    private static int dynamicIndex(int index) {
+        return Hpack.STATIC_TABLE.length + 1 + index;
+    }
+
+    private static int staticIndex(String name, String value) {
+        Integer first = Hpack.STATIC_NAMES.get(name);
+        if (first == null) {
+            return -1;
+        }
+        for (int i = first - 1; i < Hpack.STATIC_TABLE.length && Hpack.STATIC_TABLE[i][0].equals(name); i++) {
+            if (Hpack.STATIC_TABLE[i][1].equals(value)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // 与 HTTP/1.1 输出一致：换行替换为空格，超出 Latin-1 的字符替换为 '?'
+    private static String sanitize(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c > 0xff) {
+                char[] chars = value.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    if (chars[j] == '\r' || chars[j] == '\n') {
+                        chars[j] = ' ';
+                    } else if (chars[j] > 0xff) {
+                        chars[j] = '?';
+                    }
+                }
+                return new String(chars);
+            }
+        }
+        return value;
+    }
+
+    private void writeString(String s) {
+        int huffman = Hpack.huffmanLength(s);
+        if (huffman < s.length()) {
+            writeInt(0x80, 7, huffman);
+            ensure(huffman);
+            len = Hpack.huffmanEncode(s, buf, len);
+        } else {
+            writeInt(0x00, 7, s.length());
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                buf[len++] = (byte) s.charAt(i);
+            }
+        }
+    }
+
+    private void writeInt(int pattern, int prefixBits, int value) {
+        ensure(6);
+        int mask = (1 << prefixBits) - 1;
+        if (value < mask) {
+            buf[len++] = (byte) (pattern | value);
+            return;
+        }
+        buf[len++] = (byte) (pattern | mask);
+        value -= mask;
+        while (value >= 0x80) {
+            buf[len++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf[len++] = (byte) value;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
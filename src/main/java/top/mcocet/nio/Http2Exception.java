@@ -0,0 +1,50 @@
+// src/top/mcocet/nio/Http2Exception.java
+package top.mcocet.nio;
+
+/**
+ * HTTP/2 协议错误。streamId 为 0 表示连接错误，需要发送 GOAWAY 并关闭连接；
+ * 否则只重置对应的流。
+ */
+final class Http2Exception extends Exception {
+    static final int NO_ERROR = 0x0;
+    static final int PROTOCOL_ERROR = 0x1;
+    static final int INTERNAL_ERROR = 0x2;
+    static final int FLOW_CONTROL_ERROR = 0x3;
+    static final int STREAM_CLOSED = 0x5;
+    static final int FRAME_SIZE_ERROR = 0x6;
+    static final int REFUSED_STREAM = 0x7;
+    static final int CANCEL = 0x8;
+    static final int COMPRESSION_ERROR = 0x9;
+    static final int ENHANCE_YOUR_CALM = 0xb;
+
+    private static final long serialVersionUID = 1L;
+
+    private final int errorCode;
+    private final int streamId;
+
+    Http2Exception(int errorCode, int streamId, String message) {
+        super(message, null, false, false);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    static Http2Exception connection(int errorCode, String message) {
+        return new Http2Exception(errorCode, 0, message);
+    }
+
+    static Http2Exception stream(int errorCode, int streamId, String message) {
+        return new Http2Exception(errorCode, streamId, message);
+    }
+
+    static Http2Exception compression(String message) {
+        return new Http2Exception(COMPRESSION_ERROR, 0, message);
+    }
+
+    int getErrorCode() {
+        return errorCode;
+    }
+
+    int getStreamId() {
+        return streamId;
+    }
+}
@@ -0,0 +1,175 @@
+// src/top/mcocet/nio/Http2Exchange.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把一个 HTTP/2 流包装成 HttpExchange。处理器看到的请求头与 HTTP/1.1 相同（:authority 转换为 Host），
+ * 响应头中的逐跳字段在编码时丢弃；处理器设置 Connection: close 时会话发送 GOAWAY，不再接受新流。
+ */
+final class Http2Exchange extends HttpExchange {
+    private final Http2Session session;
+    private final Http2Stream stream;
+    private final URI uri;
+    private final NioContext context;
+    private final Headers responseHeaders = new Headers();
+    private final InputStream requestBody;
+    private Map<String, Object> attributes;
+    private InputStream requestStream;
+    private OutputStream responseStream;
+    private int responseCode = -1;
+    private boolean sent;
+
+    Http2Exchange(Http2Session session, Http2Stream stream, URI uri, NioContext context, byte[] body) {
+        this.session = session;
+        this.stream = stream;
+        this.uri = uri;
+        this.context = context;
+        this.requestBody = body != null ? new ByteArrayInputStream(body) : InputStream.nullInputStream();
+    }
+
+    boolean isSent() {
+        return sent;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return stream.requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return stream.method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public void close() {
+        try {
+            getRequestBody().close();
+            if (responseStream != null && responseStream != stream) {
+                responseStream.close();
+            }
+        } catch (IOException ignored) {
+        }
+        stream.close();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestStream != null ? requestStream : requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseStream != null ? responseStream : stream;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (sent) {
+            throw new IOException("响应头已经发送");
+        }
+        if (stream.reset) {
+            throw new IOException("流已被重置");
+        }
+        sent = true;
+        responseCode = rCode;
+
+        // 长度的含义与 HttpServer 相同：大于 0 为固定长度，0 为长度未知，-1 表示没有响应体
+        boolean noBody = "HEAD".equals(stream.method) || rCode == 304 || rCode == 204;
+        if (noBody) {
+            if (responseLength > 0 && rCode != 304) {
+                responseHeaders.set("Content-Length", Long.toString(responseLength));
+            }
+        } else if (responseLength > 0) {
+            responseHeaders.set("Content-Length", Long.toString(responseLength));
+        } else if (responseLength < 0) {
+            responseHeaders.set("Content-Length", "0");
+        }
+        String connectionHeader = responseHeaders.getFirst("Connection");
+        if (connectionHeader != null && connectionHeader.equalsIgnoreCase("close")) {
+            session.drain();
+        }
+        if (!responseHeaders.containsKey("Date")) {
+            responseHeaders.set("Date", session.httpDate());
+        }
+        boolean endStream = noBody || responseLength < 0;
+        session.writeHeaders(stream, rCode, responseHeaders, endStream);
+        stream.begin(responseLength, endStream);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return session.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return session.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/2";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes != null ? attributes.get(name) : null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestStream = i;
+        }
+        if (o != null) {
+            responseStream = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
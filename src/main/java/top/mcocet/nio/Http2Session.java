@@ -0,0 +1,744 @@
+// src/top/mcocet/nio/Http2Session.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import top.mcocet.handler.PreparableHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条 HTTP/2 连接（RFC 9113）的帧处理，只由所属事件循环线程访问。
+ * 输入缓冲区和发送队列沿用 HttpConnection 的；请求头收齐后立即在本线程调用处理器（需要读盘或压缩的流
+ * 先交给工作线程准备，其他流照常处理），
+ * 响应体挂在各自的流上，由 writeData 按连接和流的发送窗口轮流切成 DATA 帧，
+ * 大文件不会阻塞同一连接上其他资源的传输。
+ */
+final class Http2Session {
+    static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    static final int FRAME_HEADER_LENGTH = 9;
+    // 接收和发送都使用协议规定的最小帧大小，便于多个流交替发送
+    static final int MAX_FRAME_SIZE = 16384;
+    private static final int MAX_CONCURRENT_STREAMS = 100;
+    // 每个时间窗口内允许客户端重置的流数，超出时视为 rapid reset 攻击，以 ENHANCE_YOUR_CALM 关闭连接
+    private static final int MAX_RESETS_PER_WINDOW = 200;
+    private static final long RESET_WINDOW_NANOS = 10_000_000_000L;
+    private static final int DEFAULT_WINDOW = 65535;
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    private final HttpConnection connection;
+    private final NioHttpServer server;
+    private final HpackDecoder decoder;
+    private final HpackEncoder encoder = new HpackEncoder();
+    private final Map<Integer, Http2Stream> streams = new HashMap<>();
+    private final ArrayDeque<Http2Stream> ready = new ArrayDeque<>();
+    private final byte[] frameHeader = new byte[FRAME_HEADER_LENGTH];
+    private final byte[] scratch = new byte[8];
+    private final List<String> fields = new ArrayList<>();
+
+    private boolean prefaceReceived;
+    private int lastStreamId;
+    private long sendWindow = DEFAULT_WINDOW;
+    private long initialWindow = DEFAULT_WINDOW;
+
+    // 正在接收的头部块（HEADERS 加若干 CONTINUATION）
+    private byte[] headerBlock = new byte[1024];
+    private int headerBlockLength;
+    private int headerStreamId;
+    private boolean headerEndStream;
+
+    // 发生连接错误，已发送 GOAWAY，剩余输入全部丢弃
+    private boolean failed;
+    // 不再接受新流，现有的流结束后关闭连接
+    private boolean draining;
+    // 已从 streams 移除、但准备任务还在工作线程池中的流，仍计入并发上限
+    private int resetPreparing;
+    private int resetCount;
+    private long resetWindowStart;
+
+    Http2Session(HttpConnection connection, NioHttpServer server) {
+        this.connection = connection;
+        this.server = server;
+        this.decoder = new HpackDecoder(Hpack.DEFAULT_TABLE_SIZE, server.maxHeaderSize);
+    }
+
+    // 通过 prior knowledge 建立的连接：发送服务器的 SETTINGS，等待客户端前言
+    void start() {
+        writeSettings();
+    }
+
+    /**
+     * 从 HTTP/1.1 升级（Upgrade: h2c）。HTTP2-Settings 的内容视为客户端的 SETTINGS，
+     * 升级请求本身作为流 1 处理，客户端此后仍要发送连接前言。
+     */
+    void startUpgraded(byte[] settings, String method, String target, Headers headers) throws Http2Exception {
+        applySettings(ByteBuffer.wrap(settings), 0, settings.length);
+        writeSettings();
+        Http2Stream stream = new Http2Stream(this, 1, initialWindow);
+        stream.method = method;
+        stream.path = target;
+        stream.requestHeaders.putAll(headers);
+        stream.remoteClosed = true;
+        streams.put(1, stream);
+        lastStreamId = 1;
+        dispatch(stream);
+    }
+
+    /**
+     * 处理 [start, end) 中完整到达的帧，返回处理到的位置。
+     * 发送队列超过上限时暂停，等写出后再继续，客户端的请求因此受 TCP 反压约束。
+     */
+    int read(ByteBuffer in, int start, int end) {
+        int p = start;
+        try {
+            if (!prefaceReceived) {
+                int n = Math.min(end - p, PREFACE.length);
+                for (int i = 0; i < n; i++) {
+                    if (in.get(p + i) != PREFACE[i]) {
+                        throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "无效的连接前言");
+                    }
+                }
+                if (n < PREFACE.length) {
+                    return p;
+                }
+                p += PREFACE.length;
+                prefaceReceived = true;
+            }
+            while (end - p >= FRAME_HEADER_LENGTH && !failed
+                    && connection.pendingOutput() < HttpConnection.OUTPUT_HIGH_WATER) {
+                int length = (in.get(p) & 0xff) << 16 | (in.get(p + 1) & 0xff) << 8 | (in.get(p + 2) & 0xff);
+                int type = in.get(p + 3) & 0xff;
+                int flags = in.get(p + 4) & 0xff;
+                int streamId = in.getInt(p + 5) & 0x7fffffff;
+                if (length > MAX_FRAME_SIZE) {
+                    throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "帧长度 " + length + " 超出 SETTINGS_MAX_FRAME_SIZE");
+                }
+                if (end - p - FRAME_HEADER_LENGTH < length) {
+                    break;
+                }
+                int payload = p + FRAME_HEADER_LENGTH;
+                p = payload + length;
+                try {
+                    frame(in, payload, length, type, flags, streamId);
+                } catch (Http2Exception e) {
+                    if (e.getStreamId() == 0) {
+                        throw e;
+                    }
+                    resetStream(e.getStreamId(), e.getErrorCode());
+                }
+            }
+        } catch (Http2Exception e) {
+            server.logger.warning("HTTP/2 协议错误: " + e.getMessage() + ", 客户端: "
+                    + connection.getRemoteAddress().getAddress().getHostAddress());
+            failed = true;
+            writeGoAway(e.getErrorCode());
+            connection.closeAfterFlush();
+            return end;
+        }
+        if (draining && streams.isEmpty()) {
+            connection.closeAfterFlush();
+        }
+        return p;
+    }
+
+    private void frame(ByteBuffer in, int pos, int length, int type, int flags, int streamId) throws Http2Exception {
+        if (headerStreamId != 0 && type != CONTINUATION) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "头部块未结束时收到其他帧");
+        }
+        switch (type) {
+            case DATA:
+                onData(in, pos, length, flags, streamId);
+                break;
+            case HEADERS:
+                onHeaders(in, pos, length, flags, streamId);
+                break;
+            case PRIORITY:
+                if (streamId == 0) {
+                    throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "PRIORITY 帧的流 ID 为 0");
+                }
+                if (length != 5) {
+                    throw Http2Exception.stream(Http2Exception.FRAME_SIZE_ERROR, streamId, "PRIORITY 帧长度错误");
+                }
+                // 优先级只是建议，按轮转发送即可
+                break;
+            case RST_STREAM:
+                onRstStream(in, pos, length, streamId);
+                break;
+            case SETTINGS:
+                onSettings(in, pos, length, flags, streamId);
+                break;
+            case PUSH_PROMISE:
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "客户端不能发送 PUSH_PROMISE");
+            case PING:
+                onPing(in, pos, length, flags, streamId);
+                break;
+            case GOAWAY:
+                if (streamId != 0) {
+                    throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "GOAWAY 帧的流 ID 不为 0");
+                }
+                // 客户端不再发起新流，已有的流发送完后关闭连接
+                draining = true;
+                break;
+            case WINDOW_UPDATE:
+                onWindowUpdate(in, pos, length, streamId);
+                break;
+            case CONTINUATION:
+                onContinuation(in, pos, length, flags, streamId);
+                break;
+            default:
+                // 未知类型的帧必须忽略
+                break;
+        }
+    }
+
+    private void onData(ByteBuffer in, int pos, int length, int flags, int streamId) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "DATA 帧的流 ID 为 0");
+        }
+        int start = pos;
+        int end = pos + length;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length < 1) {
+                throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "DATA 帧长度错误");
+            }
+            end -= in.get(pos) & 0xff;
+            start++;
+            if (end < start) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "填充长度超出帧长度");
+            }
+        }
+        // 请求体不需要背压，收到多少就立即归还多少连接窗口
+        if (length > 0) {
+            writeWindowUpdate(0, length);
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.remoteClosed) {
+            if (streamId > lastStreamId) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "DATA 帧属于未打开的流");
+            }
+            throw Http2Exception.stream(Http2Exception.STREAM_CLOSED, streamId, "DATA 帧属于已关闭的流");
+        }
+        if (!stream.appendBody(in, start, end - start, server.maxRequestBody)) {
+            reject(stream, 413);
+            return;
+        }
+        if ((flags & FLAG_END_STREAM) != 0) {
+            stream.remoteClosed = true;
+            dispatch(stream);
+        } else if (length > 0) {
+            writeWindowUpdate(streamId, length);
+        }
+    }
+
+    private void onHeaders(ByteBuffer in, int pos, int length, int flags, int streamId) throws Http2Exception {
+        if (streamId == 0 || (streamId & 1) == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "HEADERS 帧的流 ID 无效: " + streamId);
+        }
+        int start = pos;
+        int end = pos + length;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length < 1) {
+                throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "HEADERS 帧长度错误");
+            }
+            end -= in.get(pos) & 0xff;
+            start++;
+        }
+        if ((flags & FLAG_PRIORITY) != 0) {
+            start += 5;
+        }
+        if (end < start) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "HEADERS 帧长度错误");
+        }
+        headerStreamId = streamId;
+        headerEndStream = (flags & FLAG_END_STREAM) != 0;
+        headerBlockLength = 0;
+        appendHeaderBlock(in, start, end - start);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            headerBlockComplete();
+        }
+    }
+
+    private void onContinuation(ByteBuffer in, int pos, int length, int flags, int streamId) throws Http2Exception {
+        if (streamId == 0 || streamId != headerStreamId) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "意外的 CONTINUATION 帧");
+        }
+        appendHeaderBlock(in, pos, length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            headerBlockComplete();
+        }
+    }
+
+    private void appendHeaderBlock(ByteBuffer in, int pos, int length) throws Http2Exception {
+        // 压缩后的头部块不会比解码结果大，超过 maxHeaderSize 的直接视为滥用
+        if (headerBlockLength + length > server.maxHeaderSize) {
+            throw Http2Exception.connection(Http2Exception.ENHANCE_YOUR_CALM, "头部块超过 maxHeaderSize");
+        }
+        if (headerBlockLength + length > headerBlock.length) {
+            headerBlock = Arrays.copyOf(headerBlock, Math.max(headerBlock.length * 2, headerBlockLength + length));
+        }
+        in.get(pos, headerBlock, headerBlockLength, length);
+        headerBlockLength += length;
+    }
+
+    private void headerBlockComplete() throws Http2Exception {
+        int streamId = headerStreamId;
+        headerStreamId = 0;
+        fields.clear();
+        boolean complete = decoder.decode(headerBlock, headerBlockLength, fields);
+
+        Http2Stream existing = streams.get(streamId);
+        if (existing != null) {
+            // 请求体之后的 trailer，内容忽略
+            if (existing.remoteClosed || !headerEndStream) {
+                throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "trailer 必须结束流");
+            }
+            existing.remoteClosed = true;
+            dispatch(existing);
+            return;
+        }
+        if (streamId <= lastStreamId) {
+            throw Http2Exception.connection(Http2Exception.STREAM_CLOSED, "HEADERS 帧属于已关闭的流");
+        }
+        lastStreamId = streamId;
+        if (draining) {
+            // 已通知客户端不再接受新流，头部块已解码，忽略这个流即可
+            return;
+        }
+        if (streams.size() + resetPreparing >= MAX_CONCURRENT_STREAMS) {
+            throw Http2Exception.stream(Http2Exception.REFUSED_STREAM, streamId, "并发流超过上限");
+        }
+        Http2Stream stream = new Http2Stream(this, streamId, initialWindow);
+        streams.put(streamId, stream);
+        stream.remoteClosed = headerEndStream;
+        if (!complete) {
+            reject(stream, 431);
+            return;
+        }
+        String error = stream.setRequestHeaders(fields);
+        if (error != null) {
+            streams.remove(streamId);
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, error);
+        }
+        if (stream.contentLength > server.maxRequestBody) {
+            reject(stream, 413);
+            return;
+        }
+        if (stream.remoteClosed) {
+            dispatch(stream);
+        }
+    }
+
+    private void onRstStream(ByteBuffer in, int pos, int length, int streamId) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "RST_STREAM 帧的流 ID 为 0");
+        }
+        if (length != 4) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "RST_STREAM 帧长度错误");
+        }
+        if (streamId > lastStreamId) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "RST_STREAM 帧属于未打开的流");
+        }
+        long now = connection.now();
+        if (now - resetWindowStart > RESET_WINDOW_NANOS) {
+            resetWindowStart = now;
+            resetCount = 0;
+        }
+        if (++resetCount > MAX_RESETS_PER_WINDOW) {
+            throw Http2Exception.connection(Http2Exception.ENHANCE_YOUR_CALM, "客户端重置流过于频繁");
+        }
+        detach(streams.remove(streamId));
+    }
+
+    // 流被重置后不再发送；准备任务尚未完成的流等任务结束后才从并发计数中扣除
+    private void detach(Http2Stream stream) {
+        if (stream != null) {
+            stream.reset = true;
+            stream.release();
+            if (stream.preparing) {
+                resetPreparing++;
+            }
+        }
+    }
+
+    private void onSettings(ByteBuffer in, int pos, int length, int flags, int streamId) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "SETTINGS 帧的流 ID 不为 0");
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (length != 0) {
+                throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "SETTINGS 确认帧不能有负载");
+            }
+            return;
+        }
+        applySettings(in, pos, length);
+        writeFrameHeader(0, SETTINGS, FLAG_ACK, 0);
+    }
+
+    private void applySettings(ByteBuffer in, int pos, int length) throws Http2Exception {
+        if (length % 6 != 0) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "SETTINGS 帧长度错误");
+        }
+        for (int p = pos; p < pos + length; p += 6) {
+            int id = in.getShort(p) & 0xffff;
+            long value = in.getInt(p + 2) & 0xffffffffL;
+            switch (id) {
+                case SETTINGS_HEADER_TABLE_SIZE:
+                    encoder.setMaxTableSize((int) Math.min(value, Integer.MAX_VALUE));
+                    break;
+                case SETTINGS_ENABLE_PUSH:
+                    if (value > 1) {
+                        throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "无效的 SETTINGS_ENABLE_PUSH");
+                    }
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value > MAX_WINDOW) {
+                        throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "SETTINGS_INITIAL_WINDOW_SIZE 超出范围");
+                    }
+                    long delta = value - initialWindow;
+                    initialWindow = value;
+                    for (Http2Stream stream : streams.values()) {
+                        stream.sendWindow += delta;
+                        if (stream.sendWindow > MAX_WINDOW) {
+                            throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "流的发送窗口溢出");
+                        }
+                        if (delta > 0) {
+                            schedule(stream);
+                        }
+                    }
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < MAX_FRAME_SIZE || value > 0xffffff) {
+                        throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "无效的 SETTINGS_MAX_FRAME_SIZE");
+                    }
+                    break;
+                default:
+                    // SETTINGS_MAX_CONCURRENT_STREAMS、SETTINGS_MAX_HEADER_LIST_SIZE 只约束服务器推送和请求方向，未知设置忽略
+                    break;
+            }
+        }
+    }
+
+    private void onPing(ByteBuffer in, int pos, int length, int flags, int streamId) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "PING 帧的流 ID 不为 0");
+        }
+        if (length != 8) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "PING 帧长度错误");
+        }
+        if ((flags & FLAG_ACK) == 0) {
+            in.get(pos, scratch, 0, 8);
+            writeFrameHeader(8, PING, FLAG_ACK, 0);
+            connection.put(scratch, 0, 8);
+        }
+    }
+
+    private void onWindowUpdate(ByteBuffer in, int pos, int length, int streamId) throws Http2Exception {
+        if (length != 4) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "WINDOW_UPDATE 帧长度错误");
+        }
+        int increment = in.getInt(pos) & 0x7fffffff;
+        if (streamId == 0) {
+            if (increment == 0) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "WINDOW_UPDATE 增量为 0");
+            }
+            sendWindow += increment;
+            if (sendWindow > MAX_WINDOW) {
+                throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "连接的发送窗口溢出");
+            }
+            return;
+        }
+        if (increment == 0) {
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "WINDOW_UPDATE 增量为 0");
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (streamId > lastStreamId) {
+                throw Http2Exception.connection(Http2Exception.PROTOCOL_ERROR, "WINDOW_UPDATE 帧属于未打开的流");
+            }
+            return;
+        }
+        stream.sendWindow += increment;
+        if (stream.sendWindow > MAX_WINDOW) {
+            throw Http2Exception.stream(Http2Exception.FLOW_CONTROL_ERROR, streamId, "流的发送窗口溢出");
+        }
+        schedule(stream);
+    }
+
+    private void dispatch(Http2Stream stream) {
+        connection.lastActive = connection.now();
+        URI uri;
+        try {
+            uri = new URI(stream.path);
+        } catch (URISyntaxException e) {
+            reject(stream, 400);
+            return;
+        }
+        String path = uri.getPath();
+        NioContext context = server.findContext(path != null && !path.isEmpty() ? path : "/");
+        Http2Exchange exchange = new Http2Exchange(this, stream, uri, context, stream.body());
+        if (context != null && context.getRequestHandler() instanceof PreparableHandler) {
+            Runnable task = ((PreparableHandler) context.getRequestHandler()).prepare(exchange);
+            if (task != null) {
+                stream.preparing = true;
+                connection.prepare(task, () -> {
+                    stream.preparing = false;
+                    if (stream.reset) {
+                        resetPreparing--;
+                    }
+                    respond(stream, exchange, uri, context);
+                });
+                return;
+            }
+        }
+        respond(stream, exchange, uri, context);
+    }
+
+    private void respond(Http2Stream stream, Http2Exchange exchange, URI uri, NioContext context) {
+        // 准备期间流可能已被客户端重置，或者连接已出错
+        if (stream.reset || this.failed) {
+            return;
+        }
+        boolean failed = false;
+        try {
+            if (context == null) {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                context.getRequestHandler().handle(exchange);
+            }
+        } catch (IOException | RuntimeException e) {
+            server.logger.warning("处理请求失败: " + uri + ", 错误: " + e);
+            failed = true;
+        }
+        if (stream.reset) {
+            return;
+        }
+        if (!exchange.isSent()) {
+            // 处理器没有发送任何响应
+            reject(stream, 500);
+        } else if (failed && !stream.endSent) {
+            resetStream(stream.id, Http2Exception.INTERNAL_ERROR);
+        } else {
+            stream.close();
+            closeIfDone(stream);
+        }
+    }
+
+    // 不经过处理器的错误响应；客户端还在发送请求体时一并重置流
+    private void reject(Http2Stream stream, int status) {
+        if (!stream.headersSent) {
+            Headers headers = new Headers();
+            headers.set("Content-Type", "text/plain; charset=UTF-8");
+            headers.set("Date", httpDate());
+            writeHeaders(stream, status, headers, true);
+            stream.begin(-1, true);
+        }
+        if (!stream.remoteClosed) {
+            resetStream(stream.id, Http2Exception.NO_ERROR);
+        } else {
+            closeIfDone(stream);
+        }
+    }
+
+    void writeHeaders(Http2Stream stream, int status, Headers headers, boolean endStream) {
+        int length = encoder.encode(status, headers);
+        byte[] block = encoder.buffer();
+        int offset = 0;
+        int type = HEADERS;
+        do {
+            int n = Math.min(length - offset, MAX_FRAME_SIZE);
+            int flags = offset + n == length ? FLAG_END_HEADERS : 0;
+            if (type == HEADERS && endStream) {
+                flags |= FLAG_END_STREAM;
+            }
+            writeFrameHeader(n, type, flags, stream.id);
+            connection.put(block, offset, n);
+            offset += n;
+            type = CONTINUATION;
+        } while (offset < length);
+    }
+
+    // 有数据待发送或输出已结束的流排到发送队列末尾
+    void schedule(Http2Stream stream) {
+        if (!stream.scheduled && !stream.reset && !stream.endSent) {
+            stream.scheduled = true;
+            ready.addLast(stream);
+        }
+    }
+
+    /**
+     * 按轮转从各个流取数据组成 DATA 帧，每帧不超过 MAX_FRAME_SIZE 和两级发送窗口。
+     * 流的窗口用尽时移出队列，等 WINDOW_UPDATE 再排入；连接窗口用尽时全部等待。
+     */
+    void writeData() throws IOException {
+        while (!ready.isEmpty() && connection.pendingOutput() < HttpConnection.OUTPUT_HIGH_WATER) {
+            Http2Stream stream = ready.peekFirst();
+            long available = stream.pendingBytes();
+            if (stream.reset || stream.endSent || !stream.headersSent) {
+                ready.pollFirst();
+                stream.scheduled = false;
+                continue;
+            }
+            if (available == 0) {
+                ready.pollFirst();
+                stream.scheduled = false;
+                if (stream.isFinished()) {
+                    if (stream.isTruncated()) {
+                        resetStream(stream.id, Http2Exception.INTERNAL_ERROR);
+                    } else {
+                        writeFrameHeader(0, DATA, FLAG_END_STREAM, stream.id);
+                        stream.endSent = true;
+                        closeIfDone(stream);
+                    }
+                }
+                continue;
+            }
+            if (sendWindow <= 0) {
+                return;
+            }
+            ready.pollFirst();
+            stream.scheduled = false;
+            int n = (int) Math.min(Math.min(available, MAX_FRAME_SIZE), Math.min(stream.sendWindow, sendWindow));
+            if (n <= 0) {
+                continue;
+            }
+            boolean last = n == available && stream.isFinished() && !stream.isTruncated();
+            writeFrameHeader(n, DATA, last ? FLAG_END_STREAM : 0, stream.id);
+            stream.drainTo(connection, n);
+            stream.sendWindow -= n;
+            sendWindow -= n;
+            if (last) {
+                stream.endSent = true;
+                closeIfDone(stream);
+            } else {
+                schedule(stream);
+            }
+        }
+    }
+
+    private void closeIfDone(Http2Stream stream) {
+        if (stream.endSent && stream.remoteClosed) {
+            streams.remove(stream.id);
+            stream.release();
+            if (draining && streams.isEmpty()) {
+                connection.closeAfterFlush();
+            }
+        }
+    }
+
+    private void resetStream(int streamId, int errorCode) {
+        writeFrameHeader(4, RST_STREAM, 0, streamId);
+        writeInt(errorCode);
+        detach(streams.remove(streamId));
+        if (draining && streams.isEmpty()) {
+            connection.closeAfterFlush();
+        }
+    }
+
+    // 处理器要求关闭连接：发送 GOAWAY，不再接受新流，已有的流发送完后关闭
+    void drain() {
+        if (!draining) {
+            draining = true;
+            writeGoAway(Http2Exception.NO_ERROR);
+        }
+    }
+
+    private void writeGoAway(int errorCode) {
+        writeFrameHeader(8, GOAWAY, 0, 0);
+        writeInt(lastStreamId);
+        writeInt(errorCode);
+    }
+
+    private void writeSettings() {
+        writeFrameHeader(12, SETTINGS, 0, 0);
+        writeSetting(SETTINGS_MAX_CONCURRENT_STREAMS, MAX_CONCURRENT_STREAMS);
+        writeSetting(SETTINGS_MAX_HEADER_LIST_SIZE, server.maxHeaderSize);
+    }
+
+    private void writeSetting(int id, int value) {
+        connection.put((byte) (id >>> 8));
+        connection.put((byte) id);
+        writeInt(value);
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) {
+        writeFrameHeader(4, WINDOW_UPDATE, 0, streamId);
+        writeInt(increment);
+    }
+
+    private void writeFrameHeader(int length, int type, int flags, int streamId) {
+        frameHeader[0] = (byte) (length >>> 16);
+        frameHeader[1] = (byte) (length >>> 8);
+        frameHeader[2] = (byte) length;
+        frameHeader[3] = (byte) type;
+        frameHeader[4] = (byte) flags;
+        frameHeader[5] = (byte) (streamId >>> 24);
+        frameHeader[6] = (byte) (streamId >>> 16);
+        frameHeader[7] = (byte) (streamId >>> 8);
+        frameHeader[8] = (byte) streamId;
+        connection.put(frameHeader, 0, FRAME_HEADER_LENGTH);
+    }
+
+    private void writeInt(int value) {
+        scratch[0] = (byte) (value >>> 24);
+        scratch[1] = (byte) (value >>> 16);
+        scratch[2] = (byte) (value >>> 8);
+        scratch[3] = (byte) value;
+        connection.put(scratch, 0, 4);
+    }
+
+    String httpDate() {
+        return connection.httpDate();
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    // 连接关闭时释放各个流尚未发送的文件
+    void release() {
+        for (Http2Stream stream : streams.values()) {
+            stream.release();
+        }
+        streams.clear();
+        ready.clear();
+    }
+}
@@ -0,0 +1,342 @@
+// src/top/mcocet/nio/Http2Stream.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import top.mcocet.http.ChannelOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一个 HTTP/2 流：请求头、请求体和待发送的响应体。
+ * 处理器写入的响应体先挂在流上，由会话按流量控制窗口切成 DATA 帧，与其他流的帧交替发送。
+ * 共享缓冲区和文件区间只记录引用，发送时才复制进输出缓冲区。
+ */
+final class Http2Stream extends OutputStream implements ChannelOutput {
+    private static final int CHUNK_SIZE = 8192;
+
+    final int id;
+    final Headers requestHeaders = new Headers();
+    String method;
+    String path;
+    long contentLength = -1;
+    long sendWindow;
+    boolean remoteClosed;
+    boolean headersSent;
+    boolean endSent;
+    boolean reset;
+    // 是否已在会话的发送队列中
+    boolean scheduled;
+    // 准备任务已提交给工作线程池，尚未回到事件循环
+    boolean preparing;
+
+    private final Http2Session session;
+    private byte[] body;
+    private int bodyLength;
+
+    // 待发送的响应体：ByteBuffer（读模式）或 FileSource
+    private final ArrayDeque<Object> pending = new ArrayDeque<>();
+    private ByteBuffer tail;
+    private long pendingBytes;
+    private boolean open;
+    private boolean finished;
+    private boolean unbounded;
+    private long remaining;
+
+    Http2Stream(Http2Session session, int id, long sendWindow) {
+        this.session = session;
+        this.id = id;
+        this.sendWindow = sendWindow;
+    }
+
+    /**
+     * 校验并保存请求头。伪头部必须在普通字段之前且不能重复，名称必须是小写，
+     * 不允许 HTTP/1.1 的逐跳字段。返回错误描述，合法时返回 null。
+     */
+    String setRequestHeaders(List<String> fields) {
+        String scheme = null;
+        String authority = null;
+        boolean regularSeen = false;
+        StringBuilder cookie = null;
+        for (int i = 0; i < fields.size(); i += 2) {
+            String name = fields.get(i);
+            String value = fields.get(i + 1);
+            if (name.isEmpty()) {
+                return "空的字段名";
+            }
+            for (int j = 0; j < name.length(); j++) {
+                char c = name.charAt(j);
+                if (c >= 'A' && c <= 'Z') {
+                    return "字段名包含大写字母: " + name;
+                }
+            }
+            if (name.charAt(0) == ':') {
+                if (regularSeen) {
+                    return "伪头部出现在普通字段之后: " + name;
+                }
+                switch (name) {
+                    case ":method":
+                        if (method != null) {
+                            return "重复的 :method";
+                        }
+                        method = value;
+                        break;
+                    case ":path":
+                        if (path != null) {
+                            return "重复的 :path";
+                        }
+                        path = value;
+                        break;
+                    case ":scheme":
+                        if (scheme != null) {
+                            return "重复的 :scheme";
+                        }
+                        scheme = value;
+                        break;
+                    case ":authority":
+                        if (authority != null) {
+                            return "重复的 :authority";
+                        }
+                        authority = value;
+                        break;
+                    default:
+                        return "未知的伪头部: " + name;
+                }
+                continue;
+            }
+            regularSeen = true;
+            if (HpackEncoder.CONNECTION_HEADERS.contains(name)) {
+                return "不允许的逐跳字段: " + name;
+            }
+            if (name.equals("te") && !value.equals("trailers")) {
+                return "TE 只能是 trailers";
+            }
+            if (name.equals("cookie")) {
+                // 客户端可以把 Cookie 拆成多个字段，交给处理器前合并回一个
+                cookie = cookie == null ? new StringBuilder(value) : cookie.append("; ").append(value);
+                continue;
+            }
+            if (name.equals("content-length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return "无效的 content-length";
+                }
+            }
+            requestHeaders.add(name, value);
+        }
+        if (method == null || scheme == null || path == null || path.isEmpty()) {
+            return "缺少 :method、:scheme 或 :path";
+        }
+        if (cookie != null) {
+            requestHeaders.set("Cookie", cookie.toString());
+        }
+        // 处理器按 HTTP/1.1 的 Host 字段做访问控制
+        if (authority != null && !requestHeaders.containsKey("Host")) {
+            requestHeaders.set("Host", authority);
+        }
+        return null;
+    }
+
+    // 追加请求体，超过 limit 时返回 false
+    boolean appendBody(ByteBuffer src, int offset, int length, int limit) {
+        if (length == 0) {
+            return true;
+        }
+        if ((long) bodyLength + length > limit) {
+            return false;
+        }
+        if (body == null) {
+            body = new byte[(int) Math.min(limit, contentLength > 0 ? contentLength : Math.max(length, 1024))];
+        } else if (bodyLength + length > body.length) {
+            body = Arrays.copyOf(body, (int) Math.min(limit, Math.max((long) body.length * 2, bodyLength + length)));
+        }
+        src.get(offset, body, bodyLength, length);
+        bodyLength += length;
+        return true;
+    }
+
+    byte[] body() {
+        return body == null ? null : bodyLength == body.length ? body : Arrays.copyOf(body, bodyLength);
+    }
+
+    /**
+     * 响应头发出后调用。length 大于 0 为声明的 Content-Length，小于 0 表示长度未知；
+     * endStream 表示 HEADERS 帧已结束流，不允许响应体。
+     */
+    void begin(long length, boolean endStream) {
+        headersSent = true;
+        if (endStream) {
+            endSent = true;
+            finished = true;
+            return;
+        }
+        open = true;
+        unbounded = length <= 0;
+        remaining = length;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    // 响应体比声明的 Content-Length 短，只能重置流让客户端发现
+    boolean isTruncated() {
+        return finished && !unbounded && remaining > 0;
+    }
+
+    long pendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        reserve(len);
+        if (tail != null && pending.peekLast() == tail && tail.capacity() - tail.limit() >= len) {
+            int at = tail.limit();
+            tail.limit(at + len);
+            tail.put(at, b, off, len);
+        } else {
+            tail = ByteBuffer.allocate(Math.max(len, CHUNK_SIZE));
+            tail.put(b, off, len).flip();
+            pending.add(tail);
+        }
+        queued(len);
+    }
+
+    @Override
+    public void writeShared(ByteBuffer buffer) throws IOException {
+        int count = buffer.remaining();
+        if (count == 0) {
+            return;
+        }
+        reserve(count);
+        pending.add(buffer.asReadOnlyBuffer());
+        queued(count);
+    }
+
+    @Override
+    public void transferFile(Path path, long position, long count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        reserve(count);
+        pending.add(new FileSource(FileChannel.open(path, StandardOpenOption.READ), position, count));
+        queued(count);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        open = false;
+        finished = true;
+        session.schedule(this);
+    }
+
+    /**
+     * 把最多 count 字节的待发送数据作为一个 DATA 帧的负载放进连接的发送队列。
+     * 文件在这里才读取，读取失败时连接已写入了帧头，调用方必须关闭连接。
+     */
+    void drainTo(HttpConnection connection, int count) throws IOException {
+        pendingBytes -= count;
+        while (count > 0) {
+            Object head = pending.peekFirst();
+            if (head instanceof FileSource) {
+                FileSource file = (FileSource) head;
+                int n = (int) Math.min(count, file.remaining);
+                connection.putFileData(file.channel, file.position, n);
+                file.position += n;
+                file.remaining -= n;
+                count -= n;
+                if (file.remaining == 0) {
+                    pending.pollFirst();
+                    file.close();
+                }
+                continue;
+            }
+            ByteBuffer buffer = (ByteBuffer) head;
+            int n = Math.min(count, buffer.remaining());
+            connection.putShared(buffer.slice(buffer.position(), n));
+            buffer.position(buffer.position() + n);
+            count -= n;
+            if (!buffer.hasRemaining()) {
+                pending.pollFirst();
+                if (buffer == tail) {
+                    tail = null;
+                }
+            }
+        }
+    }
+
+    // 流被重置或连接关闭时释放尚未发送的文件
+    void release() {
+        for (Object item : pending) {
+            if (item instanceof FileSource) {
+                ((FileSource) item).close();
+            }
+        }
+        pending.clear();
+        tail = null;
+        pendingBytes = 0;
+        open = false;
+        finished = true;
+    }
+
+    private void reserve(long count) throws IOException {
+        if (!open) {
+            throw new IOException(reset ? "流已被重置" : "响应体已关闭或该响应不允许包含响应体");
+        }
+        if (unbounded) {
+            return;
+        }
+        if (count > remaining) {
+            throw new IOException("写入的字节数超出 Content-Length");
+        }
+        remaining -= count;
+    }
+
+    private void queued(long count) {
+        pendingBytes += count;
+        session.schedule(this);
+    }
+
+    private static final class FileSource {
+        final FileChannel channel;
+        long position;
+        long remaining;
+
+        FileSource(FileChannel channel, long position, long remaining) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = remaining;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
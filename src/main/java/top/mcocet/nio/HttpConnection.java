@@ -0,0 +1,749 @@
+// src/top/mcocet/nio/HttpConnection.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import top.mcocet.handler.PreparableHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 一条 HTTP/1.x 连接，只由所属的事件循环线程访问。
+ * 支持长连接和管线化：缓冲区中已到达的多个请求依次交给处理器，响应按顺序排入发送队列，
+ * 排队的数据达到上限或有文件区间待发送时先写出再继续处理，发送不完时暂停读取。
+ * 没有未完成请求的空闲连接不占用输入缓冲区。
+ * 处理器需要先读盘或压缩时，当前请求交给工作线程准备，期间连接暂停读取和处理后续请求，响应顺序不变。
+ * 收到 HTTP/2 连接前言或 h2c 升级请求后，帧的处理交给 Http2Session，缓冲区和发送队列不变。
+ * 启用 TLS 时套接字的读写经过 TlsChannel，ALPN 协商出 h2 的客户端同样以连接前言开始。
+ */
+final class HttpConnection {
+    static final int OUTPUT_HIGH_WATER = 64 * 1024;
+    private static final int MAX_GATHER = 16;
+    // 共享缓冲区分段发送，JDK 为堆缓冲区准备的临时直接缓冲区不会过大
+    private static final int SHARED_SLICE = 256 * 1024;
+    // 不超过这个大小的共享缓冲区直接复制到当前发送缓冲区，与响应头合并为一次写出
+    private static final int COPY_THRESHOLD = 4096;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWITCHING_PROTOCOLS =
+            "HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final NioHttpServer server;
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    // 未启用 TLS 时为 null
+    private final TlsChannel tls;
+    private final SelectionKey key;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+    private final RequestParser parser = new RequestParser();
+    private final NioExchange exchange;
+
+    // 写模式：[readIndex, position) 是尚未处理的数据
+    private ByteBuffer in;
+    private int readIndex;
+    private boolean inputClosed;
+
+    private byte[] body;
+    private int bodyFilled;
+    private boolean awaitingBody;
+    private boolean http1Used;
+    private Http2Session http2;
+    // 当前请求正在由工作线程准备
+    private boolean preparing;
+
+    // 发送队列：ByteBuffer（读模式）或 FileRegion
+    private final ArrayDeque<Object> out = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private ByteBuffer current;
+    private long queued;
+    private int regions;
+    private boolean closeAfterFlush;
+    private boolean closed;
+    long lastActive;
+
+    HttpConnection(NioHttpServer server, EventLoop loop, SocketChannel channel, SelectionKey key) throws IOException {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+        this.exchange = new NioExchange(this);
+        this.tls = server.tls != null ? new TlsChannel(server, channel) : null;
+        this.lastActive = loop.now();
+    }
+
+    void onReadable() {
+        if (fill()) {
+            serve();
+        }
+    }
+
+    // 读取到输入缓冲区，读取失败时关闭连接并返回 false
+    private boolean fill() {
+        if (in == null) {
+            in = server.inputBuffers.acquire();
+            readIndex = 0;
+            parser.reset();
+        }
+        int n;
+        try {
+            n = tls != null ? tls.read(in) : channel.read(in);
+        } catch (IOException | RuntimeException e) {
+            close();
+            return false;
+        }
+        if (n < 0) {
+            // 客户端关闭了写方向，已经收到的请求仍然处理并响应
+            inputClosed = true;
+        } else if (n > 0) {
+            lastActive = loop.now();
+        }
+        return true;
+    }
+
+    void onWritable() {
+        serve();
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                if (!writeOut()) {
+                    interest(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (closeAfterFlush) {
+                    close();
+                    return;
+                }
+                if (preparing) {
+                    // 准备完成后由 resume 继续，期间不读取
+                    interest(0);
+                    return;
+                }
+                if (!handleBuffered()) {
+                    if (inputClosed) {
+                        close();
+                        return;
+                    }
+                    if (tls != null && tls.hasBufferedInput()) {
+                        // 已解密或已收到的数据不会再触发可读事件，直接继续读取
+                        if (!fill()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    releaseInputIfEmpty();
+                    interest(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+        }
+    }
+
+    // 处理缓冲区中已完整到达的请求，返回是否产生了需要写出的数据
+    private boolean handleBuffered() throws IOException {
+        if (http2 != null) {
+            return handleHttp2();
+        }
+        boolean produced = false;
+        while (in != null && !closeAfterFlush && !preparing && queued < OUTPUT_HIGH_WATER && regions == 0) {
+            int end = in.position();
+            if (awaitingBody) {
+                int n = Math.min(end - readIndex, body.length - bodyFilled);
+                in.get(readIndex, body, bodyFilled, n);
+                bodyFilled += n;
+                readIndex += n;
+                if (bodyFilled < body.length) {
+                    compactInput();
+                    break;
+                }
+                awaitingBody = false;
+                dispatch();
+                produced = true;
+                continue;
+            }
+            if (readIndex == end) {
+                in.clear();
+                readIndex = 0;
+                parser.reset();
+                break;
+            }
+            int result = parser.parse(in, readIndex, end);
+            if (result == RequestParser.INCOMPLETE) {
+                if (end == in.capacity()) {
+                    if (readIndex == 0) {
+                        sendError(431);
+                        produced = true;
+                    } else {
+                        compactInput();
+                    }
+                }
+                break;
+            }
+            if (result == -505 && !http1Used && readIndex == 0 && server.http2) {
+                // 连接前言的第一行在 HTTP/1.1 解析器看来是版本为 HTTP/2.0 的请求
+                int preface = matchPreface(end);
+                if (preface == 0) {
+                    break;
+                }
+                if (preface > 0) {
+                    http2 = new Http2Session(this, server);
+                    http2.start();
+                    return handleHttp2();
+                }
+            }
+            produced = true;
+            if (result < 0) {
+                sendError(-result);
+                break;
+            }
+            readIndex = result;
+            http1Used = true;
+            if (!beginRequest()) {
+                break;
+            }
+            if (!awaitingBody) {
+                dispatch();
+            } else if (parser.expectContinue && end - readIndex < body.length) {
+                put(CONTINUE, 0, CONTINUE.length);
+            }
+        }
+        return produced;
+    }
+
+    // 缓冲区开头与 HTTP/2 连接前言比较：1 为完整匹配，0 为目前一致但数据还不够，-1 为不匹配
+    private int matchPreface(int end) {
+        int n = Math.min(end - readIndex, Http2Session.PREFACE.length);
+        for (int i = 0; i < n; i++) {
+            if (in.get(readIndex + i) != Http2Session.PREFACE[i]) {
+                return -1;
+            }
+        }
+        return n == Http2Session.PREFACE.length ? 1 : 0;
+    }
+
+    // HTTP/2 连接：处理已到达的帧，再按流量控制窗口生成 DATA 帧，返回是否产生了需要写出的数据
+    private boolean handleHttp2() throws IOException {
+        if (in != null) {
+            int end = in.position();
+            readIndex = http2.read(in, readIndex, end);
+            if (readIndex == end) {
+                in.clear();
+                readIndex = 0;
+            } else if (end == in.capacity()) {
+                compactInput();
+            }
+        }
+        if (!closeAfterFlush) {
+            http2.writeData();
+        }
+        return !out.isEmpty() || (current != null && current.position() > 0);
+    }
+
+    // 根据解析结果准备交换对象；请求无法处理时发送错误并返回 false
+    private boolean beginRequest() {
+        if (parser.chunked) {
+            // 静态站点不接收上传，分块请求体直接拒绝
+            sendError(411);
+            return false;
+        }
+        if (parser.contentLength > server.maxRequestBody) {
+            sendError(413);
+            return false;
+        }
+        URI uri;
+        try {
+            uri = new URI(parser.target(in));
+        } catch (URISyntaxException e) {
+            sendError(400);
+            return false;
+        }
+        if (parser.upgradeH2c && parser.connectionUpgrade && server.http2 && tls == null && parser.isHttp11()
+                && parser.contentLength <= 0 && upgrade()) {
+            return false;
+        }
+        boolean keepAlive = parser.isHttp11() ? !parser.connectionClose
+                : parser.connectionKeepAlive && !parser.connectionClose;
+        exchange.begin(parser.method(in), uri, parser.isHttp11(), keepAlive);
+        if (parser.contentLength > 0) {
+            exchange.loadHeaders();
+            body = new byte[(int) parser.contentLength];
+            bodyFilled = 0;
+            awaitingBody = true;
+        }
+        return true;
+    }
+
+    /**
+     * 处理 Upgrade: h2c。只升级没有请求体的请求，HTTP2-Settings 缺失或无效时按 HTTP/1.1 继续处理。
+     * 升级请求的响应在流 1 上以 HTTP/2 发送。
+     */
+    private boolean upgrade() {
+        String settingsHeader = parser.header(in, "http2-settings");
+        if (settingsHeader == null) {
+            return false;
+        }
+        byte[] settings;
+        try {
+            settings = Base64.getUrlDecoder().decode(settingsHeader.trim());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (settings.length % 6 != 0) {
+            return false;
+        }
+        Headers headers = new Headers();
+        parser.copyHeaders(in, headers);
+        headers.remove("Connection");
+        headers.remove("Upgrade");
+        headers.remove("Http2-settings");
+        put(SWITCHING_PROTOCOLS, 0, SWITCHING_PROTOCOLS.length);
+        http2 = new Http2Session(this, server);
+        try {
+            http2.startUpgraded(settings, parser.method(in), parser.target(in), headers);
+        } catch (Http2Exception e) {
+            closeAfterFlush = true;
+        }
+        return true;
+    }
+
+    private void dispatch() {
+        lastActive = loop.now();
+        exchange.setBody(body);
+        body = null;
+        String path = exchange.getRequestURI().getPath();
+        NioContext context = server.findContext(path != null && !path.isEmpty() ? path : "/");
+        if (context != null) {
+            exchange.setContext(context);
+            if (context.getRequestHandler() instanceof PreparableHandler) {
+                Runnable task = ((PreparableHandler) context.getRequestHandler()).prepare(exchange);
+                if (task != null) {
+                    preparing = true;
+                    prepare(task, () -> {
+                        preparing = false;
+                        respond(context);
+                    });
+                    return;
+                }
+            }
+        }
+        respond(context);
+    }
+
+    private void respond(NioContext context) {
+        try {
+            if (context == null) {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                context.getRequestHandler().handle(exchange);
+            }
+        } catch (IOException | RuntimeException e) {
+            server.logger.warning("处理请求失败: " + exchange.getRequestURI() + ", 错误: " + e);
+            closeAfterFlush = true;
+        }
+        boolean sent = exchange.isSent();
+        if (exchange.finish()) {
+            closeAfterFlush = true;
+        }
+        if (!sent) {
+            // 处理器没有发送任何响应
+            sendError(500);
+        }
+    }
+
+    /**
+     * 在工作线程上执行 task，完成后回到事件循环执行 then，再继续处理连接；连接在此期间关闭时不再执行 then。
+     * 工作线程池队列已满（rejectPolicy: abort）或服务器已停止时直接在本线程执行，
+     * 事件循环被占用期间不再读取新的请求，借此减慢提交任务的连接。
+     */
+    void prepare(Runnable task, Runnable then) {
+        try {
+            server.workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    server.logger.warning("准备响应失败: " + e);
+                } finally {
+                    loop.execute(() -> resume(then));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            task.run();
+            then.run();
+        }
+    }
+
+    private void resume(Runnable then) {
+        if (closed) {
+            return;
+        }
+        lastActive = loop.now();
+        try {
+            then.run();
+        } catch (RuntimeException e) {
+            close();
+            return;
+        }
+        serve();
+    }
+
+    // 协议层面的错误，不经过处理器，发送后关闭连接
+    private void sendError(int status) {
+        String reason = reason(status);
+        String text = status + " " + reason;
+        byte[] response = ("HTTP/1.1 " + text + "\r\nContent-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Length: " + text.length() + "\r\nConnection: close\r\nDate: " + httpDate()
+                + "\r\n\r\n" + text).getBytes(StandardCharsets.US_ASCII);
+        put(response, 0, response.length);
+        closeAfterFlush = true;
+    }
+
+    void copyRequestHeaders(Headers headers) {
+        parser.copyHeaders(in, headers);
+    }
+
+    void writeHead(boolean http11, int status, Headers headers) {
+        putAscii(http11 ? "HTTP/1.1 " : "HTTP/1.0 ");
+        put((byte) ('0' + status / 100 % 10));
+        put((byte) ('0' + status / 10 % 10));
+        put((byte) ('0' + status % 10));
+        put((byte) ' ');
+        putAscii(reason(status));
+        putCrlf();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                putAscii(header.getKey());
+                put((byte) ':');
+                put((byte) ' ');
+                putAscii(value);
+                putCrlf();
+            }
+        }
+        putCrlf();
+    }
+
+    String httpDate() {
+        return loop.httpDate();
+    }
+
+    void closeAfterFlush() {
+        closeAfterFlush = true;
+    }
+
+    long now() {
+        return loop.now();
+    }
+
+    // 发送队列中尚未写出的字节数，不含文件区间
+    long pendingOutput() {
+        return queued;
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    // ---- 发送队列 ----
+
+    void put(byte b) {
+        if (current == null || !current.hasRemaining()) {
+            nextBuffer();
+        }
+        current.put(b);
+        queued++;
+    }
+
+    void put(byte[] src, int off, int len) {
+        queued += len;
+        while (len > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextBuffer();
+            }
+            int n = Math.min(len, current.remaining());
+            current.put(src, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    // 响应头只允许 Latin-1 字符，换行替换为空格，防止响应头注入
+    private void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            put(c == '\r' || c == '\n' ? (byte) ' ' : c > 0xff ? (byte) '?' : (byte) c);
+        }
+    }
+
+    private void putCrlf() {
+        put((byte) '\r');
+        put((byte) '\n');
+    }
+
+    void putShared(ByteBuffer buffer) {
+        int count = buffer.remaining();
+        queued += count;
+        if (count <= COPY_THRESHOLD) {
+            ByteBuffer source = buffer.duplicate();
+            while (source.hasRemaining()) {
+                if (current == null || !current.hasRemaining()) {
+                    nextBuffer();
+                }
+                int n = Math.min(source.remaining(), current.remaining());
+                current.put(current.position(), source, source.position(), n);
+                current.position(current.position() + n);
+                source.position(source.position() + n);
+            }
+            return;
+        }
+        seal();
+        // 只读视图不会被误放回缓冲池
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        for (int start = view.position(); start < view.limit(); start += SHARED_SLICE) {
+            out.add(view.duplicate().position(start).limit(Math.min(view.limit(), start + SHARED_SLICE)));
+        }
+    }
+
+    // 把文件的一段读进发送缓冲区，用于必须与帧头交错发送、无法整体 transferTo 的 HTTP/2 DATA 帧
+    void putFileData(FileChannel file, long position, int count) throws IOException {
+        queued += count;
+        while (count > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextBuffer();
+            }
+            int limit = current.limit();
+            current.limit(current.position() + Math.min(count, current.remaining()));
+            int n;
+            try {
+                n = file.read(current, position);
+            } finally {
+                current.limit(limit);
+            }
+            if (n <= 0) {
+                throw new IOException("文件在传输过程中被截断");
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    void putFile(Path path, long position, long count) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        seal();
+        out.add(new FileRegion(file, position, count));
+        regions++;
+    }
+
+    private void nextBuffer() {
+        seal();
+        current = server.outputBuffers.acquire();
+    }
+
+    private void seal() {
+        if (current == null) {
+            return;
+        }
+        if (current.position() > 0) {
+            out.add(current.flip());
+        } else {
+            server.outputBuffers.release(current);
+        }
+        current = null;
+    }
+
+    // 尽量写出发送队列，返回 false 表示套接字缓冲区已满
+    private boolean writeOut() throws IOException {
+        seal();
+        while (!out.isEmpty()) {
+            Object head = out.peekFirst();
+            if (head instanceof FileRegion) {
+                FileRegion region = (FileRegion) head;
+                long n = tls != null ? tls.transferFrom(region.file, region.position, region.remaining)
+                        : region.file.transferTo(region.position, region.remaining, channel);
+                if (n > 0) {
+                    region.position += n;
+                    region.remaining -= n;
+                    lastActive = loop.now();
+                }
+                if (region.remaining == 0) {
+                    out.pollFirst();
+                    regions--;
+                    region.close();
+                    continue;
+                }
+                if (n == 0) {
+                    if (region.position >= region.file.size()) {
+                        throw new IOException("文件在传输过程中被截断");
+                    }
+                    return false;
+                }
+                continue;
+            }
+
+            int count = 0;
+            for (Object item : out) {
+                if (count == MAX_GATHER || !(item instanceof ByteBuffer)) {
+                    break;
+                }
+                gather[count++] = (ByteBuffer) item;
+            }
+            long n = tls != null ? tls.write(gather, 0, count) : channel.write(gather, 0, count);
+            Arrays.fill(gather, 0, count, null);
+            if (n > 0) {
+                queued -= n;
+                lastActive = loop.now();
+            }
+            int done = 0;
+            while (done < count && !((ByteBuffer) out.peekFirst()).hasRemaining()) {
+                server.outputBuffers.release((ByteBuffer) out.pollFirst());
+                done++;
+            }
+            if (done < count) {
+                return false;
+            }
+        }
+        return tls == null || tls.flush();
+    }
+
+    private void compactInput() {
+        int end = in.position();
+        if (readIndex == end) {
+            in.clear();
+        } else {
+            in.limit(end).position(readIndex);
+            in.compact();
+        }
+        readIndex = 0;
+        parser.reset();
+    }
+
+    private void releaseInputIfEmpty() {
+        if (in != null && !awaitingBody && readIndex == in.position()) {
+            server.inputBuffers.release(in);
+            in = null;
+        }
+        if (tls != null) {
+            tls.releaseIdleBuffers();
+        }
+    }
+
+    private void interest(int ops) {
+        if (key.isValid() && key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        if (tls != null) {
+            tls.close();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        if (in != null) {
+            server.inputBuffers.release(in);
+            in = null;
+        }
+        if (current != null) {
+            server.outputBuffers.release(current);
+            current = null;
+        }
+        for (Object item : out) {
+            if (item instanceof FileRegion) {
+                ((FileRegion) item).close();
+            } else {
+                server.outputBuffers.release((ByteBuffer) item);
+            }
+        }
+        out.clear();
+        if (http2 != null) {
+            http2.release();
+        }
+        server.connectionClosed();
+    }
+
+    static String reason(int status) {
+        switch (status) {
+            case 100: return "Continue";
+            case 101: return "Switching Protocols";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 408: return "Request Timeout";
+            case 411: return "Length Required";
+            case 413: return "Content Too Large";
+            case 416: return "Range Not Satisfiable";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            case 505: return "HTTP Version Not Supported";
+            default: return "";
+        }
+    }
+
+    // 待发送的文件区间，发送完毕或连接关闭时关闭文件
+    private static final class FileRegion {
+        final FileChannel file;
+        long position;
+        long remaining;
+
+        FileRegion(FileChannel file, long position, long remaining) {
+            this.file = file;
+            this.position = position;
+            this.remaining = remaining;
+        }
+
+        void close() {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
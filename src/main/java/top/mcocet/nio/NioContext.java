@@ -0,0 +1,75 @@
+// src/top/mcocet/nio/NioContext.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import top.mcocet.handler.RequestHandler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NIO 引擎中按路径前缀注册的处理器，只为 HttpExchange.getHttpContext 提供信息；
+ * 不支持过滤器和认证。
+ */
+final class NioContext extends HttpContext {
+    private final String path;
+    private final RequestHandler handler;
+    private final HttpHandler httpHandler;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    NioContext(String path, RequestHandler handler) {
+        this.path = path;
+        this.handler = handler;
+        this.httpHandler = handler::handle;
+    }
+
+    RequestHandler getRequestHandler() {
+        return handler;
+    }
+
+    @Override
+    public HttpHandler getHandler() {
+        return httpHandler;
+    }
+
+    @Override
+    public void setHandler(HttpHandler handler) {
+        throw new UnsupportedOperationException("NIO 引擎不支持替换处理器");
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    // 不是 JDK HttpServer 创建的上下文
+    @Override
+    public HttpServer getServer() {
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public List<Filter> getFilters() {
+        return List.of();
+    }
+
+    @Override
+    public Authenticator setAuthenticator(Authenticator auth) {
+        throw new UnsupportedOperationException("NIO 引擎不支持认证");
+    }
+
+    @Override
+    public Authenticator getAuthenticator() {
+        return null;
+    }
+}
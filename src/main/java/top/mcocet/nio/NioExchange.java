@@ -0,0 +1,243 @@
+// src/top/mcocet/nio/NioExchange.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把 NIO 连接上的一次请求包装成 HttpExchange，处理器不需要知道底层是哪个引擎。
+ * 每个连接只有一个实例，请求之间清空后复用；请求头在处理器第一次读取时才生成。
+ */
+final class NioExchange extends HttpExchange {
+    private static final InputStream EMPTY_BODY = InputStream.nullInputStream();
+
+    private final HttpConnection connection;
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final ResponseOutput output;
+    private Map<String, Object> attributes;
+    private NioContext context;
+    private String method;
+    private URI uri;
+    private boolean http11;
+    private boolean keepAlive;
+    private boolean headersLoaded;
+    private InputStream requestBody;
+    private OutputStream responseBody;
+    private int responseCode = -1;
+    private boolean sent;
+    private boolean closeAfter;
+
+    NioExchange(HttpConnection connection) {
+        this.connection = connection;
+        this.output = new ResponseOutput(connection);
+    }
+
+    void begin(String method, URI uri, boolean http11, boolean keepAlive) {
+        this.method = method;
+        this.uri = uri;
+        this.http11 = http11;
+        this.keepAlive = keepAlive;
+    }
+
+    // 请求带有请求体时，输入缓冲区会在等待请求体期间被复用，请求头要先复制出来
+    void loadHeaders() {
+        if (!headersLoaded) {
+            connection.copyRequestHeaders(requestHeaders);
+            headersLoaded = true;
+        }
+    }
+
+    void setBody(byte[] body) {
+        this.requestBody = body != null ? new ByteArrayInputStream(body) : EMPTY_BODY;
+    }
+
+    void setContext(NioContext context) {
+        this.context = context;
+    }
+
+    boolean isSent() {
+        return sent;
+    }
+
+    /**
+     * 处理器返回后调用：结束响应体并清空本次请求的状态。
+     * 返回 true 表示响应发出后应关闭连接。
+     */
+    boolean finish() {
+        output.close();
+        boolean close = closeAfter || !keepAlive;
+        requestHeaders.clear();
+        responseHeaders.clear();
+        attributes = null;
+        context = null;
+        requestBody = null;
+        responseBody = null;
+        responseCode = -1;
+        headersLoaded = false;
+        sent = false;
+        closeAfter = false;
+        return close;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        loadHeaders();
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (requestBody != null) {
+                requestBody.close();
+            }
+            if (responseBody != null && responseBody != output) {
+                responseBody.close();
+            }
+        } catch (IOException e) {
+            connection.closeAfterFlush();
+        }
+        output.close();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody != null ? responseBody : output;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (sent) {
+            throw new IOException("响应头已经发送");
+        }
+        sent = true;
+        responseCode = rCode;
+
+        // 与 JDK HttpServer 相同：长度大于 0 为固定长度，0 为分块传输，-1 表示没有响应体
+        boolean noBody = "HEAD".equals(method) || rCode == 304 || rCode == 204 || (rCode >= 100 && rCode < 200);
+        long length = 0;
+        boolean chunked = false;
+        boolean unbounded = false;
+        if (noBody) {
+            if (responseLength > 0 && rCode != 304) {
+                responseHeaders.set("Content-Length", Long.toString(responseLength));
+            }
+        } else if (responseLength > 0) {
+            responseHeaders.set("Content-Length", Long.toString(responseLength));
+            length = responseLength;
+        } else if (responseLength < 0) {
+            responseHeaders.set("Content-Length", "0");
+        } else if (http11) {
+            responseHeaders.set("Transfer-Encoding", "chunked");
+            chunked = true;
+        } else {
+            // HTTP/1.0 不支持分块，以关闭连接标志响应体结束
+            unbounded = true;
+            closeAfter = true;
+        }
+
+        String connectionHeader = responseHeaders.getFirst("Connection");
+        if (connectionHeader != null && connectionHeader.equalsIgnoreCase("close")) {
+            closeAfter = true;
+        }
+        if (closeAfter || !keepAlive) {
+            closeAfter = true;
+            if (connectionHeader == null) {
+                responseHeaders.set("Connection", "close");
+            }
+        } else if (!http11) {
+            responseHeaders.set("Connection", "keep-alive");
+        }
+        if (!responseHeaders.containsKey("Date")) {
+            responseHeaders.set("Date", connection.httpDate());
+        }
+
+        connection.writeHead(http11, rCode, responseHeaders);
+        output.begin(length, chunked, unbounded);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return http11 ? "HTTP/1.1" : "HTTP/1.0";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes != null ? attributes.get(name) : null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
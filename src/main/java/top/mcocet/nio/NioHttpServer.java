@@ -0,0 +1,189 @@
+// src/top/mcocet/nio/NioHttpServer.java
+package top.mcocet.nio;
+
+import top.mcocet.ServerExecutors;
+import top.mcocet.config.ConfigSnapshot;
+import top.mcocet.handler.RequestHandler;
+import top.mcocet.http.BufferPool;
+import top.mcocet.security.TlsContext;
+import top.mcocet.service.LoggerService;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 java.nio 选择器的 HTTP/1.1 服务器，可替代 com.sun.net.httpserver.HttpServer（engine: nio）。
+ * http2 开启时同一端口还接受明文 HTTP/2（prior knowledge 和 Upgrade: h2c）。
+ * 一个接收线程把新连接轮流分给各事件循环，默认每个 CPU 一个循环；处理器通过 HttpExchange 适配层调用，
+ * 与 JDK 引擎下的行为一致。输入输出使用池化的直接缓冲区，文件用 FileChannel.transferTo 发送。
+ * 缓存未命中时读文件、即时压缩等阻塞工作交给工作线程池（executor、threads、queueSize、rejectPolicy），
+ * 事件循环不等待磁盘；队列有界，满时按 rejectPolicy 处理。
+ * 给出 TlsContext 时只接受 HTTPS，http2 开启时通过 ALPN 协商 h2，不再接受 h2c 升级；
+ * 加密在事件循环上进行，文件内容需要读入内存加密，不能使用 transferTo。
+ */
+public class NioHttpServer {
+    final LoggerService logger;
+    final BufferPool inputBuffers;
+    final BufferPool outputBuffers;
+    final long idleTimeoutNanos;
+    final int maxRequestBody;
+    final int maxHeaderSize;
+    final boolean http2;
+    // 未启用 TLS 时为 null，对应的缓冲池也不创建
+    final TlsContext tls;
+    final int tlsPacketSize;
+    final BufferPool tlsInputBuffers;
+    final BufferPool tlsOutputBuffers;
+    final BufferPool tlsAppBuffers;
+    final BufferPool tlsFileBuffers;
+    // 执行 PreparableHandler.prepare 返回的任务
+    final ExecutorService workers;
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final List<NioContext> contexts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean running;
+
+    public NioHttpServer(InetSocketAddress address, int backlog, ConfigSnapshot config, LoggerService logger) throws IOException {
+        this(address, backlog, config, logger, null);
+    }
+
+    public NioHttpServer(InetSocketAddress address, int backlog, ConfigSnapshot config, LoggerService logger,
+                         TlsContext tls) throws IOException {
+        this.logger = logger;
+        int loopCount = config.getEventLoops() > 0 ? config.getEventLoops() : Runtime.getRuntime().availableProcessors();
+        this.http2 = config.isHttp2();
+        this.maxHeaderSize = config.getMaxHeaderSize();
+        // 输入缓冲区必须能放下完整的请求头和一个完整的 HTTP/2 帧；空闲连接不持有缓冲区，池的大小按活跃连接估计
+        int inputSize = Math.max(1024, config.getMaxHeaderSize());
+        if (http2) {
+            inputSize = Math.max(inputSize, Http2Session.FRAME_HEADER_LENGTH + Http2Session.MAX_FRAME_SIZE);
+        }
+        this.inputBuffers = new BufferPool(inputSize, 1024, true);
+        this.outputBuffers = new BufferPool(16 * 1024, 1024, true);
+        this.idleTimeoutNanos = Math.max(1, config.getIdleTimeout()) * 1_000_000_000L;
+        this.maxRequestBody = config.getMaxRequestBody();
+        this.tls = tls;
+        if (tls != null) {
+            SSLSession session = tls.createEngine(http2).getSession();
+            // 发送缓冲区能放下四条完整记录，加密后一次写出
+            this.tlsPacketSize = session.getPacketBufferSize();
+            this.tlsInputBuffers = new BufferPool(tlsPacketSize, 1024, true);
+            this.tlsOutputBuffers = new BufferPool(tlsPacketSize * 4, 1024, true);
+            this.tlsAppBuffers = new BufferPool(session.getApplicationBufferSize(), 1024, false);
+            this.tlsFileBuffers = new BufferPool(64 * 1024, 64, false);
+        } else {
+            this.tlsPacketSize = 0;
+            this.tlsInputBuffers = null;
+            this.tlsOutputBuffers = null;
+            this.tlsAppBuffers = null;
+            this.tlsFileBuffers = null;
+        }
+        this.workers = ServerExecutors.createWorkers(config, logger);
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, backlog);
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(this, i);
+        }
+    }
+
+    // 与 HttpServer.createContext 相同，按最长路径前缀选择处理器
+    public void createContext(String path, RequestHandler handler) {
+        contexts.add(new NioContext(path, handler));
+        contexts.sort((a, b) -> b.getPath().length() - a.getPath().length());
+    }
+
+    NioContext findContext(String path) {
+        for (NioContext context : contexts) {
+            if (path.startsWith(context.getPath())) {
+                return context;
+            }
+        }
+        return null;
+    }
+
+    public void start() {
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        Thread acceptor = new Thread(this::acceptLoop, "nio-acceptor");
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // 例如文件描述符耗尽，稍等再接收，避免空转
+                logger.warning("接收连接失败: " + e.getMessage());
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException ignored) {
+            }
+            connections.incrementAndGet();
+            loops[next].assign(channel);
+            next = (next + 1) % loops.length;
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+        workers.shutdownNow();
+    }
+
+    public ExecutorService getWorkers() {
+        return workers;
+    }
+
+    void connectionClosed() {
+        connections.decrementAndGet();
+    }
+
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getEventLoopCount() {
+        return loops.length;
+    }
+}
@@ -0,0 +1,368 @@
+// src/top/mcocet/nio/RequestParser.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP/1.x 请求头解析器，每个连接一个，反复使用。
+ * 解析只在输入缓冲区上记录各字段的起止下标，不创建对象；
+ * 连接管理需要的字段（Content-Length、Connection 等）直接在字节上比较。
+ * 处理器真正读取请求头时才由 copyHeaders 生成字符串。
+ */
+final class RequestParser {
+    static final int INCOMPLETE = 0;
+
+    private static final int MAX_HEADERS = 100;
+    private static final byte[] HTTP_PREFIX = "HTTP/1.".getBytes(StandardCharsets.US_ASCII);
+
+    // 常见请求头按 Headers 规范化后的写法预先建好，命中时不为名称创建字符串
+    private static final String[] KNOWN_NAMES = {
+            "Host", "Connection", "Accept", "Accept-encoding", "Accept-language", "User-agent",
+            "If-none-match", "If-modified-since", "If-range", "Range", "Referer", "Cookie",
+            "Cache-control", "Pragma", "Content-length", "Content-type", "Transfer-encoding",
+            "Expect", "Upgrade", "Origin", "Authorization", "Http2-settings", "Te",
+            "Sec-fetch-dest", "Sec-fetch-mode", "Sec-fetch-site", "Upgrade-insecure-requests", "Dnt"
+    };
+    private static final byte[][] KNOWN_LOWER = new byte[KNOWN_NAMES.length][];
+
+    static {
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            KNOWN_LOWER[i] = KNOWN_NAMES[i].toLowerCase().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // 以下下标都是输入缓冲区中的绝对位置
+    int methodStart, methodEnd;
+    int targetStart, targetEnd;
+    int minorVersion;
+    int headerCount;
+    final int[] nameStart = new int[MAX_HEADERS];
+    final int[] nameEnd = new int[MAX_HEADERS];
+    final int[] valueStart = new int[MAX_HEADERS];
+    final int[] valueEnd = new int[MAX_HEADERS];
+
+    long contentLength;
+    boolean chunked;
+    boolean connectionClose;
+    boolean connectionKeepAlive;
+    boolean connectionUpgrade;
+    boolean expectContinue;
+    boolean upgradeH2c;
+
+    // 上一次查找头部结束标记停下的位置，数据一点点到达时不必从头查找
+    private int scanFrom = -1;
+
+    void reset() {
+        scanFrom = -1;
+    }
+
+    /**
+     * 解析 [start, end) 中的请求头。返回请求头之后第一个字节的位置；
+     * 数据还不完整时返回 INCOMPLETE；格式错误时返回负的状态码（-400、-431、-505）。
+     */
+    int parse(ByteBuffer buf, int start, int end) {
+        // 请求之间允许出现空行
+        while (start < end && (buf.get(start) == '\r' || buf.get(start) == '\n')) {
+            start++;
+        }
+        int headEnd = findHeadEnd(buf, Math.max(start, scanFrom), end);
+        if (headEnd < 0) {
+            scanFrom = Math.max(start, end - 3);
+            return INCOMPLETE;
+        }
+        scanFrom = -1;
+
+        contentLength = -1;
+        chunked = false;
+        connectionClose = false;
+        connectionKeepAlive = false;
+        connectionUpgrade = false;
+        expectContinue = false;
+        upgradeH2c = false;
+        headerCount = 0;
+
+        // 请求行：方法 SP 目标 SP HTTP/1.x
+        int p = start;
+        methodStart = p;
+        while (p < headEnd && isTokenChar(buf.get(p))) {
+            p++;
+        }
+        methodEnd = p;
+        if (methodEnd == methodStart || p >= headEnd || buf.get(p) != ' ') {
+            return -400;
+        }
+        targetStart = ++p;
+        while (p < headEnd && buf.get(p) > ' ' && buf.get(p) != 0x7f) {
+            p++;
+        }
+        targetEnd = p;
+        if (targetEnd == targetStart || p >= headEnd || buf.get(p) != ' ') {
+            return -400;
+        }
+        p++;
+        if (headEnd - p < HTTP_PREFIX.length + 1) {
+            return -400;
+        }
+        for (byte b : HTTP_PREFIX) {
+            if (buf.get(p++) != b) {
+                return -505;
+            }
+        }
+        byte minor = buf.get(p++);
+        if (minor != '0' && minor != '1') {
+            return -505;
+        }
+        minorVersion = minor - '0';
+        p = skipLineEnd(buf, p, headEnd);
+        if (p < 0) {
+            return -400;
+        }
+
+        // 头部字段：名称 ":" OWS 值 OWS，不接受折行
+        while (p < headEnd) {
+            if (buf.get(p) == '\r' || buf.get(p) == '\n') {
+                break;
+            }
+            if (headerCount == MAX_HEADERS) {
+                return -431;
+            }
+            int ns = p;
+            while (p < headEnd && isTokenChar(buf.get(p))) {
+                p++;
+            }
+            if (p == ns || p >= headEnd || buf.get(p) != ':') {
+                return -400;
+            }
+            int ne = p++;
+            while (p < headEnd && (buf.get(p) == ' ' || buf.get(p) == '\t')) {
+                p++;
+            }
+            int vs = p;
+            while (p < headEnd && buf.get(p) != '\r' && buf.get(p) != '\n') {
+                // 允许 0x80 以上的字节（obs-text），拒绝其他控制字符
+                int b = buf.get(p) & 0xff;
+                if ((b < ' ' && b != '\t') || b == 0x7f) {
+                    return -400;
+                }
+                p++;
+            }
+            int ve = p;
+            while (ve > vs && (buf.get(ve - 1) == ' ' || buf.get(ve - 1) == '\t')) {
+                ve--;
+            }
+            p = skipLineEnd(buf, p, headEnd);
+            if (p < 0) {
+                return -400;
+            }
+            int i = headerCount++;
+            nameStart[i] = ns;
+            nameEnd[i] = ne;
+            valueStart[i] = vs;
+            valueEnd[i] = ve;
+            if (!inspect(buf, ns, ne, vs, ve)) {
+                return -400;
+            }
+        }
+        return afterBlankLine(buf, headEnd);
+    }
+
+    // 处理影响连接行为的字段；Content-Length 非法或前后不一致时返回 false
+    private boolean inspect(ByteBuffer buf, int ns, int ne, int vs, int ve) {
+        if (nameEquals(buf, ns, ne, "content-length")) {
+            if (vs == ve) {
+                return false;
+            }
+            long value = 0;
+            for (int i = vs; i < ve; i++) {
+                byte b = buf.get(i);
+                if (b < '0' || b > '9' || value > (Long.MAX_VALUE - 9) / 10) {
+                    return false;
+                }
+                value = value * 10 + (b - '0');
+            }
+            if (contentLength >= 0 && contentLength != value) {
+                return false;
+            }
+            contentLength = value;
+        } else if (nameEquals(buf, ns, ne, "transfer-encoding")) {
+            chunked = true;
+        } else if (nameEquals(buf, ns, ne, "connection")) {
+            connectionClose |= containsToken(buf, vs, ve, "close");
+            connectionKeepAlive |= containsToken(buf, vs, ve, "keep-alive");
+            connectionUpgrade |= containsToken(buf, vs, ve, "upgrade");
+        } else if (nameEquals(buf, ns, ne, "expect")) {
+            expectContinue = valueEquals(buf, vs, ve, "100-continue");
+        } else if (nameEquals(buf, ns, ne, "upgrade")) {
+            upgradeH2c |= containsToken(buf, vs, ve, "h2c");
+        }
+        return true;
+    }
+
+    boolean isHttp11() {
+        return minorVersion == 1;
+    }
+
+    // 方法名区分大小写
+    boolean isMethod(ByteBuffer buf, String method) {
+        if (methodEnd - methodStart != method.length()) {
+            return false;
+        }
+        for (int i = 0; i < method.length(); i++) {
+            if (buf.get(methodStart + i) != method.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 常见方法返回常量，不创建字符串
+    String method(ByteBuffer buf) {
+        if (isMethod(buf, "GET")) return "GET";
+        if (isMethod(buf, "HEAD")) return "HEAD";
+        if (isMethod(buf, "POST")) return "POST";
+        if (isMethod(buf, "PUT")) return "PUT";
+        if (isMethod(buf, "DELETE")) return "DELETE";
+        if (isMethod(buf, "OPTIONS")) return "OPTIONS";
+        return string(buf, methodStart, methodEnd);
+    }
+
+    String target(ByteBuffer buf) {
+        return string(buf, targetStart, targetEnd);
+    }
+
+    // 返回第一个同名字段的值，没有时返回 null
+    String header(ByteBuffer buf, String lowerName) {
+        for (int i = 0; i < headerCount; i++) {
+            if (nameEquals(buf, nameStart[i], nameEnd[i], lowerName)) {
+                return string(buf, valueStart[i], valueEnd[i]);
+            }
+        }
+        return null;
+    }
+
+    // 把全部请求头复制到 Headers 中，同名字段按出现顺序合并
+    void copyHeaders(ByteBuffer buf, Headers headers) {
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(name(buf, nameStart[i], nameEnd[i]), string(buf, valueStart[i], valueEnd[i]));
+        }
+    }
+
+    private static String name(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        for (int k = 0; k < KNOWN_LOWER.length; k++) {
+            byte[] known = KNOWN_LOWER[k];
+            if (known.length == length && equalsLower(buf, start, known)) {
+                return KNOWN_NAMES[k];
+            }
+        }
+        return string(buf, start, end);
+    }
+
+    static String string(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean equalsLower(ByteBuffer buf, int start, byte[] lower) {
+        for (int i = 0; i < lower.length; i++) {
+            byte b = buf.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lower[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean nameEquals(ByteBuffer buf, int start, int end, String lower) {
+        if (end - start != lower.length()) {
+            return false;
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            byte b = buf.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean valueEquals(ByteBuffer buf, int start, int end, String lower) {
+        return nameEquals(buf, start, end, lower);
+    }
+
+    // 逗号分隔的列表中是否有某个记号，大小写不敏感
+    static boolean containsToken(ByteBuffer buf, int start, int end, String lower) {
+        int p = start;
+        while (p < end) {
+            while (p < end && (buf.get(p) == ' ' || buf.get(p) == '\t' || buf.get(p) == ',')) {
+                p++;
+            }
+            int s = p;
+            while (p < end && buf.get(p) != ',') {
+                p++;
+            }
+            int e = p;
+            while (e > s && (buf.get(e - 1) == ' ' || buf.get(e - 1) == '\t')) {
+                e--;
+            }
+            if (nameEquals(buf, s, e, lower)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 空行的位置（CRLF CRLF 或 LF LF 中第二个换行的起点），找不到时返回 -1
+    private static int findHeadEnd(ByteBuffer buf, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buf.get(i) != '\n') {
+                continue;
+            }
+            if (i + 1 < end && buf.get(i + 1) == '\n') {
+                return i + 1;
+            }
+            if (i + 2 < end && buf.get(i + 1) == '\r' && buf.get(i + 2) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int afterBlankLine(ByteBuffer buf, int headEnd) {
+        return buf.get(headEnd) == '\r' ? headEnd + 2 : headEnd + 1;
+    }
+
+    // 跳过行尾的 CRLF 或 LF，返回下一行的起点
+    private static int skipLineEnd(ByteBuffer buf, int p, int limit) {
+        if (p < limit && buf.get(p) == '\r') {
+            p++;
+        }
+        if (p < limit && buf.get(p) == '\n') {
+            return p + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isTokenChar(byte b) {
+        if (b <= ' ' || b >= 0x7f) {
+            return false;
+        }
+        switch (b) {
+            case '(': case ')': case '<': case '>': case '@': case ',': case ';': case ':':
+            case '\\': case '"': case '/': case '[': case ']': case '?': case '=': case '{': case '}':
+                return false;
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+// src/top/mcocet/nio/ResponseOutput.java
+package top.mcocet.nio;
+
+import top.mcocet.http.ChannelOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * NIO 引擎的响应体输出流。写入的数据只是追加到连接的发送队列，由事件循环在套接字可写时发出，
+ * 文件区间和共享缓冲区不经过复制。按响应头确定的方式分帧：固定长度、分块或以关闭连接结束。
+ */
+final class ResponseOutput extends OutputStream implements ChannelOutput {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpConnection connection;
+    private final byte[] chunkHeader = new byte[18];
+    private boolean open;
+    private boolean chunked;
+    private boolean unbounded;
+    private long remaining;
+
+    ResponseOutput(HttpConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 响应头发出后调用。length 为固定长度（没有响应体时为 0），
+     * chunked 表示分块传输，unbounded 表示以关闭连接结束响应体。
+     */
+    void begin(long length, boolean chunked, boolean unbounded) {
+        this.open = true;
+        this.chunked = chunked;
+        this.unbounded = unbounded;
+        this.remaining = length;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        reserve(1);
+        chunkHeader(1);
+        connection.put((byte) b);
+        chunkTrailer();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        reserve(len);
+        chunkHeader(len);
+        connection.put(b, off, len);
+        chunkTrailer();
+    }
+
+    @Override
+    public void transferFile(Path path, long position, long count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        reserve(count);
+        chunkHeader(count);
+        connection.putFile(path, position, count);
+        chunkTrailer();
+    }
+
+    @Override
+    public void writeShared(ByteBuffer buffer) throws IOException {
+        int count = buffer.remaining();
+        if (count == 0) {
+            return;
+        }
+        reserve(count);
+        chunkHeader(count);
+        connection.putShared(buffer);
+        chunkTrailer();
+    }
+
+    // 数据都在发送队列里，由事件循环写出
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (chunked) {
+            connection.put(LAST_CHUNK, 0, LAST_CHUNK.length);
+        } else if (!unbounded && remaining > 0) {
+            // 处理器写入的字节数少于声明的 Content-Length，客户端只能靠断开连接发现
+            connection.closeAfterFlush();
+        }
+    }
+
+    private void reserve(long count) throws IOException {
+        if (!open) {
+            throw new IOException("响应体已关闭或该响应不允许包含响应体");
+        }
+        if (chunked || unbounded) {
+            return;
+        }
+        if (count > remaining) {
+            throw new IOException("写入的字节数超出 Content-Length");
+        }
+        remaining -= count;
+    }
+
+    private void chunkHeader(long count) {
+        if (!chunked) {
+            return;
+        }
+        int p = chunkHeader.length;
+        chunkHeader[--p] = '\n';
+        chunkHeader[--p] = '\r';
+        do {
+            chunkHeader[--p] = HEX[(int) (count & 0xf)];
+            count >>>= 4;
+        } while (count != 0);
+        connection.put(chunkHeader, p, chunkHeader.length - p);
+    }
+
+    private void chunkTrailer() {
+        if (chunked) {
+            connection.put(CRLF, 0, CRLF.length);
+        }
+    }
+}
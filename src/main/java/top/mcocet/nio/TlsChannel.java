@@ -0,0 +1,304 @@
+// src/top/mcocet/nio/TlsChannel.java
+package top.mcocet.nio;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 非阻塞套接字上的 TLS 层，只由所属连接的事件循环线程访问。
+ * read 返回解密后的明文，write 加密后写出；握手在读写过程中推进，委托任务直接在事件循环上执行。
+ * 已加密但未写出的数据留在本层，连接每次写出发送队列后调用 flush，返回 false 时需要等待可写。
+ * 解密出的明文先放在本层的缓冲区里，连接的输入缓冲区剩余空间不足一条记录时也能分几次取走。
+ * 与连接的输入缓冲区一样，空闲时不持有任何缓冲区。
+ */
+final class TlsChannel {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int RECORD_HEADER_LENGTH = 5;
+
+    private final NioHttpServer server;
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private final ByteBuffer[] single = new ByteBuffer[1];
+
+    // 写模式：[0, position) 是收到但尚未解密的密文
+    private ByteBuffer netIn;
+    // 读模式：[position, limit) 是尚未写出的密文
+    private ByteBuffer netOut;
+    // 写模式：[0, position) 是尚未交给连接的明文
+    private ByteBuffer appIn;
+    private boolean handshaking = true;
+    private boolean inputClosed;
+
+    TlsChannel(NioHttpServer server, SocketChannel channel) throws SSLException {
+        this.server = server;
+        this.channel = channel;
+        this.engine = server.tls.createEngine(server.http2);
+        engine.beginHandshake();
+    }
+
+    /**
+     * 读取明文到 dst，返回 0 表示需要等待更多网络数据，-1 表示对方已关闭。
+     * 握手尚未完成时先推进握手。
+     */
+    int read(ByteBuffer dst) throws IOException {
+        while (true) {
+            if (appIn != null && appIn.position() > 0) {
+                return drain(dst);
+            }
+            if (inputClosed) {
+                return -1;
+            }
+            if (engine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+                if (!handshake()) {
+                    return inputClosed ? -1 : 0;
+                }
+                continue;
+            }
+            if (!unwrap()) {
+                return inputClosed && (appIn == null || appIn.position() == 0) ? -1 : 0;
+            }
+        }
+    }
+
+    // 除了套接字中的数据，本层是否还有可以立即读出的明文或完整的记录；有时连接不能等待可读事件
+    boolean hasBufferedInput() {
+        if (appIn != null && appIn.position() > 0) {
+            return true;
+        }
+        if (netIn == null || netIn.position() < RECORD_HEADER_LENGTH) {
+            return false;
+        }
+        int length = ((netIn.get(3) & 0xff) << 8) | (netIn.get(4) & 0xff);
+        return netIn.position() >= RECORD_HEADER_LENGTH + length;
+    }
+
+    long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long total = 0;
+        while (true) {
+            if (!flush()) {
+                return total;
+            }
+            if (!hasRemaining(srcs, offset, length)) {
+                return total;
+            }
+            netOut = server.tlsOutputBuffers.acquire();
+            // 一次加密多条记录再写出，大响应每次系统调用写出的数据更多
+            try {
+                while (netOut.remaining() >= server.tlsPacketSize && hasRemaining(srcs, offset, length)) {
+                    SSLEngineResult result = engine.wrap(srcs, offset, length, netOut);
+                    checkResult(result);
+                    total += result.bytesConsumed();
+                    if (result.getStatus() != SSLEngineResult.Status.OK || result.bytesConsumed() == 0) {
+                        break;
+                    }
+                }
+            } finally {
+                netOut.flip();
+            }
+        }
+    }
+
+    /**
+     * 发送文件的一段：TLS 需要在用户空间加密，无法使用 transferTo，按块读入后加密写出。
+     * 返回本次交给 TLS 层的字节数，套接字缓冲区已满时可能小于 count。
+     */
+    long transferFrom(FileChannel file, long position, long count) throws IOException {
+        ByteBuffer chunk = server.tlsFileBuffers.acquire();
+        single[0] = chunk;
+        try {
+            long total = 0;
+            while (total < count && flush()) {
+                chunk.clear().limit((int) Math.min(chunk.capacity(), count - total));
+                int n = file.read(chunk, position + total);
+                if (n <= 0) {
+                    break;
+                }
+                chunk.flip();
+                long written = write(single, 0, 1);
+                total += written;
+                if (written < n) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            single[0] = null;
+            server.tlsFileBuffers.release(chunk);
+        }
+    }
+
+    /**
+     * 写出已加密的数据，握手或关闭需要发送消息时继续生成；返回 false 表示套接字缓冲区已满。
+     */
+    boolean flush() throws IOException {
+        while (true) {
+            if (netOut != null) {
+                while (netOut.hasRemaining()) {
+                    if (channel.write(netOut) == 0) {
+                        return false;
+                    }
+                }
+                server.tlsOutputBuffers.release(netOut);
+                netOut = null;
+            }
+            if (engine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                return true;
+            }
+            wrapHandshake();
+        }
+    }
+
+    // 推进握手，返回 false 表示需要等待网络数据或套接字可写
+    private boolean handshake() throws IOException {
+        while (true) {
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    break;
+                case NEED_WRAP:
+                    if (!flush()) {
+                        return false;
+                    }
+                    break;
+                case NEED_UNWRAP:
+                case NEED_UNWRAP_AGAIN:
+                    // 等待对方回应之前先把本方的消息发出去
+                    if (!flush()) {
+                        return false;
+                    }
+                    if (!unwrap()) {
+                        return false;
+                    }
+                    if (appIn != null && appIn.position() > 0) {
+                        return true;
+                    }
+                    break;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private void wrapHandshake() throws IOException {
+        netOut = server.tlsOutputBuffers.acquire();
+        try {
+            checkResult(engine.wrap(EMPTY, netOut));
+        } finally {
+            netOut.flip();
+        }
+    }
+
+    // 解密一条记录，返回 false 表示缓冲区中没有完整的记录且套接字暂时没有更多数据
+    private boolean unwrap() throws IOException {
+        if (netIn == null) {
+            netIn = server.tlsInputBuffers.acquire();
+        }
+        if (appIn == null) {
+            appIn = server.tlsAppBuffers.acquire();
+        }
+        while (true) {
+            netIn.flip();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, appIn);
+            } finally {
+                netIn.compact();
+            }
+            checkResult(result);
+            switch (result.getStatus()) {
+                case OK:
+                    return true;
+                case CLOSED:
+                    inputClosed = true;
+                    return true;
+                case BUFFER_UNDERFLOW:
+                    int n = channel.read(netIn);
+                    if (n < 0) {
+                        inputClosed = true;
+                        return false;
+                    }
+                    if (n == 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    // appIn 的容量足够容纳一条记录，只在取走明文之前再次解密时出现
+                    return false;
+            }
+        }
+    }
+
+    private void checkResult(SSLEngineResult result) {
+        if (handshaking && result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+            handshaking = false;
+            server.tls.handshakeFinished();
+        }
+    }
+
+    private int drain(ByteBuffer dst) {
+        appIn.flip();
+        int n = Math.min(appIn.remaining(), dst.remaining());
+        dst.put(dst.position(), appIn, appIn.position(), n);
+        dst.position(dst.position() + n);
+        appIn.position(appIn.position() + n);
+        appIn.compact();
+        return n;
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] srcs, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (srcs[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 连接空闲时归还没有数据的缓冲区
+    void releaseIdleBuffers() {
+        if (appIn != null && appIn.position() == 0) {
+            server.tlsAppBuffers.release(appIn);
+            appIn = null;
+        }
+        if (netIn != null && netIn.position() == 0) {
+            server.tlsInputBuffers.release(netIn);
+            netIn = null;
+        }
+    }
+
+    String getApplicationProtocol() {
+        return engine.getApplicationProtocol();
+    }
+
+    // 尽力发送 close_notify，不等待套接字可写
+    void close() {
+        if (handshaking) {
+            server.tls.handshakeFailed();
+        }
+        try {
+            engine.closeOutbound();
+            flush();
+        } catch (IOException | RuntimeException ignored) {
+        }
+        if (netIn != null) {
+            server.tlsInputBuffers.release(netIn);
+            netIn = null;
+        }
+        if (appIn != null) {
+            server.tlsAppBuffers.release(appIn);
+            appIn = null;
+        }
+        if (netOut != null) {
+            server.tlsOutputBuffers.release(netOut);
+            netOut = null;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+// src/top/mcocet/security/AddressTrie.java
+package top.mcocet.security;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 不可变的二进制基数树（路径压缩），保存 IPv4/IPv6 地址与 CIDR 网段。
+ * 增删只复制从根到目标节点的路径，旧版本仍可被并发读取；查询直接按地址的位逐层比较，
+ * 按 InetAddress 查询时唯一的分配是 getAddress() 返回的字节数组副本。
+ */
+public final class AddressTrie {
+    public static final AddressTrie EMPTY = new AddressTrie(null, null, 0);
+
+    private final Node v4;
+    private final Node v6;
+    private final int size;
+
+    private AddressTrie(Node v4, Node v6, int size) {
+        this.v4 = v4;
+        this.v6 = v6;
+        this.size = size;
+    }
+
+    public static AddressTrie of(Collection<IpRange> ranges) {
+        AddressTrie trie = EMPTY;
+        for (IpRange range : ranges) {
+            trie = trie.with(range);
+        }
+        return trie;
+    }
+
+    public AddressTrie with(IpRange range) {
+        if (containsExactly(range)) {
+            return this;
+        }
+        Node root = insert(range.isV6() ? v6 : v4, range.hi(), range.lo(), range.getPrefixLength());
+        return range.isV6() ? new AddressTrie(v4, root, size + 1) : new AddressTrie(root, v6, size + 1);
+    }
+
+    public AddressTrie without(IpRange range) {
+        if (!containsExactly(range)) {
+            return this;
+        }
+        Node root = remove(range.isV6() ? v6 : v4, range.hi(), range.lo(), range.getPrefixLength());
+        return range.isV6() ? new AddressTrie(v4, root, size - 1) : new AddressTrie(root, v6, size - 1);
+    }
+
+    public boolean contains(InetAddress address) {
+        boolean v4Address = address instanceof Inet4Address;
+        Node root = v4Address ? v4 : v6;
+        if (root == null) {
+            // 对应协议族没有条目时连地址字节也不必取
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (v4Address) {
+            return matches(root, IpRange.toLong(bytes, 0, 4) << 32, 0);
+        }
+        return matches(root, IpRange.toLong(bytes, 0, 8), IpRange.toLong(bytes, 8, 8));
+    }
+
+    // 判断给定地址（或网段的起始地址）是否落在任一条目内
+    public boolean contains(IpRange range) {
+        return matches(range.isV6() ? v6 : v4, range.hi(), range.lo());
+    }
+
+    public boolean containsExactly(IpRange range) {
+        Node node = range.isV6() ? v6 : v4;
+        int len = range.getPrefixLength();
+        while (node != null && node.len <= len && covers(node, range.hi(), range.lo())) {
+            if (node.len == len) {
+                return node.terminal;
+            }
+            node = bit(range.hi(), range.lo(), node.len) == 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<IpRange> toList() {
+        List<IpRange> result = new ArrayList<>(size);
+        collect(v4, false, result);
+        collect(v6, true, result);
+        return result;
+    }
+
+    private static void collect(Node node, boolean v6, List<IpRange> out) {
+        if (node == null) {
+            return;
+        }
+        if (node.terminal) {
+            out.add(new IpRange(v6, node.hi, node.lo, node.len));
+        }
+        collect(node.left, v6, out);
+        collect(node.right, v6, out);
+    }
+
+    private static boolean matches(Node node, long hi, long lo) {
+        while (node != null) {
+            if (!covers(node, hi, lo)) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            node = bit(hi, lo, node.len) == 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    private static Node insert(Node node, long hi, long lo, int len) {
+        if (node == null) {
+            return new Node(hi, lo, len, true, null, null);
+        }
+        int common = Math.min(commonPrefix(node.hi, node.lo, hi, lo), Math.min(node.len, len));
+        if (common == node.len && common == len) {
+            return node.terminal ? node : new Node(node.hi, node.lo, node.len, true, node.left, node.right);
+        }
+        if (common == node.len) {
+            // 新条目在该节点之下
+            if (bit(hi, lo, node.len) == 0) {
+                return new Node(node.hi, node.lo, node.len, node.terminal, insert(node.left, hi, lo, len), node.right);
+            }
+            return new Node(node.hi, node.lo, node.len, node.terminal, node.left, insert(node.right, hi, lo, len));
+        }
+        if (common == len) {
+            // 新条目是该节点的前缀，成为它的父节点
+            return bit(node.hi, node.lo, len) == 0
+                    ? new Node(hi, lo, len, true, node, null)
+                    : new Node(hi, lo, len, true, null, node);
+        }
+        // 在分歧位上新建分支节点
+        Node leaf = new Node(hi, lo, len, true, null, null);
+        long branchHi = hi & mask(common);
+        long branchLo = lo & mask(common - 64);
+        return bit(hi, lo, common) == 0
+                ? new Node(branchHi, branchLo, common, false, leaf, node)
+                : new Node(branchHi, branchLo, common, false, node, leaf);
+    }
+
+    private static Node remove(Node node, long hi, long lo, int len) {
+        if (node == null || node.len > len || !covers(node, hi, lo)) {
+            return node;
+        }
+        if (node.len == len) {
+            return compact(new Node(node.hi, node.lo, node.len, false, node.left, node.right));
+        }
+        Node updated = bit(hi, lo, node.len) == 0
+                ? new Node(node.hi, node.lo, node.len, node.terminal, remove(node.left, hi, lo, len), node.right)
+                : new Node(node.hi, node.lo, node.len, node.terminal, node.left, remove(node.right, hi, lo, len));
+        return compact(updated);
+    }
+
+    // 非终止节点只剩一个或没有子节点时不再需要
+    private static Node compact(Node node) {
+        if (node.terminal) {
+            return node;
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        return node;
+    }
+
+    private static boolean covers(Node node, long hi, long lo) {
+        return ((hi ^ node.hi) & mask(node.len)) == 0 && ((lo ^ node.lo) & mask(node.len - 64)) == 0;
+    }
+
+    private static int commonPrefix(long hi1, long lo1, long hi2, long lo2) {
+        long diff = hi1 ^ hi2;
+        if (diff != 0) {
+            return Long.numberOfLeadingZeros(diff);
+        }
+        return 64 + Long.numberOfLeadingZeros(lo1 ^ lo2);
+    }
+
+    private static int bit(long hi, long lo, int index) {
+        return index < 64 ? (int) ((hi >>> (63 - index)) & 1) : (int) ((lo >>> (127 - index)) & 1);
+    }
+
+    // 高位在前的前 bits 位掩码
+    static long mask(int bits) {
+        if (bits <= 0) {
+            return 0;
+        }
+        if (bits >= 64) {
+            return -1L;
+        }
+        return -1L << (64 - bits);
+    }
+
+    private static final class Node {
+        final long hi;
+        final long lo;
+        final int len;
+        final boolean terminal;
+        final Node left;
+        final Node right;
+
+        Node(long hi, long lo, int len, boolean terminal, Node left, Node right) {
+            this.hi = hi;
+            this.lo = lo;
+            this.len = len;
+            this.terminal = terminal;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
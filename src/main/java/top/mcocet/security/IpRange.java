@@ -0,0 +1,199 @@
+// src/top/mcocet/security/IpRange.java
+package top.mcocet.security;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IPv4/IPv6 地址或 CIDR 网段。地址按位存放在两个 long 中（IPv4 只用 hi 的高 32 位），
+ * 前缀之后的位全部清零。
+ */
+public final class IpRange {
+    private final boolean v6;
+    private final long hi;
+    private final long lo;
+    private final int prefixLength;
+
+    IpRange(boolean v6, long hi, long lo, int prefixLength) {
+        this.v6 = v6;
+        this.prefixLength = prefixLength;
+        this.hi = hi & AddressTrie.mask(prefixLength);
+        this.lo = lo & AddressTrie.mask(prefixLength - 64);
+    }
+
+    /**
+     * 解析 "1.2.3.4"、"10.0.0.0/8"、"2001:db8::1"、"2001:db8::/48" 等形式。
+     * 只接受字面量，不会触发 DNS 查询；格式错误时抛出 IllegalArgumentException。
+     */
+    public static IpRange parse(String text) {
+        String value = text.trim();
+        int slash = value.indexOf('/');
+        String address = slash >= 0 ? value.substring(0, slash) : value;
+        if (address.startsWith("[") && address.endsWith("]")) {
+            address = address.substring(1, address.length() - 1);
+        }
+        boolean v6 = address.indexOf(':') >= 0;
+        int maxBits = v6 ? 128 : 32;
+        int prefix = maxBits;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(value.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的前缀长度: " + text);
+            }
+            if (prefix < 0 || prefix > maxBits) {
+                throw new IllegalArgumentException("无效的前缀长度: " + text);
+            }
+        }
+        if (!v6) {
+            return new IpRange(false, (parseV4(address, text) & 0xFFFFFFFFL) << 32, 0, prefix);
+        }
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                throw new IllegalArgumentException("无效的IP地址: " + text);
+            }
+        }
+        byte[] bytes;
+        try {
+            // 只包含十六进制数字、冒号和点的字符串会被当作字面量解析
+            InetAddress parsed = InetAddress.getByName(address);
+            bytes = parsed.getAddress();
+            if (parsed instanceof Inet4Address) {
+                // IPv4 映射地址按 IPv4 处理；前缀短于 96 位的网段超出了映射地址的范围，无法换算成 IPv4 网段
+                if (prefix < 96) {
+                    throw new IllegalArgumentException("IPv4 映射地址的前缀长度不能小于 96: " + text);
+                }
+                return new IpRange(false, (toLong(bytes, 0, 4) & 0xFFFFFFFFL) << 32, 0, prefix - 96);
+            }
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("无效的IP地址: " + text);
+        }
+        return new IpRange(true, toLong(bytes, 0, 8), toLong(bytes, 8, 8), prefix);
+    }
+
+    // 解析失败时返回 null，适合检查 Host 头部这类不一定是 IP 的输入
+    // 先做不抛异常的字符检查，主机名这类明显不是字面量的输入不进入 parse，免去构造异常的开销
+    public static IpRange tryParse(String text) {
+        String value = text.trim();
+        if (!looksLikeLiteral(value)) {
+            return null;
+        }
+        try {
+            return parse(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // IPv4 只能由数字和点组成，IPv6 必须含冒号且只含十六进制数字、冒号和点；前缀长度留给 parse 检查
+    private static boolean looksLikeLiteral(String value) {
+        int slash = value.indexOf('/');
+        int start = 0;
+        int end = slash >= 0 ? slash : value.length();
+        if (end - start >= 2 && value.charAt(0) == '[' && value.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+        boolean v6 = false;
+        boolean hex = false;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == ':') {
+                v6 = true;
+            } else if (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F') {
+                hex = true;
+            } else if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return v6 || !hex;
+    }
+
+    public static IpRange of(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return new IpRange(false, (toLong(bytes, 0, 4) & 0xFFFFFFFFL) << 32, 0, 32);
+        }
+        return new IpRange(true, toLong(bytes, 0, 8), toLong(bytes, 8, 8), 128);
+    }
+
+    private static int parseV4(String address, String original) {
+        String[] parts = address.split("\\.", -1);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("无效的IP地址: " + original);
+        }
+        int result = 0;
+        for (String part : parts) {
+            if (part.isEmpty() || part.length() > 3) {
+                throw new IllegalArgumentException("无效的IP地址: " + original);
+            }
+            int octet = 0;
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("无效的IP地址: " + original);
+                }
+                octet = octet * 10 + (c - '0');
+            }
+            if (octet > 255) {
+                throw new IllegalArgumentException("无效的IP地址: " + original);
+            }
+            result = (result << 8) | octet;
+        }
+        return result;
+    }
+
+    // 大端字节转为 long，AddressTrie 按 InetAddress 查询时直接使用
+    static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    public boolean isV6() { return v6; }
+    long hi() { return hi; }
+    long lo() { return lo; }
+    public int getPrefixLength() { return prefixLength; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IpRange)) {
+            return false;
+        }
+        IpRange other = (IpRange) o;
+        return v6 == other.v6 && hi == other.hi && lo == other.lo && prefixLength == other.prefixLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hi * 31 + lo) * 31 + prefixLength + (v6 ? 1 : 0);
+    }
+
+    // 单个地址不带前缀，网段写成 CIDR 形式
+    @Override
+    public String toString() {
+        String address;
+        if (!v6) {
+            long v = hi >>> 32;
+            address = ((v >>> 24) & 0xFF) + "." + ((v >>> 16) & 0xFF) + "." + ((v >>> 8) & 0xFF) + "." + (v & 0xFF);
+        } else {
+            StringBuilder sb = new StringBuilder(39);
+            for (int i = 0; i < 8; i++) {
+                long word = i < 4 ? hi >>> (48 - 16 * i) : lo >>> (48 - 16 * (i - 4));
+                if (i > 0) {
+                    sb.append(':');
+                }
+                sb.append(Long.toHexString(word & 0xFFFF));
+            }
+            address = sb.toString();
+        }
+        return prefixLength == (v6 ? 128 : 32) ? address : address + "/" + prefixLength;
+    }
+}
@@ -0,0 +1,114 @@
+// src/top/mcocet/security/PemFiles.java
+package top.mcocet.security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 读取 PEM 格式的证书链和私钥，组装成内存中的 KeyStore。
+ * 私钥支持 PKCS#8（BEGIN PRIVATE KEY）和 RSA 的 PKCS#1（BEGIN RSA PRIVATE KEY），
+ * 加密的私钥和 SEC1 格式的 EC 私钥需要先用 openssl pkcs8 -topk8 -nocrypt 转换。
+ */
+final class PemFiles {
+    static final String ALIAS = "server";
+
+    private static final Pattern KEY_BLOCK = Pattern.compile(
+            "-----BEGIN ([A-Z ]*)PRIVATE KEY-----(.*?)-----END \\1PRIVATE KEY-----", Pattern.DOTALL);
+    private static final String[] KEY_ALGORITHMS = {"RSA", "EC", "Ed25519", "Ed448", "RSASSA-PSS"};
+    // rsaEncryption 的 AlgorithmIdentifier：SEQUENCE { OID 1.2.840.113549.1.1.1, NULL }
+    private static final byte[] RSA_ALGORITHM = {
+            0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01, 0x05, 0x00};
+
+    private PemFiles() {
+    }
+
+    static KeyStore keyStore(Path certificate, Path privateKey, char[] password) throws IOException, GeneralSecurityException {
+        Collection<? extends Certificate> chain;
+        try (InputStream in = Files.newInputStream(certificate)) {
+            chain = CertificateFactory.getInstance("X.509").generateCertificates(in);
+        }
+        if (chain.isEmpty()) {
+            throw new GeneralSecurityException("证书文件中没有证书: " + certificate);
+        }
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        store.load(null, null);
+        store.setKeyEntry(ALIAS, readPrivateKey(privateKey), password, chain.toArray(new Certificate[0]));
+        return store;
+    }
+
+    private static PrivateKey readPrivateKey(Path file) throws IOException, GeneralSecurityException {
+        Matcher matcher = KEY_BLOCK.matcher(Files.readString(file, StandardCharsets.US_ASCII));
+        if (!matcher.find()) {
+            throw new GeneralSecurityException("私钥文件中没有 PEM 格式的私钥: " + file);
+        }
+        String type = matcher.group(1).trim();
+        byte[] der = Base64.getMimeDecoder().decode(matcher.group(2));
+        switch (type) {
+            case "":
+                break;
+            case "RSA":
+                der = pkcs1ToPkcs8(der);
+                break;
+            default:
+                throw new GeneralSecurityException("不支持 " + type + " PRIVATE KEY，请先转换为未加密的 PKCS#8: "
+                        + "openssl pkcs8 -topk8 -nocrypt -in " + file.getFileName());
+        }
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(der);
+        for (String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePrivate(spec);
+            } catch (GeneralSecurityException ignored) {
+                // 尝试下一种算法
+            }
+        }
+        throw new GeneralSecurityException("无法识别私钥的算法: " + file);
+    }
+
+    // PrivateKeyInfo ::= SEQUENCE { INTEGER 0, AlgorithmIdentifier, OCTET STRING { RSAPrivateKey } }
+    private static byte[] pkcs1ToPkcs8(byte[] pkcs1) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pkcs1.length + 32);
+        body.writeBytes(new byte[]{0x02, 0x01, 0x00});
+        body.writeBytes(RSA_ALGORITHM);
+        body.write(0x04);
+        writeLength(body, pkcs1.length);
+        body.writeBytes(pkcs1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 4);
+        out.write(0x30);
+        writeLength(out, body.size());
+        out.writeBytes(body.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length < 0x100) {
+            out.write(0x81);
+            out.write(length);
+        } else if (length < 0x10000) {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length);
+        } else {
+            out.write(0x83);
+            out.write(length >> 16);
+            out.write(length >> 8);
+            out.write(length);
+        }
+    }
+}
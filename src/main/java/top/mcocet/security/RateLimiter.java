@@ -0,0 +1,232 @@
+// src/top/mcocet/security/RateLimiter.java
+package top.mcocet.security;
+
+import top.mcocet.config.ConfigSnapshot;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 按客户端 IP 限流：每秒请求数和每秒字节数两个令牌桶，外加同时处理中的请求数上限。
+ * 状态表有容量上限，空闲条目由后台线程定期清除，表满时批量淘汰没有进行中请求的条目，
+ * 伪造大量来源地址也不会让内存无限增长。
+ */
+public class RateLimiter {
+    // tryAcquire 的返回值：未启用限流，请求不占用配额，也不需要 release
+    public static final long UNLIMITED = -1;
+    // tryAcquire 的返回值：放行，处理结束后必须调用 release
+    public static final long ADMITTED = 0;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+    private final Consumer<String> onAbuse;
+    private final LongAdder rejected = new LongAdder();
+    private volatile ConfigSnapshot configuredFrom;
+    private volatile Limits limits;
+
+    /**
+     * @param onAbuse 客户端在统计窗口内被拒绝的次数达到 autoBlacklistThreshold 时调用一次，参数为客户端 IP
+     */
+    public RateLimiter(ConfigSnapshot settings, Consumer<String> onAbuse) {
+        this.onAbuse = onAbuse;
+        configure(settings);
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 10, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 在解析文件之前调用。返回 UNLIMITED 或 ADMITTED 表示放行；
+     * 返回正数表示拒绝，数值为建议客户端等待的秒数（Retry-After）。
+     */
+    public long tryAcquire(String clientIP, ConfigSnapshot settings) {
+        Limits current = configure(settings);
+        if (!current.enabled) {
+            return UNLIMITED;
+        }
+        long now = System.nanoTime();
+        Client client = clients.get(clientIP);
+        if (client == null) {
+            if (clients.size() >= current.tableSize) {
+                evict(current);
+            }
+            client = clients.computeIfAbsent(clientIP, k -> new Client(current, now));
+        }
+
+        long retryAfter;
+        if (current.maxConcurrent > 0 && client.inFlight.incrementAndGet() > current.maxConcurrent) {
+            client.inFlight.decrementAndGet();
+            retryAfter = 1;
+        } else {
+            retryAfter = client.take(current, now);
+            if (retryAfter == ADMITTED) {
+                if (current.maxConcurrent <= 0) {
+                    client.inFlight.incrementAndGet();
+                }
+                return ADMITTED;
+            }
+            if (current.maxConcurrent > 0) {
+                client.inFlight.decrementAndGet();
+            }
+        }
+
+        rejected.increment();
+        if (current.autoBlacklistThreshold > 0 && client.violation(current, now)) {
+            onAbuse.accept(clientIP);
+        }
+        return retryAfter;
+    }
+
+    // 请求处理完毕，释放并发名额，并按实际发送的字节数扣减字节令牌
+    public void release(String clientIP, long bytesSent) {
+        Client client = clients.get(clientIP);
+        if (client == null) {
+            return;
+        }
+        // 条目可能在请求处理期间被淘汰后重建，计数不能减到负数
+        client.inFlight.updateAndGet(n -> n > 0 ? n - 1 : 0);
+        if (bytesSent > 0) {
+            client.debit(bytesSent);
+        }
+    }
+
+    // 配置快照未变时直接复用已解析的限额
+    private Limits configure(ConfigSnapshot settings) {
+        if (settings == configuredFrom) {
+            return limits;
+        }
+        Limits updated = Limits.from(settings);
+        if (!updated.equals(limits)) {
+            limits = updated;
+        }
+        configuredFrom = settings;
+        return limits;
+    }
+
+    // 清除长时间没有请求的条目；令牌桶此时早已回满，删除不会改变限流结果
+    private void sweep() {
+        Limits current = limits;
+        long now = System.nanoTime();
+        clients.values().removeIf(c -> c.inFlight.get() == 0 && now - c.lastSeen > current.idleTimeoutNanos);
+    }
+
+    // 表满时先清除空闲条目，仍然不够时再淘汰约十分之一没有进行中请求的条目
+    private synchronized void evict(Limits current) {
+        if (clients.size() < current.tableSize) {
+            return;
+        }
+        sweep();
+        int target = current.tableSize - Math.max(1, current.tableSize / 10);
+        Iterator<Map.Entry<String, Client>> it = clients.entrySet().iterator();
+        while (clients.size() > target && it.hasNext()) {
+            if (it.next().getValue().inFlight.get() == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private static final class Client {
+        final AtomicInteger inFlight = new AtomicInteger();
+        // 清理线程不加锁读取
+        volatile long lastSeen;
+        // 以下字段在 synchronized (this) 中读写
+        double requestTokens;
+        double byteTokens;
+        long lastRefill;
+        int violations;
+        long windowStart;
+        boolean reported;
+
+        Client(Limits limits, long now) {
+            this.requestTokens = limits.requestBurst;
+            this.byteTokens = limits.byteBurst;
+            this.lastRefill = now;
+            this.lastSeen = now;
+            this.windowStart = now;
+        }
+
+        // 放行时返回 ADMITTED，否则返回令牌回补到可用所需的秒数
+        synchronized long take(Limits limits, long now) {
+            lastSeen = now;
+            double elapsed = (now - lastRefill) / (double) NANOS_PER_SECOND;
+            lastRefill = now;
+            if (limits.requestsPerSecond > 0) {
+                requestTokens = Math.min(limits.requestBurst, requestTokens + elapsed * limits.requestsPerSecond);
+            }
+            if (limits.bytesPerSecond > 0) {
+                byteTokens = Math.min(limits.byteBurst, byteTokens + elapsed * limits.bytesPerSecond);
+                // 字节令牌允许透支：响应大小事先未知，发送后才扣减，欠账还清之前拒绝新请求
+                if (byteTokens <= 0) {
+                    return secondsUntil(-byteTokens, limits.bytesPerSecond);
+                }
+            }
+            if (limits.requestsPerSecond > 0) {
+                if (requestTokens < 1) {
+                    return secondsUntil(1 - requestTokens, limits.requestsPerSecond);
+                }
+                requestTokens -= 1;
+            }
+            return ADMITTED;
+        }
+
+        synchronized void debit(long bytes) {
+            byteTokens -= bytes;
+        }
+
+        // 记录一次被拒绝；在同一统计窗口内首次达到阈值时返回 true
+        synchronized boolean violation(Limits limits, long now) {
+            if (now - windowStart > limits.autoBlacklistWindowNanos) {
+                windowStart = now;
+                violations = 0;
+            }
+            violations++;
+            if (violations >= limits.autoBlacklistThreshold && !reported) {
+                reported = true;
+                return true;
+            }
+            return false;
+        }
+
+        private static long secondsUntil(double deficit, double rate) {
+            return Math.max(1, (long) Math.ceil(deficit / rate));
+        }
+    }
+
+    private record Limits(boolean enabled, double requestsPerSecond, double requestBurst,
+                          double bytesPerSecond, double byteBurst, int maxConcurrent, int tableSize,
+                          long idleTimeoutNanos, int autoBlacklistThreshold, long autoBlacklistWindowNanos) {
+
+        static Limits from(ConfigSnapshot settings) {
+            double bytesPerSecond = settings.getRateLimitBytes();
+            return new Limits(settings.isRateLimit(),
+                    settings.getRateLimitRequests(),
+                    Math.max(1, settings.getRateLimitBurst()),
+                    bytesPerSecond,
+                    Math.max(bytesPerSecond, settings.getRateLimitBytesBurst()),
+                    settings.getMaxConcurrentPerIp(),
+                    Math.max(16, settings.getRateLimitTableSize()),
+                    settings.getRateLimitIdleTimeout() * NANOS_PER_SECOND,
+                    settings.getAutoBlacklistThreshold(),
+                    settings.getAutoBlacklistWindow() * NANOS_PER_SECOND);
+        }
+    }
+}
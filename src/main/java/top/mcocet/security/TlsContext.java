@@ -0,0 +1,485 @@
+// src/top/mcocet/security/TlsContext.java
+package top.mcocet.security;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import top.mcocet.config.ConfigSnapshot;
+import top.mcocet.metrics.ServerMetrics;
+import top.mcocet.service.DocumentRootWatcher;
+import top.mcocet.service.LoggerService;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务器的 TLS 配置。整个进程只创建一个 SSLContext，两种引擎共用，会话缓存和会话票据的密钥都保存在其中；
+ * 证书和私钥放在可替换的 KeyManager 里，证书文件更新后只替换 KeyManager，已签发的会话仍然可以恢复。
+ * SSLParameters 预先生成，每个连接只复制一次，不再重新计算协议和密码套件列表。
+ */
+public class TlsContext {
+    private static final String TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+    private static final long RELOAD_DELAY_MILLIS = 500;
+    private static final String[] HTTP1_PROTOCOLS = {"http/1.1"};
+    private static final String[] H2_PROTOCOLS = {"h2", "http/1.1"};
+
+    private final LoggerService logger;
+    private final CertificateSelector selector;
+    private final SSLContext sslContext;
+    private final SSLParameters http1Parameters;
+    private final SSLParameters http2Parameters;
+    private final String protocols;
+    private final LongAdder handshakes = new LongAdder();
+    private final LongAdder failedHandshakes = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tls-reloader");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<DocumentRootWatcher> watchers = new ArrayList<>();
+    private Set<Path> watchedFiles = Collections.emptySet();
+    private boolean watching;
+    private volatile ConfigSnapshot config;
+    private volatile X509Certificate certificate;
+
+    private record Material(X509ExtendedKeyManager keyManager, X509Certificate certificate) {
+    }
+
+    /**
+     * 读取 tlsKeystore（PKCS12 或 JKS），未配置时读取 tlsCertificate 和 tlsPrivateKey（PEM）。
+     * 证书与私钥不匹配、密码错误或协议列表中没有受支持的协议时抛出异常。
+     */
+    public TlsContext(ConfigSnapshot config, LoggerService logger) throws IOException, GeneralSecurityException {
+        this.logger = logger;
+        this.config = config;
+        Material material = load(config);
+        this.certificate = material.certificate();
+        this.selector = new CertificateSelector(material.keyManager());
+        this.sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(new KeyManager[]{selector}, null, null);
+        applySessionSettings(config);
+        String[] enabled = enabledProtocols(config.getTlsProtocols());
+        this.protocols = String.join(",", enabled);
+        this.http1Parameters = parameters(enabled, HTTP1_PROTOCOLS);
+        this.http2Parameters = parameters(enabled, H2_PROTOCOLS);
+        checkValidity(certificate);
+    }
+
+    /**
+     * JDK 在第一次使用 TLS 时读取会话票据的开关，必须在创建任何 SSLContext 之前调用；
+     * 命令行显式指定时以命令行为准。开启后 TLS 1.3 的会话恢复不需要服务器保存会话。
+     */
+    public static void configureSessionTickets(ConfigSnapshot config) {
+        if (System.getProperty(TICKETS_PROPERTY) == null) {
+            System.setProperty(TICKETS_PROPERTY, String.valueOf(config.isTlsSessionTickets()));
+        }
+    }
+
+    // http2 为 true 时通过 ALPN 同时提供 h2 和 http/1.1
+    public SSLEngine createEngine(boolean http2) {
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setSSLParameters(http2 ? http2Parameters : http1Parameters);
+        return engine;
+    }
+
+    // JDK HttpsServer 只支持 HTTP/1.1，ALPN 只提供 http/1.1
+    public HttpsConfigurator configurator() {
+        return new HttpsConfigurator(sslContext) {
+            @Override
+            public void configure(HttpsParameters params) {
+                params.setSSLParameters(http1Parameters);
+            }
+        };
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    // 监听证书文件所在的目录，文件变化后稍等片刻再重新加载，证书和私钥先后替换时只加载一次
+    public synchronized void startWatching() {
+        watching = true;
+        watch(config);
+    }
+
+    private void watch(ConfigSnapshot settings) {
+        Set<Path> files = sourceFiles(settings);
+        if (files.equals(watchedFiles)) {
+            return;
+        }
+        for (DocumentRootWatcher watcher : watchers) {
+            watcher.stop();
+        }
+        watchers.clear();
+        watchedFiles = files;
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (Path file : files) {
+            dirs.add(file.getParent());
+        }
+        for (Path dir : dirs) {
+            DocumentRootWatcher watcher = new DocumentRootWatcher(dir, logger, false);
+            watcher.addListener(changed -> {
+                if (changed.equals(dir) || files.contains(changed)) {
+                    scheduleReload();
+                }
+            });
+            watcher.start();
+            watchers.add(watcher);
+        }
+    }
+
+    private void scheduleReload() {
+        if (reloadPending.compareAndSet(false, true)) {
+            reloader.schedule(() -> {
+                reloadPending.set(false);
+                reload(config);
+            }, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 按给定配置重新读取证书和私钥，失败时继续使用当前证书。
+     * 正在握手的连接使用选择证书时的版本；会话缓存大小和超时同时更新，协议列表需要重启才能修改。
+     */
+    public synchronized boolean reload(ConfigSnapshot latest) {
+        Material material;
+        try {
+            material = load(latest);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warning("重新加载 TLS 证书失败，继续使用当前证书: " + e.getMessage());
+            return false;
+        }
+        config = latest;
+        selector.replace(material.keyManager());
+        certificate = material.certificate();
+        applySessionSettings(latest);
+        reloads.increment();
+        logger.info("已重新加载 TLS 证书: " + certificate.getSubjectX500Principal().getName()
+                + ", 有效期至 " + certificate.getNotAfter().toInstant());
+        checkValidity(certificate);
+        if (watching) {
+            watch(latest);
+        }
+        return true;
+    }
+
+    public synchronized void close() {
+        for (DocumentRootWatcher watcher : watchers) {
+            watcher.stop();
+        }
+        watchers.clear();
+        watchedFiles = Collections.emptySet();
+        reloader.shutdownNow();
+    }
+
+    private void applySessionSettings(ConfigSnapshot settings) {
+        SSLSessionContext sessions = sslContext.getServerSessionContext();
+        sessions.setSessionCacheSize(settings.getTlsSessionCacheSize());
+        sessions.setSessionTimeout(settings.getTlsSessionTimeout());
+    }
+
+    private String[] enabledProtocols(String setting) throws GeneralSecurityException {
+        List<String> supported = Arrays.asList(sslContext.getSupportedSSLParameters().getProtocols());
+        List<String> enabled = new ArrayList<>();
+        for (String protocol : setting.split(",")) {
+            protocol = protocol.trim();
+            if (supported.contains(protocol)) {
+                enabled.add(protocol);
+            } else if (!protocol.isEmpty()) {
+                logger.warning("不支持的 TLS 协议版本，已忽略: " + protocol);
+            }
+        }
+        if (enabled.isEmpty()) {
+            throw new GeneralSecurityException("tlsProtocols 中没有受支持的协议版本: " + setting);
+        }
+        return enabled.toArray(new String[0]);
+    }
+
+    private SSLParameters parameters(String[] enabled, String[] applicationProtocols) {
+        SSLParameters parameters = sslContext.getDefaultSSLParameters();
+        parameters.setProtocols(enabled);
+        // 按服务器的顺序选择密码套件，优先使用 AEAD 套件
+        parameters.setUseCipherSuitesOrder(true);
+        parameters.setApplicationProtocols(applicationProtocols);
+        return parameters;
+    }
+
+    private void checkValidity(X509Certificate cert) {
+        try {
+            cert.checkValidity();
+        } catch (CertificateException e) {
+            logger.warning("TLS 证书不在有效期内: " + cert.getSubjectX500Principal().getName()
+                    + ", 有效期 " + cert.getNotBefore().toInstant() + " 至 " + cert.getNotAfter().toInstant());
+        }
+    }
+
+    private static Set<Path> sourceFiles(ConfigSnapshot settings) {
+        Set<Path> files = new LinkedHashSet<>();
+        if (!settings.getTlsKeystore().isEmpty()) {
+            files.add(Paths.get(settings.getTlsKeystore()).toAbsolutePath().normalize());
+        } else {
+            files.add(Paths.get(settings.getTlsCertificate()).toAbsolutePath().normalize());
+            files.add(Paths.get(settings.getTlsPrivateKey()).toAbsolutePath().normalize());
+        }
+        return files;
+    }
+
+    private static Material load(ConfigSnapshot settings) throws IOException, GeneralSecurityException {
+        char[] password = settings.getTlsKeystorePassword().toCharArray();
+        KeyStore store;
+        if (!settings.getTlsKeystore().isEmpty()) {
+            store = KeyStore.getInstance(Paths.get(settings.getTlsKeystore()).toFile(), password);
+        } else if (!settings.getTlsCertificate().isEmpty() && !settings.getTlsPrivateKey().isEmpty()) {
+            store = PemFiles.keyStore(Paths.get(settings.getTlsCertificate()), Paths.get(settings.getTlsPrivateKey()),
+                    password);
+        } else {
+            throw new GeneralSecurityException("启用 tls 时需要配置 tlsKeystore，或同时配置 tlsCertificate 和 tlsPrivateKey");
+        }
+
+        X509Certificate leaf = null;
+        for (String alias : Collections.list(store.aliases())) {
+            if (!store.isKeyEntry(alias)) {
+                continue;
+            }
+            Key key = store.getKey(alias, password);
+            Certificate[] chain = store.getCertificateChain(alias);
+            if (!(key instanceof PrivateKey) || chain == null || chain.length == 0
+                    || !(chain[0] instanceof X509Certificate)) {
+                continue;
+            }
+            checkKeyPair((PrivateKey) key, (X509Certificate) chain[0], alias);
+            if (leaf == null) {
+                leaf = (X509Certificate) chain[0];
+            }
+        }
+        if (leaf == null) {
+            throw new GeneralSecurityException("密钥库中没有私钥及对应的证书");
+        }
+
+        KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(store, password);
+        for (KeyManager keyManager : factory.getKeyManagers()) {
+            if (keyManager instanceof X509ExtendedKeyManager) {
+                return new Material((X509ExtendedKeyManager) keyManager, leaf);
+            }
+        }
+        throw new GeneralSecurityException("无法创建 X.509 KeyManager");
+    }
+
+    // 证书和私钥分两次替换时，中间状态不匹配，用私钥签名、证书公钥验证来发现
+    private static void checkKeyPair(PrivateKey key, X509Certificate cert, String alias) throws GeneralSecurityException {
+        String algorithm;
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                algorithm = "SHA256withRSA";
+                break;
+            case "EC":
+                algorithm = "SHA256withECDSA";
+                break;
+            case "Ed25519":
+            case "Ed448":
+            case "EdDSA":
+                algorithm = "EdDSA";
+                break;
+            default:
+                // 其他算法（如 RSASSA-PSS）需要额外参数，不做检查
+                return;
+        }
+        if (!key.getAlgorithm().equals(cert.getPublicKey().getAlgorithm())) {
+            throw new GeneralSecurityException("私钥与证书不匹配: " + cert.getSubjectX500Principal().getName()
+                    + " 的公钥为 " + cert.getPublicKey().getAlgorithm() + "，私钥为 " + key.getAlgorithm());
+        }
+        byte[] probe = alias.getBytes(StandardCharsets.UTF_8);
+        Signature signer = Signature.getInstance(algorithm);
+        signer.initSign(key);
+        signer.update(probe);
+        byte[] signature = signer.sign();
+        Signature verifier = Signature.getInstance(algorithm);
+        verifier.initVerify(cert.getPublicKey());
+        verifier.update(probe);
+        if (!verifier.verify(signature)) {
+            throw new GeneralSecurityException("私钥与证书不匹配: " + cert.getSubjectX500Principal().getName());
+        }
+    }
+
+    // ---- 统计 ----
+
+    // 由 NIO 引擎在握手完成或失败时调用；JDK HttpsServer 不提供握手完成的通知
+    public void handshakeFinished() {
+        handshakes.increment();
+    }
+
+    public void handshakeFailed() {
+        failedHandshakes.increment();
+    }
+
+    // 完整握手需要选择证书，会话恢复不需要，因此证书被选中的次数就是完整握手的次数
+    public long getFullHandshakes() {
+        return selector.selections.sum();
+    }
+
+    public long getHandshakes() {
+        return handshakes.sum();
+    }
+
+    public long getFailedHandshakes() {
+        return failedHandshakes.sum();
+    }
+
+    public long getReloads() {
+        return reloads.sum();
+    }
+
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    public String getProtocols() {
+        return protocols;
+    }
+
+    public int getSessionCacheSize() {
+        return sslContext.getServerSessionContext().getSessionCacheSize();
+    }
+
+    public int getSessionTimeout() {
+        return sslContext.getServerSessionContext().getSessionTimeout();
+    }
+
+    // nio 为 false 时只有完整握手次数，JDK 引擎无法统计全部握手
+    public void registerMetrics(ServerMetrics metrics, boolean nio) {
+        metrics.counter("motweb_tls_full_handshakes_total", "需要证书的完整 TLS 握手次数，会话恢复不计入",
+                this::getFullHandshakes);
+        if (nio) {
+            metrics.counter("motweb_tls_handshakes_total", "完成的 TLS 握手次数，包括会话恢复", this::getHandshakes);
+            metrics.counter("motweb_tls_handshake_failures_total", "未完成握手就关闭的 TLS 连接数",
+                    this::getFailedHandshakes);
+        }
+        metrics.counter("motweb_tls_certificate_reloads_total", "证书重新加载成功的次数", this::getReloads);
+        metrics.gauge("motweb_tls_certificate_expiry_seconds", "当前证书的过期时间（Unix 时间戳）",
+                () -> certificate.getNotAfter().getTime() / 1000.0);
+    }
+
+    /**
+     * 把证书选择委托给当前的 KeyManager，重新加载时整体替换。
+     * 返回的别名带有版本号，握手期间发生替换时，证书链和私钥仍从选择别名时的版本读取。
+     */
+    private static final class CertificateSelector extends X509ExtendedKeyManager {
+        private record Version(int number, X509ExtendedKeyManager keyManager) {
+        }
+
+        final LongAdder selections = new LongAdder();
+        private volatile Version current;
+        private volatile Version previous;
+
+        CertificateSelector(X509ExtendedKeyManager keyManager) {
+            current = new Version(0, keyManager);
+        }
+
+        void replace(X509ExtendedKeyManager keyManager) {
+            Version old = current;
+            previous = old;
+            current = new Version(old.number() + 1, keyManager);
+        }
+
+        private String tag(Version version, String alias) {
+            if (alias == null) {
+                return null;
+            }
+            selections.increment();
+            return version.number() + ":" + alias;
+        }
+
+        private X509ExtendedKeyManager find(String alias) {
+            int colon = alias != null ? alias.indexOf(':') : -1;
+            if (colon <= 0) {
+                return null;
+            }
+            Version version = current;
+            if (!alias.startsWith(version.number() + ":")) {
+                version = previous;
+                if (version == null || !alias.startsWith(version.number() + ":")) {
+                    return null;
+                }
+            }
+            return version.keyManager();
+        }
+
+        @Override
+        public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+            Version version = current;
+            return tag(version, version.keyManager().chooseEngineServerAlias(keyType, issuers, engine));
+        }
+
+        @Override
+        public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+            Version version = current;
+            return tag(version, version.keyManager().chooseServerAlias(keyType, issuers, socket));
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(String alias) {
+            X509ExtendedKeyManager keyManager = find(alias);
+            return keyManager != null ? keyManager.getCertificateChain(alias.substring(alias.indexOf(':') + 1)) : null;
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            X509ExtendedKeyManager keyManager = find(alias);
+            return keyManager != null ? keyManager.getPrivateKey(alias.substring(alias.indexOf(':') + 1)) : null;
+        }
+
+        @Override
+        public String[] getServerAliases(String keyType, Principal[] issuers) {
+            return current.keyManager().getServerAliases(keyType, issuers);
+        }
+
+        // 服务器不使用客户端证书
+        @Override
+        public String[] getClientAliases(String keyType, Principal[] issuers) {
+            return null;
+        }
+
+        @Override
+        public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+            return null;
+        }
+
+        @Override
+        public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+            return null;
+        }
+    }
+}
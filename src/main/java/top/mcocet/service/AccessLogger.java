@@ -0,0 +1,386 @@
+// src/top/mcocet/service/AccessLogger.java
+package top.mcocet.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class AccessLogger implements Runnable {
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final int BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final DateTimeFormatter ROTATE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // 预分配的事件槽位，请求线程只填字段，不产生新对象
+    private final AccessEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder dropped = new LongAdder();
+    private final Path file;
+    private final long maxFileSize;
+    private final long rotateIntervalMillis;
+    private final boolean consoleEcho;
+    private final LoggerService logger;
+
+    // 以下字段只由写线程访问
+    private final ByteBuffer out = ByteBuffer.allocateDirect(256 * 1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(256);
+    // 文件无法打开时为 null，期间的事件计入丢弃数，每秒重试一次
+    private FileChannel channel;
+    private long written;
+    private long nextRotation;
+    private long reopenAt;
+    // 已经记录过写入错误，恢复正常写入前不再重复记录；轮转错误在轮转成功前只记录一次
+    private boolean failing;
+    private boolean rotateFailing;
+    private long cachedSecond = -1;
+    private String cachedSecondText;
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public AccessLogger(String file, int queueSize, OverflowPolicy overflowPolicy,
+                        long maxFileSize, long rotateIntervalSeconds, boolean consoleEcho, LoggerService logger) {
+        int capacity = Integer.highestOneBit(Math.max(2, queueSize - 1)) << 1;
+        this.slots = new AccessEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new AccessEvent();
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.file = Paths.get(file);
+        this.maxFileSize = maxFileSize;
+        this.rotateIntervalMillis = rotateIntervalSeconds * 1000;
+        this.consoleEcho = consoleEcho;
+        this.logger = logger;
+    }
+
+    public static OverflowPolicy parsePolicy(String value) {
+        return "block".equalsIgnoreCase(value) ? OverflowPolicy.BLOCK : OverflowPolicy.DROP;
+    }
+
+    public void start() {
+        try {
+            openChannel();
+        } catch (IOException e) {
+            logger.severe("访问日志初始化失败: " + e.getMessage());
+            return;
+        }
+        writer = new Thread(this, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "access-log-shutdown"));
+    }
+
+    /**
+     * 由请求线程调用，只把事件投递到环形缓冲区。队列满时按溢出策略丢弃或等待。
+     * hostHeader 仅在 HTML 页面访问时需要，用于提示通过 IP 访问的客户端。
+     */
+    public void log(String clientIP, String method, String uri, int status, long bytes,
+                    String mimeType, long durationNanos, boolean html, String hostHeader) {
+        if (writer == null) {
+            return;
+        }
+        long pos;
+        while ((pos = claim()) < 0) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(50_000);
+        }
+        AccessEvent event = slots[(int) pos & mask];
+        event.timestamp = System.currentTimeMillis();
+        event.clientIP = clientIP;
+        event.method = method;
+        event.uri = uri;
+        event.status = status;
+        event.bytes = bytes;
+        event.mimeType = mimeType;
+        event.durationNanos = durationNanos;
+        event.html = html;
+        event.hostHeader = hostHeader;
+        sequences.set((int) pos & mask, pos + 1);
+    }
+
+    // 无锁地占用一个槽位；队列已满时返回 -1
+    private long claim() {
+        long pos = tail.get();
+        while (true) {
+            long dif = sequences.get((int) pos & mask) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return -1;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            int drained = drain();
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        // 文件只由本线程写入，停止后由本线程写出剩余事件并关闭
+        while (drain() > 0) {
+            // 写出剩余事件
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.severe("关闭访问日志失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写出一批事件。写入或轮转失败时也照常消费槽位，不能让队列卡住：
+     * 否则 accessLogOverflow: block 下所有请求线程（包括 NIO 事件循环）都会等在 log 上。
+     */
+    private int drain() {
+        long now = System.currentTimeMillis();
+        if (channel == null) {
+            if (now >= reopenAt) {
+                reopen(now);
+            }
+        } else if ((maxFileSize > 0 && written >= maxFileSize) || (rotateIntervalMillis > 0 && now >= nextRotation)) {
+            rotate(now);
+        }
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            long pos = head;
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                break;
+            }
+            if (channel != null) {
+                try {
+                    format(slots[index]);
+                } catch (IOException e) {
+                    failed("写入访问日志失败: ", e);
+                }
+            } else {
+                dropped.increment();
+            }
+            slots[index].clear();
+            sequences.set(index, pos + slots.length);
+            head = pos + 1;
+            count++;
+        }
+        if (count > 0 && channel != null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                failed("写入访问日志失败: ", e);
+            }
+        }
+        return count;
+    }
+
+    private void failed(String message, IOException e) {
+        if (!failing) {
+            failing = true;
+            logger.severe(message + e.getMessage());
+        }
+    }
+
+    private void format(AccessEvent event) throws IOException {
+        long second = event.timestamp / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedSecondText = SECOND_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault()));
+        }
+        line.setLength(0);
+        line.append(cachedSecondText).append('.');
+        long millis = event.timestamp % 1000;
+        if (millis < 100) line.append('0');
+        if (millis < 10) line.append('0');
+        line.append(millis).append(' ')
+                .append(event.clientIP).append(" \"")
+                .append(event.method).append(' ').append(event.uri).append("\" ")
+                .append(event.status).append(' ')
+                .append(event.bytes).append(' ')
+                .append(event.mimeType != null ? event.mimeType : "-").append(' ')
+                .append(event.durationNanos / 1000).append("us\n");
+        encode(line);
+
+        if (consoleEcho && event.html) {
+            System.out.print("[" + cachedSecondText + "] " + event.clientIP + " - 访问: " + event.uri + "\n");
+            if (event.hostHeader != null && event.hostHeader.equals(event.clientIP)) {
+                System.out.println("警告: 客户端 " + event.clientIP + " 通过IP地址访问服务器，而不是域名。");
+            }
+        }
+    }
+
+    private void encode(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, out, true);
+            if (result.isOverflow()) {
+                flush();
+                continue;
+            }
+            break;
+        }
+        encoder.reset();
+    }
+
+    // 写入失败时丢弃缓冲区中的内容，下一批从空缓冲区开始
+    private void flush() throws IOException {
+        out.flip();
+        boolean any = out.hasRemaining();
+        try {
+            while (out.hasRemaining()) {
+                written += channel.write(out);
+            }
+        } finally {
+            out.clear();
+        }
+        if (any) {
+            failing = false;
+        }
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        written = channel.size();
+        nextRotation = rotateIntervalMillis > 0 ? System.currentTimeMillis() + rotateIntervalMillis : Long.MAX_VALUE;
+    }
+
+    /**
+     * 当前文件改名为带时间戳的归档文件，然后重新打开；同一秒内多次轮转时追加序号，不覆盖已有的归档。
+     * 改名失败（权限、磁盘满、文件被日志采集程序占用）时记录一次错误，重新打开原文件继续追加，
+     * 等下一个轮转周期或再写满 maxFileSize 后重试，不会每批都重试。
+     */
+    private void rotate(long now) {
+        try {
+            flush();
+        } catch (IOException e) {
+            failed("写入访问日志失败: ", e);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            failed("关闭访问日志失败: ", e);
+        }
+        boolean archived = written == 0;
+        if (!archived) {
+            String base = file.getFileName() + "." + ROTATE_SUFFIX.format(LocalDateTime.now());
+            String target = base;
+            for (int sequence = 1; !archived; sequence++) {
+                try {
+                    Files.move(file, file.resolveSibling(target));
+                    archived = true;
+                    rotateFailing = false;
+                } catch (FileAlreadyExistsException e) {
+                    target = base + "." + sequence;
+                } catch (IOException e) {
+                    if (!rotateFailing) {
+                        rotateFailing = true;
+                        logger.severe("访问日志轮转失败，继续写入当前文件: " + e.getMessage());
+                    }
+                    break;
+                }
+            }
+        }
+        reopen(now);
+        if (!archived && channel != null) {
+            written = 0;
+        }
+    }
+
+    private void reopen(long now) {
+        try {
+            openChannel();
+        } catch (IOException e) {
+            channel = null;
+            reopenAt = now + 1000;
+            failed("无法打开访问日志，事件将被丢弃: ", e);
+        }
+    }
+
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(1000);
+            if (writer.isAlive()) {
+                logger.warning("访问日志写入线程未在 1 秒内结束，剩余事件由该线程继续写出");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getQueueDepth() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    public int getQueueCapacity() {
+        return slots.length;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private static final class AccessEvent {
+        long timestamp;
+        String clientIP;
+        String method;
+        String uri;
+        int status;
+        long bytes;
+        String mimeType;
+        long durationNanos;
+        boolean html;
+        String hostHeader;
+
+        void clear() {
+            clientIP = null;
+            method = null;
+            uri = null;
+            mimeType = null;
+            hostHeader = null;
+        }
+    }
+}
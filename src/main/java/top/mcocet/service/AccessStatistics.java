@@ -0,0 +1,144 @@
+// src/top/mcocet/service/AccessStatistics.java
+package top.mcocet.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 IP 统计访问次数。条目数量有上限，超出时按 Space-Saving 思路批量淘汰计数最小的条目，
+ * 新条目以被淘汰条目的最大计数为起点，因此高频 IP 的计数只会被高估、不会被漏掉。
+ */
+public class AccessStatistics {
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    // 被淘汰条目的最大计数，新条目的误差上界
+    private volatile long floor;
+
+    // 以分钟为单位的环形窗口，stamps 记录每个槽位对应的分钟数
+    private final LongAdder[] minuteBuckets = new LongAdder[MINUTES_PER_HOUR];
+    private final AtomicLongArray minuteStamps = new AtomicLongArray(MINUTES_PER_HOUR);
+
+    public AccessStatistics(int capacity) {
+        this.capacity = Math.max(16, capacity);
+        for (int i = 0; i < MINUTES_PER_HOUR; i++) {
+            minuteBuckets[i] = new LongAdder();
+            minuteStamps.set(i, -1);
+        }
+    }
+
+    public void record(String ip) {
+        total.increment();
+        recordMinute(System.currentTimeMillis() / 60_000);
+
+        Counter counter = counters.get(ip);
+        if (counter == null) {
+            if (counters.size() >= capacity) {
+                evict();
+            }
+            counter = counters.computeIfAbsent(ip, k -> new Counter(floor));
+        }
+        counter.count.increment();
+    }
+
+    private void recordMinute(long minute) {
+        int index = (int) (minute % MINUTES_PER_HOUR);
+        long stamp = minuteStamps.get(index);
+        if (stamp != minute && minuteStamps.compareAndSet(index, stamp, minute)) {
+            // 槽位轮转时清零；与并发写入的竞争只会造成个别计数误差
+            minuteBuckets[index].reset();
+        }
+        minuteBuckets[index].increment();
+    }
+
+    // 一次淘汰约十分之一的条目，把排序的开销分摊到大量新 IP 上
+    private synchronized void evict() {
+        if (counters.size() < capacity) {
+            return;
+        }
+        List<Map.Entry<String, Long>> snapshot = new ArrayList<>(counters.size());
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            snapshot.add(Map.entry(e.getKey(), e.getValue().estimate()));
+        }
+        snapshot.sort(Map.Entry.comparingByValue());
+        int toEvict = Math.max(1, capacity / 10);
+        long maxEvicted = floor;
+        for (int i = 0; i < toEvict && i < snapshot.size(); i++) {
+            counters.remove(snapshot.get(i).getKey());
+            maxEvicted = Math.max(maxEvicted, snapshot.get(i).getValue());
+        }
+        floor = maxEvicted;
+    }
+
+    // 计数最高的 n 个 IP，按估计值降序
+    public List<IpCount> top(int n) {
+        List<IpCount> all = snapshot();
+        return all.subList(0, Math.max(0, Math.min(n, all.size())));
+    }
+
+    public List<IpCount> snapshot() {
+        List<IpCount> result = new ArrayList<>(counters.size());
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            result.add(new IpCount(e.getKey(), e.getValue().estimate(), e.getValue().error));
+        }
+        result.sort(Comparator.comparingLong(IpCount::count).reversed());
+        return result;
+    }
+
+    // 上一个完整分钟内的访问次数
+    public long lastMinute() {
+        return sumMinutes(1, 1);
+    }
+
+    // 最近一小时内（含当前分钟）的访问次数
+    public long lastHour() {
+        return sumMinutes(0, MINUTES_PER_HOUR - 1);
+    }
+
+    private long sumMinutes(int fromAgo, int toAgo) {
+        long now = System.currentTimeMillis() / 60_000;
+        long sum = 0;
+        for (int ago = fromAgo; ago <= toAgo; ago++) {
+            long minute = now - ago;
+            int index = (int) (minute % MINUTES_PER_HOUR);
+            if (minuteStamps.get(index) == minute) {
+                sum += minuteBuckets[index].sum();
+            }
+        }
+        return sum;
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public record IpCount(String ip, long count, long error) {}
+
+    private static final class Counter {
+        final LongAdder count = new LongAdder();
+        final long error;
+
+        Counter(long error) {
+            this.error = error;
+        }
+
+        long estimate() {
+            return error + count.sum();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+// src/top/mcocet/service/CompressionService.java
+package top.mcocet.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressionService {
+    // 小于该大小的内容压缩收益不足以抵消头部开销
+    static final long MIN_COMPRESS_SIZE = 256;
+    private static final int MAX_MISSING_ENTRIES = 100_000;
+
+    private final FileService fileService;
+    private final FileCache compressed;
+    private final long maxCompressSize;
+    // 已确认不存在的 .br/.gz 兄弟文件，避免每次请求都去探测
+    private final Set<Path> missingSiblings = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, CompletableFuture<FileEntry>> inflight = new ConcurrentHashMap<>();
+
+    public CompressionService(FileService fileService, long cacheSize, long maxCompressSize) {
+        this.fileService = fileService;
+        this.compressed = new FileCache(cacheSize, maxCompressSize);
+        this.maxCompressSize = maxCompressSize;
+        fileService.addChangeListener(this::invalidate);
+    }
+
+    public static boolean isCompressible(String mimeType) {
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/")
+                || type.startsWith("application/javascript")
+                || type.startsWith("application/json")
+                || type.startsWith("application/xml")
+                || type.startsWith("application/xhtml+xml")
+                || type.startsWith("image/svg+xml")
+                || type.startsWith("application/wasm");
+    }
+
+    /**
+     * 按 Accept-Encoding 选择要发送的表示：优先使用预压缩的 .br/.gz 兄弟文件，
+     * 其次是缓存的即时 gzip 结果；使用打包文件时只从打包的变体中选择。不可压缩或客户端不支持时返回原条目。
+     */
+    public FileEntry select(FileEntry entry, String acceptEncoding) throws IOException {
+        if (acceptEncoding == null || !isCompressible(entry.getMimeType())) {
+            return entry;
+        }
+        boolean br = accepts(acceptEncoding, "br");
+        boolean gzip = accepts(acceptEncoding, "gzip");
+        SiteBundle bundle = fileService.getBundle();
+        if (bundle != null) {
+            // 打包时已经生成了所有值得压缩的变体，找不到变体说明压缩不划算，不再即时压缩
+            FileEntry variant = br ? bundle.variant(entry, "br") : null;
+            if (variant == null && gzip) {
+                variant = bundle.variant(entry, "gzip");
+            }
+            return variant != null ? variant : entry;
+        }
+        if (br) {
+            FileEntry sibling = sibling(entry, ".br", "br");
+            if (sibling != null) {
+                return sibling;
+            }
+        }
+        if (gzip) {
+            FileEntry sibling = sibling(entry, ".gz", "gzip");
+            if (sibling != null) {
+                return sibling;
+            }
+            if (entry.getSize() >= MIN_COMPRESS_SIZE && entry.getSize() <= maxCompressSize) {
+                return gzip(entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * select 是否需要读文件或压缩：预压缩的兄弟文件还没有探测过，或者即时 gzip 的结果还没有缓存。
+     * 只查内存，不计入缓存统计。
+     */
+    public boolean needsWork(FileEntry entry, String acceptEncoding) {
+        if (acceptEncoding == null || !isCompressible(entry.getMimeType()) || fileService.getBundle() != null) {
+            return false;
+        }
+        boolean br = accepts(acceptEncoding, "br");
+        boolean gzip = accepts(acceptEncoding, "gzip");
+        if (br) {
+            Boolean found = probed(entry, ".br", "br");
+            if (found == null) {
+                return true;
+            }
+            if (found) {
+                return false;
+            }
+        }
+        if (gzip) {
+            Boolean found = probed(entry, ".gz", "gzip");
+            if (found == null) {
+                return true;
+            }
+            if (found) {
+                return false;
+            }
+            if (entry.getSize() >= MIN_COMPRESS_SIZE && entry.getSize() <= maxCompressSize) {
+                return compressed.peek("gzip:" + entry.getPath() + ":" + entry.getEtag()) == null;
+            }
+        }
+        return false;
+    }
+
+    // 兄弟文件已缓存时为 true，已确认不存在时为 false，还没有探测过时为 null
+    private Boolean probed(FileEntry entry, String suffix, String encoding) {
+        Path siblingPath = entry.getPath().resolveSibling(entry.getPath().getFileName() + suffix);
+        if (compressed.peek(encoding + ":" + siblingPath) != null) {
+            return true;
+        }
+        return missingSiblings.contains(siblingPath) ? false : null;
+    }
+
+    private FileEntry sibling(FileEntry entry, String suffix, String encoding) throws IOException {
+        Path siblingPath = entry.getPath().resolveSibling(entry.getPath().getFileName() + suffix);
+        String key = encoding + ":" + siblingPath;
+        FileEntry cached = compressed.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (missingSiblings.contains(siblingPath)) {
+            return null;
+        }
+        long generation = compressed.generation();
+        var siblingOpt = fileService.lookupPath(siblingPath);
+        if (siblingOpt.isEmpty()) {
+            if (missingSiblings.size() >= MAX_MISSING_ENTRIES) {
+                missingSiblings.clear();
+            }
+            missingSiblings.add(siblingPath);
+            return null;
+        }
+        FileEntry file = siblingOpt.get();
+        // 沿用原始文件的 MIME 类型，而不是 application/gzip
+        FileEntry variant = new FileEntry(file.getPath(), file.getSize(), file.getLastModified(),
+                entry.getMimeType(), file.getContent(), encoding);
+        compressed.put(key, variant, generation);
+        return variant;
+    }
+
+    private FileEntry gzip(FileEntry entry) throws IOException {
+        // 以文件版本为键，文件修改后旧结果不会再被命中
+        String key = "gzip:" + entry.getPath() + ":" + entry.getEtag();
+        FileEntry cached = compressed.get(key);
+        if (cached != null) {
+            return cached.getContentEncoding() != null ? cached : entry;
+        }
+
+        // 同一文件的并发首次请求只压缩一次
+        CompletableFuture<FileEntry> future = new CompletableFuture<>();
+        CompletableFuture<FileEntry> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return entry;
+            } catch (ExecutionException e) {
+                return entry;
+            }
+        }
+
+        try {
+            long generation = compressed.generation();
+            byte[] bytes = compress(entry);
+            FileEntry result;
+            if (bytes.length < entry.getSize()) {
+                result = new FileEntry(entry.getPath(), bytes.length, entry.getLastModified(),
+                        entry.getMimeType(), ByteBuffer.wrap(bytes), "gzip");
+            } else {
+                // 压缩后没有变小，只缓存一个不含内容的标记，避免重复压缩
+                result = new FileEntry(entry.getPath(), entry.getSize(), entry.getLastModified(), entry.getMimeType(), null);
+            }
+            compressed.put(key, result, generation);
+            FileEntry selected = result.getContentEncoding() != null ? result : entry;
+            future.complete(selected);
+            return selected;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    private static byte[] compress(FileEntry entry) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.max(64, entry.getSize() / 3));
+        try (OutputStream gz = new GZIPOutputStream(buffer, 8192)) {
+            if (entry.hasContent()) {
+                Channels.newChannel(gz).write(entry.getContent());
+            } else {
+                try (InputStream is = Files.newInputStream(entry.getPath())) {
+                    is.transferTo(gz);
+                }
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private void invalidate(Path changed) {
+        compressed.invalidate(changed);
+        missingSiblings.removeIf(p -> p.startsWith(changed));
+    }
+
+    // 简单解析 Accept-Encoding，q=0 视为拒绝
+    static boolean accepts(String acceptEncoding, String coding) {
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            boolean rejected = false;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        rejected = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        rejected = true;
+                    }
+                }
+            }
+            if (name.equals(coding)) {
+                return !rejected;
+            }
+            if ("*".equals(name)) {
+                wildcard = !rejected;
+            }
+        }
+        return wildcard;
+    }
+
+    public FileCache getCache() {
+        return compressed;
+    }
+}
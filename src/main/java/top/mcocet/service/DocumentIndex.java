@@ -0,0 +1,161 @@
+// src/top/mcocet/service/DocumentIndex.java
+package top.mcocet.service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文档根目录下所有文件的索引，以解码后的请求路径为键（"/a/b.html"），
+ * 目录的默认页面另以 "/a/" 为键。启动时扫描一次，之后按 DocumentRootWatcher 的事件增量更新，
+ * 请求线程查找时只做一次哈希查询，不访问文件系统。
+ * 条目是不含内容的 FileEntry，ETag 和 Last-Modified 头在建立索引时就已算好。
+ */
+public class DocumentIndex {
+    private final Path root;
+    private final String indexFile;
+    private final LoggerService logger;
+    private volatile MimeTypes mimeTypes;
+    private volatile Map<String, FileEntry> entries = new ConcurrentHashMap<>();
+    // 使用打包文件时不扫描文档根目录，直到真正需要索引
+    private volatile boolean built;
+
+    public DocumentIndex(Path root, String indexFile, MimeTypes mimeTypes, LoggerService logger) {
+        this.root = root;
+        this.indexFile = indexFile;
+        this.mimeTypes = mimeTypes;
+        this.logger = logger;
+    }
+
+    public FileEntry get(String requestPath) {
+        return entries.get(requestPath);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // 只读视图，打包站点时遍历全部路径
+    public Map<String, FileEntry> entries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public MimeTypes getMimeTypes() {
+        return mimeTypes;
+    }
+
+    // MIME 表变化后重新扫描，所有条目按新表重新确定类型
+    public void setMimeTypes(MimeTypes updated) {
+        mimeTypes = updated;
+        if (built) {
+            rebuild();
+        }
+    }
+
+    // 完整扫描后整体替换，扫描期间的查询仍使用旧索引
+    public synchronized void rebuild() {
+        Map<String, FileEntry> fresh = new ConcurrentHashMap<>();
+        scan(root, fresh);
+        entries = fresh;
+        built = true;
+    }
+
+    /**
+     * 文件变化时调用：存在则更新，不存在则删除；新出现的目录整体扫描，
+     * 删除的目录连同其下所有条目一起移除。参数为文档根目录本身时（事件溢出）完整重建。
+     */
+    public synchronized void update(Path changed) {
+        if (changed.equals(root)) {
+            rebuild();
+            return;
+        }
+        if (!changed.startsWith(root)) {
+            return;
+        }
+        String key = keyFor(changed);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(changed, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attrs = null;
+        }
+        if (attrs != null && attrs.isDirectory()) {
+            scan(changed, entries);
+            return;
+        }
+        if (attrs != null && attrs.isRegularFile()) {
+            put(entries, key, changed, attrs);
+            return;
+        }
+        entries.remove(key);
+        if (isIndexFile(changed)) {
+            entries.remove(directoryKey(changed.getParent()));
+        }
+        String prefix = key + "/";
+        entries.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    // 请求路径形式的键，分隔符统一为 "/"
+    public String keyFor(Path file) {
+        StringBuilder sb = new StringBuilder(64);
+        for (Path name : root.relativize(file)) {
+            sb.append('/').append(name);
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+    private String directoryKey(Path dir) {
+        String key = keyFor(dir);
+        return key.endsWith("/") ? key : key + "/";
+    }
+
+    private boolean isIndexFile(Path file) {
+        Path name = file.getFileName();
+        return name != null && name.toString().equals(indexFile);
+    }
+
+    private void put(Map<String, FileEntry> target, String key, Path file, BasicFileAttributes attrs) {
+        FileEntry indexed = new FileEntry(file, attrs.size(), attrs.lastModifiedTime().toMillis(),
+                mimeTypes.forFileName(file.getFileName().toString()), null);
+        target.put(key, indexed);
+        if (isIndexFile(file)) {
+            target.put(directoryKey(file.getParent()), indexed);
+        }
+    }
+
+    // 跟随符号链接，与原先按路径解析时的行为一致；链接成环的目录跳过
+    private void scan(Path start, Map<String, FileEntry> target) {
+        try {
+            Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile()) {
+                                put(target, keyFor(file), file, attrs);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            logger.warning("索引文件失败: " + file + ", 错误: " + e.getMessage());
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            logger.warning("扫描文档根目录失败: " + start + ", 错误: " + e.getMessage());
+        }
+    }
+}
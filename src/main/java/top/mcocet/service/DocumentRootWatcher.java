@@ -0,0 +1,115 @@
+// src/top/mcocet/service/DocumentRootWatcher.java
+package top.mcocet.service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class DocumentRootWatcher implements Runnable {
+    private final Path root;
+    private final LoggerService logger;
+    private final boolean recursive;
+    private final List<Consumer<Path>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    public DocumentRootWatcher(Path root, LoggerService logger) {
+        this(root, logger, true);
+    }
+
+    // recursive 为 false 时只监听 root 本身，不监听子目录（例如打包文件所在的目录）
+    public DocumentRootWatcher(Path root, LoggerService logger, boolean recursive) {
+        this.root = root;
+        this.logger = logger;
+        this.recursive = recursive;
+    }
+
+    // 监听器收到发生变化的路径；事件溢出时收到文档根目录本身
+    public void addListener(Consumer<Path> listener) {
+        listeners.add(listener);
+    }
+
+    public void start() {
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            registerAll(root);
+        } catch (IOException e) {
+            logger.warning("无法监听文档根目录: " + root + ", 错误: " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(this, recursive ? "document-root-watcher" : "watcher-" + root.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = keys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    notifyListeners(root);
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (recursive && event.kind() == ENTRY_CREATE && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        registerAll(changed);
+                    } catch (IOException e) {
+                        logger.warning("无法监听新目录: " + changed + ", 错误: " + e.getMessage());
+                    }
+                }
+                notifyListeners(changed);
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    void notifyListeners(Path changed) {
+        for (Consumer<Path> listener : listeners) {
+            try {
+                listener.accept(changed);
+            } catch (RuntimeException e) {
+                logger.warning("处理文件变更失败: " + changed + ", 错误: " + e.getMessage());
+            }
+        }
+    }
+
+    private void registerAll(Path start) throws IOException {
+        if (!recursive) {
+            keys.put(start.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), start);
+            return;
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,127 @@
+// src/top/mcocet/service/FileCache.java
+package top.mcocet.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FileCache {
+    // 每个条目除内容外的估算开销，保证只缓存元数据的条目也受总容量约束
+    private static final long ENTRY_OVERHEAD = 256;
+
+    private final ConcurrentHashMap<String, FileEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final long maxBytes;
+    private final long maxFileSize;
+
+    public FileCache(long maxBytes, long maxFileSize) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = maxFileSize;
+    }
+
+    public FileEntry get(String key) {
+        FileEntry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        hits.increment();
+        return entry;
+    }
+
+    // 只判断是否已缓存，不计入命中统计，也不影响淘汰顺序
+    public FileEntry peek(String key) {
+        return entries.get(key);
+    }
+
+    // 读取文件前先取得代数，失效事件发生后旧代数的结果不再写入缓存
+    public long generation() {
+        return generation.get();
+    }
+
+    public boolean accepts(long size) {
+        return size <= maxFileSize && size + ENTRY_OVERHEAD <= maxBytes;
+    }
+
+    public void put(String key, FileEntry entry, long expectedGeneration) {
+        if (generation.get() != expectedGeneration || weight(entry) > maxBytes) {
+            return;
+        }
+        entry.lastAccess = System.nanoTime();
+        FileEntry previous = entries.put(key, entry);
+        totalBytes.addAndGet(weight(entry));
+        if (previous != null) {
+            totalBytes.addAndGet(-weight(previous));
+        }
+        // put 与失效并发时，以失效为准
+        if (generation.get() != expectedGeneration) {
+            remove(key, entry);
+        }
+        if (totalBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    // 移除路径本身以及其下所有文件（目录被删除或重命名时）对应的条目
+    public void invalidate(Path changed) {
+        generation.incrementAndGet();
+        for (Map.Entry<String, FileEntry> e : entries.entrySet()) {
+            if (e.getValue().getPath().startsWith(changed)) {
+                remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        for (Map.Entry<String, FileEntry> e : entries.entrySet()) {
+            remove(e.getKey(), e.getValue());
+        }
+    }
+
+    private void remove(String key, FileEntry entry) {
+        if (entries.remove(key, entry)) {
+            totalBytes.addAndGet(-weight(entry));
+        }
+    }
+
+    // 按最近访问时间淘汰到容量的 90%，避免每次写入都触发淘汰
+    private synchronized void evict() {
+        long target = maxBytes - maxBytes / 10;
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        // 先固定访问时间再排序，避免排序过程中并发访问改变比较结果
+        List<Candidate> candidates = new ArrayList<>(entries.size());
+        for (Map.Entry<String, FileEntry> e : entries.entrySet()) {
+            candidates.add(new Candidate(e.getKey(), e.getValue(), e.getValue().lastAccess));
+        }
+        candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+        for (Candidate c : candidates) {
+            if (totalBytes.get() <= target) {
+                break;
+            }
+            remove(c.key(), c.entry());
+        }
+    }
+
+    private record Candidate(String key, FileEntry entry, long lastAccess) {}
+
+    private static long weight(FileEntry entry) {
+        return ENTRY_OVERHEAD + (entry.hasContent() ? entry.getSize() : 0);
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getTotalBytes() { return totalBytes.get(); }
+    public int size() { return entries.size(); }
+}
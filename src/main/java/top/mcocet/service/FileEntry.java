@@ -0,0 +1,72 @@
+// src/top/mcocet/service/FileEntry.java
+package top.mcocet.service;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+public class FileEntry {
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final String mimeType;
+    private final ByteBuffer content;
+    private final String contentEncoding;
+    // 校验器随条目创建一次性算好，文件变化后会生成新的条目；
+    // Last-Modified 头在第一次使用时才格式化，建立上万条目的索引或打开打包文件时不必逐个格式化日期
+    private final String etag;
+    private String lastModifiedHeader;
+
+    // 最近一次访问的时钟值，供 FileCache 做近似 LRU 淘汰
+    volatile long lastAccess;
+
+    public FileEntry(Path path, long size, long lastModified, String mimeType, ByteBuffer content) {
+        this(path, size, lastModified, mimeType, content, null);
+    }
+
+    // contentEncoding 非空表示这是压缩后的变体，ETag 带上编码后缀以区别于原始表示
+    public FileEntry(Path path, long size, long lastModified, String mimeType, ByteBuffer content, String contentEncoding) {
+        this(path, size, lastModified, mimeType, content, contentEncoding, "\"" + Long.toHexString(lastModified)
+                + "-" + Long.toHexString(size) + (contentEncoding != null ? "-" + contentEncoding : "") + "\"");
+    }
+
+    // 打包文件中的条目使用打包时记录的 ETag
+    FileEntry(Path path, long size, long lastModified, String mimeType, ByteBuffer content, String contentEncoding,
+              String etag) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.mimeType = mimeType;
+        this.content = content;
+        this.contentEncoding = contentEncoding;
+        this.etag = etag;
+    }
+
+    public Path getPath() { return path; }
+    public long getSize() { return size; }
+    public long getLastModified() { return lastModified; }
+    public String getMimeType() { return mimeType; }
+    public String getContentEncoding() { return contentEncoding; }
+    public String getEtag() { return etag; }
+
+    // 并发的首次调用可能各自格式化一次，结果相同，不需要同步
+    public String getLastModifiedHeader() {
+        String header = lastModifiedHeader;
+        if (header == null) {
+            header = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(lastModified).atOffset(ZoneOffset.UTC));
+            lastModifiedHeader = header;
+        }
+        return header;
+    }
+
+    public boolean hasContent() {
+        return content != null;
+    }
+
+    // 每次返回独立的视图，多个请求线程可以同时写出同一份缓存内容；调用方不得修改其中的数据
+    public ByteBuffer getContent() {
+        return content != null ? content.duplicate() : null;
+    }
+}
@@ -2,56 +2,315 @@
 package top.mcocet.service;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class FileService {
     private final Path documentRoot;
-    private final String indexFile;
     private final String errorFile;
     private final LoggerService logger;
+    private final FileCache cache;
+    private final DocumentRootWatcher watcher;
+    private final DocumentIndex index;
+    // 使用打包文件时指向当前映射的版本，为 null 时直接读文档根目录
+    private volatile SiteBundle bundle;
+    private volatile String bundleSetting = "";
+    private Path bundleFile;
+    private DocumentRootWatcher bundleWatcher;
+    private boolean watchRequested;
+    private boolean watching;
 
     public FileService(String documentRoot, String indexFile, String errorFile, LoggerService logger) {
+        this(documentRoot, indexFile, errorFile, logger, null);
+    }
+
+    public FileService(String documentRoot, String indexFile, String errorFile, LoggerService logger, FileCache cache) {
+        this(documentRoot, indexFile, errorFile, logger, cache, new MimeTypes(""));
+    }
+
+    public FileService(String documentRoot, String indexFile, String errorFile, LoggerService logger,
+                       FileCache cache, MimeTypes mimeTypes) {
+        this(documentRoot, indexFile, errorFile, logger, cache, mimeTypes, "");
+    }
+
+    // bundle 非空时从打包文件提供内容，不扫描文档根目录；打包文件无法打开时退回到文档根目录
+    public FileService(String documentRoot, String indexFile, String errorFile, LoggerService logger,
+                       FileCache cache, MimeTypes mimeTypes, String bundle) {
         this.documentRoot = Paths.get(documentRoot).toAbsolutePath().normalize();
-        this.indexFile = indexFile;
         this.errorFile = errorFile;
         this.logger = logger;
+        this.cache = cache;
+        this.watcher = new DocumentRootWatcher(this.documentRoot, logger);
+        this.index = new DocumentIndex(this.documentRoot, indexFile, mimeTypes, logger);
+        // 索引必须是第一个监听器：各个缓存失效之后再未命中时，读到的已经是新的索引
+        this.watcher.addListener(changed -> {
+            if (index.isBuilt()) {
+                index.update(changed);
+            }
+        });
+        updateBundle(bundle);
+        if (this.bundle == null && !index.isBuilt()) {
+            this.index.rebuild();
+        }
     }
 
-    public Optional<Path> resolveFilePath(String uri) {
-        if ("/".equals(uri)) {
-            uri = "/" + indexFile;
+    // 监听文档根目录，文件变化时更新索引并使缓存失效；使用打包文件期间推迟到切回文档根目录时
+    public synchronized void startWatching() {
+        if (cache != null) {
+            watcher.addListener(cache::invalidate);
         }
+        watchRequested = true;
+        if (bundle == null) {
+            startDocumentRootWatcher();
+        }
+    }
 
-        Path requestedPath = documentRoot.resolve(uri.substring(1)).normalize();
+    private synchronized void startDocumentRootWatcher() {
+        if (watchRequested && !watching) {
+            watching = true;
+            watcher.start();
+        }
+    }
+
+    public void addChangeListener(Consumer<Path> listener) {
+        watcher.addListener(listener);
+    }
+
+    /**
+     * 查找请求对应的文件。参数是解码后的请求路径（URI.getPath()），不含查询字符串。
+     * 命中缓存或索引时都不访问磁盘，只有需要把内容读入缓存时才读文件。
+     */
+    public Optional<FileEntry> lookup(String requestPath) throws IOException {
+        if (requestPath == null) {
+            return Optional.empty();
+        }
+        SiteBundle packed = bundle;
+        if (packed != null) {
+            return Optional.ofNullable(packed.get(requestPath));
+        }
+        if (cache != null) {
+            FileEntry cached = cache.get(requestPath);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        long generation = cache != null ? cache.generation() : 0;
+        FileEntry indexed = index.get(requestPath);
+        if (indexed == null) {
+            return Optional.empty();
+        }
+        return load(requestPath, indexed, generation);
+    }
 
-        // 安全检查：防止目录遍历
-        if (!requestedPath.startsWith(documentRoot)) {
-            logger.warning("尝试路径遍历: " + uri);
+    // 按文档根目录内的绝对路径查找，例如预压缩的兄弟文件；缓存键与请求路径互不冲突
+    public Optional<FileEntry> lookupPath(Path filePath) throws IOException {
+        SiteBundle packed = bundle;
+        if (packed != null) {
+            return filePath.startsWith(documentRoot) ? Optional.ofNullable(packed.get(index.keyFor(filePath)))
+                    : Optional.empty();
+        }
+        String key = "file:" + filePath;
+        if (cache != null) {
+            FileEntry cached = cache.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        if (!filePath.startsWith(documentRoot)) {
             return Optional.empty();
         }
+        long generation = cache != null ? cache.generation() : 0;
+        FileEntry indexed = index.get(index.keyFor(filePath));
+        if (indexed == null) {
+            return Optional.empty();
+        }
+        return load(key, indexed, generation);
+    }
 
-        if (Files.exists(requestedPath) && Files.isRegularFile(requestedPath)) {
-            return Optional.of(requestedPath);
+    /**
+     * 不读磁盘、不计入缓存统计地查找，返回 lookup 会得到的条目；
+     * 文件不存在或内容还需要读入缓存时返回 null，两者用 needsLoad 区分。
+     */
+    public FileEntry peek(String requestPath) {
+        if (requestPath == null) {
+            return null;
         }
+        SiteBundle packed = bundle;
+        if (packed != null) {
+            return packed.get(requestPath);
+        }
+        if (cache != null) {
+            FileEntry cached = cache.peek(requestPath);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        FileEntry indexed = index.get(requestPath);
+        return indexed != null && (cache == null || !cache.accepts(indexed.getSize())) ? indexed : null;
+    }
 
-        return Optional.empty();
+    // lookup 是否需要把文件内容读入缓存
+    public boolean needsLoad(String requestPath) {
+        if (requestPath == null || bundle != null || cache == null || cache.peek(requestPath) != null) {
+            return false;
+        }
+        FileEntry indexed = index.get(requestPath);
+        return indexed != null && cache.accepts(indexed.getSize());
     }
 
-    public Optional<String> getMimeType(Path path) {
+    // 配置中的 MIME 表和打包文件是否已经生效；否则 updateMimeTypes、updateBundle 需要重建索引或打开打包文件
+    public boolean isCurrent(String mimeTypes, String bundle) {
+        return index.getMimeTypes().getOverrides().equals(mimeTypes) && bundle.equals(bundleSetting);
+    }
+
+    private Optional<FileEntry> load(String key, FileEntry indexed, long generation) throws IOException {
+        FileEntry entry = indexed;
+        if (cache != null && cache.accepts(indexed.getSize())) {
+            ByteBuffer content;
+            try {
+                content = ByteBuffer.wrap(Files.readAllBytes(indexed.getPath()));
+            } catch (NoSuchFileException e) {
+                // 文件刚被删除，索引还没收到事件
+                return Optional.empty();
+            }
+            entry = new FileEntry(indexed.getPath(), content.remaining(), indexed.getLastModified(),
+                    indexed.getMimeType(), content);
+            cache.put(key, entry, generation);
+        }
+        // 不缓存内容的大文件直接使用索引中的条目
+        return Optional.of(entry);
+    }
+
+    /**
+     * 配置的打包文件变化时调用，未变化时只比较一次字符串。非空时打开并映射打包文件，
+     * 同时监听其所在目录，新版本重命名到位后自动切换；为空时切回文档根目录。
+     */
+    public void updateBundle(String setting) {
+        if (setting.equals(bundleSetting)) {
+            return;
+        }
+        synchronized (this) {
+            if (setting.equals(bundleSetting)) {
+                return;
+            }
+            bundleSetting = setting;
+            if (bundleWatcher != null) {
+                bundleWatcher.stop();
+                bundleWatcher = null;
+            }
+            if (setting.isEmpty()) {
+                bundleFile = null;
+                useDocumentRoot();
+                return;
+            }
+            Path file = Paths.get(setting).toAbsolutePath().normalize();
+            bundleFile = file;
+            Path dir = file.getParent();
+            bundleWatcher = new DocumentRootWatcher(dir, logger, false);
+            bundleWatcher.addListener(changed -> {
+                if (changed.equals(file) || changed.equals(dir)) {
+                    reloadBundle(file);
+                }
+            });
+            bundleWatcher.start();
+            reloadBundle(file);
+        }
+    }
+
+    // 新版本格式错误或不完整时继续使用当前版本
+    private synchronized void reloadBundle(Path file) {
+        // 配置已改为其他文件，旧监听线程上残留的事件不再处理
+        if (!file.equals(bundleFile)) {
+            return;
+        }
+        SiteBundle fresh;
         try {
-            String type = Files.probeContentType(path);
-            return Optional.ofNullable(type != null ? type : "application/octet-stream");
+            fresh = SiteBundle.open(file, documentRoot);
         } catch (IOException e) {
-            logger.warning("无法探测 MIME 类型: " + path.getFileName() + ", 错误: " + e.getMessage());
-            return Optional.of("application/octet-stream");
+            if (bundle != null) {
+                logger.warning("打开打包文件失败，继续使用当前版本: " + file + ", 错误: " + e.getMessage());
+            } else {
+                logger.warning("打开打包文件失败，使用文档根目录: " + file + ", 错误: " + e.getMessage());
+                useDocumentRoot();
+            }
+            return;
+        }
+        bundle = fresh;
+        logger.info("已切换到打包文件: " + file + ", 文件数: " + fresh.getFileCount() + ", 路径数: " + fresh.size()
+                + ", 打包时间: " + Instant.ofEpochMilli(fresh.getCreatedAt()));
+        // 以文档根目录通知监听器，错误页面和各个缓存按新版本重新加载
+        watcher.notifyListeners(documentRoot);
+    }
+
+    private void useDocumentRoot() {
+        boolean switched = bundle != null;
+        bundle = null;
+        if (!index.isBuilt()) {
+            index.rebuild();
+        }
+        startDocumentRootWatcher();
+        if (switched) {
+            logger.info("已停止使用打包文件，直接读取文档根目录");
+            watcher.notifyListeners(documentRoot);
+        }
+    }
+
+    // 停止监听文档根目录和打包文件
+    public synchronized void close() {
+        watcher.stop();
+        if (bundleWatcher != null) {
+            bundleWatcher.stop();
+            bundleWatcher = null;
         }
     }
 
+    // 未使用打包文件时返回 null
+    public SiteBundle getBundle() {
+        return bundle;
+    }
+
+    public Optional<Path> resolveFilePath(String requestPath) {
+        FileEntry indexed = requestPath != null ? index.get(requestPath) : null;
+        return indexed != null ? Optional.of(indexed.getPath()) : Optional.empty();
+    }
+
+    public Optional<String> getMimeType(Path path) {
+        return Optional.of(index.getMimeTypes().forFileName(path.getFileName().toString()));
+    }
+
+    // 配置中的 MIME 表变化时重建索引并清空缓存，已缓存的条目带着旧的类型
+    public synchronized void updateMimeTypes(String overrides) {
+        if (index.getMimeTypes().getOverrides().equals(overrides)) {
+            return;
+        }
+        index.setMimeTypes(new MimeTypes(overrides));
+        if (cache != null) {
+            cache.clear();
+        }
+        logger.info("MIME 类型表已更新，文档索引已重建");
+    }
+
+    public Path getErrorPagePath() {
+        return documentRoot.resolve(errorFile).normalize();
+    }
+
     public byte[] readErrorPage() {
-        Path errorPath = documentRoot.resolve(errorFile);
+        Path errorPath = getErrorPagePath();
+        SiteBundle packed = bundle;
+        FileEntry packedPage = packed != null && errorPath.startsWith(documentRoot)
+                ? packed.get(index.keyFor(errorPath)) : null;
+        if (packedPage != null) {
+            ByteBuffer content = packedPage.getContent();
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            return bytes;
+        }
         if (Files.exists(errorPath)) {
             try {
                 return Files.readAllBytes(errorPath);
@@ -62,6 +321,15 @@ public class FileService {
         return ("<html><body><h1>500 Internal Error</h1></body></html>").getBytes();
     }
 
+    // 未启用缓存时返回 null
+    public FileCache getCache() {
+        return cache;
+    }
+
+    public DocumentIndex getIndex() {
+        return index;
+    }
+
     public Path getDocumentRoot() {
         return documentRoot;
     }
@@ -0,0 +1,121 @@
+// src/top/mcocet/service/HostResolver.java
+package top.mcocet.service;
+
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class HostResolver {
+    public enum Mode { OFF, ASYNC }
+
+    private final Mode mode;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Function<InetAddress, String> lookup;
+    private final LoggerService logger;
+    private final ConcurrentHashMap<InetAddress, Entry> cache = new ConcurrentHashMap<>();
+    private final Set<InetAddress> pending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    public HostResolver(Mode mode, int maxEntries, long ttlMillis, LoggerService logger) {
+        this(mode, maxEntries, ttlMillis, InetAddress::getHostName, logger);
+    }
+
+    public HostResolver(Mode mode, int maxEntries, long ttlMillis,
+                        Function<InetAddress, String> lookup, LoggerService logger) {
+        this.mode = mode;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.lookup = lookup;
+        this.logger = logger;
+        if (mode == Mode.ASYNC) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(1024), r -> {
+                        Thread t = new Thread(r, "host-resolver");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        } else {
+            executor = null;
+        }
+    }
+
+    public static Mode parseMode(String value) {
+        return "async".equalsIgnoreCase(value) ? Mode.ASYNC : Mode.OFF;
+    }
+
+    // 只返回已经解析好的主机名，绝不在调用线程上做反向DNS查询；未知时返回 null
+    public String cachedHostName(InetAddress address) {
+        if (mode == Mode.OFF) {
+            return null;
+        }
+        Entry entry = cache.get(address);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expiresAt > now) {
+            return entry.hostName;
+        }
+        scheduleLookup(address);
+        // 过期的结果在刷新完成前继续使用
+        return entry != null ? entry.hostName : null;
+    }
+
+    private void scheduleLookup(InetAddress address) {
+        if (!pending.add(address)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    String name = lookup.apply(address);
+                    // 解析失败时得到的是 IP 字面量，同样缓存下来避免反复查询
+                    put(address, name != null ? name : address.getHostAddress());
+                } catch (RuntimeException e) {
+                    logger.warning("反向解析失败: " + address.getHostAddress() + ", 错误: " + e.getMessage());
+                } finally {
+                    pending.remove(address);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(address);
+        }
+    }
+
+    private void put(InetAddress address, String hostName) {
+        if (cache.size() >= maxEntries) {
+            trim();
+        }
+        cache.put(address, new Entry(hostName, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // 先清理过期条目，仍然超出上限时再任意淘汰十分之一
+    private void trim() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(e -> e.expiresAt <= now);
+        int excess = cache.size() - maxEntries + Math.max(1, maxEntries / 10);
+        Iterator<InetAddress> it = cache.keySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    private static final class Entry {
+        final String hostName;
+        final long expiresAt;
+
+        Entry(String hostName, long expiresAt) {
+            this.hostName = hostName;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,20 +2,22 @@
 package top.mcocet.service;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 public class LoggerService {
     private final Logger logger;
-    private final Map<String, Integer> ipAccessCount;
+    private final AccessStatistics accessStatistics;
 
     public LoggerService(String logFile) {
+        this(logFile, 10000);
+    }
+
+    public LoggerService(String logFile, int accessStatsCapacity) {
         logger = Logger.getLogger(LoggerService.class.getName());
         logger.setUseParentHandlers(false);
-        ipAccessCount = new HashMap<>();
+        accessStatistics = new AccessStatistics(accessStatsCapacity);
 
         try {
             FileHandler fileHandler = new FileHandler(logFile, true);
@@ -39,10 +41,10 @@ public class LoggerService {
     }
 
     public void recordAccess(String ip) {
-        ipAccessCount.put(ip, ipAccessCount.getOrDefault(ip, 0) + 1);
+        accessStatistics.record(ip);
     }
 
-    public Map<String, Integer> getIpAccessCount() {
-        return ipAccessCount;
+    public AccessStatistics getAccessStatistics() {
+        return accessStatistics;
     }
 }
\ No newline at end of file
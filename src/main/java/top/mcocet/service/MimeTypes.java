@@ -0,0 +1,92 @@
+// src/top/mcocet/service/MimeTypes.java
+package top.mcocet.service;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 按扩展名确定 MIME 类型。内置常见静态资源类型，配置项 mimeTypes 可以追加或覆盖，
+ * 格式为 "扩展名=类型" 并以逗号分隔，例如 "md=text/markdown,log=text/plain"。
+ * 不再调用 Files.probeContentType，结果与操作系统的 MIME 数据库无关。
+ */
+public final class MimeTypes {
+    public static final String DEFAULT_TYPE = "application/octet-stream";
+
+    private static final Map<String, String> BUILT_IN = new HashMap<>();
+
+    static {
+        BUILT_IN.put("html", "text/html");
+        BUILT_IN.put("htm", "text/html");
+        BUILT_IN.put("css", "text/css");
+        BUILT_IN.put("js", "application/javascript");
+        BUILT_IN.put("mjs", "application/javascript");
+        BUILT_IN.put("json", "application/json");
+        BUILT_IN.put("map", "application/json");
+        BUILT_IN.put("webmanifest", "application/manifest+json");
+        BUILT_IN.put("xml", "application/xml");
+        BUILT_IN.put("xhtml", "application/xhtml+xml");
+        BUILT_IN.put("txt", "text/plain");
+        BUILT_IN.put("csv", "text/csv");
+        BUILT_IN.put("svg", "image/svg+xml");
+        BUILT_IN.put("png", "image/png");
+        BUILT_IN.put("jpg", "image/jpeg");
+        BUILT_IN.put("jpeg", "image/jpeg");
+        BUILT_IN.put("gif", "image/gif");
+        BUILT_IN.put("webp", "image/webp");
+        BUILT_IN.put("avif", "image/avif");
+        BUILT_IN.put("ico", "image/x-icon");
+        BUILT_IN.put("bmp", "image/bmp");
+        BUILT_IN.put("woff", "font/woff");
+        BUILT_IN.put("woff2", "font/woff2");
+        BUILT_IN.put("ttf", "font/ttf");
+        BUILT_IN.put("otf", "font/otf");
+        BUILT_IN.put("mp3", "audio/mpeg");
+        BUILT_IN.put("ogg", "audio/ogg");
+        BUILT_IN.put("wav", "audio/wav");
+        BUILT_IN.put("mp4", "video/mp4");
+        BUILT_IN.put("webm", "video/webm");
+        BUILT_IN.put("wasm", "application/wasm");
+        BUILT_IN.put("pdf", "application/pdf");
+        BUILT_IN.put("zip", "application/zip");
+        BUILT_IN.put("gz", "application/gzip");
+        BUILT_IN.put("br", "application/x-brotli");
+        BUILT_IN.put("tar", "application/x-tar");
+    }
+
+    private final String overrides;
+    private final Map<String, String> types;
+
+    public MimeTypes(String overrides) {
+        this.overrides = overrides != null ? overrides : "";
+        this.types = new HashMap<>(BUILT_IN);
+        for (String item : this.overrides.split(",")) {
+            int eq = item.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String ext = item.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            String type = item.substring(eq + 1).trim();
+            if (ext.startsWith(".")) {
+                ext = ext.substring(1);
+            }
+            if (!ext.isEmpty() && !type.isEmpty()) {
+                types.put(ext, type);
+            }
+        }
+    }
+
+    // 没有扩展名或扩展名未知时返回 application/octet-stream
+    public String forFileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || dot == fileName.length() - 1) {
+            return DEFAULT_TYPE;
+        }
+        String type = types.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        return type != null ? type : DEFAULT_TYPE;
+    }
+
+    public String getOverrides() {
+        return overrides;
+    }
+}
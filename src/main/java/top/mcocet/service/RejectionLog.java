@@ -0,0 +1,147 @@
+// src/top/mcocet/service/RejectionLog.java
+package top.mcocet.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 被拒绝请求的应用日志。每个统计周期内每种原因只逐条记录前几次，其余只计数，
+ * 周期结束时输出一行汇总；扫描或刷请求时日志写入量与请求数无关。
+ * 周期为 0 时退回到逐条记录。周期和抽样条数随配置热加载调整（见 update）。
+ */
+public class RejectionLog {
+    public enum Reason {
+        BLACKLISTED("禁止访问"),
+        HOST_NOT_ALLOWED("不允许的主机"),
+        HOST_HEADER("Host头部不匹配"),
+        METHOD_NOT_ALLOWED("方法不被允许"),
+        RATE_LIMITED("超出访问频率限制"),
+        NOT_FOUND("文件不存在");
+
+        private final String label;
+
+        Reason(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Reason[] REASONS = Reason.values();
+
+    private final LoggerService logger;
+    private volatile int samples;
+    private volatile long intervalSeconds;
+    private final LongAdder[] totals = new LongAdder[REASONS.length];
+    private final LongAdder[] window = new LongAdder[REASONS.length];
+    private final AtomicInteger[] logged = new AtomicInteger[REASONS.length];
+    private ScheduledExecutorService summarizer;
+    private ScheduledFuture<?> summary;
+
+    public RejectionLog(LoggerService logger, long intervalSeconds, int samples) {
+        this.logger = logger;
+        this.samples = Math.max(0, samples);
+        this.intervalSeconds = intervalSeconds;
+        for (int i = 0; i < REASONS.length; i++) {
+            totals[i] = new LongAdder();
+            window[i] = new LongAdder();
+            logged[i] = new AtomicInteger();
+        }
+        schedule(intervalSeconds);
+    }
+
+    // 每个请求以当前配置调用，未变化时只比较两个字段；周期变化时按新周期重新安排汇总
+    public void update(long intervalSeconds, int samples) {
+        if (intervalSeconds == this.intervalSeconds && Math.max(0, samples) == this.samples) {
+            return;
+        }
+        synchronized (this) {
+            this.samples = Math.max(0, samples);
+            if (intervalSeconds != this.intervalSeconds) {
+                this.intervalSeconds = intervalSeconds;
+                schedule(intervalSeconds);
+            }
+        }
+    }
+
+    private synchronized void schedule(long intervalSeconds) {
+        if (summary != null) {
+            summary.cancel(false);
+            summary = null;
+        }
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        if (summarizer == null) {
+            summarizer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rejection-log");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        summary = summarizer.scheduleAtFixedRate(() -> summarize(intervalSeconds),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一次拒绝。detail 只在需要逐条输出时才求值，未抽中的请求不拼接字符串。
+     */
+    public void record(Reason reason, String clientIP, Supplier<String> detail) {
+        int i = reason.ordinal();
+        totals[i].increment();
+        if (intervalSeconds <= 0) {
+            write(reason, clientIP, detail);
+            return;
+        }
+        window[i].increment();
+        // 名额用完之后只读不写，不再争用同一个计数器
+        AtomicInteger count = logged[i];
+        int limit = samples;
+        if (count.get() < limit && count.incrementAndGet() <= limit) {
+            write(reason, clientIP, detail);
+        }
+    }
+
+    private void write(Reason reason, String clientIP, Supplier<String> detail) {
+        String line = "[" + LocalDateTime.now() + "] " + clientIP + " - " + reason.label + ": " + detail.get();
+        if (reason == Reason.NOT_FOUND) {
+            logger.info(line);
+        } else {
+            logger.warning(line);
+        }
+    }
+
+    // 输出上一个周期的汇总并重置抽样名额
+    private void summarize(long intervalSeconds) {
+        StringBuilder counts = new StringBuilder();
+        long total = 0;
+        int written = 0;
+        for (int i = 0; i < REASONS.length; i++) {
+            long n = window[i].sumThenReset();
+            written += Math.min(logged[i].getAndSet(0), samples);
+            if (n > 0) {
+                if (total > 0) {
+                    counts.append(", ");
+                }
+                counts.append(REASONS[i].label).append(' ').append(n);
+                total += n;
+            }
+        }
+        if (total > written) {
+            logger.warning("过去 " + intervalSeconds + " 秒共拒绝 " + total + " 个请求（" + counts
+                    + "），其中 " + written + " 条已单独记录");
+        }
+    }
+
+    public long getTotal(Reason reason) {
+        return totals[reason.ordinal()].sum();
+    }
+}
@@ -0,0 +1,258 @@
+// src/top/mcocet/service/SiteBundle.java
+package top.mcocet.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 整个站点打包成的单个只读文件（由 SiteBundleWriter 生成），启动时只读取头部并做内存映射，
+ * 每个请求返回映射区的切片，不再逐个打开、stat、读取文件，内容由操作系统的页缓存管理。
+ *
+ * 文件格式（大端序）：
+ * <pre>
+ * int  MAGIC, int VERSION, long 目录偏移, long 目录长度, long 打包时间
+ * 数据区：各文件及其预压缩变体的内容，依次紧密排列
+ * 目录：int 文件数，每个文件：UTF 相对路径, UTF MIME 类型, long 最后修改时间, UTF ETag, long 偏移, long 长度,
+ *      byte 预压缩变体数，每个变体：UTF 编码, UTF ETag, long 最后修改时间, long 偏移, long 长度；
+ *      int 路径数，按路径排序，每个路径：UTF 请求路径, int 文件序号
+ * </pre>
+ * 目录放在数据区之后，打包时可以边读文件边写出，最后回填开头的目录偏移。
+ * 偏移相对于数据区起点。同一文件可以对应多个请求路径（目录的默认页面）。
+ *
+ * 映射一旦建立就不能截断或原地改写文件，部署新版本时必须写到临时文件再原子重命名，
+ * 旧的映射在仍引用它的响应发送完、被回收后才解除。
+ */
+public final class SiteBundle {
+    static final int MAGIC = 0x4D4F5442; // "MOTB"
+    static final int VERSION = 1;
+    static final int PREAMBLE_LENGTH = 4 + 4 + 8 + 8 + 8;
+    // 目录中每项的最小长度（UTF 字符串为空时只有 2 字节的长度）
+    private static final int MIN_FILE_LENGTH = 2 + 2 + 8 + 2 + 8 + 8 + 1;
+    private static final int MIN_VARIANT_LENGTH = 2 + 2 + 8 + 8 + 8;
+    private static final int MIN_PATH_LENGTH = 2 + 4;
+
+    private final Path file;
+    private final long createdAt;
+    private final long dataLength;
+    private final Map<String, FileEntry> paths;
+    // 以条目的路径查找预压缩变体，索引 0 为 br，1 为 gzip
+    private final Map<Path, FileEntry[]> variants;
+    private final int fileCount;
+
+    private SiteBundle(Path file, long createdAt, long dataLength, Map<String, FileEntry> paths,
+                       Map<Path, FileEntry[]> variants, int fileCount) {
+        this.file = file;
+        this.createdAt = createdAt;
+        this.dataLength = dataLength;
+        this.paths = paths;
+        this.variants = variants;
+        this.fileCount = fileCount;
+    }
+
+    /**
+     * 打开并映射打包文件。条目的路径解析到 documentRoot 下，供 Cache-Control 规则按文件名匹配；
+     * 格式错误或文件不完整时抛出 IOException，调用方可以继续使用旧的版本。
+     */
+    public static SiteBundle open(Path file, Path documentRoot) throws IOException {
+        try {
+            return read(file, documentRoot);
+        } catch (RuntimeException e) {
+            // 下面逐项检查了计数和偏移，这里兜底其余损坏（如非法的路径字符），不让调用方因运行时异常无法回退
+            throw new IOException("打包文件损坏: " + file + ", " + e, e);
+        }
+    }
+
+    private static SiteBundle read(Path file, Path documentRoot) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+            while (preamble.hasRemaining() && channel.read(preamble, preamble.position()) > 0) {
+            }
+            if (preamble.hasRemaining()) {
+                throw new IOException("打包文件不完整: " + file);
+            }
+            preamble.flip();
+            if (preamble.getInt() != MAGIC) {
+                throw new IOException("不是打包文件: " + file);
+            }
+            int version = preamble.getInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的打包文件版本: " + version);
+            }
+            long tableOffset = preamble.getLong();
+            long tableLength = preamble.getLong();
+            long createdAt = preamble.getLong();
+            if (tableOffset < PREAMBLE_LENGTH || tableLength < 0 || tableLength > Integer.MAX_VALUE
+                    || tableOffset + tableLength != fileSize) {
+                throw new IOException("打包文件长度不符，可能仍在写入: " + file);
+            }
+            long dataLength = tableOffset - PREAMBLE_LENGTH;
+
+            ByteBuffer header = ByteBuffer.allocate((int) tableLength);
+            while (header.hasRemaining() && channel.read(header, tableOffset + header.position()) > 0) {
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+
+            // 计数来自文件内容，先按每项的最小长度与目录长度比较，再用于分配数组
+            int fileCount = in.readInt();
+            if (fileCount < 0 || fileCount > tableLength / MIN_FILE_LENGTH) {
+                throw new IOException("打包文件中的文件数损坏: " + fileCount);
+            }
+            Region[] regions = new Region[fileCount];
+            List<Region> all = new ArrayList<>();
+            for (int i = 0; i < fileCount; i++) {
+                Region region = new Region(in.readUTF(), in.readUTF(), in.readLong(), in.readUTF(),
+                        in.readLong(), in.readLong(), null);
+                int variantCount = in.readUnsignedByte();
+                if (variantCount > in.available() / MIN_VARIANT_LENGTH) {
+                    throw new IOException("打包文件中的变体数损坏: " + region.path);
+                }
+                region.variants = new Region[variantCount];
+                for (int v = 0; v < variantCount; v++) {
+                    String encoding = in.readUTF();
+                    String etag = in.readUTF();
+                    region.variants[v] = new Region(region.path, region.mimeType, 0, etag, 0, 0, encoding);
+                    region.variants[v].lastModified = in.readLong();
+                    region.variants[v].offset = in.readLong();
+                    region.variants[v].length = in.readLong();
+                    all.add(region.variants[v]);
+                }
+                regions[i] = region;
+                all.add(region);
+            }
+            for (Region region : all) {
+                if (region.offset < 0 || region.length < 0 || region.length > Integer.MAX_VALUE
+                        || region.offset + region.length > dataLength) {
+                    throw new IOException("打包文件中的条目越界: " + region.path);
+                }
+            }
+
+            map(channel, PREAMBLE_LENGTH, all);
+
+            Map<Path, FileEntry[]> variants = new HashMap<>();
+            for (Region region : regions) {
+                // 相对路径由打包时的文档索引生成，已经是规范形式
+                Path path = documentRoot.resolve(region.path);
+                region.entry = new FileEntry(path, region.length, region.lastModified, region.mimeType,
+                        region.content, null, region.etag);
+                if (region.variants.length == 0) {
+                    continue;
+                }
+                FileEntry[] encoded = new FileEntry[2];
+                for (Region variant : region.variants) {
+                    int slot = "br".equals(variant.encoding) ? 0 : "gzip".equals(variant.encoding) ? 1 : -1;
+                    if (slot >= 0) {
+                        encoded[slot] = new FileEntry(path, variant.length, variant.lastModified, region.mimeType,
+                                variant.content, variant.encoding, variant.etag);
+                    }
+                }
+                variants.put(path, encoded);
+            }
+
+            int pathCount = in.readInt();
+            if (pathCount < 0 || pathCount > in.available() / MIN_PATH_LENGTH) {
+                throw new IOException("打包文件中的路径数损坏: " + pathCount);
+            }
+            Map<String, FileEntry> paths = new HashMap<>(pathCount * 4 / 3 + 1);
+            for (int i = 0; i < pathCount; i++) {
+                String requestPath = in.readUTF();
+                int index = in.readInt();
+                if (index < 0 || index >= fileCount) {
+                    throw new IOException("打包文件中的路径表损坏: " + requestPath);
+                }
+                paths.put(requestPath, regions[index].entry);
+            }
+            return new SiteBundle(file, createdAt, dataLength, paths, variants, fileCount);
+        }
+    }
+
+    // 单个映射最大 2GB，按条目边界把数据区分成若干段，每个条目都完整地落在一段内
+    private static void map(FileChannel channel, long dataOffset, List<Region> regions) throws IOException {
+        Region[] sorted = regions.toArray(new Region[0]);
+        Arrays.sort(sorted, Comparator.comparingLong((Region r) -> r.offset));
+        int i = 0;
+        while (i < sorted.length) {
+            long start = sorted[i].offset;
+            long end = start;
+            int j = i;
+            while (j < sorted.length && Math.max(end, sorted[j].offset + sorted[j].length) - start <= Integer.MAX_VALUE) {
+                end = Math.max(end, sorted[j].offset + sorted[j].length);
+                j++;
+            }
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start, end - start);
+            for (int k = i; k < j; k++) {
+                sorted[k].content = segment.slice((int) (sorted[k].offset - start), (int) sorted[k].length);
+            }
+            i = j;
+        }
+    }
+
+    // 按解码后的请求路径查找，语义与 DocumentIndex 相同
+    public FileEntry get(String requestPath) {
+        return paths.get(requestPath);
+    }
+
+    // 打包时生成的预压缩变体；没有对应编码的变体时返回 null
+    public FileEntry variant(FileEntry entry, String encoding) {
+        FileEntry[] encoded = variants.get(entry.getPath());
+        if (encoded == null) {
+            return null;
+        }
+        return "br".equals(encoding) ? encoded[0] : "gzip".equals(encoding) ? encoded[1] : null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    private static final class Region {
+        final String path;
+        final String mimeType;
+        final String etag;
+        final String encoding;
+        long lastModified;
+        long offset;
+        long length;
+        Region[] variants;
+        ByteBuffer content;
+        FileEntry entry;
+
+        Region(String path, String mimeType, long lastModified, String etag, long offset, long length, String encoding) {
+            this.path = path;
+            this.mimeType = mimeType;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.offset = offset;
+            this.length = length;
+            this.encoding = encoding;
+        }
+    }
+}
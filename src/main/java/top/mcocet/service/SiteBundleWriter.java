@@ -0,0 +1,251 @@
+// src/top/mcocet/service/SiteBundleWriter.java
+package top.mcocet.service;
+
+import top.mcocet.config.ConfigSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把文档根目录打包成 SiteBundle 文件。路径、MIME 类型和 ETag 与直接读目录时完全一致，
+ * 切换部署方式后客户端缓存的校验器仍然有效；可压缩的文件同时写入 .br/.gz 兄弟文件
+ * 或预先压缩好的 gzip 变体，运行时不再压缩。
+ * 先写到同目录下的临时文件，完成后原子重命名，正在使用旧版本的服务器可以随时切换。
+ */
+public class SiteBundleWriter {
+    private final ConfigSnapshot settings;
+    private final LoggerService logger;
+
+    public record Result(Path file, int files, int paths, int variants, long bytes) {
+    }
+
+    public SiteBundleWriter(ConfigSnapshot settings, LoggerService logger) {
+        this.settings = settings;
+        this.logger = logger;
+    }
+
+    public Result write(Path target) throws IOException {
+        Path root = Paths.get(settings.getDocumentRoot()).toAbsolutePath().normalize();
+        target = target.toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            throw new NoSuchFileException("文档根目录不存在: " + root);
+        }
+        if (target.startsWith(root)) {
+            throw new IOException("打包文件不能位于文档根目录内: " + target);
+        }
+        DocumentIndex index = new DocumentIndex(root, settings.getIndexFile(),
+                new MimeTypes(settings.getMimeTypes()), logger);
+        index.rebuild();
+        Map<String, FileEntry> sorted = new TreeMap<>(index.entries());
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Result result = write(temp, target, index, sorted);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return result;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Result write(Path temp, Path target, DocumentIndex index, Map<String, FileEntry> sorted) throws IOException {
+        // 目录的默认页面与页面本身是同一个文件，只写一次
+        Map<Path, Integer> fileIds = new LinkedHashMap<>();
+        List<Packed> files = new ArrayList<>();
+        Map<String, Integer> paths = new LinkedHashMap<>();
+        int variantCount = 0;
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(SiteBundle.PREAMBLE_LENGTH);
+            for (Map.Entry<String, FileEntry> e : sorted.entrySet()) {
+                FileEntry entry = e.getValue();
+                Integer id = fileIds.get(entry.getPath());
+                if (id == null) {
+                    Packed packed = pack(out, index, entry);
+                    if (packed == null) {
+                        continue;
+                    }
+                    id = files.size();
+                    files.add(packed);
+                    fileIds.put(entry.getPath(), id);
+                    variantCount += packed.variants.size();
+                }
+                paths.put(e.getKey(), id);
+            }
+
+            long tableOffset = out.position();
+            ByteArrayOutputStream table = new ByteArrayOutputStream(64 * files.size() + 1024);
+            DataOutputStream dos = new DataOutputStream(table);
+            dos.writeInt(files.size());
+            for (Packed packed : files) {
+                dos.writeUTF(packed.relativePath);
+                dos.writeUTF(packed.mimeType);
+                dos.writeLong(packed.lastModified);
+                dos.writeUTF(packed.etag);
+                dos.writeLong(packed.offset);
+                dos.writeLong(packed.length);
+                dos.writeByte(packed.variants.size());
+                for (Variant variant : packed.variants) {
+                    dos.writeUTF(variant.encoding);
+                    dos.writeUTF(variant.etag);
+                    dos.writeLong(variant.lastModified);
+                    dos.writeLong(variant.offset);
+                    dos.writeLong(variant.length);
+                }
+            }
+            dos.writeInt(paths.size());
+            for (Map.Entry<String, Integer> e : paths.entrySet()) {
+                dos.writeUTF(e.getKey());
+                dos.writeInt(e.getValue());
+            }
+            dos.flush();
+            writeFully(out, ByteBuffer.wrap(table.toByteArray()));
+
+            ByteBuffer preamble = ByteBuffer.allocate(SiteBundle.PREAMBLE_LENGTH);
+            preamble.putInt(SiteBundle.MAGIC).putInt(SiteBundle.VERSION)
+                    .putLong(tableOffset).putLong(table.size()).putLong(System.currentTimeMillis()).flip();
+            out.position(0);
+            writeFully(out, preamble);
+            out.force(false);
+            return new Result(target, files.size(), paths.size(), variantCount, out.size());
+        }
+    }
+
+    // 写入一个文件及其压缩变体；文件在打包过程中消失或超过 2GB 时跳过
+    private Packed pack(FileChannel out, DocumentIndex index, FileEntry entry) throws IOException {
+        if (entry.getSize() > Integer.MAX_VALUE) {
+            logger.warning("文件超过 2GB，不放入打包文件: " + entry.getPath());
+            return null;
+        }
+        String mimeType = entry.getMimeType();
+        boolean compressible = settings.isEnableCompression() && CompressionService.isCompressible(mimeType);
+        long offset = out.position() - SiteBundle.PREAMBLE_LENGTH;
+        byte[] bytes = null;
+        long length;
+        try {
+            if (compressible && entry.getSize() <= settings.getCompressMaxSize()) {
+                bytes = Files.readAllBytes(entry.getPath());
+                writeFully(out, ByteBuffer.wrap(bytes));
+                length = bytes.length;
+            } else {
+                length = copy(entry.getPath(), out);
+            }
+        } catch (NoSuchFileException e) {
+            out.position(offset + SiteBundle.PREAMBLE_LENGTH);
+            return null;
+        }
+        Packed packed = new Packed(index.keyFor(entry.getPath()).substring(1), mimeType, entry.getLastModified(),
+                etag(entry.getLastModified(), length, null), offset, length);
+        if (!compressible) {
+            return packed;
+        }
+
+        // 与运行时相同的优先顺序：预压缩的兄弟文件优先，其次是 gzip 压缩结果
+        variant(out, index, packed, entry, ".br", "br");
+        if (!variant(out, index, packed, entry, ".gz", "gzip")
+                && bytes != null && bytes.length >= CompressionService.MIN_COMPRESS_SIZE) {
+            byte[] gzipped = gzip(bytes);
+            if (gzipped.length < bytes.length) {
+                long at = out.position() - SiteBundle.PREAMBLE_LENGTH;
+                writeFully(out, ByteBuffer.wrap(gzipped));
+                packed.variants.add(new Variant("gzip", etag(entry.getLastModified(), gzipped.length, "gzip"),
+                        entry.getLastModified(), at, gzipped.length));
+            }
+        }
+        return packed;
+    }
+
+    private boolean variant(FileChannel out, DocumentIndex index, Packed packed, FileEntry entry,
+                            String suffix, String encoding) throws IOException {
+        Path siblingPath = entry.getPath().resolveSibling(entry.getPath().getFileName() + suffix);
+        FileEntry sibling = index.get(index.keyFor(siblingPath));
+        if (sibling == null || sibling.getSize() > Integer.MAX_VALUE) {
+            return false;
+        }
+        long at = out.position() - SiteBundle.PREAMBLE_LENGTH;
+        long length;
+        try {
+            length = copy(siblingPath, out);
+        } catch (NoSuchFileException e) {
+            out.position(at + SiteBundle.PREAMBLE_LENGTH);
+            return false;
+        }
+        packed.variants.add(new Variant(encoding, etag(sibling.getLastModified(), length, encoding),
+                sibling.getLastModified(), at, length));
+        return true;
+    }
+
+    // 与 FileEntry 的计算方式相同
+    private static String etag(long lastModified, long size, String encoding) {
+        return new FileEntry(null, size, lastModified, null, null, encoding).getEtag();
+    }
+
+    // 按实际读到的字节数记录长度，打包期间文件被改写也不会让目录与数据不一致
+    private static long copy(Path source, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = Math.min(in.size(), Integer.MAX_VALUE);
+            long copied = 0;
+            while (copied < size) {
+                long n = in.transferTo(copied, size - copied, out);
+                if (n <= 0) {
+                    break;
+                }
+                copied += n;
+            }
+            return copied;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, bytes.length / 3));
+        try (OutputStream gz = new GZIPOutputStream(buffer, 8192)) {
+            gz.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final class Packed {
+        final String relativePath;
+        final String mimeType;
+        final long lastModified;
+        final String etag;
+        final long offset;
+        final long length;
+        final List<Variant> variants = new ArrayList<>(2);
+
+        Packed(String relativePath, String mimeType, long lastModified, String etag, long offset, long length) {
+            this.relativePath = relativePath;
+            this.mimeType = mimeType;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private record Variant(String encoding, String etag, long lastModified, long offset, long length) {
+    }
+}
@@ -0,0 +1,77 @@
+// src/top/mcocet/http/ByteRangeTest.java
+package top.mcocet.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range 头部解析：null 表示按普通 200 处理，空列表表示 416。
+ */
+class ByteRangeTest {
+
+    @Test
+    void parsesSingleRanges() {
+        assertRanges("bytes=0-99", 1000, "0-99");
+        assertRanges("bytes=900-", 1000, "900-999");
+        assertRanges("bytes=-100", 1000, "900-999");
+        // 结尾超出文件时截到最后一个字节，后缀长于文件时从头开始
+        assertRanges("bytes=990-2000", 1000, "990-999");
+        assertRanges("bytes=-5000", 1000, "0-999");
+        assertRanges("bytes= 10 - 19 ", 1000, "10-19");
+        assertEquals("bytes 0-99/1000", ByteRange.parse("bytes=0-99", 1000).get(0).contentRange(1000));
+        assertEquals(100, ByteRange.parse("bytes=0-99", 1000).get(0).length());
+    }
+
+    // 重叠或相邻的区间合并，结果按起点升序
+    @Test
+    void coalescesOverlappingRanges() {
+        assertRanges("bytes=500-599,0-99,100-199", 1000, "0-199", "500-599");
+        assertRanges("bytes=0-10,5-20,-990", 1000, "0-999");
+        assertRanges("bytes=0-0,2-2", 1000, "0-0", "2-2");
+    }
+
+    @Test
+    void returnsEmptyListWhenNothingIsSatisfiable() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-", 0).isEmpty());
+        // 可满足的区间留下，不可满足的丢弃
+        assertRanges("bytes=2000-3000,0-0", 1000, "0-0");
+    }
+
+    @Test
+    void ignoresInvalidHeaders() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=abc", 1000));
+        assertNull(ByteRange.parse("bytes=5-1", 1000));
+        assertNull(ByteRange.parse("bytes=a-1", 1000));
+        assertNull(ByteRange.parse("bytes=0-99999999999999999999", 1000));
+    }
+
+    @Test
+    void limitsRangeCount() {
+        List<String> specs = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            specs.add(i * 10 + "-" + (i * 10 + 1));
+        }
+        assertEquals(16, ByteRange.parse("bytes=" + String.join(",", specs), 1000).size());
+        specs.add("500-501");
+        assertNull(ByteRange.parse("bytes=" + String.join(",", specs), 1000));
+    }
+
+    private static void assertRanges(String header, long size, String... expected) {
+        List<ByteRange> ranges = ByteRange.parse(header, size);
+        List<String> actual = new ArrayList<>();
+        for (ByteRange range : ranges) {
+            actual.add(range.getStart() + "-" + range.getEnd());
+        }
+        assertEquals(List.of(expected), actual, header);
+    }
+}
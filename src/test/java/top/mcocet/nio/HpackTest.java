@@ -0,0 +1,194 @@
+// src/top/mcocet/nio/HpackTest.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HPACK 编解码。解码器按 RFC 7541 附录 C.3（无 Huffman）、C.4（Huffman）、C.5（动态表淘汰）的示例逐块解码，
+ * 后一块引用前一块插入的动态表条目，动态表状态错误时结果会对不上；
+ * 编码器的输出交给解码器还原，连续多个响应共用一对动态表。
+ */
+class HpackTest {
+
+    @Test
+    void decodesRequestsWithoutHuffman() throws Http2Exception {
+        decodeAll(4096, new String[][]{
+                {"828684410f7777772e6578616d706c652e636f6d",
+                        ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com"},
+                {"828684be58086e6f2d6361636865",
+                        ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                        "cache-control", "no-cache"},
+                {"828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565",
+                        ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                        "custom-key", "custom-value"},
+                // 动态表此时依次为 custom-key、cache-control、:authority
+                {"bebfc0",
+                        "custom-key", "custom-value", "cache-control", "no-cache", ":authority", "www.example.com"}
+        });
+    }
+
+    @Test
+    void decodesRequestsWithHuffman() throws Http2Exception {
+        decodeAll(4096, new String[][]{
+                {"828684418cf1e3c2e5f23a6ba0ab90f4ff",
+                        ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com"},
+                {"828684be5886a8eb10649cbf",
+                        ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                        "cache-control", "no-cache"},
+                {"828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf",
+                        ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                        "custom-key", "custom-value"}
+        });
+    }
+
+    // 动态表上限 256 字节，后两块插入时淘汰最早的条目，已淘汰的索引必须被拒绝
+    @Test
+    void evictsOldestEntriesAndRejectsTheirIndexes() throws Http2Exception {
+        HpackDecoder decoder = decodeAll(256, new String[][]{
+                {"4803333032580770726976617465611d4d6f6e2c203231204f637420323031332032303a31333a323120474d54"
+                        + "6e1768747470733a2f2f7777772e6578616d706c652e636f6d",
+                        ":status", "302", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+                        "location", "https://www.example.com"},
+                {"4803333037c1c0bf",
+                        ":status", "307", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+                        "location", "https://www.example.com"},
+                {"88c1611d4d6f6e2c203231204f637420323031332032303a31333a323220474d54c05a04677a697077386"
+                        + "66f6f3d4153444a4b48514b425a584f5157454f50495541585157454f49553b206d61782d6167653d333630"
+                        + "303b2076657273696f6e3d31",
+                        ":status", "200", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:22 GMT",
+                        "location", "https://www.example.com", "content-encoding", "gzip",
+                        "set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1"},
+                // 动态表此时只剩 set-cookie、content-encoding 和新的 date
+                {"bebfc0",
+                        "set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1",
+                        "content-encoding", "gzip", "date", "Mon, 21 Oct 2013 20:13:22 GMT"}
+        });
+        assertThrows(Http2Exception.class, () -> decode(decoder, "c1"));
+    }
+
+    @Test
+    void rejectsMalformedBlocks() {
+        // 索引 0、超出静态表和空动态表的索引
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "80"));
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "be"));
+        // 整数和字符串在头部块末尾被截断
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "ff"));
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "400a6375"));
+        // 整数超过 2^28
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "ffffffffff0f"));
+        // 动态表大小更新不在开头，或超过 SETTINGS_HEADER_TABLE_SIZE
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "823f00"));
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "3fe21f"));
+        // Huffman 结尾填充超过 7 位或不全为 1
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "00016182ffff"));
+        assertThrows(Http2Exception.class, () -> decode(new HpackDecoder(4096, 65536), "00016181fe"));
+    }
+
+    // 超过头部列表上限时继续解码以维持动态表，但不再输出并返回 false
+    @Test
+    void keepsDecodingPastHeaderListLimit() throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(4096, 60);
+        byte[] first = HexFormat.of().parseHex("828684410f7777772e6578616d706c652e636f6d");
+        List<String> out = new ArrayList<>();
+        assertFalse(decoder.decode(first, first.length, out));
+        assertEquals(List.of(":method", "GET"), out);
+
+        // 被截断的块插入的 :authority 仍在动态表中
+        out.clear();
+        assertTrue(decoder.decode(new byte[]{(byte) 0xbe}, 1, out));
+        assertEquals(List.of(":authority", "www.example.com"), out);
+    }
+
+    // 编码器插入动态表的字段，后续响应应该只占一个字节；对端把表缩小后编码器必须先通知再编码
+    @Test
+    void encoderOutputRoundTrips() throws Http2Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(Hpack.DEFAULT_TABLE_SIZE, 64 * 1024);
+        int first = -1;
+        for (int i = 0; i < 4; i++) {
+            if (i == 3) {
+                encoder.setMaxTableSize(0);
+            }
+            Headers headers = new Headers();
+            headers.add("Content-Type", "text/html; charset=UTF-8");
+            headers.add("Cache-Control", "public, max-age=3600");
+            headers.add("Server", "MOTWebPublisher");
+            headers.add("ETag", "\"" + Integer.toHexString(0x5f3a91 + i) + "\"");
+            headers.add("Content-Length", Integer.toString(1024 * i));
+            headers.add("X-Vary", "é ü");
+            headers.add("Connection", "keep-alive");
+            int status = i == 1 ? 304 : 200;
+            int length = encoder.encode(status, headers);
+            List<String> out = new ArrayList<>();
+            assertTrue(decoder.decode(Arrays.copyOf(encoder.buffer(), length), length, out));
+
+            List<String> expected = new ArrayList<>(List.of(":status", Integer.toString(status)));
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                String name = header.getKey().toLowerCase(Locale.ROOT);
+                if (!HpackEncoder.CONNECTION_HEADERS.contains(name)) {
+                    for (String value : header.getValue()) {
+                        expected.add(name);
+                        expected.add(value);
+                    }
+                }
+            }
+            assertEquals(expected, out);
+            if (i == 0) {
+                first = length;
+            } else if (i == 2) {
+                assertTrue(length < first / 2, "重复的响应头没有使用动态表: " + first + " -> " + length + " 字节");
+            }
+        }
+    }
+
+    // 覆盖全部 256 个 Latin-1 字符，包括码长 30 位的控制字符
+    @Test
+    void huffmanRoundTripsEveryByte() throws Http2Exception {
+        StringBuilder sb = new StringBuilder(256);
+        for (int c = 0; c < 256; c++) {
+            sb.append((char) c);
+        }
+        String s = sb.toString();
+        byte[] buf = new byte[Hpack.huffmanLength(s)];
+        assertEquals(buf.length, Hpack.huffmanEncode(s, buf, 0));
+        assertEquals(s, Hpack.huffmanDecode(buf, 0, buf.length));
+    }
+
+    @Test
+    void huffmanMatchesSpecExample() {
+        String s = "www.example.com";
+        byte[] buf = new byte[Hpack.huffmanLength(s)];
+        Hpack.huffmanEncode(s, buf, 0);
+        assertArrayEquals(HexFormat.of().parseHex("f1e3c2e5f23a6ba0ab90f4ff"), buf);
+    }
+
+    private static HpackDecoder decodeAll(int tableSize, String[][] blocks) throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(tableSize, 64 * 1024);
+        for (String[] block : blocks) {
+            List<String> expected = Arrays.asList(block).subList(1, block.length);
+            assertEquals(expected, decode(decoder, block[0]), block[0]);
+        }
+        return decoder;
+    }
+
+    private static List<String> decode(HpackDecoder decoder, String hex) throws Http2Exception {
+        byte[] bytes = HexFormat.of().parseHex(hex);
+        List<String> out = new ArrayList<>();
+        assertTrue(decoder.decode(bytes, bytes.length, out), "头部块超出大小限制: " + hex);
+        return out;
+    }
+}
@@ -0,0 +1,131 @@
+// src/top/mcocet/nio/Http2RoundTripTest.java
+package top.mcocet.nio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.mcocet.config.ConfigLoader;
+import top.mcocet.handler.StaticFileHandler;
+import top.mcocet.service.AccessLogger;
+import top.mcocet.service.LoggerService;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 用 JDK HttpClient 经 h2c 升级访问进程内的 NIO 引擎，在一条连接上并发下载多个大文件并逐字节比较。
+ * 客户端的流窗口和连接窗口都设为协议默认的 64KB，服务器必须按 WINDOW_UPDATE 分批发送，
+ * 流控出错时下载会卡住或内容对不上。
+ */
+class Http2RoundTripTest {
+    private static final int PARALLEL = 8;
+
+    static {
+        // 必须在 HttpClient 类加载之前设置
+        System.setProperty("jdk.httpclient.windowsize", "65535");
+        System.setProperty("jdk.httpclient.connectionWindowSize", "65535");
+    }
+
+    @TempDir
+    Path dir;
+
+    private byte[] small;
+    private byte[] large;
+    private AccessLogger accessLog;
+    private NioHttpServer server;
+    private String base;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        Path documentRoot = Files.createDirectory(dir.resolve("http"));
+        StringBuilder html = new StringBuilder("<html><body>");
+        while (html.length() < 1024) {
+            html.append("<p>MOTWebPublisher</p>");
+        }
+        small = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+        large = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(large);
+        Files.write(documentRoot.resolve("small.html"), small);
+        Files.write(documentRoot.resolve("large.bin"), large);
+        Files.writeString(documentRoot.resolve("50x.html"), "<html><body><h1>Error</h1></body></html>");
+
+        Path configFile = dir.resolve("config.yml");
+        Files.write(configFile, List.of(
+                "port: 0",
+                "logFile: " + dir.resolve("run.log"),
+                "documentRoot: " + documentRoot,
+                "accessLogFile: " + dir.resolve("access.log"),
+                "consoleAccessLog: false",
+                "enableSecurity: false",
+                "enableCompression: false",
+                "engine: nio",
+                "http2: true"), StandardCharsets.UTF_8);
+        ConfigLoader config = new ConfigLoader(configFile.toString());
+        LoggerService logger = new LoggerService(config.snapshot().getLogFilePath(),
+                config.snapshot().getAccessStatsCapacity());
+        accessLog = new AccessLogger(config.snapshot().getAccessLogFile(), config.snapshot().getAccessLogQueueSize(),
+                AccessLogger.OverflowPolicy.DROP, 0, 0, false, logger);
+        accessLog.start();
+
+        server = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024,
+                config.snapshot(), logger);
+        server.createContext("/", new StaticFileHandler(config, logger, accessLog));
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+        accessLog.close();
+    }
+
+    @Test
+    void multiplexesDownloadsWithinFlowControlWindows() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        // 第一个请求完成 h2c 升级，之后的请求在同一条连接上多路复用
+        expect(client.send(request("/small.html"), HttpResponse.BodyHandlers.ofByteArray()), 200, small);
+
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>(PARALLEL);
+        for (int i = 0; i < PARALLEL; i++) {
+            String path = i % 2 == 0 ? "/large.bin" : "/small.html";
+            responses.add(client.sendAsync(request(path), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        // 流控出错时服务器会一直等待 WINDOW_UPDATE，用超时把卡住的下载变成失败
+        for (int i = 0; i < PARALLEL; i++) {
+            expect(responses.get(i).get(60, TimeUnit.SECONDS), 200, i % 2 == 0 ? large : small);
+        }
+
+        expect(client.send(request("/missing.html"), HttpResponse.BodyHandlers.ofByteArray()), 404, null);
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30)).build();
+    }
+
+    private static void expect(HttpResponse<byte[]> response, int status, byte[] body) {
+        assertEquals(HttpClient.Version.HTTP_2, response.version(), response.uri() + " 没有使用 HTTP/2");
+        assertEquals(status, response.statusCode(), response.uri().toString());
+        if (body != null) {
+            assertArrayEquals(body, response.body(), response.uri() + " 响应内容不一致");
+        }
+    }
+}
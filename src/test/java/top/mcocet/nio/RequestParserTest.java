@@ -0,0 +1,135 @@
+// src/top/mcocet/nio/RequestParserTest.java
+package top.mcocet.nio;
+
+import com.sun.net.httpserver.Headers;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HTTP/1.x 请求头解析：正常请求、分批到达、连接相关字段，以及各种格式错误对应的状态码。
+ */
+class RequestParserTest {
+    private final RequestParser parser = new RequestParser();
+
+    @Test
+    void parsesRequestLineAndHeaders() {
+        String head = "GET /index.html?a=1 HTTP/1.1\r\nHost: example.com\r\nX-Custom:  v1 \t\r\n"
+                + "Accept-Encoding: gzip\r\nx-custom: v2\r\n\r\n";
+        ByteBuffer buf = buffer(head + "body");
+        assertEquals(head.length(), parser.parse(buf, 0, buf.limit()));
+        assertEquals("GET", parser.method(buf));
+        assertEquals("/index.html?a=1", parser.target(buf));
+        assertTrue(parser.isHttp11());
+        assertEquals("example.com", parser.header(buf, "host"));
+        assertEquals("v1", parser.header(buf, "x-custom"));
+        assertEquals(-1, parser.contentLength);
+
+        Headers headers = new Headers();
+        parser.copyHeaders(buf, headers);
+        assertEquals(List.of("v1", "v2"), headers.get("X-custom"));
+        assertEquals("gzip", headers.getFirst("Accept-encoding"));
+    }
+
+    // 请求之间的空行被跳过，只有 LF 的行尾也接受
+    @Test
+    void acceptsLeadingBlankLinesAndBareLf() {
+        String head = "\r\n\nHEAD / HTTP/1.0\nHost: a\n\n";
+        ByteBuffer buf = buffer(head);
+        assertEquals(head.length(), parser.parse(buf, 0, buf.limit()));
+        assertEquals("HEAD", parser.method(buf));
+        assertFalse(parser.isHttp11());
+    }
+
+    // 请求头逐字节到达时，直到空行出现都返回 INCOMPLETE
+    @Test
+    void waitsForCompleteHeadAcrossReads() {
+        String head = "GET / HTTP/1.1\r\nHost: a\r\n\r\n";
+        ByteBuffer buf = buffer(head);
+        for (int end = 1; end < head.length(); end++) {
+            assertEquals(RequestParser.INCOMPLETE, parser.parse(buf, 0, end), "end=" + end);
+        }
+        assertEquals(head.length(), parser.parse(buf, 0, head.length()));
+    }
+
+    @Test
+    void inspectsConnectionHeaders() {
+        ByteBuffer buf = buffer("POST /upload HTTP/1.1\r\nContent-Length: 42\r\nConnection: keep-alive, Upgrade\r\n"
+                + "Upgrade: websocket, h2c\r\nExpect: 100-Continue\r\nTransfer-Encoding: chunked\r\n\r\n");
+        assertTrue(parser.parse(buf, 0, buf.limit()) > 0);
+        assertEquals(42, parser.contentLength);
+        assertTrue(parser.connectionKeepAlive);
+        assertTrue(parser.connectionUpgrade);
+        assertFalse(parser.connectionClose);
+        assertTrue(parser.upgradeH2c);
+        assertTrue(parser.expectContinue);
+        assertTrue(parser.chunked);
+
+        // 上一个请求的字段不会带到下一个请求
+        buf = buffer("GET / HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(parser.parse(buf, 0, buf.limit()) > 0);
+        assertEquals(-1, parser.contentLength);
+        assertTrue(parser.connectionClose);
+        assertFalse(parser.upgradeH2c);
+        assertFalse(parser.chunked);
+        assertNull(parser.header(buf, "upgrade"));
+    }
+
+    @Test
+    void rejectsMalformedRequests() {
+        assertEquals(-400, parse("GET  / HTTP/1.1\r\n\r\n"));
+        assertEquals(-400, parse("GET /\r\n\r\n"));
+        assertEquals(-400, parse("G(T / HTTP/1.1\r\n\r\n"));
+        assertEquals(-400, parse("GET / HTTP/1.1\rHost: a\r\n\r\n"));
+        // 头部名称不能为空或包含空格，不接受折行
+        assertEquals(-400, parse("GET / HTTP/1.1\r\n: a\r\n\r\n"));
+        assertEquals(-400, parse("GET / HTTP/1.1\r\nHost : a\r\n\r\n"));
+        assertEquals(-400, parse("GET / HTTP/1.1\r\nX-A: a\r\n folded\r\n\r\n"));
+        // 值中的控制字符
+        assertEquals(-400, parse("GET / HTTP/1.1\r\nX-A: a\u0001b\r\n\r\n"));
+        // Content-Length 为空、非数字、溢出或前后不一致
+        assertEquals(-400, parse("POST / HTTP/1.1\r\nContent-Length:\r\n\r\n"));
+        assertEquals(-400, parse("POST / HTTP/1.1\r\nContent-Length: 1a\r\n\r\n"));
+        assertEquals(-400, parse("POST / HTTP/1.1\r\nContent-Length: 99999999999999999999\r\n\r\n"));
+        assertEquals(-400, parse("POST / HTTP/1.1\r\nContent-Length: 1\r\nContent-Length: 2\r\n\r\n"));
+        // 不支持的协议版本
+        assertEquals(-505, parse("GET / HTTP/2.0\r\n\r\n"));
+        assertEquals(-505, parse("GET / HTTP/1.2\r\n\r\n"));
+    }
+
+    @Test
+    void acceptsRepeatedIdenticalContentLengthAndObsText() {
+        assertTrue(parse("POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 5\r\n\r\n") > 0);
+        assertEquals(5, parser.contentLength);
+        ByteBuffer buf = ByteBuffer.wrap("GET / HTTP/1.1\r\nX-A: café\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertTrue(parser.parse(buf, 0, buf.limit()) > 0);
+        assertEquals("café", parser.header(buf, "x-a"));
+    }
+
+    @Test
+    void limitsHeaderCount() {
+        StringBuilder sb = new StringBuilder("GET / HTTP/1.1\r\n");
+        for (int i = 0; i < 100; i++) {
+            sb.append("X-H").append(i).append(": v\r\n");
+        }
+        assertTrue(parse(sb + "\r\n") > 0);
+        assertEquals(-431, parse(sb + "X-Extra: v\r\n\r\n"));
+    }
+
+    private int parse(String head) {
+        parser.reset();
+        ByteBuffer buf = buffer(head);
+        return parser.parse(buf, 0, buf.limit());
+    }
+
+    private static ByteBuffer buffer(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
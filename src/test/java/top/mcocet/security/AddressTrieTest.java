@@ -0,0 +1,158 @@
+// src/top/mcocet/security/AddressTrieTest.java
+package top.mcocet.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 地址树与 IpRange 解析的边界情况：0 位和满长前缀、嵌套网段、增删后的路径压缩、IPv4 映射地址。
+ */
+class AddressTrieTest {
+
+    @Test
+    void matchesAddressesInsideRanges() throws UnknownHostException {
+        AddressTrie trie = trie("10.0.0.0/8", "192.168.1.1", "2001:db8::/32", "::1");
+        assertTrue(trie.contains(address("10.255.255.255")));
+        assertTrue(trie.contains(address("192.168.1.1")));
+        assertFalse(trie.contains(address("192.168.1.2")));
+        assertFalse(trie.contains(address("11.0.0.0")));
+        assertTrue(trie.contains(address("2001:db8:ffff::1")));
+        assertFalse(trie.contains(address("2001:db9::")));
+        assertTrue(trie.contains(address("::1")));
+        // IPv4 映射地址按 IPv4 匹配
+        assertTrue(trie.contains(address("::ffff:10.1.2.3")));
+        // 两个协议族互不影响
+        assertFalse(trie("10.0.0.0/8").contains(address("::a00:1")));
+        assertFalse(trie("::/0").contains(address("1.2.3.4")));
+    }
+
+    @Test
+    void handlesZeroAndFullPrefixes() throws UnknownHostException {
+        AddressTrie all = trie("0.0.0.0/0");
+        assertTrue(all.contains(address("0.0.0.0")));
+        assertTrue(all.contains(address("255.255.255.255")));
+        assertTrue(trie("255.255.255.255/32").contains(address("255.255.255.255")));
+        assertFalse(trie("255.255.255.255/32").contains(address("255.255.255.254")));
+        AddressTrie v6 = trie("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff/128", "8000::/1");
+        assertTrue(v6.contains(address("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+        assertTrue(v6.contains(address("8000::")));
+        assertFalse(v6.contains(address("7fff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+        // 前缀跨过 64 位边界
+        AddressTrie boundary = trie("2001:db8:0:1:8000::/65");
+        assertTrue(boundary.contains(address("2001:db8:0:1:ffff::1")));
+        assertFalse(boundary.contains(address("2001:db8:0:1:7fff::1")));
+    }
+
+    // 网段与其中的单个地址同时存在时，删掉其中一个不影响另一个
+    @Test
+    void keepsNestedEntriesIndependent() throws UnknownHostException {
+        AddressTrie trie = trie("10.0.0.0/8", "10.1.0.0/16", "10.1.2.3");
+        assertEquals(3, trie.size());
+        assertTrue(trie.containsExactly(IpRange.parse("10.1.0.0/16")));
+        assertFalse(trie.containsExactly(IpRange.parse("10.1.0.0/17")));
+
+        AddressTrie withoutOuter = trie.without(IpRange.parse("10.0.0.0/8"));
+        assertEquals(2, withoutOuter.size());
+        assertTrue(withoutOuter.contains(address("10.1.2.3")));
+        assertTrue(withoutOuter.contains(address("10.1.200.1")));
+        assertFalse(withoutOuter.contains(address("10.2.0.1")));
+        // 旧版本不受影响
+        assertTrue(trie.contains(address("10.2.0.1")));
+
+        AddressTrie onlyHost = withoutOuter.without(IpRange.parse("10.1.0.0/16"));
+        assertEquals(List.of(IpRange.parse("10.1.2.3")), onlyHost.toList());
+        assertTrue(onlyHost.without(IpRange.parse("10.1.2.3")).isEmpty());
+    }
+
+    @Test
+    void addingOrRemovingAbsentEntriesReturnsSameTrie() {
+        AddressTrie trie = trie("10.0.0.0/8");
+        assertSame(trie, trie.with(IpRange.parse("10.0.0.0/8")));
+        assertSame(trie, trie.without(IpRange.parse("10.0.0.1")));
+        // 网段按规范形式保存，主机位被清零
+        assertSame(trie, trie.with(IpRange.parse("10.9.9.9/8")));
+    }
+
+    // 随机增删后与逐条比较的结果一致
+    @Test
+    void agreesWithLinearScan() throws UnknownHostException {
+        Random random = new Random(7);
+        List<IpRange> ranges = new ArrayList<>();
+        AddressTrie trie = AddressTrie.EMPTY;
+        for (int i = 0; i < 300; i++) {
+            IpRange range = IpRange.parse(randomV4(random) + "/" + (8 + random.nextInt(25)));
+            if (random.nextInt(4) == 0 && !ranges.isEmpty()) {
+                range = ranges.remove(random.nextInt(ranges.size()));
+                trie = trie.without(range);
+            } else if (!trie.containsExactly(range)) {
+                ranges.add(range);
+                trie = trie.with(range);
+            }
+            assertEquals(ranges.size(), trie.size());
+        }
+        for (int i = 0; i < 2000; i++) {
+            InetAddress address = address(randomV4(random));
+            IpRange single = IpRange.of(address);
+            boolean expected = false;
+            for (IpRange range : ranges) {
+                expected |= AddressTrie.EMPTY.with(range).contains(single);
+            }
+            assertEquals(expected, trie.contains(address), address.toString());
+        }
+    }
+
+    @Test
+    void parsesLiteralsAndRejectsOthers() {
+        assertEquals("10.0.0.0/8", IpRange.parse(" 10.1.2.3/8 ").toString());
+        assertEquals(IpRange.parse("::1"), IpRange.parse("[::1]"));
+        // IPv4 映射地址换算成 IPv4 网段
+        assertEquals(IpRange.parse("10.1.0.0/16"), IpRange.parse("::ffff:10.1.0.0/112"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("::ffff:10.1.0.0/95"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("10.0.0.0/-1"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("10.0.0.0/x"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("256.0.0.1"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("1.2.3"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("2001:db8::/129"));
+        assertThrows(IllegalArgumentException.class, () -> IpRange.parse("1:2:3:4:5:6:7:8:9"));
+
+        // 主机名不会触发 DNS 查询，也不会进入 parse
+        assertNull(IpRange.tryParse("localhost"));
+        assertNull(IpRange.tryParse("example.com"));
+        assertNull(IpRange.tryParse("cafe.be"));
+        assertNull(IpRange.tryParse("fe80::1%eth0"));
+        assertNull(IpRange.tryParse("[]"));
+        assertNull(IpRange.tryParse(""));
+        assertEquals(IpRange.parse("::1"), IpRange.tryParse("[::1]"));
+        assertEquals(IpRange.parse("127.0.0.1"), IpRange.tryParse("127.0.0.1"));
+    }
+
+    private static AddressTrie trie(String... ranges) {
+        List<IpRange> parsed = new ArrayList<>();
+        for (String range : ranges) {
+            parsed.add(IpRange.parse(range));
+        }
+        return AddressTrie.of(parsed);
+    }
+
+    private static InetAddress address(String literal) throws UnknownHostException {
+        return InetAddress.getByName(literal);
+    }
+
+    private static String randomV4(Random random) {
+        // 集中在少数前缀下，让网段之间经常重叠
+        return "10." + random.nextInt(4) + "." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+}